@@ -0,0 +1,266 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * An on disk cache of already inflated class bytes for one JAR file. All classes are stored in a single file which is
+ * read into one direct buffer on the next launch so classes can be defined straight from it without opening the JAR
+ * or inflating anything. The file is read and closed rather than memory mapped since Windows can't replace a file
+ * that any JVM still has mapped.
+ *
+ * The file name contains a hash of the JAR path, size and modification time so a rebuilt JAR never uses stale class
+ * bytes. Each class also stores the CRC32 of its bytes and is only handed out when both that and a CRC32 of the bytes
+ * themselves match the CRC32 of the entry in the JAR's central directory. Classes defined during this run that were
+ * not in the cache are written to a new file at shutdown.
+ *
+ * File format (big endian): magic, version, count, then count entries of (UTF name, CRC32, offset, length) followed by
+ * the class bytes. Offsets are from the start of the file.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ClassDataCache {
+
+    private final static int FILE_MAGIC = 0x4C434443; // "LCDC"
+    private final static int FILE_VERSION = 2;
+    private final static Logger log = Logger.getLogger(ClassDataCache.class.getName());
+
+    private final ByteBuffer buffer;
+    private final File file;
+    private final Map<String, byte[]> recordedClasses;
+    private final Map<String, int[]> entries; // Offset, length and CRC32
+
+    private ClassDataCache(File file, ByteBuffer buffer, Map<String, int[]> entries) {
+        this.file = file;
+        this.buffer = buffer;
+        this.entries = entries;
+        recordedClasses = new ConcurrentHashMap<>();
+    }
+
+    private static String getCacheKey(File jarFile) {
+        CRC32 crc32 = new CRC32();
+        crc32.update((jarFile.getAbsolutePath() + "|" + jarFile.length() + "|" + jarFile.lastModified())
+                .getBytes(StandardCharsets.UTF_8));
+        return String.format("%08x", crc32.getValue());
+    }
+
+    private static int getCrc(ByteBuffer classBuffer) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(classBuffer.duplicate());
+        return (int) crc32.getValue();
+    }
+
+    private static ByteBuffer read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Class data cache is too big: " + size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new IOException("Class data cache was truncated");
+                }
+            }
+            buffer.flip();
+            return buffer.asReadOnlyBuffer();
+        }
+    }
+
+    private static Map<String, int[]> readEntries(ByteBuffer buffer) throws IOException {
+        Map<String, int[]> entries = new HashMap<>();
+
+        if ((buffer.limit() < 12) || (buffer.getInt(0) != FILE_MAGIC) || (buffer.getInt(4) != FILE_VERSION)) {
+            throw new IOException("Invalid class data cache");
+        }
+
+        int count = buffer.getInt(8);
+        int offset = 12;
+        for (int i = 0; i < count; i++) {
+            int nameLength = buffer.getShort(offset) & 0xffff;
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(offset + 2);
+            nameBuffer.get(nameBytes);
+            offset += 2 + nameLength;
+            int classCrc = buffer.getInt(offset);
+            int classOffset = buffer.getInt(offset + 4);
+            int classLength = buffer.getInt(offset + 8);
+            offset += 12;
+            if ((classOffset < 0) || (classLength < 0) || (classOffset + classLength > buffer.limit())) {
+                throw new IOException("Invalid class data cache entry");
+            }
+            entries.put(new String(nameBytes, StandardCharsets.UTF_8), new int[]{classOffset, classLength, classCrc});
+        }
+
+        return entries;
+    }
+
+    /**
+     * Opens the cache for a JAR file. A missing or invalid cache file gives an empty cache.
+     */
+    public static ClassDataCache open(File jarFile, File cacheDir) {
+        File file = new File(cacheDir, "classes-" + getCacheKey(jarFile) + ".bin");
+
+        if (file.isFile()) {
+            try {
+                ByteBuffer buffer = read(file);
+                Map<String, int[]> entries = readEntries(buffer);
+                log.log(Level.FINE, "ClassDataCache opened {0} classes from: {1}",
+                        new Object[]{entries.size(), file});
+                return new ClassDataCache(file, buffer, entries);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "ClassDataCache is ignoring an invalid cache: " + file, e);
+            }
+        }
+
+        return new ClassDataCache(file, null, new HashMap<String, int[]>());
+    }
+
+    private ByteBuffer slice(int[] entry) {
+        ByteBuffer classBuffer = buffer.duplicate();
+        classBuffer.limit(entry[0] + entry[1]);
+        classBuffer.position(entry[0]);
+        return classBuffer.slice();
+    }
+
+    /**
+     * Returns a read only slice of the cache holding the class bytes, or null if the class is not cached or its bytes
+     * don't have the CRC32 of the JAR entry. A class that fails the check is written again by the next save() once it
+     * has been recorded from the JAR.
+     */
+    public ByteBuffer getClassBuffer(String filename, long jarEntryCrc) {
+        int[] entry = entries.get(filename);
+
+        if ((entry == null) || (jarEntryCrc == -1)) {
+            return null;
+        }
+
+        // The stored CRC32 catches a cache from another build of the JAR without reading the bytes
+        if (entry[2] != (int) jarEntryCrc) {
+            log.log(Level.FINE, "ClassDataCache has a stale class: {0}", filename);
+            return null;
+        }
+        ByteBuffer classBuffer = slice(entry);
+        if (getCrc(classBuffer) != (int) jarEntryCrc) {
+            log.log(Level.WARNING, "ClassDataCache has a corrupt class: {0}", filename);
+            return null;
+        }
+        return classBuffer;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isDirty() {
+        return !recordedClasses.isEmpty();
+    }
+
+    /**
+     * Remembers the bytes of a class that was not found in the cache, or failed its check, so it is written by the next
+     * save(). The position of the buffer is not changed.
+     */
+    public void record(String filename, ByteBuffer classBuffer) {
+        ByteBuffer copy = classBuffer.duplicate();
+        byte[] classBytes = new byte[copy.remaining()];
+        copy.get(classBytes);
+        recordedClasses.put(filename, classBytes);
+    }
+
+    /**
+     * Writes every cached and recorded class to a new cache file which replaces the old one. Does nothing when no new
+     * classes were recorded.
+     */
+    public void save() throws IOException {
+        if (!isDirty()) {
+            return;
+        }
+
+        // Gather old and new classes
+        Map<String, ByteBuffer> classes = new HashMap<>();
+        for (Map.Entry<String, int[]> entry : entries.entrySet()) {
+            classes.put(entry.getKey(), slice(entry.getValue()));
+        }
+        for (Map.Entry<String, byte[]> recorded : recordedClasses.entrySet()) {
+            classes.put(recorded.getKey(), ByteBuffer.wrap(recorded.getValue()));
+        }
+
+        // Work out where each class goes. The header size must be known first.
+        int headerSize = 12;
+        for (String filename : classes.keySet()) {
+            headerSize += 2 + filename.getBytes(StandardCharsets.UTF_8).length + 12;
+        }
+
+        File cacheDir = file.getParentFile();
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+
+        File tmpFile = File.createTempFile(file.getName(), ".part", cacheDir);
+        try {
+            try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                dos.writeInt(FILE_MAGIC);
+                dos.writeInt(FILE_VERSION);
+                dos.writeInt(classes.size());
+                int offset = headerSize;
+                for (Map.Entry<String, ByteBuffer> entry : classes.entrySet()) {
+                    byte[] nameBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                    dos.writeShort(nameBytes.length);
+                    dos.write(nameBytes);
+                    dos.writeInt(getCrc(entry.getValue()));
+                    dos.writeInt(offset);
+                    dos.writeInt(entry.getValue().remaining());
+                    offset += entry.getValue().remaining();
+                }
+                byte[] bytesToWrite = new byte[32 * 1024];
+                for (ByteBuffer classBuffer : classes.values()) {
+                    while (classBuffer.hasRemaining()) {
+                        int len = Math.min(bytesToWrite.length, classBuffer.remaining());
+                        classBuffer.get(bytesToWrite, 0, len);
+                        dos.write(bytesToWrite, 0, len);
+                    }
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmpFile.delete();
+        }
+
+        log.log(Level.FINE, "ClassDataCache saved {0} classes to: {1}", new Object[]{classes.size(), file});
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+}
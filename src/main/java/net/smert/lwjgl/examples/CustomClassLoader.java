@@ -15,6 +15,7 @@ package net.smert.lwjgl.examples;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,6 +24,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.CodeSource;
 import java.security.ProtectionDomain;
 import java.security.SecureClassLoader;
@@ -30,10 +37,12 @@ import java.security.cert.Certificate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.jar.Attributes;
 import java.util.jar.Attributes.Name;
 import java.util.jar.JarEntry;
@@ -41,6 +50,7 @@ import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
 
 /**
  * http://docstore.mik.ua/orelly/java-ent/security/ch03_04.htm
@@ -54,15 +64,31 @@ import java.util.logging.Logger;
 public class CustomClassLoader extends SecureClassLoader {
 
     private final static Logger log = Logger.getLogger(CustomClassLoader.class.getName());
+    private final static String CLASS_CACHE_DIR = "classes";
+    private final static String CLASS_CACHE_PROPERTY = "net.smert.lwjgl.examples.classcache";
+    private final static String MAPPED_JARS_PROPERTY = "net.smert.lwjgl.examples.mappedjars";
+    private final static String NATIVE_CACHE_DIR = "natives";
+    private final static String NATIVE_CACHE_LOCK = "natives.lock";
+    private final static String NATIVE_CACHE_VERIFIED = ".verified";
     private final static String TMP_DIR = "JavaCustomClassLoader";
 
+    static {
+        // Lets loadClass() lock per class name instead of on the whole class loader
+        ClassLoader.registerAsParallelCapable();
+    }
+
+    private boolean useMappedJars;
     private int maxDepthForJarFiles;
-    private final ByteBuffer classByteCodeBuffer;
+    private ClassDataCache classDataCache;
+    private File tmpDir;
+    private final AtomicInteger classesDefined;
+    private final AtomicLong classDefineNanos;
     private final Map<String, Class> loadedClasses;
     private final Map<String, String> loadedNatives;
     private final Map<String, FileEntryInJar> fileEntriesInJar;
     private final List<JarFileEntry> jarFileEntries;
     private final ProtectionDomain rootProtectionDomain;
+    private final ThreadLocal<ByteBuffer> classByteCodeBuffer;
 
     public CustomClassLoader() {
         this(ClassLoader.getSystemClassLoader());
@@ -72,13 +98,24 @@ public class CustomClassLoader extends SecureClassLoader {
         super(parent);
 
         maxDepthForJarFiles = 3;
+        useMappedJars = Boolean.getBoolean(MAPPED_JARS_PROPERTY);
         // I thought the max was 64K but I've seen .class files with bigger. Maybe I'm confusing method length?
         // Either case it doesn't matter just let the JVM go up in flames. Hopefully we don't throw a
         // BufferOverflowException while reading a class.
-        classByteCodeBuffer = ByteBuffer.allocateDirect(1048576);
-        loadedClasses = new HashMap<>();
-        loadedNatives = new HashMap<>();
-        fileEntriesInJar = new HashMap<>();
+        // Each thread gets its own buffer since classes can be loaded by several threads at once.
+        classByteCodeBuffer = new ThreadLocal<ByteBuffer>() {
+
+            @Override
+            protected ByteBuffer initialValue() {
+                return ByteBuffer.allocateDirect(1048576);
+            }
+
+        };
+        classesDefined = new AtomicInteger();
+        classDefineNanos = new AtomicLong();
+        loadedClasses = new ConcurrentHashMap<>();
+        loadedNatives = new ConcurrentHashMap<>();
+        fileEntriesInJar = new ConcurrentHashMap<>();
         jarFileEntries = new ArrayList<>();
         rootProtectionDomain = getClass().getProtectionDomain();
 
@@ -87,26 +124,17 @@ public class CustomClassLoader extends SecureClassLoader {
     }
 
     private File createTempFile(String name) throws IOException {
-        // Directory
-        String tmpDirName = System.getProperty("java.io.tmpdir");
-        File tmpDir = new File(tmpDirName, TMP_DIR);
-        if (!tmpDir.exists()) {
-            tmpDir.mkdir();
-        }
-        // Chmod 777
-        tmpDir.setReadable(true, false);
-        tmpDir.setWritable(true, false);
-        tmpDir.setExecutable(true, false);
-        if ((!tmpDir.exists()) || (!tmpDir.isDirectory())) {
-            throw new RuntimeException("Unable to create a temporary directory: " + tmpDirName);
+        // Directory. A new one for every launch which only this user can read and write (on POSIX systems), so no one
+        // can swap a file between extracting and loading it.
+        synchronized (this) {
+            if (tmpDir == null) {
+                tmpDir = Files.createTempDirectory(TMP_DIR).toFile();
+                tmpDir.deleteOnExit(); // Deleted last since it was registered first
+            }
         }
         // File
         File tmpFile = File.createTempFile(name, null, tmpDir);
         tmpFile.deleteOnExit(); // Only works when there is no lock on the file
-        // Chmod 777
-        tmpFile.setReadable(true, false);
-        tmpFile.setWritable(true, false);
-        tmpFile.setExecutable(true, false);
         if ((!tmpFile.exists()) || (tmpFile.isDirectory())) {
             throw new RuntimeException("Unable to create a temporary file: " + tmpFile.getAbsolutePath());
         }
@@ -149,16 +177,23 @@ public class CustomClassLoader extends SecureClassLoader {
             }
 
             // Define a new package for the class
-            if (manifest != null) {
-                String implTitle = jarFileEntry.getImplementationTitle(packageName);
-                String implVendor = jarFileEntry.getImplementationVendor(packageName);
-                String implVersion = jarFileEntry.getImplementationVersion(packageName);
-                String specTitle = jarFileEntry.getSpecificationTitle(packageName);
-                String specVendor = jarFileEntry.getSpecificationVendor(packageName);
-                String specVersion = jarFileEntry.getSpecificationVersion(packageName);
-                definePackage(packageName, specTitle, specVersion, specVendor, implTitle, implVersion, implVendor, sealBase);
-            } else {
-                definePackage(packageName, null, null, null, null, null, null, null);
+            try {
+                if (manifest != null) {
+                    String implTitle = jarFileEntry.getImplementationTitle(packageName);
+                    String implVendor = jarFileEntry.getImplementationVendor(packageName);
+                    String implVersion = jarFileEntry.getImplementationVersion(packageName);
+                    String specTitle = jarFileEntry.getSpecificationTitle(packageName);
+                    String specVendor = jarFileEntry.getSpecificationVendor(packageName);
+                    String specVersion = jarFileEntry.getSpecificationVersion(packageName);
+                    definePackage(packageName, specTitle, specVersion, specVendor, implTitle, implVersion, implVendor, sealBase);
+                } else {
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                }
+            } catch (IllegalArgumentException e) {
+                // Another thread loading a class from the same package defined it first
+                if (getPackage(packageName) == null) {
+                    throw e;
+                }
             }
         }
     }
@@ -203,6 +238,88 @@ public class CustomClassLoader extends SecureClassLoader {
         }
     }
 
+    /**
+     * Returns the native library from a persistent cache directory, extracting it first if needed. The directory is
+     * named after the CRC32 and size of the JAR entry, both of which come from the JAR's central directory, so a
+     * different build of the library never reuses an old file. The directory is private to the user (see
+     * UserCacheDirectory). Once a file has been extracted or its CRC32 checked, its size and modified time are kept
+     * in a file next to it and a warm start only compares those. The CRC32 is checked again when either changed.
+     *
+     * Other processes are kept out with a file lock while checking and extracting. Files are extracted to a
+     * temporary name and renamed into place so a partially written library is never visible.
+     *
+     * Returns null if the entry has no CRC32 or size, or the cache directory can't be used, in which case the caller
+     * should extract it the old way.
+     */
+    private File extractFileToNativeCache(JarFile jarFile, JarEntry entry, String name) throws IOException {
+        long crc = entry.getCrc();
+        long size = entry.getSize();
+        if ((crc == -1) || (size == -1)) {
+            return null;
+        }
+
+        File nativesDir;
+        try {
+            nativesDir = UserCacheDirectory.get(NATIVE_CACHE_DIR);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "CustomClassLoader is unable to use the native cache", e);
+            return null;
+        }
+        File cacheDir = new File(nativesDir, String.format("%08x-%d", crc, size));
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        File cachedFile = new File(cacheDir, fileName);
+        File verifiedFile = new File(cacheDir, fileName + NATIVE_CACHE_VERIFIED);
+
+        if (!cacheDir.exists()) {
+            cacheDir.mkdirs();
+        }
+        if (!cacheDir.isDirectory()) {
+            log.log(Level.WARNING, "CustomClassLoader is unable to create a native cache directory: {0}", cacheDir);
+            return null;
+        }
+
+        // A file lock is held by the whole JVM so class loaders in the same process also need to take turns
+        synchronized (CustomClassLoader.class) {
+            try (FileChannel lockChannel = FileChannel.open(new File(nativesDir, NATIVE_CACHE_LOCK).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    FileLock lock = lockChannel.lock()) {
+                if (cachedFile.isFile() && (cachedFile.length() == size)) {
+                    String stamp = getFileStamp(cachedFile);
+                    if (stamp.equals(readFileStamp(verifiedFile))) {
+                        log.log(Level.FINER, "CustomClassLoader found a cached native: {0}", cachedFile);
+                        return cachedFile;
+                    }
+                    if (getFileCrc(cachedFile) == crc) {
+                        writeFileStamp(verifiedFile, stamp);
+                        log.log(Level.FINER, "CustomClassLoader checked a cached native: {0}", cachedFile);
+                        return cachedFile;
+                    }
+                    log.log(Level.WARNING, "CustomClassLoader found a corrupt cached native: {0}", cachedFile);
+                }
+
+                File partFile = File.createTempFile(fileName, ".part", cacheDir);
+                try {
+                    try (InputStream is = jarFile.getInputStream(entry)) {
+                        Files.copy(is, partFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    partFile.setReadable(true, true);
+                    partFile.setExecutable(true, true);
+                    Files.move(partFile.toPath(), cachedFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    partFile.delete();
+                }
+                writeFileStamp(verifiedFile, getFileStamp(cachedFile));
+                log.log(Level.FINER, "CustomClassLoader cached a native with a size of: {0}", size);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "CustomClassLoader is unable to use the native cache", e);
+                return null;
+            }
+        }
+
+        return cachedFile;
+    }
+
     private File extractFileToTempDirectory(JarFile jarFile, JarEntry entry, String name)
             throws IOException {
         File tmpFile = createTempFile(name);
@@ -250,8 +367,18 @@ public class CustomClassLoader extends SecureClassLoader {
                 ? new CodeSource(url, rootCodeSource.getCodeSigners())
                 : new CodeSource(url, rootCertificates);
 
+        // Memory map the JAR so classes can be read without opening a stream for each one
+        MappedJarFile mappedJarFile = null;
+        if (useMappedJars) {
+            try {
+                mappedJarFile = new MappedJarFile(file);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "CustomClassLoader was unable to map JAR: " + url + " and will use streams", e);
+            }
+        }
+
         // Create an entry for this JAR file. We will be searching all JAR file entries later
-        JarFileEntry jarFileEntry = new JarFileEntry(depth, newCodeSource, jarFile, jarManifest, url);
+        JarFileEntry jarFileEntry = new JarFileEntry(depth, newCodeSource, jarFile, jarManifest, mappedJarFile, url);
         jarFileEntries.add(jarFileEntry);
 
         // Loop over jar entries and find jar files
@@ -279,20 +406,37 @@ public class CustomClassLoader extends SecureClassLoader {
     }
 
     private byte[] getClassBytes(BufferedInputStream bis) throws IOException {
-        classByteCodeBuffer.clear();
+        ByteBuffer buffer = classByteCodeBuffer.get();
+        buffer.clear();
         byte[] bytesRead = new byte[32 * 1024];
         int len, totalSize = 0;
         while ((len = bis.read(bytesRead)) != -1) {
-            classByteCodeBuffer.put(bytesRead, 0, len);
+            buffer.put(bytesRead, 0, len);
             totalSize += len;
         }
-        classByteCodeBuffer.flip();
-        byte[] classBytes = new byte[classByteCodeBuffer.remaining()];
-        classByteCodeBuffer.get(classBytes, 0, classBytes.length);
+        buffer.flip();
+        byte[] classBytes = new byte[buffer.remaining()];
+        buffer.get(classBytes, 0, classBytes.length);
         log.log(Level.FINER, "CustomClassLoader loaded a class with a size of: {0}", totalSize);
         return classBytes;
     }
 
+    private long getFileCrc(File file) throws IOException {
+        CRC32 crc32 = new CRC32();
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            byte[] bytesRead = new byte[64 * 1024];
+            int len;
+            while ((len = is.read(bytesRead)) != -1) {
+                crc32.update(bytesRead, 0, len);
+            }
+        }
+        return crc32.getValue();
+    }
+
+    private String getFileStamp(File file) {
+        return file.length() + " " + file.lastModified();
+    }
+
     private URL getClassLocation() {
         return getClass().getResource(CustomClassLoader.class.getSimpleName() + ".class");
     }
@@ -333,12 +477,48 @@ public class CustomClassLoader extends SecureClassLoader {
             URL classLoadedFromURL = getClassLoadedFromLocation();
             extractJarFilesInsideRootJar(classLoadedFromURL, 0);
             extractFileInformationFromJarFileEntries();
+            if (Boolean.getBoolean(CLASS_CACHE_PROPERTY)) {
+                openClassDataCache(classLoadedFromURL);
+            }
         } catch (IOException e) {
             log.log(Level.SEVERE, null, e);
             System.exit(-1);
         }
     }
 
+    private void openClassDataCache(URL rootJarURL) {
+        File rootJarFile;
+        try {
+            rootJarFile = new File(rootJarURL.toURI());
+        } catch (URISyntaxException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        File cacheDir;
+        try {
+            cacheDir = UserCacheDirectory.get(CLASS_CACHE_DIR);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "CustomClassLoader is unable to use the class data cache", e);
+            return;
+        }
+        final ClassDataCache cache = ClassDataCache.open(rootJarFile, cacheDir);
+        classDataCache = cache;
+
+        // Classes that were not cached yet are written when the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    cache.save();
+                } catch (IOException e) {
+                    log.log(Level.WARNING, "CustomClassLoader was unable to save the class data cache", e);
+                }
+            }
+
+        });
+    }
+
     private String mapLibraryName(String libraryName) {
         if (System.getProperty("os.name").toLowerCase().contains("mac")) {
             return "lib" + libraryName + ".jnilib";
@@ -353,10 +533,66 @@ public class CustomClassLoader extends SecureClassLoader {
         return System.mapLibraryName(libraryName);
     }
 
+    private String readFileStamp(File file) {
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void updateClassDefineStatistics(long startTime) {
+        classDefineNanos.addAndGet(System.nanoTime() - startTime);
+        classesDefined.incrementAndGet();
+    }
+
+    private void writeFileStamp(File file, String stamp) throws IOException {
+        Files.write(file.toPath(), stamp.getBytes(StandardCharsets.US_ASCII));
+    }
+
     protected boolean allowedToOverwriteFileEntryInJar(FileEntryInJar existingFileEntryInJar, FileEntryInJar newFileEntryInJar) {
         return (existingFileEntryInJar.getDepth() < newFileEntryInJar.getDepth());
     }
 
+    /**
+     * Returns the number of classes this class loader has defined itself.
+     *
+     * @return The number of classes
+     */
+    public int getClassesDefined() {
+        return classesDefined.get();
+    }
+
+    /**
+     * Returns the total time spent reading and defining the classes counted by {@link #getClassesDefined()}. Dividing
+     * the two gives the average class load latency.
+     *
+     * @return The time in nanoseconds
+     */
+    public long getClassDefineNanos() {
+        return classDefineNanos.get();
+    }
+
+    /**
+     * Returns the class data cache or null when it is disabled. It is enabled by setting the system property
+     * "net.smert.lwjgl.examples.classcache" to true.
+     *
+     * @return The class data cache
+     */
+    public ClassDataCache getClassDataCache() {
+        return classDataCache;
+    }
+
+    /**
+     * Returns true when JARs are memory mapped and classes are defined from their central directory index. This is
+     * enabled by setting the system property "net.smert.lwjgl.examples.mappedjars" to true.
+     *
+     * @return True if mapped JARs are used
+     */
+    public boolean isUseMappedJars() {
+        return useMappedJars;
+    }
+
     /**
      * Finds the class with the specified <a href="#name">binary name</a>. This method should be overridden by class
      * loader implementations that follow the delegation model for loading classes, and will be invoked by the
@@ -391,14 +627,56 @@ public class CustomClassLoader extends SecureClassLoader {
         // Define a package for this class
         defineNewPackage(className, fileEntryInJar);
 
+        long startTime = System.nanoTime();
+        CodeSource codeSource = fileEntryInJar.getJarFileEntry().getCodeSource();
+        MappedJarFile mappedJarFile = fileEntryInJar.getJarFileEntry().getMappedJarFile();
+
         try {
+            // Define the class straight from the class data cache. It is already inflated and checked against the CRC32
+            // of the JAR entry.
+            if (classDataCache != null) {
+                ByteBuffer classBuffer = classDataCache.getClassBuffer(filename, fileEntryInJar.getJarEntry().getCrc());
+                if (classBuffer != null) {
+                    clazz = defineClass(className, classBuffer, codeSource);
+                    loadedClasses.put(className, clazz);
+                    updateClassDefineStatistics(startTime);
+                    log.log(Level.FINEST, "CustomClassLoader defined the cached class: {0}", clazz);
+                    return clazz;
+                }
+            }
+
+            // Define the class straight from the mapped JAR. STORED entries are not copied at all.
+            if (mappedJarFile != null) {
+                ByteBuffer classBuffer = null;
+                try {
+                    classBuffer = mappedJarFile.getEntryBuffer(filename);
+                } catch (IOException e) {
+                    // Something the mapped reader doesn't handle. The stream below still can.
+                    log.log(Level.WARNING, "CustomClassLoader was unable to read the mapped class: " + filename
+                            + " and will use a stream", e);
+                }
+                if (classBuffer != null) {
+                    if (classDataCache != null) {
+                        classDataCache.record(filename, classBuffer);
+                    }
+                    clazz = defineClass(className, classBuffer, codeSource);
+                    loadedClasses.put(className, clazz);
+                    updateClassDefineStatistics(startTime);
+                    log.log(Level.FINEST, "CustomClassLoader defined the mapped class: {0}", clazz);
+                    return clazz;
+                }
+            }
+
             // Read the bytes of the class and then define it
             try (InputStream jarInputStream = fileEntryInJar.openStream();
                     BufferedInputStream bis = new BufferedInputStream(jarInputStream)) {
                 byte[] classBytes = getClassBytes(bis);
-                CodeSource codeSource = fileEntryInJar.getJarFileEntry().getCodeSource();
+                if (classDataCache != null) {
+                    classDataCache.record(filename, ByteBuffer.wrap(classBytes));
+                }
                 clazz = defineClass(className, classBytes, 0, classBytes.length, codeSource);
                 loadedClasses.put(className, clazz);
+                updateClassDefineStatistics(startTime);
                 log.log(Level.FINEST, "CustomClassLoader defined the class: {0}", clazz);
                 return clazz;
             }
@@ -458,19 +736,30 @@ public class CustomClassLoader extends SecureClassLoader {
             }
         }
 
-        try {
-            // Read the bytes of the native library and save it to a temp file
-            JarFileEntry jarFileEntry = fileEntryInJar.getJarFileEntry();
-            JarFile jarFile = jarFileEntry.getJarFile();
-            JarEntry jarEntry = fileEntryInJar.getJarEntry();
-            File tmpFile = extractFileToTempDirectory(jarFile, jarEntry, fileEntryInJar.getName());
-            fullPathToNativeLibrary = tmpFile.getAbsolutePath();
-            loadedNatives.put(libraryName, fullPathToNativeLibrary);
-            log.log(Level.FINEST, "CustomClassLoader loaded the native library: {0}", fullPathToNativeLibrary);
-            return fullPathToNativeLibrary;
-        } catch (IOException e) {
-            log.log(Level.SEVERE, "Unable to open JarInputStream for fileEntryInJar", e);
-            System.exit(-1);
+        // Only one thread extracts natives at a time so the same library is never extracted twice
+        synchronized (loadedNatives) {
+            fullPathToNativeLibrary = loadedNatives.get(libraryName);
+            if (fullPathToNativeLibrary != null) {
+                return fullPathToNativeLibrary;
+            }
+
+            try {
+                // Use the persistent native cache and only fall back to a temp file when it can't be used
+                JarFileEntry jarFileEntry = fileEntryInJar.getJarFileEntry();
+                JarFile jarFile = jarFileEntry.getJarFile();
+                JarEntry jarEntry = fileEntryInJar.getJarEntry();
+                File tmpFile = extractFileToNativeCache(jarFile, jarEntry, fileEntryInJar.getName());
+                if (tmpFile == null) {
+                    tmpFile = extractFileToTempDirectory(jarFile, jarEntry, fileEntryInJar.getName());
+                }
+                fullPathToNativeLibrary = tmpFile.getAbsolutePath();
+                loadedNatives.put(libraryName, fullPathToNativeLibrary);
+                log.log(Level.FINEST, "CustomClassLoader loaded the native library: {0}", fullPathToNativeLibrary);
+                return fullPathToNativeLibrary;
+            } catch (IOException e) {
+                log.log(Level.SEVERE, "Unable to open JarInputStream for fileEntryInJar", e);
+                System.exit(-1);
+            }
         }
 
         return null;
@@ -580,29 +869,35 @@ public class CustomClassLoader extends SecureClassLoader {
      * @throws ClassNotFoundException If the class could not be found
      */
     @Override
-    protected synchronized Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+    protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
         log.log(Level.FINER, "CustomClassLoader loading class: {0}", className);
 
         // Register CustomClassLoader as a context class loader
-        Thread.currentThread().setContextClassLoader(this);
-
-        // We return null when we can't find a class instead of throwing an exception
-        Class clazz = null;
-        try {
-            clazz = findClass(className);
-        } catch (ClassNotFoundException e) {
-            // We can't find the class so the parent needs to handle it
-        }
-        if (clazz == null) {
-            // Parent will throw an exception when it can't load the class and will call our
-            // findClass() method again. This time we will let the exception buble.
-            ClassLoader parent = getParent();
-            clazz = parent.loadClass(className);
+        Thread currentThread = Thread.currentThread();
+        if (currentThread.getContextClassLoader() != this) {
+            currentThread.setContextClassLoader(this);
         }
-        if (resolve) {
-            resolveClass(clazz);
+
+        // Only threads loading the same class wait on each other
+        synchronized (getClassLoadingLock(className)) {
+            // We return null when we can't find a class instead of throwing an exception
+            Class clazz = null;
+            try {
+                clazz = findClass(className);
+            } catch (ClassNotFoundException e) {
+                // We can't find the class so the parent needs to handle it
+            }
+            if (clazz == null) {
+                // Parent will throw an exception when it can't load the class and will call our
+                // findClass() method again. This time we will let the exception buble.
+                ClassLoader parent = getParent();
+                clazz = parent.loadClass(className);
+            }
+            if (resolve) {
+                resolveClass(clazz);
+            }
+            return clazz;
         }
-        return clazz;
     }
 
     public static class FileEntryInJar {
@@ -660,13 +955,20 @@ public class CustomClassLoader extends SecureClassLoader {
         private final CodeSource codeSource;
         private final JarFile jarFile;
         private final Manifest manifest;
+        private final MappedJarFile mappedJarFile;
         private final URL url;
 
         public JarFileEntry(int depth, CodeSource codeSource, JarFile jarFile, Manifest manifest, URL url) {
+            this(depth, codeSource, jarFile, manifest, null, url);
+        }
+
+        public JarFileEntry(int depth, CodeSource codeSource, JarFile jarFile, Manifest manifest,
+                MappedJarFile mappedJarFile, URL url) {
             this.depth = depth;
             this.codeSource = codeSource;
             this.jarFile = jarFile;
             this.manifest = manifest;
+            this.mappedJarFile = mappedJarFile;
             this.url = url;
         }
 
@@ -702,6 +1004,15 @@ public class CustomClassLoader extends SecureClassLoader {
             return manifest;
         }
 
+        /**
+         * Returns the memory mapped view of the JAR or null when mapped JARs are disabled.
+         *
+         * @return The mapped JAR file
+         */
+        public MappedJarFile getMappedJarFile() {
+            return mappedJarFile;
+        }
+
         public String getImplementationTitle(String packageName) {
             return getAttributeFromPackage(packageName, Name.IMPLEMENTATION_TITLE);
         }
@@ -1,15 +1,28 @@
 package net.smert.lwjgl.examples;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import javax.swing.AbstractListModel;
@@ -22,6 +35,8 @@ import javax.swing.DefaultListModel;
 public class JFrameMainModel {
 
     private final static String DIRECTORY_PREFIX = "net/smert/lwjgl/examples/";
+    private final static String INDEX_CACHE_DIR = "launcher";
+    private final static String INDEX_FILENAME = "MainClassIndex.txt";
 
     private final CustomClassLoader customClassLoader;
     private final DefaultListModel listModelMainClasses;
@@ -31,36 +46,50 @@ public class JFrameMainModel {
         listModelMainClasses = new DefaultListModel();
     }
 
-    private boolean checkMainMethodExists(String clazzName) {
+    private boolean checkMainMethodExists(String clazzName, byte[] classBytes) {
         boolean result = false;
 
         try {
-            Class clazz = customClassLoader.loadClass(clazzName);
-            Method mainMethod = clazz.getMethod("main", String[].class);
-            mainMethod.setAccessible(true);
-            int mods = mainMethod.getModifiers();
-            Class returnType = mainMethod.getReturnType();
-            // Is method a public static void?
-            if (Modifier.isPublic(mods) && Modifier.isStatic(mods) && (returnType == void.class)) {
-                result = true;
-            }
-        } catch (ClassNotFoundException | SecurityException e) {
+            result = MainMethodScanner.hasMainMethod(classBytes);
+        } catch (IOException e) {
+            System.err.println("Unable to scan class: " + clazzName);
             e.printStackTrace();
-        } catch (NoSuchMethodException e) {
-            // Do nothing. Not all classes have a main method.
         }
 
         return result;
     }
 
-    private void filterFileAndCheck(File file, List<String> mainClasses) {
+    private Callable<String> createScanTask(final String clazzName, final byte[] classBytes) {
+        return new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                return checkMainMethodExists(clazzName, classBytes) ? clazzName : null;
+            }
+
+        };
+    }
+
+    private Callable<String> createScanTask(final String clazzName, final File file) {
+        return new Callable<String>() {
+
+            @Override
+            public String call() throws Exception {
+                byte[] classBytes = Files.readAllBytes(file.toPath());
+                return checkMainMethodExists(clazzName, classBytes) ? clazzName : null;
+            }
+
+        };
+    }
+
+    private void filterFileAndAddTask(File file, List<Callable<String>> tasks) {
         String filename = file.getName();
 
         if (filename.endsWith(".class") && !filename.contains("$") && !filename.startsWith("Main")) {
             String clazzName = getClassNameFromPath(file.getAbsolutePath(), File.separator);
 
-            if ((clazzName.length() != 0) && (checkMainMethodExists(clazzName) == true)) {
-                mainClasses.add(clazzName);
+            if (clazzName.length() != 0) {
+                tasks.add(createScanTask(clazzName, file));
             }
         }
     }
@@ -77,6 +106,40 @@ public class JFrameMainModel {
         return clazzName;
     }
 
+    /**
+     * The index lists classes that are then loaded, so it is kept in a directory only this user can write to. Returns
+     * null if there is no such directory, in which case the jar is scanned every time.
+     */
+    private File getIndexFile() {
+        try {
+            return new File(UserCacheDirectory.get(INDEX_CACHE_DIR), INDEX_FILENAME);
+        } catch (IOException e) {
+            System.err.println("Unable to use the main class index: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The index is only valid for the exact same jar so the key is its path, size and modification time.
+     */
+    private String getIndexKey(File jarFile) {
+        return jarFile.getAbsolutePath() + "|" + jarFile.length() + "|" + jarFile.lastModified();
+    }
+
+    private File getJarFile() {
+        CodeSource src = Main.class.getProtectionDomain().getCodeSource();
+
+        if (src == null) {
+            return null;
+        }
+
+        try {
+            return new File(src.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     private List<String> getMainClasses() {
         List<String> mainClasses = new ArrayList();
         URL classLocation = JFrameMainModel.class.getResource(JFrameMainModel.class.getSimpleName() + ".class");
@@ -101,64 +164,196 @@ public class JFrameMainModel {
     private void getMainClassesFromFile(List<String> mainClasses, String pathThisClass) {
         File fileThisClass = new File(pathThisClass);
         String directoryPath = fileThisClass.getParent();
-        listFilesInDirectory(directoryPath, mainClasses);
+        List<Callable<String>> tasks = new ArrayList<>();
+        listFilesInDirectory(directoryPath, tasks);
+        runScanTasks(tasks, mainClasses);
     }
 
     private void getMainClassesFromJar(List<String> mainClasses) {
         CodeSource src = Main.class.getProtectionDomain().getCodeSource();
 
-        if (src != null) {
-            URL jar = src.getLocation();
-            ZipInputStream zip;
+        if (src == null) {
+            return;
+        }
+
+        File jarFile = getJarFile();
+
+        if ((jarFile != null) && jarFile.isFile()) {
+            mainClasses.addAll(getMainClassesFromJar(jarFile, getIndexFile()));
+        } else {
+            scanJar(src.getLocation(), mainClasses);
+        }
+    }
+
+    private void listFilesInDirectory(String directoryPath, List<Callable<String>> tasks) {
+        File directory = new File(directoryPath);
+        File[] files = directory.listFiles();
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                listFilesInDirectory(file.getPath(), tasks);
+            } else {
+                filterFileAndAddTask(file, tasks);
+            }
+        }
+    }
 
-            try {
-                zip = new ZipInputStream(jar.openStream());
+    private byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(16 * 1024);
+        byte[] bytesRead = new byte[8 * 1024];
+        int len;
+        while ((len = is.read(bytesRead)) != -1) {
+            baos.write(bytesRead, 0, len);
+        }
+        return baos.toByteArray();
+    }
 
-                while (true) {
-                    ZipEntry e = zip.getNextEntry();
+    private boolean readIndex(File indexFile, String indexKey, List<String> mainClasses) {
+        if (!indexFile.isFile()) {
+            return false;
+        }
 
-                    if (e == null) {
-                        break;
+        try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            if (!indexKey.equals(reader.readLine())) {
+                return false;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() != 0) {
+                    mainClasses.add(line);
+                }
+            }
+        } catch (IOException e) {
+            mainClasses.clear();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Runs the tasks on one thread per processor. Results keep the order the tasks were added in.
+     */
+    private void runScanTasks(List<Callable<String>> tasks, List<String> mainClasses) {
+        int threads = Math.max(1, Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            List<Future<String>> results = executor.invokeAll(tasks);
+
+            for (Future<String> result : results) {
+                try {
+                    String clazzName = result.get();
+
+                    if (clazzName != null) {
+                        mainClasses.add(clazzName);
                     }
+                } catch (ExecutionException e) {
+                    e.getCause().printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+    }
 
-                    String fullpath = e.getName();
+    /**
+     * Returns false if the jar could not be read.
+     */
+    private boolean scanJar(URL jar, List<String> mainClasses) {
+        List<Callable<String>> tasks = new ArrayList<>();
 
-                    if (fullpath.endsWith(".class")) {
-                        Path path = Paths.get(fullpath);
-                        String filename = path.getFileName().toString();
+        // The zip has to be read in order but parsing the classes can happen in parallel
+        try (ZipInputStream zip = new ZipInputStream(jar.openStream())) {
+            while (true) {
+                ZipEntry e = zip.getNextEntry();
 
-                        if (filename.contains("$")) {
-                            continue;
-                        }
+                if (e == null) {
+                    break;
+                }
 
-                        if (filename.equals(Main.class.getSimpleName() + ".class")) {
-                            continue;
-                        }
+                String fullpath = e.getName();
 
-                        String clazzName = getClassNameFromPath(fullpath, "/");
+                if (fullpath.endsWith(".class")) {
+                    Path path = Paths.get(fullpath);
+                    String filename = path.getFileName().toString();
 
-                        if ((clazzName.length() != 0) && (checkMainMethodExists(clazzName) == true)) {
-                            mainClasses.add(clazzName);
-                        }
+                    if (filename.contains("$")) {
+                        continue;
+                    }
+
+                    if (filename.equals(Main.class.getSimpleName() + ".class")) {
+                        continue;
+                    }
+
+                    String clazzName = getClassNameFromPath(fullpath, "/");
+
+                    if (clazzName.length() != 0) {
+                        tasks.add(createScanTask(clazzName, readFully(zip)));
                     }
                 }
-            } catch (IOException ie) {
-                ie.printStackTrace();
             }
+        } catch (IOException ie) {
+            ie.printStackTrace();
+            return false;
         }
+
+        runScanTasks(tasks, mainClasses);
+        return true;
     }
 
-    private void listFilesInDirectory(String directoryPath, List<String> mainClasses) {
-        File directory = new File(directoryPath);
-        File[] files = directory.listFiles();
+    private void writeIndex(File indexFile, String indexKey, List<String> mainClasses) {
+        File indexDir = indexFile.getParentFile();
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                listFilesInDirectory(file.getPath(), mainClasses);
-            } else {
-                filterFileAndCheck(file, mainClasses);
+        try {
+            // Write to a temporary file first so a reader never sees a partial index
+            File tmpFile = File.createTempFile(INDEX_FILENAME, null, indexDir);
+
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(indexKey);
+                writer.newLine();
+
+                for (String clazzName : mainClasses) {
+                    writer.write(clazzName);
+                    writer.newLine();
+                }
             }
+
+            Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("Unable to write the main class index: " + indexFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Returns the classes with a main method in the jar, in the order they are stored. The list is read from the index
+     * file when it was written for the same jar, otherwise the jar is scanned and the index written. The index file
+     * can be null to always scan.
+     */
+    List<String> getMainClassesFromJar(File jarFile, File indexFile) {
+        List<String> mainClasses = new ArrayList<>();
+        String indexKey = getIndexKey(jarFile);
+
+        if ((indexFile != null) && (readIndex(indexFile, indexKey, mainClasses) == true)) {
+            return mainClasses;
         }
+
+        boolean scanned = false;
+
+        try {
+            scanned = scanJar(jarFile.toURI().toURL(), mainClasses);
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+        }
+
+        if ((scanned == true) && (indexFile != null)) {
+            writeIndex(indexFile, indexKey, mainClasses);
+        }
+
+        return mainClasses;
     }
 
     public AbstractListModel populateListModel() {
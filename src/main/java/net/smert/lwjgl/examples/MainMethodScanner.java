@@ -0,0 +1,142 @@
+package net.smert.lwjgl.examples;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/**
+ * Reads the constant pool and method table of a class file to find a public static void main(String[]) method without
+ * defining the class. No static initializers are run and no native libraries are linked.
+ *
+ * http://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class MainMethodScanner {
+
+    private final static int ACC_PUBLIC = 0x0001;
+    private final static int ACC_STATIC = 0x0008;
+    private final static int CLASS_FILE_MAGIC = 0xCAFEBABE;
+    private final static int CONSTANT_Class = 7;
+    private final static int CONSTANT_Double = 6;
+    private final static int CONSTANT_Dynamic = 17;
+    private final static int CONSTANT_Fieldref = 9;
+    private final static int CONSTANT_Float = 4;
+    private final static int CONSTANT_Integer = 3;
+    private final static int CONSTANT_InterfaceMethodref = 11;
+    private final static int CONSTANT_InvokeDynamic = 18;
+    private final static int CONSTANT_Long = 5;
+    private final static int CONSTANT_MethodHandle = 15;
+    private final static int CONSTANT_MethodType = 16;
+    private final static int CONSTANT_Methodref = 10;
+    private final static int CONSTANT_Module = 19;
+    private final static int CONSTANT_NameAndType = 12;
+    private final static int CONSTANT_Package = 20;
+    private final static int CONSTANT_String = 8;
+    private final static int CONSTANT_Utf8 = 1;
+    private final static String MAIN_METHOD_DESCRIPTOR = "([Ljava/lang/String;)V";
+    private final static String MAIN_METHOD_NAME = "main";
+
+    private MainMethodScanner() {
+    }
+
+    private static void skipMembers(DataInputStream dis) throws IOException {
+        int count = dis.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            dis.skipBytes(6); // access_flags, name_index, descriptor_index
+            skipAttributes(dis);
+        }
+    }
+
+    private static void skipAttributes(DataInputStream dis) throws IOException {
+        int count = dis.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            dis.skipBytes(2); // attribute_name_index
+            int length = dis.readInt();
+            dis.skipBytes(length);
+        }
+    }
+
+    /**
+     * Returns true if the class file declares a public static void main(String[]) method. Inherited main methods are
+     * not found.
+     *
+     * @throws IOException if the bytes are not a valid class file
+     */
+    public static boolean hasMainMethod(byte[] classBytes) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(classBytes));
+
+        if (dis.readInt() != CLASS_FILE_MAGIC) {
+            throw new IOException("Not a class file");
+        }
+        dis.skipBytes(4); // minor_version, major_version
+
+        // Only UTF8 entries are kept, everything else is skipped
+        int constantPoolCount = dis.readUnsignedShort();
+        String[] utf8 = new String[constantPoolCount];
+
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = dis.readUnsignedByte();
+
+            switch (tag) {
+                case CONSTANT_Utf8:
+                    utf8[i] = dis.readUTF();
+                    break;
+
+                case CONSTANT_Class:
+                case CONSTANT_MethodType:
+                case CONSTANT_Module:
+                case CONSTANT_Package:
+                case CONSTANT_String:
+                    dis.skipBytes(2);
+                    break;
+
+                case CONSTANT_MethodHandle:
+                    dis.skipBytes(3);
+                    break;
+
+                case CONSTANT_Dynamic:
+                case CONSTANT_Fieldref:
+                case CONSTANT_Float:
+                case CONSTANT_Integer:
+                case CONSTANT_InterfaceMethodref:
+                case CONSTANT_InvokeDynamic:
+                case CONSTANT_Methodref:
+                case CONSTANT_NameAndType:
+                    dis.skipBytes(4);
+                    break;
+
+                case CONSTANT_Double:
+                case CONSTANT_Long:
+                    dis.skipBytes(8);
+                    i++; // Takes up two entries
+                    break;
+
+                default:
+                    throw new IOException("Unknown constant pool tag: " + tag);
+            }
+        }
+
+        dis.skipBytes(6); // access_flags, this_class, super_class
+        int interfacesCount = dis.readUnsignedShort();
+        dis.skipBytes(interfacesCount * 2);
+        skipMembers(dis); // Fields
+
+        int methodsCount = dis.readUnsignedShort();
+
+        for (int i = 0; i < methodsCount; i++) {
+            int accessFlags = dis.readUnsignedShort();
+            String name = utf8[dis.readUnsignedShort()];
+            String descriptor = utf8[dis.readUnsignedShort()];
+            skipAttributes(dis);
+
+            if (((accessFlags & ACC_PUBLIC) != 0) && ((accessFlags & ACC_STATIC) != 0)
+                    && MAIN_METHOD_NAME.equals(name) && MAIN_METHOD_DESCRIPTOR.equals(descriptor)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A read only view of a JAR (ZIP) file that is memory mapped once. The central directory is parsed up front into a map
+ * of entry name to offset, size and compression method so finding an entry never touches the file again.
+ *
+ * STORED entries are returned as slices of the mapped buffer without copying. DEFLATED entries are inflated into a new
+ * heap buffer. ZIP64 archives and archives over 2 GB are not supported.
+ *
+ * https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class MappedJarFile {
+
+    private final static int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private final static int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private final static int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private final static int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private final static int LOCAL_HEADER_SIZE = 30;
+    private final static int MAX_COMMENT_LENGTH = 0xffff;
+    private final static int METHOD_DEFLATED = 8;
+    private final static int METHOD_STORED = 0;
+
+    private final ByteBuffer buffer;
+    private final Map<String, Entry> entries;
+    private final String name;
+
+    public MappedJarFile(File file) throws IOException {
+        this(map(file), file.getAbsolutePath());
+    }
+
+    public MappedJarFile(ByteBuffer buffer, String name) throws IOException {
+        this.buffer = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.name = name;
+        entries = new HashMap<>();
+        readCentralDirectory();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private int findEndOfCentralDirectory() throws IOException {
+        int last = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        int first = Math.max(0, last - MAX_COMMENT_LENGTH);
+
+        for (int i = last; i >= first; i--) {
+            if (buffer.getInt(i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                return i;
+            }
+        }
+
+        throw new IOException("Unable to find the end of central directory in: " + name);
+    }
+
+    private ByteBuffer inflate(ByteBuffer data, int uncompressedSize, String entryName) throws IOException {
+        // Inflater only takes arrays before Java 11
+        byte[] compressed = new byte[data.remaining()];
+        data.get(compressed);
+        byte[] uncompressed = new byte[uncompressedSize];
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            int total = 0;
+            while (total < uncompressedSize) {
+                int len = inflater.inflate(uncompressed, total, uncompressedSize - total);
+                if ((len == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                total += len;
+            }
+            if (total != uncompressedSize) {
+                throw new IOException("Truncated entry: " + entryName + " in: " + name);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt entry: " + entryName + " in: " + name, e);
+        } finally {
+            inflater.end();
+        }
+
+        return ByteBuffer.wrap(uncompressed);
+    }
+
+    private void readCentralDirectory() throws IOException {
+        int end = findEndOfCentralDirectory();
+        int entryCount = buffer.getShort(end + 10) & 0xffff;
+        long directoryOffset = buffer.getInt(end + 16) & 0xffffffffL;
+
+        if ((entryCount == 0xffff) || (directoryOffset == 0xffffffffL)) {
+            throw new IOException("ZIP64 archives are not supported: " + name);
+        }
+
+        int offset = (int) directoryOffset;
+        for (int i = 0; i < entryCount; i++) {
+            if (buffer.getInt(offset) != CENTRAL_DIRECTORY_SIGNATURE) {
+                throw new IOException("Invalid central directory entry in: " + name);
+            }
+
+            int method = buffer.getShort(offset + 10) & 0xffff;
+            long compressedSize = buffer.getInt(offset + 20) & 0xffffffffL;
+            long uncompressedSize = buffer.getInt(offset + 24) & 0xffffffffL;
+            int nameLength = buffer.getShort(offset + 28) & 0xffff;
+            int extraLength = buffer.getShort(offset + 30) & 0xffff;
+            int commentLength = buffer.getShort(offset + 32) & 0xffff;
+            long localHeaderOffset = buffer.getInt(offset + 42) & 0xffffffffL;
+
+            byte[] nameBytes = new byte[nameLength];
+            ByteBuffer nameBuffer = buffer.duplicate();
+            nameBuffer.position(offset + 46);
+            nameBuffer.get(nameBytes);
+            String entryName = new String(nameBytes, StandardCharsets.UTF_8);
+
+            if ((compressedSize <= Integer.MAX_VALUE) && (uncompressedSize <= Integer.MAX_VALUE)
+                    && (localHeaderOffset <= Integer.MAX_VALUE)) {
+                entries.put(entryName, new Entry(method, (int) compressedSize, (int) uncompressedSize,
+                        (int) localHeaderOffset));
+            }
+
+            offset += 46 + nameLength + extraLength + commentLength;
+        }
+    }
+
+    public boolean contains(String entryName) {
+        return entries.containsKey(entryName);
+    }
+
+    /**
+     * Returns the uncompressed contents of the entry or null if there is no entry with that name. The returned buffer
+     * is positioned at zero and may be a read only slice of the mapping. This method is thread safe.
+     *
+     * @throws IOException if the entry uses an unsupported compression method or is corrupt
+     */
+    public ByteBuffer getEntryBuffer(String entryName) throws IOException {
+        Entry entry = entries.get(entryName);
+
+        if (entry == null) {
+            return null;
+        }
+
+        // Only the file name and extra field lengths are taken from the local header. The sizes in the local header
+        // may be zero when a data descriptor was used so the central directory sizes are used instead.
+        int headerOffset = entry.localHeaderOffset;
+        if (buffer.getInt(headerOffset) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local header for: " + entryName + " in: " + name);
+        }
+        int nameLength = buffer.getShort(headerOffset + 26) & 0xffff;
+        int extraLength = buffer.getShort(headerOffset + 28) & 0xffff;
+        int dataOffset = headerOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+
+        ByteBuffer data = buffer.duplicate();
+        data.limit(dataOffset + entry.compressedSize);
+        data.position(dataOffset);
+
+        switch (entry.method) {
+            case METHOD_STORED:
+                return data.slice();
+
+            case METHOD_DEFLATED:
+                return inflate(data, entry.uncompressedSize, entryName);
+
+            default:
+                throw new IOException("Unsupported compression method: " + entry.method + " for: " + entryName);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public String toString() {
+        return "Name: " + name + " Entries: " + entries.size();
+    }
+
+    private static class Entry {
+
+        private final int compressedSize;
+        private final int localHeaderOffset;
+        private final int method;
+        private final int uncompressedSize;
+
+        public Entry(int method, int compressedSize, int uncompressedSize, int localHeaderOffset) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+    }
+
+}
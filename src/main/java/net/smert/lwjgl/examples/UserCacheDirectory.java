@@ -0,0 +1,76 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+
+/**
+ * Directories for files that are kept between launches, such as native libraries, class data and shader binaries.
+ * They live under ".lwjgl-examples" in the home directory of the user instead of the shared temp directory since the
+ * files in them are loaded as code. Every directory must be owned by the current user, must not be a symbolic link and
+ * is made private to the user where the file system has POSIX permissions.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class UserCacheDirectory {
+
+    private final static String ROOT_DIR = ".lwjgl-examples";
+
+    private UserCacheDirectory() {
+    }
+
+    private static void checkDirectory(Path path, UserPrincipal user) throws IOException {
+        if (Files.isSymbolicLink(path)) {
+            throw new IOException("The cache directory can't be a symbolic link: " + path);
+        }
+        if (!Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            throw new IOException("The cache directory is not a directory: " + path);
+        }
+        UserPrincipal owner = Files.getOwner(path, LinkOption.NOFOLLOW_LINKS);
+        if (!owner.equals(user)) {
+            throw new IOException("The cache directory: " + path + " is owned by: " + owner.getName()
+                    + " instead of: " + user.getName());
+        }
+        if (Files.getFileAttributeView(path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS) != null) {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rwx------"));
+        }
+    }
+
+    /**
+     * Returns the cache directory with the name, creating it if needed.
+     *
+     * @throws IOException if the directory can't be created or is not safe to load code from
+     */
+    public static File get(String name) throws IOException {
+        Path root = new File(System.getProperty("user.home"), ROOT_DIR).toPath();
+        Path directory = root.resolve(name);
+        UserPrincipal user = root.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+
+        // The root is checked first so nothing is created inside a directory that belongs to someone else
+        Files.createDirectories(root);
+        checkDirectory(root, user);
+        Files.createDirectories(directory);
+        checkDirectory(directory, user);
+
+        return directory.toFile();
+    }
+
+}
@@ -0,0 +1,358 @@
+package net.smert.lwjgl.examples.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Turns a list of packed vertices drawn with glDrawArrays into unique vertices plus an index buffer for glDrawElements.
+ *
+ * Vertices are welded by hashing their packed bytes, so two vertices are only merged when every attribute is exactly
+ * the same (VertexFormat.pack output or any other interleaved data). The index type is GL_UNSIGNED_SHORT when the
+ * unique vertices fit and GL_UNSIGNED_INT otherwise.
+ *
+ * When optimizing, the triangles are reordered with Tipsify (Sander, Nehab and Barczak, "Fast Triangle Reordering for
+ * Vertex Locality and Reduced Overdraw", 2007) so the post transform vertex cache of the GPU gets more hits, then the
+ * vertices are renumbered in the order they are first used so fetching them walks forward through memory. The average
+ * cache miss ratio (ACMR, transformed vertices per triangle, 0.5 is the best possible for a regular grid and 3 the
+ * worst) is measured before and after with a FIFO cache of CACHE_SIZE entries.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class IndexedMesh {
+
+    public final static int CACHE_SIZE = 16;
+
+    private final float acmrAfter;
+    private final float acmrBefore;
+    private final int indexCount;
+    private final int indexType;
+    private final int sourceVertexCount;
+    private final int vertexCount;
+    private final ByteBuffer indices;
+    private final ByteBuffer vertices;
+
+    private IndexedMesh(ByteBuffer vertices, int vertexCount, ByteBuffer indices, int indexCount, int indexType,
+            int sourceVertexCount, float acmrBefore, float acmrAfter) {
+        this.vertices = vertices;
+        this.vertexCount = vertexCount;
+        this.indices = indices;
+        this.indexCount = indexCount;
+        this.indexType = indexType;
+        this.sourceVertexCount = sourceVertexCount;
+        this.acmrBefore = acmrBefore;
+        this.acmrAfter = acmrAfter;
+    }
+
+    private static int hashVertex(ByteBuffer vertices, int start, int stride) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < stride; i += 4) {
+            hash = (hash ^ vertices.getInt(start + i)) * 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean sameVertex(ByteBuffer vertices, int a, int b, int stride) {
+        for (int i = 0; i < stride; i += 4) {
+            if (vertices.getInt(a + i) != vertices.getInt(b + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] triangulate(int[] remap, int vertexCount, int mode) {
+        if (mode == GL11.GL_TRIANGLES) {
+            if (vertexCount % 3 != 0) {
+                throw new IllegalArgumentException("Triangles need a multiple of 3 vertices: " + vertexCount);
+            }
+            return remap;
+        }
+        if (mode != GL11.GL_QUADS) {
+            throw new IllegalArgumentException("Only GL_TRIANGLES and GL_QUADS are supported!");
+        }
+        if (vertexCount % 4 != 0) {
+            throw new IllegalArgumentException("Quads need a multiple of 4 vertices: " + vertexCount);
+        }
+
+        // Same winding as the quad
+        int[] indices = new int[vertexCount / 4 * 6];
+        for (int quad = 0, i = 0; quad < vertexCount; quad += 4) {
+            indices[i++] = remap[quad];
+            indices[i++] = remap[quad + 1];
+            indices[i++] = remap[quad + 2];
+            indices[i++] = remap[quad];
+            indices[i++] = remap[quad + 2];
+            indices[i++] = remap[quad + 3];
+        }
+        return indices;
+    }
+
+    /**
+     * Welds and indexes vertexCount vertices of stride bytes starting at the position of vertices. Mode is
+     * GL_TRIANGLES or GL_QUADS, quads are split into two triangles each. Triangles are reordered for the vertex cache
+     * only when optimize is true, otherwise they keep their order (which matters when ranges of them are drawn on
+     * their own). The source buffer is not changed.
+     */
+    public static IndexedMesh build(ByteBuffer vertices, int vertexCount, int stride, int mode, boolean optimize) {
+        if ((stride <= 0) || (stride % 4 != 0)) {
+            throw new IllegalArgumentException("The stride must be a multiple of 4 bytes: " + stride);
+        }
+        if (vertices.remaining() < vertexCount * stride) {
+            throw new IllegalArgumentException("The buffer only has room for " + vertices.remaining() / stride
+                    + " vertices!");
+        }
+
+        int[] remap = new int[vertexCount];
+        int[] unique = new int[vertexCount];
+        int uniqueCount = weld(vertices, vertexCount, stride, remap, unique);
+        int[] triangles = triangulate(remap, vertexCount, mode);
+
+        float acmrBefore = getACMR(triangles, uniqueCount, CACHE_SIZE);
+        if (optimize == true) {
+            triangles = tipsify(triangles, uniqueCount, CACHE_SIZE);
+        }
+
+        // Renumber the vertices in the order they are first used
+        int[] newIndex = new int[uniqueCount];
+        Arrays.fill(newIndex, -1);
+        int[] order = new int[uniqueCount];
+        int used = 0;
+        for (int i = 0; i < triangles.length; i++) {
+            int vertex = triangles[i];
+            if (newIndex[vertex] == -1) {
+                newIndex[vertex] = used;
+                order[used++] = vertex;
+            }
+            triangles[i] = newIndex[vertex];
+        }
+        float acmrAfter = getACMR(triangles, used, CACHE_SIZE);
+
+        int start = vertices.position();
+        // Same byte order as the source so the ints are copied exactly as they are
+        ByteBuffer outVertices = BufferUtils.createByteBuffer(used * stride).order(vertices.order());
+        for (int i = 0; i < used; i++) {
+            int source = start + unique[order[i]] * stride;
+            for (int b = 0; b < stride; b += 4) {
+                outVertices.putInt(i * stride + b, vertices.getInt(source + b));
+            }
+        }
+
+        int indexType = (used <= 65536) ? GL11.GL_UNSIGNED_SHORT : GL11.GL_UNSIGNED_INT;
+        ByteBuffer outIndices;
+        if (indexType == GL11.GL_UNSIGNED_SHORT) {
+            outIndices = BufferUtils.createByteBuffer(triangles.length * 2);
+            for (int i = 0; i < triangles.length; i++) {
+                outIndices.putShort(i * 2, (short) triangles[i]);
+            }
+        } else {
+            outIndices = BufferUtils.createByteBuffer(triangles.length * 4);
+            outIndices.asIntBuffer().put(triangles);
+        }
+
+        return new IndexedMesh(outVertices, used, outIndices, triangles.length, indexType, vertexCount, acmrBefore,
+                acmrAfter);
+    }
+
+    /**
+     * Simulates a FIFO post transform cache of cacheSize entries and returns the number of vertices transformed per
+     * triangle.
+     */
+    public static float getACMR(int[] indices, int vertexCount, int cacheSize) {
+        if (indices.length == 0) {
+            return 0.0f;
+        }
+
+        // A vertex is in the cache if fewer than cacheSize misses happened since it was loaded
+        int[] loadedAt = new int[vertexCount];
+        Arrays.fill(loadedAt, Integer.MIN_VALUE / 2);
+        int misses = 0;
+        for (int vertex : indices) {
+            if (misses - loadedAt[vertex] > cacheSize) {
+                loadedAt[vertex] = misses;
+                misses++;
+            }
+        }
+        return (float) misses / (indices.length / 3);
+    }
+
+    /**
+     * Reorders the triangles for a vertex cache of cacheSize entries and returns the new index list. Runs in linear
+     * time.
+     */
+    public static int[] tipsify(int[] indices, int vertexCount, int cacheSize) {
+        int triangleCount = indices.length / 3;
+
+        // Triangles using each vertex
+        int[] live = new int[vertexCount];
+        for (int vertex : indices) {
+            live[vertex]++;
+        }
+        int[] adjacencyStart = new int[vertexCount + 1];
+        for (int v = 0; v < vertexCount; v++) {
+            adjacencyStart[v + 1] = adjacencyStart[v] + live[v];
+        }
+        int[] adjacency = new int[indices.length];
+        int[] fill = Arrays.copyOf(adjacencyStart, vertexCount);
+        for (int i = 0; i < indices.length; i++) {
+            adjacency[fill[indices[i]]++] = i / 3;
+        }
+
+        int[] cachingTime = new int[vertexCount];
+        int[] deadEnd = new int[indices.length];
+        int[] candidates = new int[indices.length];
+        boolean[] emitted = new boolean[triangleCount];
+        int[] output = new int[indices.length];
+        int deadEndSize = 0;
+        int outputSize = 0;
+        int timeStamp = cacheSize + 1;
+        int cursor = 1;
+        int fanning = (vertexCount > 0) ? 0 : -1;
+
+        while (fanning >= 0) {
+            int candidateCount = 0;
+
+            // Emit every remaining triangle around the fanning vertex
+            for (int a = adjacencyStart[fanning]; a < adjacencyStart[fanning + 1]; a++) {
+                int triangle = adjacency[a];
+                if (emitted[triangle] == true) {
+                    continue;
+                }
+                for (int corner = 0; corner < 3; corner++) {
+                    int vertex = indices[triangle * 3 + corner];
+                    output[outputSize++] = vertex;
+                    deadEnd[deadEndSize++] = vertex;
+                    candidates[candidateCount++] = vertex;
+                    live[vertex]--;
+                    if (timeStamp - cachingTime[vertex] > cacheSize) {
+                        cachingTime[vertex] = timeStamp++;
+                    }
+                }
+                emitted[triangle] = true;
+            }
+
+            // The next fanning vertex is the one that will still be in the cache after its triangles are emitted
+            int next = -1;
+            int best = -1;
+            for (int c = 0; c < candidateCount; c++) {
+                int vertex = candidates[c];
+                if (live[vertex] > 0) {
+                    int priority = 0;
+                    if (timeStamp - cachingTime[vertex] + 2 * live[vertex] <= cacheSize) {
+                        priority = timeStamp - cachingTime[vertex];
+                    }
+                    if (priority > best) {
+                        best = priority;
+                        next = vertex;
+                    }
+                }
+            }
+
+            // Dead end, go back to a recently used vertex or the next one that still has triangles
+            while ((next == -1) && (deadEndSize > 0)) {
+                int vertex = deadEnd[--deadEndSize];
+                if (live[vertex] > 0) {
+                    next = vertex;
+                }
+            }
+            while ((next == -1) && (cursor < vertexCount)) {
+                if (live[cursor] > 0) {
+                    next = cursor;
+                }
+                cursor++;
+            }
+            fanning = next;
+        }
+
+        return output;
+    }
+
+    /**
+     * Finds the unique vertices. remap[i] is set to the unique number of vertex i and unique[n] to the first vertex
+     * with unique number n. Returns the number of unique vertices.
+     */
+    public static int weld(ByteBuffer vertices, int vertexCount, int stride, int[] remap, int[] unique) {
+        int start = vertices.position();
+        int capacity = Integer.highestOneBit(Math.max(vertexCount, 1) * 2 - 1) << 1;
+        int mask = capacity - 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, -1);
+        int uniqueCount = 0;
+
+        for (int i = 0; i < vertexCount; i++) {
+            int offset = start + i * stride;
+            int slot = hashVertex(vertices, offset, stride) & mask;
+            while (true) {
+                int n = table[slot];
+                if (n == -1) {
+                    table[slot] = uniqueCount;
+                    unique[uniqueCount] = i;
+                    remap[i] = uniqueCount++;
+                    break;
+                }
+                if (sameVertex(vertices, start + unique[n] * stride, offset, stride) == true) {
+                    remap[i] = n;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return uniqueCount;
+    }
+
+    public float getACMRAfter() {
+        return acmrAfter;
+    }
+
+    public float getACMRBefore() {
+        return acmrBefore;
+    }
+
+    public int getIndexCount() {
+        return indexCount;
+    }
+
+    /**
+     * Size of one index in bytes.
+     */
+    public int getIndexSize() {
+        return (indexType == GL11.GL_UNSIGNED_SHORT) ? 2 : 4;
+    }
+
+    /**
+     * GL_UNSIGNED_SHORT or GL_UNSIGNED_INT.
+     */
+    public int getIndexType() {
+        return indexType;
+    }
+
+    /**
+     * The index buffer in native byte order, ready for glBufferData.
+     */
+    public ByteBuffer getIndices() {
+        return indices;
+    }
+
+    public int getSourceVertexCount() {
+        return sourceVertexCount;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * The unique vertices in the same layout as the source, ready for glBufferData.
+     */
+    public ByteBuffer getVertices() {
+        return vertices;
+    }
+
+    public String getStatistics() {
+        return sourceVertexCount + " Vertices Welded To " + vertexCount + ", " + indexCount / 3 + " Triangles With "
+                + ((indexType == GL11.GL_UNSIGNED_SHORT) ? 16 : 32) + " Bit Indices, ACMR " + acmrBefore + " -> "
+                + acmrAfter;
+    }
+
+}
@@ -0,0 +1,269 @@
+package net.smert.lwjgl.examples.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBBufferStorage;
+import org.lwjgl.opengl.ContextCapabilities;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
+import org.lwjgl.opengl.GLContext;
+import org.lwjgl.opengl.GLSync;
+
+/**
+ * A vertex buffer for data that changes every frame. The buffer holds FRAMES copies of the frame data back to back so
+ * the CPU can write the next frame while the GPU still draws from the previous ones. A fence is placed after each
+ * frame is drawn and the CPU only waits on it when it comes back around to the same region.
+ *
+ * The best mode the context supports is picked:
+ *
+ * MODE_PERSISTENT maps the whole buffer once with GL_ARB_buffer_storage (core in OpenGL 4.4). A frame costs no upload
+ * calls at all, only the fence.
+ *
+ * MODE_MAP_RANGE maps the region of the current frame with glMapBufferRange and GL_MAP_UNSYNCHRONIZED_BIT, relying on
+ * the fences (OpenGL 3.2) to know the GPU is done with it.
+ *
+ * MODE_ORPHAN is for everything else. The frame is written to a staging buffer and uploaded with one glBufferSubData
+ * after glBufferData(null) gives the driver a chance to hand out fresh storage instead of stalling.
+ *
+ * Usage each frame is map(), write frameSize bytes or less, unmap() which returns the byte offset of the frame in the
+ * buffer, draw from that offset and then fence(). None of these allocate once the buffer is set up.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class StreamingBuffer {
+
+    public final static int FRAMES = 3;
+    public final static int MODE_MAP_RANGE = 1;
+    public final static int MODE_ORPHAN = 2;
+    public final static int MODE_PERSISTENT = 0;
+
+    private final static long FENCE_TIMEOUT = 1000000000L;                      // One second in nanoseconds
+
+    private int callCount;
+    private int frame;
+    private int id;
+    private final int frameSize;
+    private final int mode;
+    private final int target;
+    private final ByteBuffer[] frameBuffers;
+    private final GLSync[] fences;
+
+    /**
+     * Creates a buffer using the best mode the current context supports.
+     */
+    public StreamingBuffer(int target, int frameSize) {
+        this(target, frameSize, getBestMode());
+    }
+
+    public StreamingBuffer(int target, int frameSize, int mode) {
+        if (frameSize <= 0) {
+            throw new IllegalArgumentException("The frame size must be greater than zero!");
+        }
+        if ((mode < MODE_PERSISTENT) || (mode > MODE_ORPHAN)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        this.frameSize = frameSize;
+        this.mode = mode;
+        this.target = target;
+        frameBuffers = new ByteBuffer[FRAMES];
+        fences = new GLSync[FRAMES];
+        create();
+    }
+
+    private void create() {
+        long size = (long) frameSize * FRAMES;
+
+        id = GL15.glGenBuffers();
+        GL15.glBindBuffer(target, id);
+
+        switch (mode) {
+            case MODE_PERSISTENT:
+                int flags = GL30.GL_MAP_WRITE_BIT | ARBBufferStorage.GL_MAP_PERSISTENT_BIT
+                        | ARBBufferStorage.GL_MAP_COHERENT_BIT;
+                ARBBufferStorage.glBufferStorage(target, size, flags);
+
+                // The mapping stays valid until the buffer is deleted. Each frame gets its own view of it.
+                ByteBuffer mapped = GL30.glMapBufferRange(target, 0, size, flags, null);
+                for (int i = 0; i < FRAMES; i++) {
+                    mapped.limit((i + 1) * frameSize).position(i * frameSize);
+                    frameBuffers[i] = mapped.slice().order(ByteOrder.nativeOrder());
+                }
+                break;
+
+            case MODE_MAP_RANGE:
+                GL15.glBufferData(target, size, GL15.GL_STREAM_DRAW);
+                break;
+
+            case MODE_ORPHAN:
+                GL15.glBufferData(target, frameSize, GL15.GL_STREAM_DRAW);
+                frameBuffers[0] = BufferUtils.createByteBuffer(frameSize);
+                break;
+        }
+
+        GL15.glBindBuffer(target, 0);
+    }
+
+    private void waitForFence() {
+        GLSync fence = fences[frame];
+        if (fence == null) {
+            return;
+        }
+
+        // Only flush on the first wait, after that the commands are already on their way
+        int flags = GL32.GL_SYNC_FLUSH_COMMANDS_BIT;
+        while (true) {
+            int result = GL32.glClientWaitSync(fence, flags, FENCE_TIMEOUT);
+            callCount++;
+            if ((result == GL32.GL_ALREADY_SIGNALED) || (result == GL32.GL_CONDITION_SATISFIED)
+                    || (result == GL32.GL_WAIT_FAILED)) {
+                break;
+            }
+            flags = 0;
+        }
+
+        GL32.glDeleteSync(fence);
+        callCount++;
+        fences[frame] = null;
+    }
+
+    /**
+     * Returns the mode for the current context. MODE_PERSISTENT and MODE_MAP_RANGE both need fences.
+     */
+    public static int getBestMode() {
+        ContextCapabilities capabilities = GLContext.getCapabilities();
+        if ((capabilities.OpenGL32 == true) || (capabilities.GL_ARB_sync == true)) {
+            if ((capabilities.OpenGL44 == true) || (capabilities.GL_ARB_buffer_storage == true)) {
+                return MODE_PERSISTENT;
+            }
+            if ((capabilities.OpenGL30 == true) || (capabilities.GL_ARB_map_buffer_range == true)) {
+                return MODE_MAP_RANGE;
+            }
+        }
+        return MODE_ORPHAN;
+    }
+
+    public static String getModeName(int mode) {
+        switch (mode) {
+            case MODE_PERSISTENT:
+                return "Persistent Mapped";
+            case MODE_MAP_RANGE:
+                return "Map Buffer Range";
+            case MODE_ORPHAN:
+                return "Orphaning";
+        }
+        return "Unknown";
+    }
+
+    public void destroy() {
+        for (int i = 0; i < FRAMES; i++) {
+            if (fences[i] != null) {
+                GL32.glDeleteSync(fences[i]);
+                fences[i] = null;
+            }
+        }
+        if (mode == MODE_PERSISTENT) {
+            GL15.glBindBuffer(target, id);
+            GL15.glUnmapBuffer(target);
+            GL15.glBindBuffer(target, 0);
+        }
+        GL15.glDeleteBuffers(id);
+        id = 0;
+    }
+
+    /**
+     * Marks the frame returned by the last unmap() as in use by the GPU. Call it after the draw calls that read from
+     * it. Moves on to the next frame.
+     */
+    public void fence() {
+        if (mode != MODE_ORPHAN) {
+            fences[frame] = GL32.glFenceSync(GL32.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            callCount++;
+            frame = (frame + 1) % FRAMES;
+        }
+    }
+
+    /**
+     * Number of GL calls made since the last call to map().
+     */
+    public int getCallCount() {
+        return callCount;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns a buffer in native byte order positioned at zero with room for frameSize bytes. Write the frame into it
+     * and then call unmap(). It must not be used after that.
+     */
+    public ByteBuffer map() {
+        callCount = 0;
+        ByteBuffer buffer;
+
+        switch (mode) {
+            case MODE_PERSISTENT:
+                waitForFence();
+                buffer = frameBuffers[frame];
+                break;
+
+            case MODE_MAP_RANGE:
+                waitForFence();
+                GL15.glBindBuffer(target, id);
+                // Passing the previous buffer lets LWJGL reuse it when the driver maps to the same address
+                buffer = GL30.glMapBufferRange(target, (long) frame * frameSize, frameSize,
+                        GL30.GL_MAP_WRITE_BIT | GL30.GL_MAP_INVALIDATE_RANGE_BIT | GL30.GL_MAP_UNSYNCHRONIZED_BIT,
+                        frameBuffers[frame]);
+                callCount += 2;
+                buffer.order(ByteOrder.nativeOrder());
+                frameBuffers[frame] = buffer;
+                break;
+
+            default:
+                buffer = frameBuffers[0];
+                break;
+        }
+
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Finishes writing the frame. The written bytes are the ones before the position of the buffer from map(). Returns
+     * the byte offset of the frame inside the buffer object.
+     */
+    public int unmap() {
+        switch (mode) {
+            case MODE_PERSISTENT:
+                // Coherent mappings need nothing else, the fence makes the writes visible
+                return frame * frameSize;
+
+            case MODE_MAP_RANGE:
+                GL15.glUnmapBuffer(target);
+                GL15.glBindBuffer(target, 0);
+                callCount += 2;
+                return frame * frameSize;
+
+            default:
+                ByteBuffer staging = frameBuffers[0];
+                staging.flip();
+                GL15.glBindBuffer(target, id);
+                GL15.glBufferData(target, frameSize, GL15.GL_STREAM_DRAW);
+                GL15.glBufferSubData(target, 0, staging);
+                GL15.glBindBuffer(target, 0);
+                callCount += 4;
+                return 0;
+        }
+    }
+
+}
@@ -0,0 +1,383 @@
+package net.smert.lwjgl.examples.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL30;
+
+/**
+ * Describes the layout of one interleaved vertex. Attributes are added in order and each one gets the generic attribute
+ * index of its position, so the names given to ShaderCache.getProgram in the same order line up. The offsets and the
+ * stride are worked out as attributes are added, with every attribute starting on a four byte boundary.
+ *
+ * Attributes can use smaller types than GL_FLOAT. A position in GL_HALF_FLOAT and a color in normalized
+ * GL_UNSIGNED_BYTE make a 12 byte vertex instead of 28 bytes of floats, which is less to upload and less for the GPU to
+ * fetch. pack() does the conversion from float data.
+ *
+ * The usage of an attribute is only needed for the fixed function pointers (glVertexPointer and friends). Shaders only
+ * look at the attribute index.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class VertexFormat {
+
+    public final static int USAGE_COLOR = 0;
+    public final static int USAGE_GENERIC = 1;
+    public final static int USAGE_NORMAL = 2;
+    public final static int USAGE_POSITION = 3;
+    public final static int USAGE_TEXTURE_COORDINATE = 4;
+
+    private int stride;
+    private final List<Attribute> attributes;
+
+    public VertexFormat() {
+        attributes = new ArrayList<>();
+    }
+
+    private static int getTypeSize(int type) {
+        switch (type) {
+            case GL11.GL_BYTE:
+            case GL11.GL_UNSIGNED_BYTE:
+                return 1;
+            case GL11.GL_SHORT:
+            case GL11.GL_UNSIGNED_SHORT:
+            case GL30.GL_HALF_FLOAT:
+                return 2;
+            case GL11.GL_FLOAT:
+            case GL11.GL_INT:
+            case GL11.GL_UNSIGNED_INT:
+                return 4;
+        }
+        throw new IllegalArgumentException("Unsupported attribute type: " + type);
+    }
+
+    private static void put(ByteBuffer out, int index, Attribute attribute, float value) {
+        switch (attribute.type) {
+            case GL11.GL_BYTE:
+                out.put(index, (byte) (attribute.normalized ? toSignedNormalized(value, 127) : Math.round(value)));
+                break;
+            case GL11.GL_UNSIGNED_BYTE:
+                out.put(index, (byte) (attribute.normalized ? toUnsignedNormalized(value, 255) : Math.round(value)));
+                break;
+            case GL11.GL_SHORT:
+                out.putShort(index,
+                        (short) (attribute.normalized ? toSignedNormalized(value, 32767) : Math.round(value)));
+                break;
+            case GL11.GL_UNSIGNED_SHORT:
+                out.putShort(index,
+                        (short) (attribute.normalized ? toUnsignedNormalized(value, 65535) : Math.round(value)));
+                break;
+            case GL30.GL_HALF_FLOAT:
+                out.putShort(index, toHalfFloat(value));
+                break;
+            case GL11.GL_FLOAT:
+                out.putFloat(index, value);
+                break;
+            case GL11.GL_INT:
+            case GL11.GL_UNSIGNED_INT:
+                // Only whole numbers are supported for 32 bit integers, a float can't hold enough precision anyway
+                out.putInt(index, (int) value);
+                break;
+        }
+    }
+
+    private static int toSignedNormalized(float value, int max) {
+        return Math.round(Math.max(-1.0f, Math.min(1.0f, value)) * max);
+    }
+
+    private static int toUnsignedNormalized(float value, int max) {
+        return Math.round(Math.max(0.0f, Math.min(1.0f, value)) * max);
+    }
+
+    /**
+     * Converts a float to IEEE 754 half precision, rounding to the nearest even value. Values too large become
+     * infinity and values too small become zero.
+     */
+    public static short toHalfFloat(float value) {
+        int bits = Float.floatToRawIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int exponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+
+        // NaN and infinity
+        if (exponent == 0xff) {
+            return (short) (sign | 0x7c00 | ((mantissa != 0) ? 0x200 : 0));
+        }
+
+        int halfExponent = exponent - 127 + 15;
+        if (halfExponent >= 0x1f) {
+            return (short) (sign | 0x7c00);
+        }
+
+        if (halfExponent <= 0) {
+            // Denormal or zero. The implicit leading one becomes part of the mantissa.
+            if (halfExponent < -10) {
+                return (short) sign;
+            }
+            mantissa |= 0x800000;
+            int shift = 14 - halfExponent;
+            int half = mantissa >> shift;
+            int remainder = mantissa & ((1 << shift) - 1);
+            int halfway = 1 << (shift - 1);
+            if ((remainder > halfway) || ((remainder == halfway) && ((half & 1) != 0))) {
+                half++;
+            }
+            return (short) (sign | half);
+        }
+
+        int half = (halfExponent << 10) | (mantissa >> 13);
+        int remainder = mantissa & 0x1fff;
+        // Rounding up may carry into the exponent, which is still the right answer
+        if ((remainder > 0x1000) || ((remainder == 0x1000) && ((half & 1) != 0))) {
+            half++;
+        }
+        return (short) (sign | half);
+    }
+
+    /**
+     * Adds an attribute with size components of type. Normalized integer types map to 0..1 (unsigned) or -1..1
+     * (signed) when read by the GPU, just like the normalized flag of glVertexAttribPointer.
+     */
+    public VertexFormat add(int usage, int size, int type, boolean normalized) {
+        if ((size < 1) || (size > 4)) {
+            throw new IllegalArgumentException("Attributes must have 1 to 4 components: " + size);
+        }
+        if ((usage == USAGE_NORMAL) && (size != 3)) {
+            throw new IllegalArgumentException("Normals must have 3 components!");
+        }
+        if ((usage < USAGE_COLOR) || (usage > USAGE_TEXTURE_COORDINATE)) {
+            throw new IllegalArgumentException("Unknown usage: " + usage);
+        }
+
+        int byteSize = size * getTypeSize(type);
+        attributes.add(new Attribute(usage, size, type, normalized, stride, byteSize));
+        stride += (byteSize + 3) & ~3;
+        return this;
+    }
+
+    public VertexFormat addColor(int size, int type, boolean normalized) {
+        return add(USAGE_COLOR, size, type, normalized);
+    }
+
+    public VertexFormat addGeneric(int size, int type, boolean normalized) {
+        return add(USAGE_GENERIC, size, type, normalized);
+    }
+
+    public VertexFormat addNormal(int type, boolean normalized) {
+        return add(USAGE_NORMAL, 3, type, normalized);
+    }
+
+    public VertexFormat addPosition(int size, int type) {
+        return add(USAGE_POSITION, size, type, false);
+    }
+
+    public VertexFormat addTextureCoordinate(int size, int type, boolean normalized) {
+        return add(USAGE_TEXTURE_COORDINATE, size, type, normalized);
+    }
+
+    public void disableAttributes() {
+        for (int i = attributes.size() - 1; i >= 0; i--) {
+            GL20.glDisableVertexAttribArray(i);
+        }
+    }
+
+    public void disableClientStates() {
+        for (int i = attributes.size() - 1; i >= 0; i--) {
+            int array = attributes.get(i).getClientState();
+            if (array != 0) {
+                GL11.glDisableClientState(array);
+            }
+        }
+    }
+
+    public void enableAttributes() {
+        for (int i = 0; i < attributes.size(); i++) {
+            GL20.glEnableVertexAttribArray(i);
+        }
+    }
+
+    public void enableClientStates() {
+        for (int i = 0; i < attributes.size(); i++) {
+            int array = attributes.get(i).getClientState();
+            if (array != 0) {
+                GL11.glEnableClientState(array);
+            }
+        }
+    }
+
+    public Attribute getAttribute(int index) {
+        return attributes.get(index);
+    }
+
+    public int getAttributeCount() {
+        return attributes.size();
+    }
+
+    /**
+     * The size of one vertex in bytes.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Packs vertexCount vertices into a new direct buffer. See pack(ByteBuffer, int, FloatBuffer...).
+     */
+    public ByteBuffer pack(int vertexCount, FloatBuffer... sources) {
+        ByteBuffer out = BufferUtils.createByteBuffer(vertexCount * stride);
+        pack(out, vertexCount, sources);
+        out.flip();
+        return out;
+    }
+
+    /**
+     * Interleaves one float source per attribute into out starting at its position, converting each value to the type
+     * of its attribute. A source holds size floats per vertex from its position onwards and may be null to leave the
+     * attribute zeroed. The padding after attributes is zeroed as well, so equal vertices are always equal bytes. The
+     * position of out is moved past the written vertices. The sources are not changed.
+     */
+    public void pack(ByteBuffer out, int vertexCount, FloatBuffer... sources) {
+        if (sources.length != attributes.size()) {
+            throw new IllegalArgumentException("Expected " + attributes.size() + " sources but got " + sources.length);
+        }
+        if (out.remaining() < vertexCount * stride) {
+            throw new IllegalArgumentException("Not enough room in the buffer for " + vertexCount + " vertices!");
+        }
+
+        ByteOrder order = out.order();
+        out.order(ByteOrder.nativeOrder());
+        int start = out.position();
+        int end = start + vertexCount * stride;
+
+        // Clear every vertex first which covers null sources and padding. The stride is always a multiple of four.
+        for (int index = start; index < end; index += 4) {
+            out.putInt(index, 0);
+        }
+
+        // One attribute at a time over every vertex so the type switch and the source lookups stay out of the way
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            FloatBuffer source = sources[i];
+            int componentSize = attribute.byteSize / attribute.size;
+
+            if (source == null) {
+                continue;
+            }
+            if (source.remaining() < vertexCount * attribute.size) {
+                throw new IllegalArgumentException("Source " + i + " is too small for " + vertexCount + " vertices!");
+            }
+
+            int read = source.position();
+            for (int vertex = 0; vertex < vertexCount; vertex++) {
+                int index = start + vertex * stride + attribute.offset;
+                for (int component = 0; component < attribute.size; component++) {
+                    put(out, index + component * componentSize, attribute, source.get(read++));
+                }
+            }
+        }
+
+        out.position(end);
+        out.order(order);
+    }
+
+    /**
+     * Calls glVertexAttribPointer for every attribute of the buffer bound to GL_ARRAY_BUFFER. The first vertex starts
+     * at offset bytes.
+     */
+    public void setAttributePointers(long offset) {
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            GL20.glVertexAttribPointer(i, attribute.size, attribute.type, attribute.normalized, stride,
+                    offset + attribute.offset);
+        }
+    }
+
+    /**
+     * Calls the fixed function pointer calls for every attribute of the buffer bound to GL_ARRAY_BUFFER. Generic
+     * attributes are skipped. Integer colors and normals are always normalized by these calls.
+     */
+    public void setClientStatePointers(long offset) {
+        for (int i = 0; i < attributes.size(); i++) {
+            Attribute attribute = attributes.get(i);
+            long pointer = offset + attribute.offset;
+            switch (attribute.usage) {
+                case USAGE_COLOR:
+                    GL11.glColorPointer(attribute.size, attribute.type, stride, pointer);
+                    break;
+                case USAGE_NORMAL:
+                    GL11.glNormalPointer(attribute.type, stride, pointer);
+                    break;
+                case USAGE_POSITION:
+                    GL11.glVertexPointer(attribute.size, attribute.type, stride, pointer);
+                    break;
+                case USAGE_TEXTURE_COORDINATE:
+                    GL11.glTexCoordPointer(attribute.size, attribute.type, stride, pointer);
+                    break;
+            }
+        }
+    }
+
+    public static class Attribute {
+
+        private final boolean normalized;
+        private final int byteSize;
+        private final int offset;
+        private final int size;
+        private final int type;
+        private final int usage;
+
+        private Attribute(int usage, int size, int type, boolean normalized, int offset, int byteSize) {
+            this.normalized = normalized;
+            this.byteSize = byteSize;
+            this.offset = offset;
+            this.size = size;
+            this.type = type;
+            this.usage = usage;
+        }
+
+        private int getClientState() {
+            switch (usage) {
+                case USAGE_COLOR:
+                    return GL11.GL_COLOR_ARRAY;
+                case USAGE_NORMAL:
+                    return GL11.GL_NORMAL_ARRAY;
+                case USAGE_POSITION:
+                    return GL11.GL_VERTEX_ARRAY;
+                case USAGE_TEXTURE_COORDINATE:
+                    return GL11.GL_TEXTURE_COORD_ARRAY;
+            }
+            return 0;
+        }
+
+        public int getByteSize() {
+            return byteSize;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public int getType() {
+            return type;
+        }
+
+        public int getUsage() {
+            return usage;
+        }
+
+        public boolean isNormalized() {
+            return normalized;
+        }
+
+    }
+
+}
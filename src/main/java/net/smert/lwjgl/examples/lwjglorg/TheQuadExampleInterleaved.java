@@ -1,10 +1,8 @@
 package net.smert.lwjgl.examples.lwjglorg;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.shader.ShaderCache;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.ContextAttribs;
@@ -40,9 +38,8 @@ public class TheQuadExampleInterleaved {
     private int indicesCount = 0;
 
     // Shader variables
-    private int vsId = 0;
-    private int fsId = 0;
     private int pId = 0;
+    private ShaderCache shaderCache = null;
 
     // Entry point for the application
     public static void main(String[] args) {
@@ -158,22 +155,9 @@ public class TheQuadExampleInterleaved {
     private void setupShaders() {
         int errorCheckValue = GL11.glGetError();
 
-        // Load the vertex shader
-        vsId = this.loadShader("vertex.glsl", GL20.GL_VERTEX_SHADER);
-        // Load the fragment shader
-        fsId = this.loadShader("fragment.glsl", GL20.GL_FRAGMENT_SHADER);
-
-        // Create a new shader program that links both shaders
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        // Position information will be attribute 0
-        GL20.glBindAttribLocation(pId, 0, "in_Position");
-        // Color information will be attribute 1
-        GL20.glBindAttribLocation(pId, 1, "in_Color");
-
-        GL20.glLinkProgram(pId);
+        // Compile and link the program. Each attribute is bound to its position in the list.
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "vertex.glsl", "fragment.glsl", "in_Position", "in_Color");
         GL20.glValidateProgram(pId);
 
         errorCheckValue = GL11.glGetError();
@@ -210,12 +194,7 @@ public class TheQuadExampleInterleaved {
     public void destroyOpenGL() {
         // Delete the shaders
         GL20.glUseProgram(0);
-        GL20.glDetachShader(pId, vsId);
-        GL20.glDetachShader(pId, fsId);
-
-        GL20.glDeleteShader(vsId);
-        GL20.glDeleteShader(fsId);
-        GL20.glDeleteProgram(pId);
+        shaderCache.destroy();
 
         // Select the VAO
         GL30.glBindVertexArray(vaoId);
@@ -239,33 +218,4 @@ public class TheQuadExampleInterleaved {
         Display.destroy();
     }
 
-    public int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
-        int shaderID = 0;
-
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(filename)));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            reader.close();
-        } catch (IOException e) {
-            System.err.println("Could not read file.");
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
-
-        if (GL20.glGetShader(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println("Could not compile shader.");
-            System.exit(-1);
-        }
-
-        return shaderID;
-    }
-
 }
@@ -1,13 +1,10 @@
 package net.smert.lwjgl.examples.lwjglorg;
 
-import de.matthiasmann.twl.utils.PNGDecoder;
-import de.matthiasmann.twl.utils.PNGDecoder.Format;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.shader.ShaderCache;
+import net.smert.lwjgl.examples.texture.Image;
+import net.smert.lwjgl.examples.texture.TextureLoader;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
@@ -29,7 +26,8 @@ import org.lwjgl.util.vector.Vector3f;
  *
  * This example will create a window with an OpenGL 3.2 context. We will create a Vertex Array Object which contains a
  * quad with color information and UV coordinates. We will then render the quad using a shader. The quad will be
- * textured. We load the textures using PNGDecoder. We can zoom, rotate and move the quad using the keyboard.
+ * textured. We load the textures in the background using TextureLoader. We can zoom, rotate and move the quad using
+ * the keyboard.
  *
  * @author Jason Sorensen <sorensenj@smert.net>
  */
@@ -51,10 +49,12 @@ public class TheQuadExampleMoving {
 
     // Shader variables
     private int pId = 0;
+    private ShaderCache shaderCache = null;
 
     // Texture variables
     private int[] texIds = new int[]{0, 0};
     private int textureSelector = 0;
+    private TextureLoader textureLoader = null;
 
     // Moving variables
     private int projectionMatrixLocation = 0;
@@ -84,6 +84,9 @@ public class TheQuadExampleMoving {
         this.setupMatrices();
 
         while (!Display.isCloseRequested()) {
+            // Upload any textures that finished decoding
+            textureLoader.processUploads();
+
             // Do a single loop (logic/render)
             this.loopCycle();
 
@@ -127,6 +130,8 @@ public class TheQuadExampleMoving {
     }
 
     private void setupTextures() {
+        textureLoader = new TextureLoader();
+
         texIds[0] = this.loadPNGTexture("stGrid1.png", GL13.GL_TEXTURE0);
         texIds[1] = this.loadPNGTexture("stGrid2.png", GL13.GL_TEXTURE0);
 
@@ -242,24 +247,10 @@ public class TheQuadExampleMoving {
     }
 
     private void setupShaders() {
-        // Load the vertex shader
-        int vsId = this.loadShader("vertex_textured_matrix.glsl", GL20.GL_VERTEX_SHADER);
-        // Load the fragment shader
-        int fsId = this.loadShader("fragment_textured_matrix.glsl", GL20.GL_FRAGMENT_SHADER);
-
-        // Create a new shader program that links both shaders
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        // Position information will be attribute 0
-        GL20.glBindAttribLocation(pId, 0, "in_Position");
-        // Color information will be attribute 1
-        GL20.glBindAttribLocation(pId, 1, "in_Color");
-        // Textute information will be attribute 2
-        GL20.glBindAttribLocation(pId, 2, "in_TextureCoord");
-
-        GL20.glLinkProgram(pId);
+        // Compile and link the program. Each attribute is bound to its position in the list.
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "vertex_textured_matrix.glsl", "fragment_textured_matrix.glsl",
+                "in_Position", "in_Color", "in_TextureCoord");
         GL20.glValidateProgram(pId);
 
         // Get matrices uniform locations
@@ -400,13 +391,16 @@ public class TheQuadExampleMoving {
     }
 
     private void destroyOpenGL() {
+        // Stop decoding textures
+        textureLoader.shutdown();
+
         // Delete the texture
         GL11.glDeleteTextures(texIds[0]);
         GL11.glDeleteTextures(texIds[1]);
 
         // Delete the shaders
         GL20.glUseProgram(0);
-        GL20.glDeleteProgram(pId);
+        shaderCache.destroy();
 
         // Select the VAO
         GL30.glBindVertexArray(vaoId);
@@ -432,66 +426,25 @@ public class TheQuadExampleMoving {
         Display.destroy();
     }
 
-    private int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
-        int shaderID = 0;
+    private int loadPNGTexture(String filename, final int textureUnit) {
+        // Create a new texture object in memory
+        final int texId = GL11.glGenTextures();
 
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(filename)));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            reader.close();
-        } catch (IOException e) {
-            System.err.println("Could not read file.");
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
+        // Decode the PNG file in the background. The texture data is uploaded later by processUploads().
+        textureLoader.load(this.getClass(), filename, new TextureLoader.Callback() {
 
-        if (GL20.glGetShader(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println("Could not compile shader.");
-            System.exit(-1);
-        }
+            @Override
+            public void upload(Image image) {
+                uploadPNGTexture(texId, textureUnit, image);
+            }
 
-        this.exitOnGLError("loadShader");
+        });
 
-        return shaderID;
+        return texId;
     }
 
-    private int loadPNGTexture(String filename, int textureUnit) {
-        ByteBuffer buf = null;
-        int tWidth = 0;
-        int tHeight = 0;
-
-        try {
-            // Open the PNG file as an InputStream
-            InputStream in = this.getClass().getResourceAsStream(filename);
-            // Link the PNG decoder to this stream
-            PNGDecoder decoder = new PNGDecoder(in);
-
-            // Get the width and height of the texture
-            tWidth = decoder.getWidth();
-            tHeight = decoder.getHeight();
-
-            // Decode the PNG file in a ByteBuffer
-            buf = ByteBuffer.allocateDirect(
-                    4 * decoder.getWidth() * decoder.getHeight());
-            decoder.decode(buf, decoder.getWidth() * 4, Format.RGBA);
-            buf.flip();
-
-            in.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        // Create a new texture object in memory and bind it
-        int texId = GL11.glGenTextures();
+    private void uploadPNGTexture(int texId, int textureUnit, Image image) {
+        // Bind the texture object
         GL13.glActiveTexture(textureUnit);
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, texId);
 
@@ -499,8 +452,8 @@ public class TheQuadExampleMoving {
         GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
 
         // Upload the texture data and generate mip maps (for scaling)
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGB, tWidth, tHeight, 0,
-                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buf);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGB, image.getWidth(), image.getHeight(), 0,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
         GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
 
         // Setup the ST coordinate system
@@ -513,9 +466,7 @@ public class TheQuadExampleMoving {
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER,
                 GL11.GL_LINEAR_MIPMAP_LINEAR);
 
-        this.exitOnGLError("loadPNGTexture");
-
-        return texId;
+        this.exitOnGLError("uploadPNGTexture");
     }
 
     private float coTangent(float angle) {
@@ -1,13 +1,10 @@
 package net.smert.lwjgl.examples.lwjglorg;
 
-import de.matthiasmann.twl.utils.PNGDecoder;
-import de.matthiasmann.twl.utils.PNGDecoder.Format;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.shader.ShaderCache;
+import net.smert.lwjgl.examples.texture.Image;
+import net.smert.lwjgl.examples.texture.TextureLoader;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
@@ -27,7 +24,7 @@ import org.lwjgl.util.glu.GLU;
  *
  * This example will create a window with an OpenGL 3.2 context. We will create a Vertex Array Object which contains a
  * quad with color information and UV coordinates. We will then render the quad using a shader. The quad will be
- * textured. We load the textures using PNGDecoder.
+ * textured. We load the textures in the background using TextureLoader.
  *
  * @author Jason Sorensen <sorensenj@smert.net>
  */
@@ -45,13 +42,13 @@ public class TheQuadExampleTextured {
     private int indicesCount = 0;
 
     // Shader variables
-    private int vsId = 0;
-    private int fsId = 0;
     private int pId = 0;
+    private ShaderCache shaderCache = null;
 
     // Texture variables
     private int[] texIds = new int[]{0, 0};
     private int textureSelector = 0;
+    private TextureLoader textureLoader = null;
 
     // Entry point for the application
     public static void main(String[] args) {
@@ -67,6 +64,9 @@ public class TheQuadExampleTextured {
         this.setupTextures();
 
         while (!Display.isCloseRequested()) {
+            // Upload any textures that finished decoding
+            textureLoader.processUploads();
+
             // Do a single loop (logic/render)
             this.loopCycle();
 
@@ -81,6 +81,8 @@ public class TheQuadExampleTextured {
     }
 
     private void setupTextures() {
+        textureLoader = new TextureLoader();
+
         texIds[0] = this.loadPNGTexture("stGrid1.png", GL13.GL_TEXTURE0);
         texIds[1] = this.loadPNGTexture("stGrid2.png", GL13.GL_TEXTURE0);
 
@@ -115,33 +117,23 @@ public class TheQuadExampleTextured {
     }
 
     private void setupQuad() {
-        // We'll define our quad using 4 vertices of the custom 'TexturedVertex' class
-        TexturedVertex v0 = new TexturedVertex();
-        v0.setXYZ(-0.5f, 0.5f, 0);
-        v0.setRGB(1, 0, 0);
-        v0.setST(0, 0);
-        TexturedVertex v1 = new TexturedVertex();
-        v1.setXYZ(-0.5f, -0.5f, 0);
-        v1.setRGB(0, 1, 0);
-        v1.setST(0, 1);
-        TexturedVertex v2 = new TexturedVertex();
-        v2.setXYZ(0.5f, -0.5f, 0);
-        v2.setRGB(0, 0, 1);
-        v2.setST(1, 1);
-        TexturedVertex v3 = new TexturedVertex();
-        v3.setXYZ(0.5f, 0.5f, 0);
-        v3.setRGB(1, 1, 1);
-        v3.setST(1, 0);
-
-        TexturedVertex[] vertices = new TexturedVertex[]{v0, v1, v2, v3};
-        // Put each 'Vertex' in one FloatBuffer
-        FloatBuffer verticesBuffer = BufferUtils.createFloatBuffer(vertices.length
-                * TexturedVertex.elementCount);
-        for (int i = 0; i < vertices.length; i++) {
-            // Add position, color and texture floats to the buffer
-            verticesBuffer.put(vertices[i].getElements());
-        }
-        verticesBuffer.flip();
+        // We'll define our quad using 4 vertices stored together in a 'VertexArray' with the 'TexturedVertex' layout
+        VertexArray vertices = new VertexArray(4);
+        vertices.setXYZ(0, -0.5f, 0.5f, 0);
+        vertices.setRGB(0, 1, 0, 0);
+        vertices.setST(0, 0, 0);
+        vertices.setXYZ(1, -0.5f, -0.5f, 0);
+        vertices.setRGB(1, 0, 1, 0);
+        vertices.setST(1, 0, 1);
+        vertices.setXYZ(2, 0.5f, -0.5f, 0);
+        vertices.setRGB(2, 0, 0, 1);
+        vertices.setST(2, 1, 1);
+        vertices.setXYZ(3, 0.5f, 0.5f, 0);
+        vertices.setRGB(3, 1, 1, 1);
+        vertices.setST(3, 1, 0);
+
+        // The vertices are already in one FloatBuffer
+        FloatBuffer verticesBuffer = vertices.getBuffer();
         // OpenGL expects to draw vertices in counter clockwise order by default
         byte[] indices = {
             0, 1, 2,
@@ -186,24 +178,10 @@ public class TheQuadExampleTextured {
     }
 
     private void setupShaders() {
-        // Load the vertex shader
-        vsId = this.loadShader("vertex_textured.glsl", GL20.GL_VERTEX_SHADER);
-        // Load the fragment shader
-        fsId = this.loadShader("fragment_textured.glsl", GL20.GL_FRAGMENT_SHADER);
-
-        // Create a new shader program that links both shaders
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        // Position information will be attribute 0
-        GL20.glBindAttribLocation(pId, 0, "in_Position");
-        // Color information will be attribute 1
-        GL20.glBindAttribLocation(pId, 1, "in_Color");
-        // Textute information will be attribute 2
-        GL20.glBindAttribLocation(pId, 2, "in_TextureCoord");
-
-        GL20.glLinkProgram(pId);
+        // Compile and link the program. Each attribute is bound to its position in the list.
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "vertex_textured.glsl", "fragment_textured.glsl",
+                "in_Position", "in_Color", "in_TextureCoord");
         GL20.glValidateProgram(pId);
 
         this.exitOnGLError("setupShaders");
@@ -262,18 +240,16 @@ public class TheQuadExampleTextured {
     }
 
     private void destroyOpenGL() {
+        // Stop decoding textures
+        textureLoader.shutdown();
+
         // Delete the texture
         GL11.glDeleteTextures(texIds[0]);
         GL11.glDeleteTextures(texIds[1]);
 
         // Delete the shaders
         GL20.glUseProgram(0);
-        GL20.glDetachShader(pId, vsId);
-        GL20.glDetachShader(pId, fsId);
-
-        GL20.glDeleteShader(vsId);
-        GL20.glDeleteShader(fsId);
-        GL20.glDeleteProgram(pId);
+        shaderCache.destroy();
 
         // Select the VAO
         GL30.glBindVertexArray(vaoId);
@@ -299,66 +275,25 @@ public class TheQuadExampleTextured {
         Display.destroy();
     }
 
-    private int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
-        int shaderID = 0;
-
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(filename)));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            reader.close();
-        } catch (IOException e) {
-            System.err.println("Could not read file.");
-            e.printStackTrace();
-            System.exit(-1);
-        }
+    private int loadPNGTexture(String filename, final int textureUnit) {
+        // Create a new texture object in memory
+        final int texId = GL11.glGenTextures();
 
-        shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
+        // Decode the PNG file in the background. The texture data is uploaded later by processUploads().
+        textureLoader.load(this.getClass(), filename, new TextureLoader.Callback() {
 
-        if (GL20.glGetShader(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println("Could not compile shader.");
-            System.exit(-1);
-        }
+            @Override
+            public void upload(Image image) {
+                uploadPNGTexture(texId, textureUnit, image);
+            }
 
-        this.exitOnGLError("loadShader");
+        });
 
-        return shaderID;
+        return texId;
     }
 
-    private int loadPNGTexture(String filename, int textureUnit) {
-        ByteBuffer buf = null;
-        int tWidth = 0;
-        int tHeight = 0;
-
-        try {
-            // Open the PNG file as an InputStream
-            InputStream in = this.getClass().getResourceAsStream(filename);
-            // Link the PNG decoder to this stream
-            PNGDecoder decoder = new PNGDecoder(in);
-
-            // Get the width and height of the texture
-            tWidth = decoder.getWidth();
-            tHeight = decoder.getHeight();
-
-            // Decode the PNG file in a ByteBuffer
-            buf = ByteBuffer.allocateDirect(
-                    4 * decoder.getWidth() * decoder.getHeight());
-            decoder.decode(buf, decoder.getWidth() * 4, Format.RGBA);
-            buf.flip();
-
-            in.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        // Create a new texture object in memory and bind it
-        int texId = GL11.glGenTextures();
+    private void uploadPNGTexture(int texId, int textureUnit, Image image) {
+        // Bind the texture object
         GL13.glActiveTexture(textureUnit);
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, texId);
 
@@ -366,8 +301,8 @@ public class TheQuadExampleTextured {
         GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
 
         // Upload the texture data and generate mip maps (for scaling)
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGB, tWidth, tHeight, 0,
-                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buf);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGB, image.getWidth(), image.getHeight(), 0,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
         GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
 
         // Setup the ST coordinate system
@@ -380,9 +315,7 @@ public class TheQuadExampleTextured {
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER,
                 GL11.GL_LINEAR_MIPMAP_LINEAR);
 
-        this.exitOnGLError("loadPNGTexture");
-
-        return texId;
+        this.exitOnGLError("uploadPNGTexture");
     }
 
     private void exitOnGLError(String errorMessage) {
@@ -1,13 +1,12 @@
 package net.smert.lwjgl.examples.lwjglorg;
 
-import de.matthiasmann.twl.utils.PNGDecoder;
-import de.matthiasmann.twl.utils.PNGDecoder.Format;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.AllocationCounter;
+import net.smert.lwjgl.examples.buffer.StreamingBuffer;
+import net.smert.lwjgl.examples.shader.ShaderCache;
+import net.smert.lwjgl.examples.texture.Image;
+import net.smert.lwjgl.examples.texture.TextureLoader;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
@@ -19,6 +18,7 @@ import org.lwjgl.opengl.GL13;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL32;
 import org.lwjgl.opengl.PixelFormat;
 import org.lwjgl.util.glu.GLU;
 
@@ -27,7 +27,11 @@ import org.lwjgl.util.glu.GLU;
  *
  * This example will create a window with an OpenGL 3.2 context. We will create a Vertex Array Object which contains a
  * quad with color information and UV coordinates. We will then render the quad using a shader. The quad will be
- * textured. We load the textures using PNGDecoder. We will update the vertex data each frame.
+ * textured. We load the textures in the background using TextureLoader. We will update the vertex data each frame.
+ *
+ * By default the whole frame of vertices is written into a StreamingBuffer with no GL calls for the upload (or a single
+ * one on older drivers) and no garbage. Press S to switch to the original update of one glBufferSubData per vertex.
+ * Every few seconds the GL calls and the bytes allocated per frame are printed for whichever one is running.
  *
  * @author Jason Sorensen <sorensenj@smert.net>
  */
@@ -45,19 +49,30 @@ public class TheQuadExampleUpdateVBO {
     private int indicesCount = 0;
 
     // Shader variables
-    private int vsId = 0;
-    private int fsId = 0;
     private int pId = 0;
+    private ShaderCache shaderCache = null;
 
     // Texture variables
     private int[] texIds = new int[]{0, 0};
     private int textureSelector = 0;
+    private TextureLoader textureLoader = null;
 
     // Update VBO variables
     private TexturedVertex[] vertices = null;
     private ByteBuffer vertexByteBuffer = null;
     private ByteBuffer verticesByteBuffer = null;
 
+    // Streaming variables
+    private final int REPORT_FRAMES = 300;
+    private boolean streaming = true;
+    private VertexArray streamVertices = null;
+    private int streamVaoId = 0;
+    private int streamBaseVertex = 0;
+    private StreamingBuffer streamingBuffer = null;
+    private int reportFrames = 0;
+    private long reportCalls = 0;
+    private long reportStartBytes = 0;
+
     // Entry point for the application
     public static void main(String[] args) {
         new TheQuadExampleUpdateVBO();
@@ -70,8 +85,12 @@ public class TheQuadExampleUpdateVBO {
         this.setupQuad();
         this.setupShaders();
         this.setupTextures();
+        this.resetReport();
 
         while (!Display.isCloseRequested()) {
+            // Upload any textures that finished decoding
+            textureLoader.processUploads();
+
             // Do a single loop (logic/render)
             this.loopCycle();
 
@@ -86,6 +105,8 @@ public class TheQuadExampleUpdateVBO {
     }
 
     private void setupTextures() {
+        textureLoader = new TextureLoader();
+
         texIds[0] = this.loadPNGTexture("stGrid1.png", GL13.GL_TEXTURE0);
         texIds[1] = this.loadPNGTexture("stGrid2.png", GL13.GL_TEXTURE0);
 
@@ -193,28 +214,37 @@ public class TheQuadExampleUpdateVBO {
         GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indicesBuffer, GL15.GL_STATIC_DRAW);
         GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
 
+        // Keep a copy of the original vertex data to offset from when streaming
+        streamVertices = new VertexArray(vertices.length);
+        for (int i = 0; i < vertices.length; i++) {
+            streamVertices.setElements(i, vertices[i].getElements(), 0);
+        }
+
+        // A streaming buffer holds a few frames of vertices, each frame is drawn with a different base vertex
+        streamingBuffer = new StreamingBuffer(GL15.GL_ARRAY_BUFFER, vertices.length * TexturedVertex.stride);
+        System.out.println("Streaming Buffer Mode: " + StreamingBuffer.getModeName(streamingBuffer.getMode()));
+
+        // The same attributes as the VAO above but reading from the streaming buffer
+        streamVaoId = GL30.glGenVertexArrays();
+        GL30.glBindVertexArray(streamVaoId);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, streamingBuffer.getId());
+        GL20.glVertexAttribPointer(0, TexturedVertex.positionElementCount, GL11.GL_FLOAT,
+                false, TexturedVertex.stride, TexturedVertex.positionByteOffset);
+        GL20.glVertexAttribPointer(1, TexturedVertex.colorElementCount, GL11.GL_FLOAT,
+                false, TexturedVertex.stride, TexturedVertex.colorByteOffset);
+        GL20.glVertexAttribPointer(2, TexturedVertex.textureElementCount, GL11.GL_FLOAT,
+                false, TexturedVertex.stride, TexturedVertex.textureByteOffset);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        GL30.glBindVertexArray(0);
+
         this.exitOnGLError("setupQuad");
     }
 
     private void setupShaders() {
-        // Load the vertex shader
-        vsId = this.loadShader("vertex_textured.glsl", GL20.GL_VERTEX_SHADER);
-        // Load the fragment shader
-        fsId = this.loadShader("fragment_textured.glsl", GL20.GL_FRAGMENT_SHADER);
-
-        // Create a new shader program that links both shaders
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        // Position information will be attribute 0
-        GL20.glBindAttribLocation(pId, 0, "in_Position");
-        // Color information will be attribute 1
-        GL20.glBindAttribLocation(pId, 1, "in_Color");
-        // Textute information will be attribute 2
-        GL20.glBindAttribLocation(pId, 2, "in_TextureCoord");
-
-        GL20.glLinkProgram(pId);
+        // Compile and link the program. Each attribute is bound to its position in the list.
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "vertex_textured.glsl", "fragment_textured.glsl",
+                "in_Position", "in_Color", "in_TextureCoord");
         GL20.glValidateProgram(pId);
 
         this.exitOnGLError("setupShaders");
@@ -236,9 +266,26 @@ public class TheQuadExampleUpdateVBO {
                 case Keyboard.KEY_2:
                     textureSelector = 1;
                     break;
+                case Keyboard.KEY_S:
+                    streaming = !streaming;
+                    this.resetReport();
+                    System.out.println(streaming ? "Streaming Vertices" : "Updating One Vertex At A Time");
+                    break;
             }
         }
 
+        int calls;
+        if (streaming) {
+            calls = this.updateVerticesStreaming();
+        } else {
+            calls = this.updateVerticesPerVertex();
+        }
+        this.report(calls);
+
+        this.exitOnGLError("logicCycle");
+    }
+
+    private int updateVerticesPerVertex() {
         // Update vertices in the VBO, first bind the VBO
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboId);
 
@@ -270,7 +317,47 @@ public class TheQuadExampleUpdateVBO {
         // And of course unbind
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
 
-        this.exitOnGLError("logicCycle");
+        // Bind, one glBufferSubData per vertex and unbind
+        return vertices.length + 2;
+    }
+
+    private int updateVerticesStreaming() {
+        // Write the whole frame straight into the buffer the GPU will read from
+        ByteBuffer frame = streamingBuffer.map();
+        for (int i = 0; i < streamVertices.getCount(); i++) {
+            // Define offset
+            float offsetX = (float) (Math.cos(Math.PI * Math.random()) * 0.1);
+            float offsetY = (float) (Math.sin(Math.PI * Math.random()) * 0.1);
+
+            // Offset the vertex position and copy everything else as it is
+            streamVertices.putOffset(i, offsetX, offsetY, frame);
+        }
+        streamBaseVertex = streamingBuffer.unmap() / TexturedVertex.stride;
+
+        // The fence is placed after drawing so it counts towards this frame as well
+        return streamingBuffer.getCallCount() + ((streamingBuffer.getMode() != StreamingBuffer.MODE_ORPHAN) ? 1 : 0);
+    }
+
+    private void report(int calls) {
+        reportCalls += calls;
+        reportFrames++;
+        if (reportFrames < REPORT_FRAMES) {
+            return;
+        }
+
+        // Allocations are measured over whole frames so anything else allocating per frame shows up too
+        long allocated = AllocationCounter.getAllocatedBytes() - reportStartBytes;
+        System.out.println((streaming ? "Streaming: " : "Per Vertex: ") + (float) reportCalls / reportFrames
+                + " GL Calls Per Frame For The Update, "
+                + ((reportStartBytes < 0) ? "unknown" : String.valueOf(allocated / reportFrames))
+                + " Bytes Allocated Per Frame");
+        this.resetReport();
+    }
+
+    private void resetReport() {
+        reportFrames = 0;
+        reportCalls = 0;
+        reportStartBytes = AllocationCounter.getAllocatedBytes();
     }
 
     private void renderCycle() {
@@ -283,7 +370,7 @@ public class TheQuadExampleUpdateVBO {
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, texIds[textureSelector]);
 
         // Bind to the VAO that has all the information about the vertices
-        GL30.glBindVertexArray(vaoId);
+        GL30.glBindVertexArray(streaming ? streamVaoId : vaoId);
         GL20.glEnableVertexAttribArray(0);
         GL20.glEnableVertexAttribArray(1);
         GL20.glEnableVertexAttribArray(2);
@@ -291,8 +378,14 @@ public class TheQuadExampleUpdateVBO {
         // Bind to the index VBO that has all the information about the order of the vertices
         GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, vboiId);
 
-        // Draw the vertices
-        GL11.glDrawElements(GL11.GL_TRIANGLES, indicesCount, GL11.GL_UNSIGNED_BYTE, 0);
+        // Draw the vertices. When streaming the base vertex picks the frame that was just written.
+        if (streaming) {
+            GL32.glDrawElementsBaseVertex(GL11.GL_TRIANGLES, indicesCount, GL11.GL_UNSIGNED_BYTE, 0,
+                    streamBaseVertex);
+            streamingBuffer.fence();
+        } else {
+            GL11.glDrawElements(GL11.GL_TRIANGLES, indicesCount, GL11.GL_UNSIGNED_BYTE, 0);
+        }
 
         // Put everything back to default (deselect)
         GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
@@ -316,18 +409,16 @@ public class TheQuadExampleUpdateVBO {
     }
 
     private void destroyOpenGL() {
+        // Stop decoding textures
+        textureLoader.shutdown();
+
         // Delete the texture
         GL11.glDeleteTextures(texIds[0]);
         GL11.glDeleteTextures(texIds[1]);
 
         // Delete the shaders
         GL20.glUseProgram(0);
-        GL20.glDetachShader(pId, vsId);
-        GL20.glDetachShader(pId, fsId);
-
-        GL20.glDeleteShader(vsId);
-        GL20.glDeleteShader(fsId);
-        GL20.glDeleteProgram(pId);
+        shaderCache.destroy();
 
         // Select the VAO
         GL30.glBindVertexArray(vaoId);
@@ -348,71 +439,34 @@ public class TheQuadExampleUpdateVBO {
         GL30.glBindVertexArray(0);
         GL30.glDeleteVertexArrays(vaoId);
 
+        // Delete the streaming buffer and its VAO
+        GL30.glDeleteVertexArrays(streamVaoId);
+        streamingBuffer.destroy();
+
         this.exitOnGLError("destroyOpenGL");
 
         Display.destroy();
     }
 
-    private int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
-        int shaderID = 0;
-
-        try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream(filename)));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            reader.close();
-        } catch (IOException e) {
-            System.err.println("Could not read file.");
-            e.printStackTrace();
-            System.exit(-1);
-        }
+    private int loadPNGTexture(String filename, final int textureUnit) {
+        // Create a new texture object in memory
+        final int texId = GL11.glGenTextures();
 
-        shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
+        // Decode the PNG file in the background. The texture data is uploaded later by processUploads().
+        textureLoader.load(this.getClass(), filename, new TextureLoader.Callback() {
 
-        if (GL20.glGetShader(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println("Could not compile shader.");
-            System.exit(-1);
-        }
+            @Override
+            public void upload(Image image) {
+                uploadPNGTexture(texId, textureUnit, image);
+            }
 
-        this.exitOnGLError("loadShader");
+        });
 
-        return shaderID;
+        return texId;
     }
 
-    private int loadPNGTexture(String filename, int textureUnit) {
-        ByteBuffer buf = null;
-        int tWidth = 0;
-        int tHeight = 0;
-
-        try {
-            // Open the PNG file as an InputStream
-            InputStream in = this.getClass().getResourceAsStream(filename);
-            // Link the PNG decoder to this stream
-            PNGDecoder decoder = new PNGDecoder(in);
-
-            // Get the width and height of the texture
-            tWidth = decoder.getWidth();
-            tHeight = decoder.getHeight();
-
-            // Decode the PNG file in a ByteBuffer
-            buf = ByteBuffer.allocateDirect(
-                    4 * decoder.getWidth() * decoder.getHeight());
-            decoder.decode(buf, decoder.getWidth() * 4, Format.RGBA);
-            buf.flip();
-
-            in.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        // Create a new texture object in memory and bind it
-        int texId = GL11.glGenTextures();
+    private void uploadPNGTexture(int texId, int textureUnit, Image image) {
+        // Bind the texture object
         GL13.glActiveTexture(textureUnit);
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, texId);
 
@@ -420,8 +474,8 @@ public class TheQuadExampleUpdateVBO {
         GL11.glPixelStorei(GL11.GL_UNPACK_ALIGNMENT, 1);
 
         // Upload the texture data and generate mip maps (for scaling)
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGB, tWidth, tHeight, 0,
-                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, buf);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGB, image.getWidth(), image.getHeight(), 0,
+                GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
         GL30.glGenerateMipmap(GL11.GL_TEXTURE_2D);
 
         // Setup the ST coordinate system
@@ -434,9 +488,7 @@ public class TheQuadExampleUpdateVBO {
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER,
                 GL11.GL_LINEAR_MIPMAP_LINEAR);
 
-        this.exitOnGLError("loadPNGTexture");
-
-        return texId;
+        this.exitOnGLError("uploadPNGTexture");
     }
 
     private void exitOnGLError(String errorMessage) {
@@ -0,0 +1,169 @@
+package net.smert.lwjgl.examples.lwjglorg;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Holds many vertices in one direct FloatBuffer using the same interleaved layout as TexturedVertex and VertexData
+ * (XYZW, RGBA, ST). Unlike those classes nothing here allocates after construction, so it is safe to use inside loops
+ * that run every frame, and the buffer can be given straight to glBufferData or glBufferSubData.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class VertexArray {
+
+    // Element offsets per parameter
+    private final static int positionElementOffset = TexturedVertex.positionByteOffset / TexturedVertex.elementBytes;
+    private final static int colorElementOffset = TexturedVertex.colorByteOffset / TexturedVertex.elementBytes;
+    private final static int textureElementOffset = TexturedVertex.textureByteOffset / TexturedVertex.elementBytes;
+
+    private final int count;
+    private final FloatBuffer elements;
+
+    public VertexArray(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("The vertex count can't be negative!");
+        }
+        this.count = count;
+        elements = BufferUtils.createFloatBuffer(count * TexturedVertex.elementCount);
+
+        // Same defaults as TexturedVertex
+        for (int i = 0; i < count; i++) {
+            this.setXYZW(i, 0f, 0f, 0f, 1f);
+            this.setRGBA(i, 1f, 1f, 1f, 1f);
+            this.setST(i, 0f, 0f);
+        }
+    }
+
+    private int index(int vertex, int elementOffset) {
+        if ((vertex < 0) || (vertex >= count)) {
+            throw new IndexOutOfBoundsException("Vertex " + vertex + " is out of range: " + count);
+        }
+        return vertex * TexturedVertex.elementCount + elementOffset;
+    }
+
+    // Setters
+    public void setXYZ(int vertex, float x, float y, float z) {
+        this.setXYZW(vertex, x, y, z, 1f);
+    }
+
+    public void setRGB(int vertex, float r, float g, float b) {
+        this.setRGBA(vertex, r, g, b, 1f);
+    }
+
+    public void setST(int vertex, float s, float t) {
+        int i = this.index(vertex, textureElementOffset);
+        elements.put(i, s);
+        elements.put(i + 1, t);
+    }
+
+    public void setXYZW(int vertex, float x, float y, float z, float w) {
+        int i = this.index(vertex, positionElementOffset);
+        elements.put(i, x);
+        elements.put(i + 1, y);
+        elements.put(i + 2, z);
+        elements.put(i + 3, w);
+    }
+
+    public void setRGBA(int vertex, float r, float g, float b, float a) {
+        int i = this.index(vertex, colorElementOffset);
+        elements.put(i, r);
+        elements.put(i + 1, g);
+        elements.put(i + 2, b);
+        elements.put(i + 3, a);
+    }
+
+    /**
+     * Copies one vertex from TexturedVertex.getElements() style data.
+     */
+    public void setElements(int vertex, float[] in, int offset) {
+        int i = this.index(vertex, 0);
+        for (int j = 0; j < TexturedVertex.elementCount; j++) {
+            elements.put(i + j, in[offset + j]);
+        }
+    }
+
+    // Getters
+    public float getX(int vertex) {
+        return elements.get(this.index(vertex, positionElementOffset));
+    }
+
+    public float getY(int vertex) {
+        return elements.get(this.index(vertex, positionElementOffset) + 1);
+    }
+
+    public float getZ(int vertex) {
+        return elements.get(this.index(vertex, positionElementOffset) + 2);
+    }
+
+    public float getW(int vertex) {
+        return elements.get(this.index(vertex, positionElementOffset) + 3);
+    }
+
+    public float getR(int vertex) {
+        return elements.get(this.index(vertex, colorElementOffset));
+    }
+
+    public float getG(int vertex) {
+        return elements.get(this.index(vertex, colorElementOffset) + 1);
+    }
+
+    public float getB(int vertex) {
+        return elements.get(this.index(vertex, colorElementOffset) + 2);
+    }
+
+    public float getA(int vertex) {
+        return elements.get(this.index(vertex, colorElementOffset) + 3);
+    }
+
+    public float getS(int vertex) {
+        return elements.get(this.index(vertex, textureElementOffset));
+    }
+
+    public float getT(int vertex) {
+        return elements.get(this.index(vertex, textureElementOffset) + 1);
+    }
+
+    /**
+     * Copies one vertex into out starting at offset, in the same order as TexturedVertex.getElements().
+     */
+    public void getElements(int vertex, float[] out, int offset) {
+        int i = this.index(vertex, 0);
+        for (int j = 0; j < TexturedVertex.elementCount; j++) {
+            out[offset + j] = elements.get(i + j);
+        }
+    }
+
+    /**
+     * Writes one vertex at the current position of out in the same layout, with X and Y moved by the offset. This is
+     * the per frame update of TheQuadExampleUpdateVBO so it must not allocate.
+     */
+    public void putOffset(int vertex, float offsetX, float offsetY, ByteBuffer out) {
+        int i = this.index(vertex, 0);
+        out.putFloat(elements.get(i) + offsetX).putFloat(elements.get(i + 1) + offsetY);
+        for (int j = 2; j < TexturedVertex.elementCount; j++) {
+            out.putFloat(elements.get(i + j));
+        }
+    }
+
+    /**
+     * Returns the backing buffer covering every vertex, ready for glBufferData. Changes to it change the vertices.
+     */
+    public FloatBuffer getBuffer() {
+        elements.clear();
+        return elements;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The size of all vertices in bytes.
+     */
+    public int getSize() {
+        return count * TexturedVertex.stride;
+    }
+
+}
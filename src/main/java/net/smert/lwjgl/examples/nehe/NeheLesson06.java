@@ -7,6 +7,7 @@ import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import javax.imageio.ImageIO;
+import net.smert.lwjgl.examples.texture.ImageConverter;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
@@ -197,25 +198,8 @@ public class NeheLesson06 {
 
         int imageHeight = image.getHeight();
         int imageWidth = image.getWidth();
-        int ARGB[] = new int[imageHeight * imageWidth];
-        byte RGBA[] = new byte[imageHeight * imageWidth * 4];
-
-        image.getRGB(0, 0, imageWidth, imageHeight, ARGB, 0, imageWidth);
-
-        for (int i = 0; i < ARGB.length; i++) {
-            int alpha = ARGB[i] >> 24 & 0xff;
-            int red = ARGB[i] >> 16 & 0xff;
-            int green = ARGB[i] >> 8 & 0xff;
-            int blue = ARGB[i] & 0xff;
-
-            RGBA[i * 4 + 0] = (byte) red;
-            RGBA[i * 4 + 1] = (byte) green;
-            RGBA[i * 4 + 2] = (byte) blue;
-            RGBA[i * 4 + 3] = (byte) alpha;
-        }
-
-        ByteBuffer pixelData = ByteBuffer.allocateDirect(image.getWidth() * image.getHeight() * 4);
-        pixelData.put(RGBA);
+        ByteBuffer pixelData = ByteBuffer.allocateDirect(imageWidth * imageHeight * 4);
+        ImageConverter.toRGBA(image, pixelData);
         pixelData.rewind();
 
         IntBuffer buf = ByteBuffer.allocateDirect(12).order(ByteOrder.nativeOrder()).asIntBuffer();
@@ -1,19 +1,28 @@
 package net.smert.lwjgl.examples.nehe;
 
-import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.util.StringTokenizer;
-import javax.imageio.ImageIO;
+import net.smert.lwjgl.examples.buffer.IndexedMesh;
+import net.smert.lwjgl.examples.smert.Frustum;
+import net.smert.lwjgl.examples.smert.Matrix4f;
+import net.smert.lwjgl.examples.texture.Image;
+import net.smert.lwjgl.examples.texture.MipmapCache;
+import net.smert.lwjgl.examples.texture.TextureLoader;
+import net.smert.lwjgl.examples.world.WorldBVH;
+import net.smert.lwjgl.examples.world.WorldFile;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL14;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL43;
+import org.lwjgl.opengl.GLContext;
 import org.lwjgl.util.glu.GLU;
 
 /**
@@ -24,17 +33,21 @@ public class NeheLesson_10 {
 
     private final String WINDOW_TITLE = "NeHe's OpenGL Lesson 10 for LWJGL (Loading And Moving Through A 3D World)";
     private boolean configBlending = false;
+    private boolean configCollision = true;
     private boolean configDebugMode = false;
     private boolean configFullScreen = false;
     private boolean configLighting = false;
     private boolean configRunning = false;
     private boolean configSmoothLighting = true;
+    private boolean configVertexBufferObject = true;
     private boolean configVSync = false;
     private boolean configKeysPressed[] = new boolean[Keyboard.KEYBOARD_SIZE];
     private DisplayMode configDisplayMode = null;
     private float configCameraFieldOfView = 70.0f;
     private float configCameraZClipNear = 0.1f;
     private float configCameraZClipFar = 256.0f;
+    private float configCollisionRadius = 0.1f;
+    private float configEyeHeight = 0.5f;
     private float heading = 0.0f;
     private float pitch = 0.0f;
     private float xpos = 0.0f;
@@ -55,11 +68,24 @@ public class NeheLesson_10 {
     private int configWindowWidth = 1024;
     private int globalLightSpotCutoff = 180;
     private int globalLightSpotExponent = 0;
+    private int iboID = 0;
     private int shininess = 0;
     private int textureFilter = 0;
+    private int vaoID = 0;
+    private int vboID = 0;
+    private int worldIndexType = 0;
     private int[] texture = new int[3];
+    private Frustum frustum = new Frustum();
+    private IntBuffer drawCommands;
+    private IntBuffer drawCount;
+    private IntBuffer drawFirst;
+    private Matrix4f projectionMatrix = new Matrix4f();
+    private Matrix4f viewMatrix = new Matrix4f();
+    private Matrix4f viewProjectionMatrix = new Matrix4f();
     private Sector sector;
+    private String configWorldFile = null;
     private String[] commandLineArgs;
+    private TextureLoader textureLoader;
 
     public static void main(String[] args) {
         NeheLesson_10 main = new NeheLesson_10();
@@ -96,8 +122,12 @@ public class NeheLesson_10 {
             configDebugMode = true;
         } else if (commandlinearg.equalsIgnoreCase("fullscreen") == true) {
             configFullScreen = true;
+        } else if (commandlinearg.equalsIgnoreCase("immediate") == true) {
+            configVertexBufferObject = false;
         } else if (commandlinearg.equalsIgnoreCase("vsync") == true) {
             configVSync = true;
+        } else if (commandlinearg.toLowerCase().startsWith("world=") == true) {
+            configWorldFile = commandlinearg.substring("world=".length());
         }
     }
 
@@ -106,6 +136,7 @@ public class NeheLesson_10 {
         initGL();
         loadTextures();
         setupWorld();
+        setupWorldVBO();
         startLesson();
     }
 
@@ -181,6 +212,13 @@ public class NeheLesson_10 {
                 configCameraZClipNear,
                 configCameraZClipFar);
         GL11.glHint(GL11.GL_PERSPECTIVE_CORRECTION_HINT, GL11.GL_NICEST);
+
+        // Kept on the CPU as well for frustum culling
+        projectionMatrix.setPerspective(
+                configCameraFieldOfView,
+                (float) configDisplayMode.getWidth() / (float) configDisplayMode.getHeight(),
+                configCameraZClipNear,
+                configCameraZClipFar);
     }
 
     private void initModelViewMatrix() {
@@ -191,107 +229,164 @@ public class NeheLesson_10 {
     }
 
     private void loadTextures() {
-        try {
-            texture = loadTexture("mud.bmp");
-        } catch (IOException e) {
-            e.printStackTrace();
+        textureLoader = new TextureLoader();
+        File mipmapDirectory = MipmapCache.getDefaultDirectory();
+        if (mipmapDirectory != null) {
+            textureLoader.setMipmapCache(new MipmapCache(mipmapDirectory));
         }
+        texture = loadTexture("mud.bmp");
     }
 
-    private int[] loadTexture(String path) throws IOException {
-        BufferedImage image = ImageIO.read(this.getClass().getResourceAsStream(path));
-
-        int imageheight = image.getHeight();
-        int imagewidth = image.getWidth();
-        int ARGB[] = new int[imageheight * imagewidth];
-        byte RGBA[] = new byte[imageheight * imagewidth * 4];
-
-        image.getRGB(0, 0, imagewidth, imageheight, ARGB, 0, imagewidth);
+    private int[] loadTexture(String path) {
+        IntBuffer buf = BufferUtils.createIntBuffer(3);
+        GL11.glGenTextures(buf);
+        final int[] textureIds = new int[]{buf.get(0), buf.get(1), buf.get(2)};
 
-        for (int i = 0; i < ARGB.length; i++) {
-            int alpha = ARGB[i] >> 24 & 0xff;
-            int red = ARGB[i] >> 16 & 0xff;
-            int green = ARGB[i] >> 8 & 0xff;
-            int blue = ARGB[i] & 0xff;
+        // Decoding happens in the background and the textures are filled in by processUploads()
+        textureLoader.load(this.getClass(), path, true, new TextureLoader.Callback() {
 
-            RGBA[i * 4 + 0] = (byte) red;
-            RGBA[i * 4 + 1] = (byte) green;
-            RGBA[i * 4 + 2] = (byte) blue;
-            RGBA[i * 4 + 3] = (byte) alpha;
-        }
+            @Override
+            public void upload(Image image) {
+                uploadTexture(textureIds, image);
+            }
 
-        ByteBuffer pixeldata = BufferUtils.createByteBuffer(image.getWidth() * image.getHeight() * 4);
-        pixeldata.put(RGBA);
-        pixeldata.flip();
+        });
 
-        IntBuffer buf = BufferUtils.createIntBuffer(3);
-        GL11.glGenTextures(buf);
+        return textureIds;
+    }
 
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, buf.get(0));                     // Create Nearest Filtered Texture
+    private void uploadTexture(int[] textureIds, Image image) {
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureIds[0]);                 // Create Nearest Filtered Texture
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, imagewidth, imageheight, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixeldata);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, image.getWidth(), image.getHeight(), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
 
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, buf.get(1));                     // Create Linear Filtered Texture
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureIds[1]);                 // Create Linear Filtered Texture
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, imagewidth, imageheight, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixeldata);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, image.getWidth(), image.getHeight(), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
 
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, buf.get(2));                     // Create MipMapped Texture
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureIds[2]);                 // Create MipMapped Texture
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_NEAREST);
-        GLU.gluBuild2DMipmaps(GL11.GL_TEXTURE_2D, GL11.GL_RGBA, imagewidth, imageheight, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixeldata);
-
-        return new int[]{buf.get(0), buf.get(1), buf.get(2)};
+        // The mipmap levels were built by TextureLoader on a worker thread
+        for (int level = 0; level < image.getLevels(); level++) {
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, level, GL11.GL_RGBA, image.getLevelWidth(level), image.getLevelHeight(level), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getLevel(level));
+        }
     }
 
     private void setupWorld() {
         try {
-            BufferedReader worldData = new BufferedReader(new InputStreamReader(this.getClass().getResourceAsStream("world.txt")));
-            int numTriangles;
-            String line;
-
-            while ((line = worldData.readLine()) != null) {
-                if (line.trim().length() == 0 || line.trim().startsWith("//")) {
-                    continue;
-                }
+            FloatBuffer vertices;
+            if (configWorldFile != null) {
+                vertices = WorldFile.load(new File(configWorldFile));
+            } else {
+                vertices = WorldFile.load(this.getClass(), "world");
+            }
 
-                if (line.startsWith("NUMPOLLIES")) {
-                    numTriangles = Integer.parseInt(line.substring(line.indexOf("NUMPOLLIES") + "NUMPOLLIES".length() + 1));
-                    sector = new Sector(numTriangles);
+            // The hierarchy reorders the triangles so the sector uses its copy of the vertices
+            long startTime = System.nanoTime();
+            WorldBVH bvh = WorldBVH.build(vertices);
+            sector = new Sector(bvh.getVertices());
+            sector.bvh = bvh;
 
-                    break;
-                }
+            if (configDebugMode == true) {
+                System.out.println("Loaded World: " + sector.numTriangles + " Triangles");
+                System.out.println("Built World BVH: " + bvh.getNodeCount() + " Nodes In "
+                        + (System.nanoTime() - startTime) / 1000000 + " ms");
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 
-            for (int i = 0; i < sector.numTriangles; i++) {
-                for (int vert = 0; vert < 3; vert++) {
+    private void setupWorldVBO() {
+        if (sector == null) {
+            return;
+        }
 
-                    while ((line = worldData.readLine()) != null) {
-                        if (line.trim().length() == 0 || line.trim().startsWith("//")) {
-                            continue;
-                        }
+        // Triangles that share corners share vertices so the post transform cache can skip them. The triangles keep
+        // the order of the hierarchy which makes every culled range of vertices the same range of indices. LWJGL 2 has
+        // no glMultiDrawElements so the ranges are drawn with glMultiDrawElementsIndirect, which needs OpenGL 4.3.
+        IndexedMesh mesh = null;
+        if (GLContext.getCapabilities().OpenGL43 == true) {
+            ByteBuffer world = BufferUtils.createByteBuffer(sector.vertices.remaining() * 4);
+            world.asFloatBuffer().put(sector.vertices.duplicate());
+            mesh = IndexedMesh.build(world, sector.numTriangles * 3, WorldFile.FLOATS_PER_VERTEX * 4, GL11.GL_TRIANGLES,
+                    false);
+        }
 
-                        break;
-                    }
+        // Upload the whole world once. It never changes so every frame can draw it with a single call.
+        vboID = GL15.glGenBuffers();
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboID);
+        if (mesh != null) {
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, mesh.getVertices(), GL15.GL_STATIC_DRAW);
 
-                    if (line != null) {
-                        StringTokenizer st = new StringTokenizer(line, " ");
+            iboID = GL15.glGenBuffers();
+            worldIndexType = mesh.getIndexType();
+            GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, iboID);
+            GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, mesh.getIndices(), GL15.GL_STATIC_DRAW);
+        } else {
+            GL15.glBufferData(GL15.GL_ARRAY_BUFFER, sector.vertices, GL15.GL_STATIC_DRAW);
+        }
 
-                        sector.triangle[i].vertex[vert].x = Float.valueOf(st.nextToken()).floatValue();
-                        sector.triangle[i].vertex[vert].y = Float.valueOf(st.nextToken()).floatValue();
-                        sector.triangle[i].vertex[vert].z = Float.valueOf(st.nextToken()).floatValue();
-                        sector.triangle[i].vertex[vert].u = Float.valueOf(st.nextToken()).floatValue();
-                        sector.triangle[i].vertex[vert].v = Float.valueOf(st.nextToken()).floatValue();
-                    }
-                }
+        // A vertex array object remembers the pointers so drawing doesn't have to set them up again
+        if (GLContext.getCapabilities().OpenGL30 == true) {
+            vaoID = GL30.glGenVertexArrays();
+            GL30.glBindVertexArray(vaoID);
+            if (iboID != 0) {
+                GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, iboID);         // Part of the VAO state
             }
+            setWorldPointers();
+            GL30.glBindVertexArray(0);
+        }
 
-            worldData.close();
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
 
-        } catch (IOException e) {
-            e.printStackTrace();
+        drawFirst = BufferUtils.createIntBuffer(sector.bvh.getMaxRanges());
+        drawCount = BufferUtils.createIntBuffer(sector.bvh.getMaxRanges());
+        if (iboID != 0) {
+            // Five ints per command: count, instance count, first index, base vertex, base instance
+            drawCommands = BufferUtils.createIntBuffer(sector.bvh.getMaxRanges() * 5);
         }
+
+        if (configDebugMode == true) {
+            System.out.println("Created World VBO: " + sector.vertices.remaining() * 4 + " Bytes"
+                    + ((vaoID != 0) ? " With VAO" : " Without VAO"));
+            if (mesh != null) {
+                System.out.println("Indexed World: " + mesh.getStatistics());
+            }
+            System.out.println("GL Calls Per Frame For The World: Immediate Mode: " + getWorldCallCount(false)
+                    + " VBO: " + getWorldCallCount(true));
+        }
+    }
+
+    private void setWorldPointers() {
+        int stride = WorldFile.FLOATS_PER_VERTEX * 4;
+
+        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        GL11.glEnableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        GL11.glVertexPointer(3, GL11.GL_FLOAT, stride, 0);                      // x, y, z
+        GL11.glTexCoordPointer(2, GL11.GL_FLOAT, stride, 12);                   // u, v
+    }
+
+    private void unsetWorldPointers() {
+        GL11.glDisableClientState(GL11.GL_TEXTURE_COORD_ARRAY);
+        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
+    }
+
+    private int getWorldCallCount(boolean vertexBufferObject) {
+        if (vertexBufferObject == false) {
+            return sector.numTriangles * 9;                                     // glBegin, glNormal3f, 3 * (glTexCoord2f, glVertex3f), glEnd
+        }
+        if (vaoID != 0) {
+            return 4;                                                           // glNormal3f, glBindVertexArray, glMultiDraw*, glBindVertexArray
+        }
+        if (iboID != 0) {
+            return 12;                                                          // Also binds and unbinds the index buffer
+        }
+        return 10;                                                              // glNormal3f, glBindBuffer, 4 pointer calls, glMultiDrawArrays, 2 disables, glBindBuffer
     }
 
     private void startLesson() {
@@ -299,6 +394,7 @@ public class NeheLesson_10 {
     }
 
     private void mainLoop() {
+        textureLoader.processUploads();
         input();
         render();
 
@@ -315,8 +411,8 @@ public class NeheLesson_10 {
         }
 
         if (Keyboard.isKeyDown(Keyboard.KEY_DOWN) == true) {
-            xpos += (float) Math.sin(heading * (Math.PI / 180)) * 0.01f;
-            zpos += (float) Math.cos(heading * (Math.PI / 180)) * 0.01f;
+            walk((float) Math.sin(heading * (Math.PI / 180)) * 0.01f,
+                    (float) Math.cos(heading * (Math.PI / 180)) * 0.01f);
         }
         if ((Keyboard.isKeyDown(Keyboard.KEY_F1) == true)
                 && (configKeysPressed[Keyboard.KEY_F1] == false)) {
@@ -339,8 +435,8 @@ public class NeheLesson_10 {
             pitch -= 1.0f * 0.05f;
         }
         if (Keyboard.isKeyDown(Keyboard.KEY_UP) == true) {
-            xpos -= (float) Math.sin(heading * (Math.PI / 180)) * 0.01f;
-            zpos -= (float) Math.cos(heading * (Math.PI / 180)) * 0.01f;
+            walk((float) -Math.sin(heading * (Math.PI / 180)) * 0.01f,
+                    (float) -Math.cos(heading * (Math.PI / 180)) * 0.01f);
         }
         if ((Keyboard.isKeyDown(Keyboard.KEY_B) == true)
                 && (configKeysPressed[Keyboard.KEY_B] == false)) {
@@ -350,6 +446,14 @@ public class NeheLesson_10 {
         } else if (Keyboard.isKeyDown(Keyboard.KEY_B) == false) {
             configKeysPressed[Keyboard.KEY_B] = false;
         }
+        if ((Keyboard.isKeyDown(Keyboard.KEY_C) == true)
+                && (configKeysPressed[Keyboard.KEY_C] == false)) {
+            configKeysPressed[Keyboard.KEY_C] = true;
+
+            switchCollision();
+        } else if (Keyboard.isKeyDown(Keyboard.KEY_C) == false) {
+            configKeysPressed[Keyboard.KEY_C] = false;
+        }
         if ((Keyboard.isKeyDown(Keyboard.KEY_F) == true)
                 && (configKeysPressed[Keyboard.KEY_F] == false)) {
             configKeysPressed[Keyboard.KEY_F] = true;
@@ -374,6 +478,41 @@ public class NeheLesson_10 {
         } else if (Keyboard.isKeyDown(Keyboard.KEY_S) == false) {
             configKeysPressed[Keyboard.KEY_S] = false;
         }
+        if ((Keyboard.isKeyDown(Keyboard.KEY_V) == true)
+                && (configKeysPressed[Keyboard.KEY_V] == false)) {
+            configKeysPressed[Keyboard.KEY_V] = true;
+
+            switchVertexBufferObject();
+        } else if (Keyboard.isKeyDown(Keyboard.KEY_V) == false) {
+            configKeysPressed[Keyboard.KEY_V] = false;
+        }
+    }
+
+    private void walk(float dx, float dz) {
+        if ((configCollision == true) && (sector != null)) {
+            // Look a little past the step so the camera stops short of the wall instead of clipping into it
+            float length = (float) Math.sqrt(dx * dx + dz * dz);
+            float reach = (length + configCollisionRadius) / length;
+            if (sector.bvh.intersectSegment(xpos, configEyeHeight, zpos, xpos + dx * reach, configEyeHeight,
+                    zpos + dz * reach) >= 0.0f) {
+                return;
+            }
+        }
+
+        xpos += dx;
+        zpos += dz;
+    }
+
+    private void switchCollision() {
+        configCollision = !configCollision;
+
+        if (configDebugMode == true) {
+            if (configCollision == true) {
+                System.out.println("Enabling Collision");
+            } else {
+                System.out.println("Disabling Collision");
+            }
+        }
     }
 
     private void switchFullScreen() {
@@ -456,6 +595,18 @@ public class NeheLesson_10 {
         }
     }
 
+    private void switchVertexBufferObject() {
+        configVertexBufferObject = !configVertexBufferObject;
+
+        if (configDebugMode == true) {
+            if (configVertexBufferObject == true) {
+                System.out.println("Rendering With VBO: " + getWorldCallCount(true) + " GL Calls Per Frame");
+            } else {
+                System.out.println("Rendering In Immediate Mode: " + getWorldCallCount(false) + " GL Calls Per Frame");
+            }
+        }
+    }
+
     private void render() {
         clearScene();
 
@@ -467,42 +618,86 @@ public class NeheLesson_10 {
         GL11.glRotatef(pitch, 1.0f, 0, 0);
         GL11.glRotatef(360.0f - heading, 0, 1.0f, 0);
 
-        GL11.glTranslatef(-xpos, -0.5f, -zpos);
+        GL11.glTranslatef(-xpos, -configEyeHeight, -zpos);
         GL11.glBindTexture(GL11.GL_TEXTURE_2D, texture[textureFilter % 3]);
 
+        if ((configVertexBufferObject == true) && (vboID != 0)) {
+            renderWorldVBO();
+            return;
+        }
+
         numTriangles = sector.numTriangles;
 
         // Process Each Triangle
+        FloatBuffer vertices = sector.vertices;
+
         for (int loop_m = 0; loop_m < numTriangles; loop_m++) {
             GL11.glBegin(GL11.GL_TRIANGLES);
             GL11.glNormal3f(0.0f, 0.0f, 1.0f);
-            x_m = sector.triangle[loop_m].vertex[0].x;
-            y_m = sector.triangle[loop_m].vertex[0].y;
-            z_m = sector.triangle[loop_m].vertex[0].z;
-            u_m = sector.triangle[loop_m].vertex[0].u;
-            v_m = sector.triangle[loop_m].vertex[0].v;
-            GL11.glTexCoord2f(u_m, v_m);
-            GL11.glVertex3f(x_m, y_m, z_m);
-
-            x_m = sector.triangle[loop_m].vertex[1].x;
-            y_m = sector.triangle[loop_m].vertex[1].y;
-            z_m = sector.triangle[loop_m].vertex[1].z;
-            u_m = sector.triangle[loop_m].vertex[1].u;
-            v_m = sector.triangle[loop_m].vertex[1].v;
-            GL11.glTexCoord2f(u_m, v_m);
-            GL11.glVertex3f(x_m, y_m, z_m);
-
-            x_m = sector.triangle[loop_m].vertex[2].x;
-            y_m = sector.triangle[loop_m].vertex[2].y;
-            z_m = sector.triangle[loop_m].vertex[2].z;
-            u_m = sector.triangle[loop_m].vertex[2].u;
-            v_m = sector.triangle[loop_m].vertex[2].v;
-            GL11.glTexCoord2f(u_m, v_m);
-            GL11.glVertex3f(x_m, y_m, z_m);
+            for (int vert = 0; vert < 3; vert++) {
+                int offset = (loop_m * 3 + vert) * WorldFile.FLOATS_PER_VERTEX;
+                x_m = vertices.get(offset);
+                y_m = vertices.get(offset + 1);
+                z_m = vertices.get(offset + 2);
+                u_m = vertices.get(offset + 3);
+                v_m = vertices.get(offset + 4);
+                GL11.glTexCoord2f(u_m, v_m);
+                GL11.glVertex3f(x_m, y_m, z_m);
+            }
             GL11.glEnd();
         }
     }
 
+    private void drawWorld() {
+        if (iboID == 0) {
+            GL14.glMultiDrawArrays(GL11.GL_TRIANGLES, drawFirst, drawCount);
+            return;
+        }
+
+        // The ranges are triangles in the same order so the first vertex is also the first index
+        drawCommands.clear();
+        for (int i = drawFirst.position(); i < drawFirst.limit(); i++) {
+            drawCommands.put(drawCount.get(i)).put(1).put(drawFirst.get(i)).put(0).put(0);
+        }
+        drawCommands.flip();
+        GL43.glMultiDrawElementsIndirect(GL11.GL_TRIANGLES, worldIndexType, drawCommands, drawFirst.remaining(), 0);
+    }
+
+    private void renderWorldVBO() {
+        // Only the parts of the world inside the view are drawn, all with one call
+        updateFrustum();
+        if (sector.bvh.cull(frustum, drawFirst, drawCount) == 0) {
+            return;
+        }
+
+        GL11.glNormal3f(0.0f, 0.0f, 1.0f);
+
+        if (vaoID != 0) {
+            GL30.glBindVertexArray(vaoID);
+            drawWorld();
+            GL30.glBindVertexArray(0);
+        } else {
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboID);
+            if (iboID != 0) {
+                GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, iboID);
+            }
+            setWorldPointers();
+            drawWorld();
+            unsetWorldPointers();
+            if (iboID != 0) {
+                GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+            }
+            GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+        }
+    }
+
+    private void updateFrustum() {
+        // Same transform as the glRotatef and glTranslatef calls in render()
+        viewMatrix.setFpsView(xpos, configEyeHeight, zpos, heading, pitch);
+
+        frustum.set(viewProjectionMatrix.multiply(projectionMatrix, viewMatrix));
+    }
+
     private void clearScene() {
         GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
         GL11.glLoadIdentity();
@@ -674,45 +869,34 @@ public class NeheLesson_10 {
     }
 
     private void shutdown() {
+        if (vaoID != 0) {
+            GL30.glDeleteVertexArrays(vaoID);
+        }
+        if (vboID != 0) {
+            GL15.glDeleteBuffers(vboID);
+        }
+        if (iboID != 0) {
+            GL15.glDeleteBuffers(iboID);
+        }
+        textureLoader.shutdown();
         Display.destroy();
     }
 
 }
 
+/**
+ * The world as one flat buffer of interleaved x, y, z, u, v floats, three vertices per triangle (see WorldFile). The
+ * vertices are in the order of the bounding volume hierarchy used for culling and collision.
+ */
 class Sector {
 
     public int numTriangles;
-    public Triangle triangle[];
-
-    public Sector(int num) {
-        numTriangles = num;
+    public FloatBuffer vertices;
+    public WorldBVH bvh;
 
-        triangle = new Triangle[numTriangles];
-
-        for (int i = 0; i < numTriangles; i++) {
-            triangle[i] = new Triangle();
-        }
-    }
-
-}
-
-class Triangle {
-
-    public InternalVertex vertex[];
-
-    public Triangle() {
-        vertex = new InternalVertex[3];
-
-        for (int i = 0; i < 3; i++) {
-            vertex[i] = new InternalVertex();
-        }
+    public Sector(FloatBuffer vertices) {
+        this.vertices = vertices;
+        numTriangles = vertices.remaining() / WorldFile.FLOATS_PER_TRIANGLE;
     }
 
 }
-
-class InternalVertex {
-
-    public float x, y, z;
-    public float u, v;
-
-}
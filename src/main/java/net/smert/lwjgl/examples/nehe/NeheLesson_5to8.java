@@ -1,11 +1,11 @@
 package net.smert.lwjgl.examples.nehe;
 
-import java.awt.image.BufferedImage;
-import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.File;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import javax.imageio.ImageIO;
+import net.smert.lwjgl.examples.texture.Image;
+import net.smert.lwjgl.examples.texture.MipmapCache;
+import net.smert.lwjgl.examples.texture.TextureLoader;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.opengl.Display;
@@ -60,6 +60,7 @@ public class NeheLesson_5to8 {
     private int[] textureCrate = new int[3];
     private int[] textureGlass = new int[3];
     private String[] commandLineArgs;
+    private TextureLoader textureLoader;
 
     public static void main(String[] args) {
         NeheLesson_5to8 main = new NeheLesson_5to8();
@@ -190,59 +191,51 @@ public class NeheLesson_5to8 {
     }
 
     private void loadTextures() {
-        try {
-            textureCrate = loadTexture("Crate.bmp");
-            textureGlass = loadTexture("Glass.bmp");
-        } catch (IOException e) {
-            e.printStackTrace();
+        textureLoader = new TextureLoader();
+        File mipmapDirectory = MipmapCache.getDefaultDirectory();
+        if (mipmapDirectory != null) {
+            textureLoader.setMipmapCache(new MipmapCache(mipmapDirectory));
         }
+        textureCrate = loadTexture("Crate.bmp");
+        textureGlass = loadTexture("Glass.bmp");
     }
 
-    private int[] loadTexture(String path) throws IOException {
-        BufferedImage image = ImageIO.read(this.getClass().getResourceAsStream(path));
-
-        int imageheight = image.getHeight();
-        int imagewidth = image.getWidth();
-        int ARGB[] = new int[imageheight * imagewidth];
-        byte RGBA[] = new byte[imageheight * imagewidth * 4];
-
-        image.getRGB(0, 0, imagewidth, imageheight, ARGB, 0, imagewidth);
+    private int[] loadTexture(String path) {
+        IntBuffer buf = BufferUtils.createIntBuffer(3);
+        GL11.glGenTextures(buf);
+        final int[] textureIds = new int[]{buf.get(0), buf.get(1), buf.get(2)};
 
-        for (int i = 0; i < ARGB.length; i++) {
-            int alpha = ARGB[i] >> 24 & 0xff;
-            int red = ARGB[i] >> 16 & 0xff;
-            int green = ARGB[i] >> 8 & 0xff;
-            int blue = ARGB[i] & 0xff;
+        // Decoding happens in the background and the textures are filled in by processUploads()
+        textureLoader.load(this.getClass(), path, true, new TextureLoader.Callback() {
 
-            RGBA[i * 4 + 0] = (byte) red;
-            RGBA[i * 4 + 1] = (byte) green;
-            RGBA[i * 4 + 2] = (byte) blue;
-            RGBA[i * 4 + 3] = (byte) alpha;
-        }
+            @Override
+            public void upload(Image image) {
+                uploadTexture(textureIds, image);
+            }
 
-        ByteBuffer pixeldata = BufferUtils.createByteBuffer(image.getWidth() * image.getHeight() * 4);
-        pixeldata.put(RGBA);
-        pixeldata.rewind();
+        });
 
-        IntBuffer buf = BufferUtils.createIntBuffer(3);
-        GL11.glGenTextures(buf);
+        return textureIds;
+    }
 
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, buf.get(0));                     // Create Nearest Filtered Texture
+    private void uploadTexture(int[] textureIds, Image image) {
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureIds[0]);                 // Create Nearest Filtered Texture
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_NEAREST);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_NEAREST);
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, imagewidth, imageheight, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixeldata);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, image.getWidth(), image.getHeight(), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
 
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, buf.get(1));                     // Create Linear Filtered Texture
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureIds[1]);                 // Create Linear Filtered Texture
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR);
-        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, imagewidth, imageheight, 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixeldata);
+        GL11.glTexImage2D(GL11.GL_TEXTURE_2D, 0, GL11.GL_RGBA, image.getWidth(), image.getHeight(), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getPixels());
 
-        GL11.glBindTexture(GL11.GL_TEXTURE_2D, buf.get(2));                     // Create MipMapped Texture
+        GL11.glBindTexture(GL11.GL_TEXTURE_2D, textureIds[2]);                 // Create MipMapped Texture
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MAG_FILTER, GL11.GL_LINEAR);
         GL11.glTexParameteri(GL11.GL_TEXTURE_2D, GL11.GL_TEXTURE_MIN_FILTER, GL11.GL_LINEAR_MIPMAP_NEAREST);
-        GLU.gluBuild2DMipmaps(GL11.GL_TEXTURE_2D, GL11.GL_RGBA, imagewidth, imageheight, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, pixeldata);
-
-        return new int[]{buf.get(0), buf.get(1), buf.get(2)};
+        // The mipmap levels were built by TextureLoader on a worker thread
+        for (int level = 0; level < image.getLevels(); level++) {
+            GL11.glTexImage2D(GL11.GL_TEXTURE_2D, level, GL11.GL_RGBA, image.getLevelWidth(level), image.getLevelHeight(level), 0, GL11.GL_RGBA, GL11.GL_UNSIGNED_BYTE, image.getLevel(level));
+        }
     }
 
     private void startLesson() {
@@ -250,6 +243,7 @@ public class NeheLesson_5to8 {
     }
 
     private void mainLoop() {
+        textureLoader.processUploads();
         input();
         render();
 
@@ -741,6 +735,7 @@ public class NeheLesson_5to8 {
     }
 
     private void shutdown() {
+        textureLoader.shutdown();
         Display.destroy();
     }
 
@@ -0,0 +1,125 @@
+package net.smert.lwjgl.examples.shader;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * ShaderBackend for the current LWJGL context. Program binaries use GL_ARB_get_program_binary (core in OpenGL 4.1).
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class LWJGLShaderBackend implements ShaderBackend {
+
+    private final static int MAX_INFO_LOG_LENGTH = 8192;
+
+    private final IntBuffer binaryFormat = BufferUtils.createIntBuffer(1);
+
+    @Override
+    public void attachShader(int program, int shader) {
+        GL20.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void bindAttribLocation(int program, int index, String name) {
+        GL20.glBindAttribLocation(program, index, name);
+    }
+
+    @Override
+    public boolean compileShader(int shader) {
+        GL20.glCompileShader(shader);
+        return GL20.glGetShaderi(shader, GL20.GL_COMPILE_STATUS) != GL11.GL_FALSE;
+    }
+
+    @Override
+    public int createProgram() {
+        return GL20.glCreateProgram();
+    }
+
+    @Override
+    public int createShader(int type) {
+        return GL20.glCreateShader(type);
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        GL20.glDeleteProgram(program);
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        GL20.glDeleteShader(shader);
+    }
+
+    @Override
+    public void detachShader(int program, int shader) {
+        GL20.glDetachShader(program, shader);
+    }
+
+    @Override
+    public String getDriverVersion() {
+        return GL11.glGetString(GL11.GL_VENDOR) + "\n" + GL11.glGetString(GL11.GL_RENDERER) + "\n"
+                + GL11.glGetString(GL11.GL_VERSION);
+    }
+
+    @Override
+    public ByteBuffer getProgramBinary(int program, int[] format) {
+        int length = GL20.glGetProgrami(program, ARBGetProgramBinary.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return null;
+        }
+
+        ByteBuffer binary = BufferUtils.createByteBuffer(length);
+        binaryFormat.clear();
+        ARBGetProgramBinary.glGetProgramBinary(program, null, binaryFormat, binary);
+        format[0] = binaryFormat.get(0);
+        return binary;
+    }
+
+    @Override
+    public String getProgramInfoLog(int program) {
+        return GL20.glGetProgramInfoLog(program, MAX_INFO_LOG_LENGTH);
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader) {
+        return GL20.glGetShaderInfoLog(shader, MAX_INFO_LOG_LENGTH);
+    }
+
+    @Override
+    public boolean isProgramBinarySupported() {
+        // Some drivers have the extension but no formats, which means binaries can't be saved
+        return (GLContext.getCapabilities().GL_ARB_get_program_binary == true)
+                && (GL11.glGetInteger(ARBGetProgramBinary.GL_NUM_PROGRAM_BINARY_FORMATS) > 0);
+    }
+
+    @Override
+    public boolean linkProgram(int program) {
+        GL20.glLinkProgram(program);
+        return GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) != GL11.GL_FALSE;
+    }
+
+    @Override
+    public boolean programBinary(int program, int format, ByteBuffer binary) {
+        ARBGetProgramBinary.glProgramBinary(program, format, binary);
+
+        // Loading a binary from another driver version fails without setting an error, only the link status
+        return GL20.glGetProgrami(program, GL20.GL_LINK_STATUS) != GL11.GL_FALSE;
+    }
+
+    @Override
+    public void setProgramBinaryRetrievable(int program) {
+        ARBGetProgramBinary.glProgramParameteri(program, ARBGetProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT,
+                GL11.GL_TRUE);
+    }
+
+    @Override
+    public void shaderSource(int shader, CharSequence source) {
+        GL20.glShaderSource(shader, source);
+    }
+
+}
@@ -0,0 +1,65 @@
+package net.smert.lwjgl.examples.shader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The OpenGL calls ShaderCache needs. LWJGLShaderBackend is the real one. Anything else (a stub that records calls for
+ * example) can be used to run the cache without a context.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public interface ShaderBackend {
+
+    public void attachShader(int program, int shader);
+
+    public void bindAttribLocation(int program, int index, String name);
+
+    public boolean compileShader(int shader);
+
+    public int createProgram();
+
+    public int createShader(int type);
+
+    public void deleteProgram(int program);
+
+    public void deleteShader(int shader);
+
+    public void detachShader(int program, int shader);
+
+    /**
+     * Something that changes whenever program binaries from an earlier run become invalid, such as the vendor,
+     * renderer and version strings.
+     */
+    public String getDriverVersion();
+
+    /**
+     * Returns the linked program as a binary, or null if the driver can't give one. The format of the binary is
+     * written to format[0].
+     */
+    public ByteBuffer getProgramBinary(int program, int[] format);
+
+    public String getProgramInfoLog(int program);
+
+    public String getShaderInfoLog(int shader);
+
+    /**
+     * True if the driver can save and load program binaries.
+     */
+    public boolean isProgramBinarySupported();
+
+    public boolean linkProgram(int program);
+
+    /**
+     * Loads a binary from getProgramBinary into the program. Returns false if the driver refused it, in which case the
+     * program must be built from source.
+     */
+    public boolean programBinary(int program, int format, ByteBuffer binary);
+
+    /**
+     * Asks the driver to keep the binary of the next link around so getProgramBinary can return it.
+     */
+    public void setProgramBinaryRetrievable(int program);
+
+    public void shaderSource(int shader, CharSequence source);
+
+}
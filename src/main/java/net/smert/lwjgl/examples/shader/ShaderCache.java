@@ -0,0 +1,403 @@
+package net.smert.lwjgl.examples.shader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.smert.lwjgl.examples.UserCacheDirectory;
+import org.lwjgl.opengl.GL20;
+
+/**
+ * Loads, compiles and links shader programs for the examples and keeps them until destroy().
+ *
+ * Sources are read with a single channel read and decoded once. Shader objects are shared between programs by source,
+ * so the same vertex shader used by two programs is only compiled once, and asking for the same program twice returns
+ * the same program object.
+ *
+ * When a directory is given and the driver supports program binaries, every linked program is also saved to disk. The
+ * file name is a hash of the sources, the attribute bindings and the driver version, so later runs load the binary
+ * and skip compiling and linking entirely. A binary the driver refuses is ignored and the program is built from source
+ * again.
+ *
+ * Compile and link errors print the info log and throw a RuntimeException like the examples always have.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ShaderCache {
+
+    public final static String DEFAULT_DIRECTORY = "shaders";
+
+    private final static int FILE_MAGIC = 0x48534C47; // "GLSH"
+    private final static int FILE_VERSION = 1;
+    private final static int HEADER_SIZE = 12;
+    private final static int READ_BUFFER_SIZE = 16 * 1024;
+
+    private int binaryLoadCount;
+    private int compileCount;
+    private int linkCount;
+    private Boolean binarySupported;
+    private String driverVersion;
+    private final File directory;
+    private final List<Integer> programs;
+    private final Map<String, Integer> programsByKey;
+    private final Map<String, Integer> shadersBySource;
+    private final Map<String, String> sourcesByName;
+    private final ShaderBackend backend;
+
+    /**
+     * Creates a cache for the current LWJGL context that doesn't save binaries.
+     */
+    public ShaderCache() {
+        this(new LWJGLShaderBackend(), null);
+    }
+
+    /**
+     * Creates a cache for the current LWJGL context that saves binaries in directory.
+     */
+    public ShaderCache(File directory) {
+        this(new LWJGLShaderBackend(), directory);
+    }
+
+    /**
+     * Creates a cache on top of any backend. Binaries are saved in directory unless it is null.
+     */
+    public ShaderCache(ShaderBackend backend, File directory) {
+        this.backend = backend;
+        this.directory = directory;
+        programs = new ArrayList<>();
+        programsByKey = new HashMap<>();
+        shadersBySource = new HashMap<>();
+        sourcesByName = new HashMap<>();
+    }
+
+    private int compile(String filename, String source, int type) {
+        // The type is part of the key since the same text could in theory be valid for two stages
+        String key = type + ":" + source;
+        Integer cached = shadersBySource.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        int shader = backend.createShader(type);
+        backend.shaderSource(shader, source);
+        compileCount++;
+        if (backend.compileShader(shader) == false) {
+            System.err.println(backend.getShaderInfoLog(shader));
+            backend.deleteShader(shader);
+            throw new RuntimeException("Shader \"" + filename + "\" had compile errors!");
+        }
+
+        shadersBySource.put(key, shader);
+        return shader;
+    }
+
+    private String getBinaryKey(String vertexSource, String fragmentSource, String[] attributes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(getDriverVersion().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(vertexSource.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fragmentSource.getBytes(StandardCharsets.UTF_8));
+            for (String attribute : attributes) {
+                digest.update((byte) 0);
+                digest.update(attribute.getBytes(StandardCharsets.UTF_8));
+            }
+
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b & 0xff));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String getDriverVersion() {
+        if (driverVersion == null) {
+            driverVersion = backend.getDriverVersion();
+        }
+        return driverVersion;
+    }
+
+    private boolean isBinarySupported() {
+        if (directory == null) {
+            return false;
+        }
+        if (binarySupported == null) {
+            binarySupported = backend.isProgramBinarySupported();
+        }
+        return binarySupported;
+    }
+
+    private boolean loadBinary(int program, File file) {
+        if (file.isFile() == false) {
+            return false;
+        }
+
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if ((size <= HEADER_SIZE) || (size > Integer.MAX_VALUE)) {
+                return false;
+            }
+            bytes = ByteBuffer.allocateDirect((int) size);
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) == -1) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        bytes.flip();
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+        if ((bytes.getInt(0) != FILE_MAGIC) || (bytes.getInt(4) != FILE_VERSION)) {
+            return false;
+        }
+        int format = bytes.getInt(8);
+        bytes.position(HEADER_SIZE);
+
+        return backend.programBinary(program, format, bytes.slice());
+    }
+
+    private String readSource(Class<?> resourceClass, String filename) {
+        String name = resourceClass.getName() + ":" + filename;
+        String source = sourcesByName.get(name);
+        if (source != null) {
+            return source;
+        }
+
+        URL url = resourceClass.getResource(filename);
+        if (url == null) {
+            throw new RuntimeException("Could not find shader: " + filename);
+        }
+
+        try {
+            ByteBuffer bytes = readFully(url);
+            source = StandardCharsets.UTF_8.decode(bytes).toString();
+        } catch (IOException e) {
+            System.err.println("Could not read file: " + filename);
+            throw new RuntimeException(e);
+        }
+
+        sourcesByName.put(name, source);
+        return source;
+    }
+
+    private void saveBinary(int program, File file) {
+        int[] format = new int[1];
+        ByteBuffer binary = backend.getProgramBinary(program, format);
+        if (binary == null) {
+            return;
+        }
+
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(format[0]).flip();
+
+        try {
+            // Write to a temporary file first so a reader never sees a partial binary
+            File tmpFile = File.createTempFile(file.getName(), ".part", directory);
+
+            try {
+                try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE)) {
+                    while (header.hasRemaining()) {
+                        channel.write(header);
+                    }
+                    while (binary.hasRemaining()) {
+                        channel.write(binary);
+                    }
+                }
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to write the shader cache: " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Reads a whole resource with as few reads as possible. Files are read straight from a channel of the right size.
+     */
+    private static ByteBuffer readFully(URL url) throws IOException {
+        if (url.getProtocol().equals("file")) {
+            try {
+                File file = new File(url.toURI());
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                    ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+                    while (bytes.hasRemaining()) {
+                        if (channel.read(bytes) == -1) {
+                            break;
+                        }
+                    }
+                    bytes.flip();
+                    return bytes;
+                }
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // Fall through and read it as a stream
+            }
+        }
+
+        try (InputStream is = url.openStream();
+                ReadableByteChannel channel = Channels.newChannel(is)) {
+            ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            while (channel.read(bytes) != -1) {
+                if (bytes.hasRemaining() == false) {
+                    ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+                    bytes.flip();
+                    larger.put(bytes);
+                    bytes = larger;
+                }
+            }
+            bytes.flip();
+            return bytes;
+        }
+    }
+
+    /**
+     * Returns the shader directory of the current user (see UserCacheDirectory), or null if it isn't safe to load
+     * binaries from in which case they aren't saved at all.
+     */
+    public static File getDefaultDirectory() {
+        try {
+            return UserCacheDirectory.get(DEFAULT_DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("Unable to use the shader cache directory: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Deletes every shader and program made by this cache.
+     */
+    public void destroy() {
+        for (int shader : shadersBySource.values()) {
+            backend.deleteShader(shader);
+        }
+        for (int program : programs) {
+            backend.deleteProgram(program);
+        }
+        shadersBySource.clear();
+        programs.clear();
+        programsByKey.clear();
+    }
+
+    /**
+     * Number of programs that were loaded from a saved binary instead of being linked.
+     */
+    public int getBinaryLoadCount() {
+        return binaryLoadCount;
+    }
+
+    /**
+     * Number of shaders that were actually compiled. Shaders shared by source only count once.
+     */
+    public int getCompileCount() {
+        return compileCount;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Number of programs that were actually linked from source.
+     */
+    public int getLinkCount() {
+        return linkCount;
+    }
+
+    /**
+     * Returns a linked program made from two shader resources next to resourceClass. Attribute i of attributes is bound
+     * to location i before linking.
+     */
+    public int getProgram(Class<?> resourceClass, String vertexFilename, String fragmentFilename,
+            String... attributes) {
+        String vertexSource = readSource(resourceClass, vertexFilename);
+        String fragmentSource = readSource(resourceClass, fragmentFilename);
+
+        StringBuilder programKey = new StringBuilder();
+        programKey.append(vertexSource).append('\0').append(fragmentSource);
+        for (String attribute : attributes) {
+            programKey.append('\0').append(attribute);
+        }
+        String key = programKey.toString();
+        Integer cached = programsByKey.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        int program = backend.createProgram();
+        File binaryFile = null;
+
+        if (isBinarySupported() == true) {
+            binaryFile = new File(directory, getBinaryKey(vertexSource, fragmentSource, attributes) + ".bin");
+            if (loadBinary(program, binaryFile) == true) {
+                binaryLoadCount++;
+                programs.add(program);
+                programsByKey.put(key, program);
+                return program;
+            }
+            backend.setProgramBinaryRetrievable(program);
+        }
+
+        int vertexShader = compile(vertexFilename, vertexSource, GL20.GL_VERTEX_SHADER);
+        int fragmentShader = compile(fragmentFilename, fragmentSource, GL20.GL_FRAGMENT_SHADER);
+        backend.attachShader(program, vertexShader);
+        backend.attachShader(program, fragmentShader);
+        for (int i = 0; i < attributes.length; i++) {
+            backend.bindAttribLocation(program, i, attributes[i]);
+        }
+
+        linkCount++;
+        if (backend.linkProgram(program) == false) {
+            System.err.println(backend.getProgramInfoLog(program));
+            backend.deleteProgram(program);
+            throw new RuntimeException("Shader had linking errors!");
+        }
+
+        // The program keeps working without them and the shaders stay cached for other programs
+        backend.detachShader(program, vertexShader);
+        backend.detachShader(program, fragmentShader);
+
+        if (binaryFile != null) {
+            saveBinary(program, binaryFile);
+        }
+
+        programs.add(program);
+        programsByKey.put(key, program);
+        return program;
+    }
+
+    /**
+     * Returns a compiled shader from a resource next to resourceClass. Shaders with the same source are shared.
+     */
+    public int getShader(Class<?> resourceClass, String filename, int type) {
+        return compile(filename, readSource(resourceClass, filename), type);
+    }
+
+}
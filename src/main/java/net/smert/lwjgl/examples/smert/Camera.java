@@ -9,7 +9,12 @@ public class Camera {
     public final static float MAX_SAFE_PITCH = 90.0f;
     public final static float MAX_SAFE_ROLL = 30.0f;
 
+    private boolean headingDirty = false;
     private boolean invert = false;
+    private boolean pitchDirty = false;
+    private boolean rollDirty = false;
+    private boolean useQuaternion = false;
+    private boolean viewDirty = true;
     private float aspectRatio = 0.0f;
     private float fieldOfView = 0.0f;
     private float totalHeading = 0.0f;
@@ -23,6 +28,8 @@ public class Camera {
     private final Matrix3f tempMatrix;
     private final Matrix4f projectionMatrix;
     private final Matrix4f viewMatrix;
+    private final Quaternion4f deltaQuaternion;
+    private final Quaternion4f rotationQuaternion;
     private final Vector3f position;
     private final Vector3f viewDirection;
 
@@ -32,19 +39,95 @@ public class Camera {
         tempMatrix = new Matrix3f();
         projectionMatrix = new Matrix4f();
         viewMatrix = new Matrix4f();
+        deltaQuaternion = new Quaternion4f();
+        rotationQuaternion = new Quaternion4f();
         position = new Vector3f();
         viewDirection = new Vector3f();
     }
 
+    private float clampRotation(float delta, float current, float max) {
+        float total = current + delta;
+
+        if (total > max) {
+            return max - current;
+        }
+        if (total < -max) {
+            return -max - current;
+        }
+
+        return delta;
+    }
+
+    /**
+     * Same as rotate() but composes each delta with a single quaternion multiply and renormalizes cheaply. The Euler
+     * angles are only extracted when they are needed to clamp pitch and roll, or when a getter is called.
+     */
+    private void rotateQuaternion(float pitch, float heading, float roll) {
+        if (pitch != 0.0f) {
+            pitch = clampRotation(pitch, getPitch(), MAX_SAFE_PITCH);
+        }
+        if (roll != 0.0f) {
+            roll = clampRotation(roll, getRoll(), MAX_SAFE_ROLL);
+        }
+
+        if ((pitch == 0.0f) && (heading == 0.0f) && (roll == 0.0f)) {
+            return;
+        }
+
+        // Heading is around the world axis so it is applied on the left. Roll and pitch are around the camera's own
+        // axes so they are applied on the right.
+        if (heading != 0.0f) {
+            deltaQuaternion.fromAxisAngle(Vector3f.WORLD_Y_AXIS, heading);
+            rotationQuaternion.multiply(deltaQuaternion, rotationQuaternion);
+        }
+        if (roll != 0.0f) {
+            deltaQuaternion.fromAxisAngle(Vector3f.WORLD_Z_AXIS, roll);
+            rotationQuaternion.multiply(deltaQuaternion);
+        }
+        if (pitch != 0.0f) {
+            deltaQuaternion.fromAxisAngle(Vector3f.WORLD_X_AXIS, pitch);
+            rotationQuaternion.multiply(deltaQuaternion);
+        }
+
+        rotationQuaternion.renormalize();
+        rotationQuaternion.toMatrix3f(rotationMatrix);
+        viewDirection.setInvert(rotationMatrix.getZAxis());
+        headingDirty = true;
+        pitchDirty = true;
+        rollDirty = true;
+        viewDirty = true;
+    }
+
+    private void updateEulerAngles() {
+        totalHeading = rotationMatrix.getHeading();
+        totalPitch = rotationMatrix.getPitch();
+        totalRoll = rotationMatrix.getRoll();
+        headingDirty = false;
+        pitchDirty = false;
+        rollDirty = false;
+    }
+
     public float getHeading() {
+        if (headingDirty) {
+            totalHeading = rotationMatrix.getHeading();
+            headingDirty = false;
+        }
         return totalHeading;
     }
 
     public float getPitch() {
+        if (pitchDirty) {
+            totalPitch = rotationMatrix.getPitch();
+            pitchDirty = false;
+        }
         return totalPitch;
     }
 
     public float getRoll() {
+        if (rollDirty) {
+            totalRoll = rotationMatrix.getRoll();
+            rollDirty = false;
+        }
         return totalRoll;
     }
 
@@ -56,17 +139,24 @@ public class Camera {
         return viewMatrix;
     }
 
+    public boolean isUseQuaternion() {
+        return useQuaternion;
+    }
+
     public void lookAt(Vector3f position, Vector3f target, Vector3f up) {
         this.position.set(position);
         rotationMatrix.orthonormalize(position, target, up);
+        if (useQuaternion == true) {
+            rotationQuaternion.fromMatrix3f(rotationMatrix);
+        }
         viewDirection.setInvert(rotationMatrix.getZAxis());
-        totalHeading = rotationMatrix.getHeading();
-        totalPitch = rotationMatrix.getPitch();
-        totalRoll = rotationMatrix.getRoll();
+        updateEulerAngles();
+        viewDirty = true;
     }
 
     public void move(float dx, float dy, float dz) {
         position.add(dx, dy, dz);
+        viewDirty = true;
     }
 
     public void moveForward(float dx, float dy, float dz) {
@@ -85,6 +175,7 @@ public class Camera {
         position.addScaledVector(movementMatrix.getXAxis(), dx);
         position.addScaledVector(movementMatrix.getYAxis(), dy);
         position.addScaledVector(movementMatrix.getZAxis(), dz);
+        viewDirty = true;
     }
 
     public void rotate(float pitch, float heading, float roll) {
@@ -92,6 +183,11 @@ public class Camera {
             pitch = -pitch;
         }
 
+        if (useQuaternion == true) {
+            rotateQuaternion(pitch, heading, roll);
+            return;
+        }
+
         totalPitch += pitch;
 
         if (totalPitch > MAX_SAFE_PITCH) {
@@ -134,6 +230,13 @@ public class Camera {
         updateRotationMatrix();
     }
 
+    public void setUseQuaternion(boolean useQuaternion) {
+        if (useQuaternion == true) {
+            rotationQuaternion.fromMatrix3f(rotationMatrix).normalize();
+        }
+        this.useQuaternion = useQuaternion;
+    }
+
     public void setPerspectiveProjection(float fieldofviewy, float aspectratio, float znear, float zfar) {
         aspectRatio = aspectratio;
         fieldOfView = fieldofviewy;
@@ -144,14 +247,24 @@ public class Camera {
 
     public void updateRotationMatrix() {
         rotationMatrix.orthonormalize();
+        if (useQuaternion == true) {
+            rotationQuaternion.fromMatrix3f(rotationMatrix);
+        }
         viewDirection.setInvert(rotationMatrix.getZAxis());
-        totalHeading = rotationMatrix.getHeading();
-        totalPitch = rotationMatrix.getPitch();
-        totalRoll = rotationMatrix.getRoll();
+        updateEulerAngles();
+        viewDirty = true;
     }
 
+    /**
+     * Rebuilds the view matrix only if the camera has moved or rotated since the last call. Otherwise the view
+     * matrix keeps its version so anything caching on it can skip work.
+     */
     public void updateViewMatrix() {
+        if (viewDirty == false) {
+            return;
+        }
         viewMatrix.set(rotationMatrix, position);
+        viewDirty = false;
     }
 
 }
@@ -0,0 +1,111 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Counts every call before passing it on to another DrawBackend. The counts add up until reset() is called, so reset
+ * before drawing something and read them afterwards to get the real number of GL calls it made.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class CountingDrawBackend implements DrawBackend {
+
+    private int callCount;
+    private int drawCallCount;
+    private final DrawBackend backend;
+
+    public CountingDrawBackend(DrawBackend backend) {
+        this.backend = backend;
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        callCount++;
+        backend.bindBuffer(target, buffer);
+    }
+
+    @Override
+    public void colorPointer(int size, int type, int stride, long offset) {
+        callCount++;
+        backend.colorPointer(size, type, stride, offset);
+    }
+
+    @Override
+    public void disableClientState(int array) {
+        callCount++;
+        backend.disableClientState(array);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        callCount++;
+        backend.disableVertexAttribArray(index);
+    }
+
+    @Override
+    public void drawArrays(int mode, int first, int count) {
+        callCount++;
+        drawCallCount++;
+        backend.drawArrays(mode, first, count);
+    }
+
+    @Override
+    public void drawArraysInstanced(int mode, int first, int count, int instances) {
+        callCount++;
+        drawCallCount++;
+        backend.drawArraysInstanced(mode, first, count, instances);
+    }
+
+    @Override
+    public void enableClientState(int array) {
+        callCount++;
+        backend.enableClientState(array);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        callCount++;
+        backend.enableVertexAttribArray(index);
+    }
+
+    /**
+     * All calls since the last reset, draw calls included.
+     */
+    public int getCallCount() {
+        return callCount;
+    }
+
+    public int getDrawCallCount() {
+        return drawCallCount;
+    }
+
+    public void reset() {
+        callCount = 0;
+        drawCallCount = 0;
+    }
+
+    @Override
+    public void uniformMatrix4(int location, FloatBuffer matrix) {
+        callCount++;
+        backend.uniformMatrix4(location, matrix);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        callCount++;
+        backend.useProgram(program);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        callCount++;
+        backend.vertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void vertexPointer(int size, int type, int stride, long offset) {
+        callCount++;
+        backend.vertexPointer(size, type, stride, offset);
+    }
+
+}
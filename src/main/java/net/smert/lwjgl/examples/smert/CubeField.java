@@ -0,0 +1,163 @@
+package net.smert.lwjgl.examples.smert;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/**
+ * A square grid of cubes on the ground, drawn either one cube at a time or all at once with one instanced draw call.
+ * Every GL call goes through a DrawBackend and every matrix through a UniformMatrix4Cache, so wrapping the backend in a
+ * CountingDrawBackend gives the real number of calls for either way of drawing.
+ *
+ * The cube mesh is 36 vertices of GL_TRIANGLES with the colors and the positions in separate buffers. Drawing one cube
+ * at a time uses the fixed function pointers with the program set by setProgram. Instanced drawing uses the program
+ * set by setInstancedProgram, which must have its attributes at ATTRIBUTE_POSITION, ATTRIBUTE_COLOR and ATTRIBUTE_MODEL
+ * with a divisor of 1 on the 4 model locations.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class CubeField {
+
+    public final static float BOUNDING_RADIUS = 0.8660254f;                     // Half the diagonal of a unit cube
+    public final static float SPACING = 2.0f;
+    public final static float Y = -3.0f;
+    public final static int ATTRIBUTE_COLOR = 1;
+    public final static int ATTRIBUTE_MODEL = 2;                                // A mat4 uses 4 locations
+    public final static int ATTRIBUTE_POSITION = 0;
+
+    private int instancedProgram;
+    private int program;
+    private int uniformInstancedProjection;
+    private int uniformInstancedView;
+    private int uniformModel;
+    private int vboColors;
+    private int vboVertices;
+    private final float halfSize;
+    private final DrawBackend backend;
+    private final TransformInstances cubes;
+    private final UniformMatrix4Cache uniformMatrix4Cache;
+
+    public CubeField(int cubesPerSide, DrawBackend backend, UniformMatrix4Cache uniformMatrix4Cache) {
+        if (cubesPerSide < 0) {
+            throw new IllegalArgumentException("The cubes per side can't be negative!");
+        }
+        this.backend = backend;
+        this.uniformMatrix4Cache = uniformMatrix4Cache;
+        halfSize = Math.max(cubesPerSide - 1, 0) * SPACING * 0.5f;
+        cubes = new TransformInstances(cubesPerSide * cubesPerSide);
+
+        for (int z = 0; z < cubesPerSide; z++) {
+            for (int x = 0; x < cubesPerSide; x++) {
+                Transform4f transform = new Transform4f();
+                transform.setPosition(-halfSize + x * SPACING, Y, -halfSize + z * SPACING);
+                cubes.add(transform, BOUNDING_RADIUS);
+            }
+        }
+    }
+
+    private void drawCube(Transform4f transform) {
+        uniformMatrix4Cache.upload(program, uniformModel, transform);
+
+        backend.enableClientState(GL11.GL_COLOR_ARRAY);
+        backend.bindBuffer(GL15.GL_ARRAY_BUFFER, vboColors);
+        backend.colorPointer(4, GL11.GL_FLOAT, 0, 0);
+
+        backend.enableClientState(GL11.GL_VERTEX_ARRAY);
+        backend.bindBuffer(GL15.GL_ARRAY_BUFFER, vboVertices);
+        backend.vertexPointer(3, GL11.GL_FLOAT, 0, 0);
+
+        backend.drawArrays(GL11.GL_TRIANGLES, 0, 36);
+
+        backend.bindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+        backend.disableClientState(GL11.GL_VERTEX_ARRAY);
+        backend.disableClientState(GL11.GL_COLOR_ARRAY);
+    }
+
+    /**
+     * Draws instances from the buffer, as written by getCubes().pack() at offset, with the instanced program. The
+     * program set by setProgram is bound again afterwards.
+     */
+    public void drawInstanced(Matrix4f projection, Matrix4f view, int instanceBuffer, int offset, int instances) {
+        if (instances == 0) {
+            return;
+        }
+
+        backend.useProgram(instancedProgram);
+
+        uniformMatrix4Cache.upload(instancedProgram, uniformInstancedProjection, projection);
+        uniformMatrix4Cache.upload(instancedProgram, uniformInstancedView, view);
+
+        backend.enableVertexAttribArray(ATTRIBUTE_POSITION);
+        backend.bindBuffer(GL15.GL_ARRAY_BUFFER, vboVertices);
+        backend.vertexAttribPointer(ATTRIBUTE_POSITION, 3, GL11.GL_FLOAT, false, 0, 0);
+
+        backend.enableVertexAttribArray(ATTRIBUTE_COLOR);
+        backend.bindBuffer(GL15.GL_ARRAY_BUFFER, vboColors);
+        backend.vertexAttribPointer(ATTRIBUTE_COLOR, 4, GL11.GL_FLOAT, false, 0, 0);
+
+        // One column of the model matrix per location
+        backend.bindBuffer(GL15.GL_ARRAY_BUFFER, instanceBuffer);
+        for (int i = 0; i < 4; i++) {
+            backend.enableVertexAttribArray(ATTRIBUTE_MODEL + i);
+            backend.vertexAttribPointer(ATTRIBUTE_MODEL + i, 4, GL11.GL_FLOAT, false,
+                    TransformInstances.BYTES_PER_INSTANCE, offset + i * 16);
+        }
+
+        backend.drawArraysInstanced(GL11.GL_TRIANGLES, 0, 36, instances);
+
+        backend.bindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+        for (int i = 0; i < 4; i++) {
+            backend.disableVertexAttribArray(ATTRIBUTE_MODEL + i);
+        }
+        backend.disableVertexAttribArray(ATTRIBUTE_COLOR);
+        backend.disableVertexAttribArray(ATTRIBUTE_POSITION);
+
+        backend.useProgram(program);
+    }
+
+    /**
+     * Draws every cube inside the frustum with its own draw call. The program set by setProgram must be bound. Returns
+     * the number of cubes drawn.
+     */
+    public int drawPerCube(Frustum frustum) {
+        int drawn = 0;
+        for (int i = 0; i < cubes.getCount(); i++) {
+            Transform4f transform = cubes.getTransform(i);
+            if (frustum.isSphereVisible(transform.position.x, transform.position.y, transform.position.z,
+                    BOUNDING_RADIUS) == true) {
+                this.drawCube(transform);
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+
+    public TransformInstances getCubes() {
+        return cubes;
+    }
+
+    /**
+     * The distance from the center of the field to the centers of the outermost cubes.
+     */
+    public float getHalfSize() {
+        return halfSize;
+    }
+
+    public void setInstancedProgram(int program, int uniformProjection, int uniformView) {
+        instancedProgram = program;
+        uniformInstancedProjection = uniformProjection;
+        uniformInstancedView = uniformView;
+    }
+
+    public void setMesh(int vboColors, int vboVertices) {
+        this.vboColors = vboColors;
+        this.vboVertices = vboVertices;
+    }
+
+    public void setProgram(int program, int uniformModel) {
+        this.program = program;
+        this.uniformModel = uniformModel;
+    }
+
+}
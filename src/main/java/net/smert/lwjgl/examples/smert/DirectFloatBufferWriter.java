@@ -0,0 +1,129 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import org.lwjgl.MemoryUtil;
+
+/**
+ * Writes matrices straight into the memory behind a direct FloatBuffer using sun.misc.Unsafe, skipping the bounds
+ * check and position update of every FloatBuffer.put. Callers are responsible for checking the buffer has enough room.
+ *
+ * Unsafe is only reached through reflection so the build has no proprietary API warnings. Its putFloat is kept as a
+ * constant MethodHandle which the JIT compiles to the same store as a direct call.
+ *
+ * If Unsafe cannot be found, or the buffer is not direct or not in native byte order, canWrite returns false and the
+ * normal FloatBuffer methods must be used instead.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class DirectFloatBufferWriter {
+
+    private final static MethodHandle PUT_FLOAT = findPutFloat();
+
+    private DirectFloatBufferWriter() {
+    }
+
+    private static MethodHandle findPutFloat() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "putFloat", MethodType.methodType(void.class, long.class, float.class))
+                    .bindTo(unsafe);
+        } catch (Throwable t) {
+            System.err.println("DirectFloatBufferWriter - Unsafe is not available!");
+            return null;
+        }
+    }
+
+    private static void putFloat(long address, float value) {
+        try {
+            PUT_FLOAT.invokeExact(address, value);
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    public static boolean canWrite(FloatBuffer fb) {
+        return (PUT_FLOAT != null) && fb.isDirect() && (fb.order() == ByteOrder.nativeOrder());
+    }
+
+    public static boolean isAvailable() {
+        return PUT_FLOAT != null;
+    }
+
+    /**
+     * Writes the matrix to the address and returns the address just past it.
+     */
+    public static long put(Matrix4f m, long address) {
+        putFloat(address, m.d0);
+        putFloat(address + 4, m.d1);
+        putFloat(address + 8, m.d2);
+        putFloat(address + 12, m.d3);
+        putFloat(address + 16, m.d4);
+        putFloat(address + 20, m.d5);
+        putFloat(address + 24, m.d6);
+        putFloat(address + 28, m.d7);
+        putFloat(address + 32, m.d8);
+        putFloat(address + 36, m.d9);
+        putFloat(address + 40, m.d10);
+        putFloat(address + 44, m.d11);
+        putFloat(address + 48, m.d12);
+        putFloat(address + 52, m.d13);
+        putFloat(address + 56, m.d14);
+        putFloat(address + 60, m.d15);
+        return address + 64;
+    }
+
+    /**
+     * Writes the transform as a column major 4x4 matrix to the address and returns the address just past it.
+     */
+    public static long put(Transform4f t, long address) {
+        Matrix3f r = t.rotation;
+        Vector3f p = t.position;
+        putFloat(address, r.xAxis.x);
+        putFloat(address + 4, r.xAxis.y);
+        putFloat(address + 8, r.xAxis.z);
+        putFloat(address + 12, 0.0f);
+        putFloat(address + 16, r.yAxis.x);
+        putFloat(address + 20, r.yAxis.y);
+        putFloat(address + 24, r.yAxis.z);
+        putFloat(address + 28, 0.0f);
+        putFloat(address + 32, r.zAxis.x);
+        putFloat(address + 36, r.zAxis.y);
+        putFloat(address + 40, r.zAxis.z);
+        putFloat(address + 44, 0.0f);
+        putFloat(address + 48, p.x);
+        putFloat(address + 52, p.y);
+        putFloat(address + 56, p.z);
+        putFloat(address + 60, 1.0f);
+        return address + 64;
+    }
+
+    /**
+     * Writes every matrix starting at the current position of the buffer. The position is not changed.
+     */
+    public static void writeAll(Matrix4f[] matrices, FloatBuffer fb) {
+        long address = MemoryUtil.getAddress(fb);
+        for (int i = 0; i < matrices.length; i++) {
+            address = put(matrices[i], address);
+        }
+    }
+
+    /**
+     * Writes every transform starting at the current position of the buffer. The position is not changed.
+     */
+    public static void writeAll(Transform4f[] transforms, FloatBuffer fb) {
+        long address = MemoryUtil.getAddress(fb);
+        for (int i = 0; i < transforms.length; i++) {
+            address = put(transforms[i], address);
+        }
+    }
+
+}
@@ -0,0 +1,34 @@
+package net.smert.lwjgl.examples.smert;
+
+/**
+ * The OpenGL calls CubeField draws with. LWJGLDrawBackend is the real one and CountingDrawBackend counts the calls
+ * going through it, so the GL calls of a frame can be shown or measured without a context. Matrices are uploaded
+ * through the UniformMatrix4Cache.Uploader method.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public interface DrawBackend extends UniformMatrix4Cache.Uploader {
+
+    public void bindBuffer(int target, int buffer);
+
+    public void colorPointer(int size, int type, int stride, long offset);
+
+    public void disableClientState(int array);
+
+    public void disableVertexAttribArray(int index);
+
+    public void drawArrays(int mode, int first, int count);
+
+    public void drawArraysInstanced(int mode, int first, int count, int instances);
+
+    public void enableClientState(int array);
+
+    public void enableVertexAttribArray(int index);
+
+    public void useProgram(int program);
+
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset);
+
+    public void vertexPointer(int size, int type, int stride, long offset);
+
+}
@@ -0,0 +1,243 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Six view frustum planes extracted from a projection * view matrix, with culling tests for bounding spheres and axis
+ * aligned bounding boxes.
+ *
+ * The batch tests read bounds packed into float arrays and write the result into a bitset where bit (i & 63) of word
+ * (i >> 6) is set when object i is at least partially inside. They do not allocate. The parallel versions split the
+ * work on 64 object boundaries so no two tasks ever write the same word.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class Frustum {
+
+    public final static int AABB_STRIDE = 6;
+    public final static int PARALLEL_THRESHOLD = 8192;
+    public final static int PLANE_BOTTOM = 2;
+    public final static int PLANE_FAR = 5;
+    public final static int PLANE_LEFT = 0;
+    public final static int PLANE_NEAR = 4;
+    public final static int PLANE_RIGHT = 1;
+    public final static int PLANE_TOP = 3;
+    public final static int SPHERE_STRIDE = 4;
+
+    // Each plane is a, b, c, d where ax + by + cz + d >= 0 is inside
+    private final float[] planes;
+    private final Matrix4f viewProjectionMatrix;
+
+    public Frustum() {
+        planes = new float[24];
+        viewProjectionMatrix = new Matrix4f();
+    }
+
+    private void setPlane(int plane, float a, float b, float c, float d) {
+        float invmag = 1.0f / MathHelper.Sqrt(a * a + b * b + c * c);
+        int offset = plane * 4;
+        planes[offset + 0] = a * invmag;
+        planes[offset + 1] = b * invmag;
+        planes[offset + 2] = c * invmag;
+        planes[offset + 3] = d * invmag;
+    }
+
+    public static boolean isVisible(long[] visible, int index) {
+        return (visible[index >> 6] & (1L << index)) != 0;
+    }
+
+    public static int wordsForCount(int count) {
+        return (count + 63) >> 6;
+    }
+
+    public void cullAABBs(float[] aabbs, int count, long[] visible) {
+        cullAABBs(aabbs, 0, count, visible);
+    }
+
+    /**
+     * Tests the boxes from start (which must be a multiple of 64) up to end. Boxes are packed as min x, y, z then max
+     * x, y, z. Only the corner furthest along each plane normal is tested.
+     */
+    public void cullAABBs(float[] aabbs, int start, int end, long[] visible) {
+        final float[] p = planes;
+        for (int word = start >> 6, base = start; base < end; word++, base += 64) {
+            int last = Math.min(base + 64, end);
+            long bits = 0L;
+            for (int i = base; i < last; i++) {
+                int offset = i * AABB_STRIDE;
+                float minx = aabbs[offset], miny = aabbs[offset + 1], minz = aabbs[offset + 2];
+                float maxx = aabbs[offset + 3], maxy = aabbs[offset + 4], maxz = aabbs[offset + 5];
+                boolean inside = true;
+                for (int j = 0; j < 24; j += 4) {
+                    float a = p[j], b = p[j + 1], c = p[j + 2];
+                    float x = (a >= 0.0f) ? maxx : minx;
+                    float y = (b >= 0.0f) ? maxy : miny;
+                    float z = (c >= 0.0f) ? maxz : minz;
+                    if (a * x + b * y + c * z + p[j + 3] < 0.0f) {
+                        inside = false;
+                        break;
+                    }
+                }
+                if (inside) {
+                    bits |= 1L << i;
+                }
+            }
+            visible[word] = bits;
+        }
+    }
+
+    public void cullAABBs(ForkJoinPool pool, float[] aabbs, int count, long[] visible) {
+        if (count < PARALLEL_THRESHOLD) {
+            cullAABBs(aabbs, 0, count, visible);
+            return;
+        }
+        pool.invoke(new CullTask(this, aabbs, false, 0, count, visible));
+    }
+
+    public void cullSpheres(float[] spheres, int count, long[] visible) {
+        cullSpheres(spheres, 0, count, visible);
+    }
+
+    /**
+     * Tests the spheres from start (which must be a multiple of 64) up to end. Spheres are packed as x, y, z, radius.
+     */
+    public void cullSpheres(float[] spheres, int start, int end, long[] visible) {
+        final float[] p = planes;
+        final float a0 = p[0], b0 = p[1], c0 = p[2], d0 = p[3];
+        final float a1 = p[4], b1 = p[5], c1 = p[6], d1 = p[7];
+        final float a2 = p[8], b2 = p[9], c2 = p[10], d2 = p[11];
+        final float a3 = p[12], b3 = p[13], c3 = p[14], d3 = p[15];
+        final float a4 = p[16], b4 = p[17], c4 = p[18], d4 = p[19];
+        final float a5 = p[20], b5 = p[21], c5 = p[22], d5 = p[23];
+        for (int word = start >> 6, base = start; base < end; word++, base += 64) {
+            int last = Math.min(base + 64, end);
+            long bits = 0L;
+            for (int i = base; i < last; i++) {
+                int offset = i * SPHERE_STRIDE;
+                float x = spheres[offset], y = spheres[offset + 1], z = spheres[offset + 2];
+                float nr = -spheres[offset + 3];
+                // Non short circuiting & keeps the inner loop free of branches
+                boolean inside = (a0 * x + b0 * y + c0 * z + d0 >= nr)
+                        & (a1 * x + b1 * y + c1 * z + d1 >= nr)
+                        & (a2 * x + b2 * y + c2 * z + d2 >= nr)
+                        & (a3 * x + b3 * y + c3 * z + d3 >= nr)
+                        & (a4 * x + b4 * y + c4 * z + d4 >= nr)
+                        & (a5 * x + b5 * y + c5 * z + d5 >= nr);
+                if (inside) {
+                    bits |= 1L << i;
+                }
+            }
+            visible[word] = bits;
+        }
+    }
+
+    public void cullSpheres(ForkJoinPool pool, float[] spheres, int count, long[] visible) {
+        if (count < PARALLEL_THRESHOLD) {
+            cullSpheres(spheres, 0, count, visible);
+            return;
+        }
+        pool.invoke(new CullTask(this, spheres, true, 0, count, visible));
+    }
+
+    public float[] getPlanes() {
+        return planes;
+    }
+
+    public boolean isAABBVisible(float minx, float miny, float minz, float maxx, float maxy, float maxz) {
+        for (int j = 0; j < 24; j += 4) {
+            float a = planes[j], b = planes[j + 1], c = planes[j + 2];
+            float x = (a >= 0.0f) ? maxx : minx;
+            float y = (b >= 0.0f) ? maxy : miny;
+            float z = (c >= 0.0f) ? maxz : minz;
+            if (a * x + b * y + c * z + planes[j + 3] < 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isSphereVisible(float x, float y, float z, float radius) {
+        for (int j = 0; j < 24; j += 4) {
+            if (planes[j] * x + planes[j + 1] * y + planes[j + 2] * z + planes[j + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Frustum set(Camera camera) {
+        viewProjectionMatrix.multiply(camera.getProjectionMatrix(), camera.getViewMatrix());
+        return set(viewProjectionMatrix);
+    }
+
+    /**
+     * Extracts the planes from a combined projection * view matrix (Gribb and Hartmann). Planes are normalized so
+     * sphere tests can compare distances against the radius directly.
+     */
+    public Frustum set(Matrix4f m) {
+        // Rows of the column major matrix
+        float r0x = m.d0, r0y = m.d4, r0z = m.d8, r0w = m.d12;
+        float r1x = m.d1, r1y = m.d5, r1z = m.d9, r1w = m.d13;
+        float r2x = m.d2, r2y = m.d6, r2z = m.d10, r2w = m.d14;
+        float r3x = m.d3, r3y = m.d7, r3z = m.d11, r3w = m.d15;
+
+        setPlane(PLANE_LEFT, r3x + r0x, r3y + r0y, r3z + r0z, r3w + r0w);
+        setPlane(PLANE_RIGHT, r3x - r0x, r3y - r0y, r3z - r0z, r3w - r0w);
+        setPlane(PLANE_BOTTOM, r3x + r1x, r3y + r1y, r3z + r1z, r3w + r1w);
+        setPlane(PLANE_TOP, r3x - r1x, r3y - r1y, r3z - r1z, r3w - r1w);
+        setPlane(PLANE_NEAR, r3x + r2x, r3y + r2y, r3z + r2z, r3w + r2w);
+        setPlane(PLANE_FAR, r3x - r2x, r3y - r2y, r3z - r2z, r3w - r2w);
+
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Frustum:");
+        for (int j = 0; j < 24; j += 4) {
+            sb.append("\n{").append(planes[j]).append(" ").append(planes[j + 1]).append(" ")
+                    .append(planes[j + 2]).append(" ").append(planes[j + 3]).append("}");
+        }
+        return sb.toString();
+    }
+
+    private static class CullTask extends RecursiveAction {
+
+        private final boolean spheres;
+        private final int end;
+        private final int start;
+        private final float[] bounds;
+        private final long[] visible;
+        private final Frustum frustum;
+
+        public CullTask(Frustum frustum, float[] bounds, boolean spheres, int start, int end, long[] visible) {
+            this.frustum = frustum;
+            this.bounds = bounds;
+            this.spheres = spheres;
+            this.start = start;
+            this.end = end;
+            this.visible = visible;
+        }
+
+        @Override
+        protected void compute() {
+            int length = end - start;
+            if (length <= PARALLEL_THRESHOLD) {
+                if (spheres) {
+                    frustum.cullSpheres(bounds, start, end, visible);
+                } else {
+                    frustum.cullAABBs(bounds, start, end, visible);
+                }
+                return;
+            }
+            // Split on a 64 object boundary so each word of the bitset has a single writer
+            int middle = start + ((length >> 1) & ~63);
+            invokeAll(
+                    new CullTask(frustum, bounds, spheres, start, middle, visible),
+                    new CullTask(frustum, bounds, spheres, middle, end, visible));
+        }
+
+    }
+
+}
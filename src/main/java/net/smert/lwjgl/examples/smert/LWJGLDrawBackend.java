@@ -0,0 +1,76 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL31;
+
+/**
+ * DrawBackend for the current LWJGL context. Instanced drawing needs OpenGL 3.1.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class LWJGLDrawBackend implements DrawBackend {
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        GL15.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void colorPointer(int size, int type, int stride, long offset) {
+        GL11.glColorPointer(size, type, stride, offset);
+    }
+
+    @Override
+    public void disableClientState(int array) {
+        GL11.glDisableClientState(array);
+    }
+
+    @Override
+    public void disableVertexAttribArray(int index) {
+        GL20.glDisableVertexAttribArray(index);
+    }
+
+    @Override
+    public void drawArrays(int mode, int first, int count) {
+        GL11.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public void drawArraysInstanced(int mode, int first, int count, int instances) {
+        GL31.glDrawArraysInstanced(mode, first, count, instances);
+    }
+
+    @Override
+    public void enableClientState(int array) {
+        GL11.glEnableClientState(array);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        GL20.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void uniformMatrix4(int location, FloatBuffer matrix) {
+        GL20.glUniformMatrix4(location, false, matrix);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        GL20.glUseProgram(program);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        GL20.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void vertexPointer(int size, int type, int stride, long offset) {
+        GL11.glVertexPointer(size, type, stride, offset);
+    }
+
+}
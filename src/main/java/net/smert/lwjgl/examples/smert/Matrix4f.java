@@ -1,5 +1,6 @@
 package net.smert.lwjgl.examples.smert;
 
+import java.nio.BufferOverflowException;
 import java.nio.FloatBuffer;
 
 /**
@@ -8,6 +9,8 @@ import java.nio.FloatBuffer;
  */
 public class Matrix4f {
 
+    // Column major. Classes in this package read the elements directly for speed. Anything that writes them directly
+    // must also increment version, otherwise UniformMatrix4Cache keeps uploading the old matrix.
     float d0;
     float d1;
     float d2;
@@ -24,6 +27,7 @@ public class Matrix4f {
     float d13;
     float d14;
     float d15;
+    int version;
 
     public Matrix4f() {
         d0 = 1.0f;
@@ -44,6 +48,246 @@ public class Matrix4f {
         d15 = 1.0f;
     }
 
+    /**
+     * Returns a counter that changes every time this matrix is modified through one of its methods. Callers can
+     * remember it to skip work such as uniform uploads when the matrix has not changed.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public Matrix4f identity() {
+        setRow(0, 1.0f, 0.0f, 0.0f, 0.0f);
+        setRow(1, 0.0f, 1.0f, 0.0f, 0.0f);
+        setRow(2, 0.0f, 0.0f, 1.0f, 0.0f);
+        setRow(3, 0.0f, 0.0f, 0.0f, 1.0f);
+        return this;
+    }
+
+    public Matrix4f invert() {
+        return invert(this);
+    }
+
+    /**
+     * Sets this matrix to the inverse of m. m may be this matrix. If m is singular this matrix is not changed.
+     */
+    public Matrix4f invert(Matrix4f m) {
+        // Variables are named aRC for the row and column of the transposed matrix. Inverting the transpose and
+        // writing it back in the same order gives the inverse of the original.
+        float a00 = m.d0, a01 = m.d1, a02 = m.d2, a03 = m.d3;
+        float a10 = m.d4, a11 = m.d5, a12 = m.d6, a13 = m.d7;
+        float a20 = m.d8, a21 = m.d9, a22 = m.d10, a23 = m.d11;
+        float a30 = m.d12, a31 = m.d13, a32 = m.d14, a33 = m.d15;
+
+        float s0 = a00 * a11 - a10 * a01;
+        float s1 = a00 * a12 - a10 * a02;
+        float s2 = a00 * a13 - a10 * a03;
+        float s3 = a01 * a12 - a11 * a02;
+        float s4 = a01 * a13 - a11 * a03;
+        float s5 = a02 * a13 - a12 * a03;
+        float c0 = a20 * a31 - a30 * a21;
+        float c1 = a20 * a32 - a30 * a22;
+        float c2 = a20 * a33 - a30 * a23;
+        float c3 = a21 * a32 - a31 * a22;
+        float c4 = a21 * a33 - a31 * a23;
+        float c5 = a22 * a33 - a32 * a23;
+
+        float det = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+
+        if ((det > -MathHelper.ZERO_EPSILON) && (det < MathHelper.ZERO_EPSILON)) {
+            System.err.println("Matrix4f Invert - Singular Matrix!");
+            return this;
+        }
+
+        float invdet = 1.0f / det;
+
+        d0 = (a11 * c5 - a12 * c4 + a13 * c3) * invdet;
+        d1 = (-a01 * c5 + a02 * c4 - a03 * c3) * invdet;
+        d2 = (a31 * s5 - a32 * s4 + a33 * s3) * invdet;
+        d3 = (-a21 * s5 + a22 * s4 - a23 * s3) * invdet;
+        d4 = (-a10 * c5 + a12 * c2 - a13 * c1) * invdet;
+        d5 = (a00 * c5 - a02 * c2 + a03 * c1) * invdet;
+        d6 = (-a30 * s5 + a32 * s2 - a33 * s1) * invdet;
+        d7 = (a20 * s5 - a22 * s2 + a23 * s1) * invdet;
+        d8 = (a10 * c4 - a11 * c2 + a13 * c0) * invdet;
+        d9 = (-a00 * c4 + a01 * c2 - a03 * c0) * invdet;
+        d10 = (a30 * s4 - a31 * s2 + a33 * s0) * invdet;
+        d11 = (-a20 * s4 + a21 * s2 - a23 * s0) * invdet;
+        d12 = (-a10 * c3 + a11 * c1 - a12 * c0) * invdet;
+        d13 = (a00 * c3 - a01 * c1 + a02 * c0) * invdet;
+        d14 = (-a30 * s3 + a31 * s1 - a32 * s0) * invdet;
+        d15 = (a20 * s3 - a21 * s1 + a22 * s0) * invdet;
+        version++;
+        return this;
+    }
+
+    public Matrix4f invertAffine() {
+        return invertAffine(this);
+    }
+
+    /**
+     * Sets this matrix to the inverse of m, assuming the bottom row of m is {0 0 0 1}. Only the upper 3x3 is
+     * inverted and the translation is rotated back, which is much cheaper than invert(). m may be this matrix. If m
+     * is singular this matrix is not changed.
+     */
+    public Matrix4f invertAffine(Matrix4f m) {
+        float m0 = m.d0, m1 = m.d1, m2 = m.d2;
+        float m4 = m.d4, m5 = m.d5, m6 = m.d6;
+        float m8 = m.d8, m9 = m.d9, m10 = m.d10;
+        float m12 = m.d12, m13 = m.d13, m14 = m.d14;
+
+        float c0 = m5 * m10 - m6 * m9;
+        float c1 = m2 * m9 - m1 * m10;
+        float c2 = m1 * m6 - m2 * m5;
+
+        float det = m0 * c0 + m4 * c1 + m8 * c2;
+
+        if ((det > -MathHelper.ZERO_EPSILON) && (det < MathHelper.ZERO_EPSILON)) {
+            System.err.println("Matrix4f Invert Affine - Singular Matrix!");
+            return this;
+        }
+
+        float invdet = 1.0f / det;
+
+        float r0 = c0 * invdet;
+        float r1 = c1 * invdet;
+        float r2 = c2 * invdet;
+        float r4 = (m6 * m8 - m4 * m10) * invdet;
+        float r5 = (m0 * m10 - m2 * m8) * invdet;
+        float r6 = (m2 * m4 - m0 * m6) * invdet;
+        float r8 = (m4 * m9 - m5 * m8) * invdet;
+        float r9 = (m1 * m8 - m0 * m9) * invdet;
+        float r10 = (m0 * m5 - m1 * m4) * invdet;
+
+        d0 = r0;
+        d1 = r1;
+        d2 = r2;
+        d3 = 0.0f;
+        d4 = r4;
+        d5 = r5;
+        d6 = r6;
+        d7 = 0.0f;
+        d8 = r8;
+        d9 = r9;
+        d10 = r10;
+        d11 = 0.0f;
+        d12 = -(r0 * m12 + r4 * m13 + r8 * m14);
+        d13 = -(r1 * m12 + r5 * m13 + r9 * m14);
+        d14 = -(r2 * m12 + r6 * m13 + r10 * m14);
+        d15 = 1.0f;
+        version++;
+        return this;
+    }
+
+    public Matrix4f multiply(Matrix4f m) {
+        return multiply(this, m);
+    }
+
+    /**
+     * Sets this matrix to a * b. Either a or b may be this matrix.
+     */
+    public Matrix4f multiply(Matrix4f a, Matrix4f b) {
+        float r0 = a.d0 * b.d0 + a.d4 * b.d1 + a.d8 * b.d2 + a.d12 * b.d3;
+        float r1 = a.d1 * b.d0 + a.d5 * b.d1 + a.d9 * b.d2 + a.d13 * b.d3;
+        float r2 = a.d2 * b.d0 + a.d6 * b.d1 + a.d10 * b.d2 + a.d14 * b.d3;
+        float r3 = a.d3 * b.d0 + a.d7 * b.d1 + a.d11 * b.d2 + a.d15 * b.d3;
+        float r4 = a.d0 * b.d4 + a.d4 * b.d5 + a.d8 * b.d6 + a.d12 * b.d7;
+        float r5 = a.d1 * b.d4 + a.d5 * b.d5 + a.d9 * b.d6 + a.d13 * b.d7;
+        float r6 = a.d2 * b.d4 + a.d6 * b.d5 + a.d10 * b.d6 + a.d14 * b.d7;
+        float r7 = a.d3 * b.d4 + a.d7 * b.d5 + a.d11 * b.d6 + a.d15 * b.d7;
+        float r8 = a.d0 * b.d8 + a.d4 * b.d9 + a.d8 * b.d10 + a.d12 * b.d11;
+        float r9 = a.d1 * b.d8 + a.d5 * b.d9 + a.d9 * b.d10 + a.d13 * b.d11;
+        float r10 = a.d2 * b.d8 + a.d6 * b.d9 + a.d10 * b.d10 + a.d14 * b.d11;
+        float r11 = a.d3 * b.d8 + a.d7 * b.d9 + a.d11 * b.d10 + a.d15 * b.d11;
+        float r12 = a.d0 * b.d12 + a.d4 * b.d13 + a.d8 * b.d14 + a.d12 * b.d15;
+        float r13 = a.d1 * b.d12 + a.d5 * b.d13 + a.d9 * b.d14 + a.d13 * b.d15;
+        float r14 = a.d2 * b.d12 + a.d6 * b.d13 + a.d10 * b.d14 + a.d14 * b.d15;
+        float r15 = a.d3 * b.d12 + a.d7 * b.d13 + a.d11 * b.d14 + a.d15 * b.d15;
+
+        d0 = r0;
+        d1 = r1;
+        d2 = r2;
+        d3 = r3;
+        d4 = r4;
+        d5 = r5;
+        d6 = r6;
+        d7 = r7;
+        d8 = r8;
+        d9 = r9;
+        d10 = r10;
+        d11 = r11;
+        d12 = r12;
+        d13 = r13;
+        d14 = r14;
+        d15 = r15;
+        version++;
+        return this;
+    }
+
+    public Matrix4f multiplyAffine(Matrix4f m) {
+        return multiplyAffine(this, m);
+    }
+
+    /**
+     * Sets this matrix to a * b, assuming the bottom row of both is {0 0 0 1}. This skips a quarter of the work of
+     * multiply() and is valid for model, view and model view matrices but not projections. Either a or b may be this
+     * matrix.
+     */
+    public Matrix4f multiplyAffine(Matrix4f a, Matrix4f b) {
+        float r0 = a.d0 * b.d0 + a.d4 * b.d1 + a.d8 * b.d2;
+        float r1 = a.d1 * b.d0 + a.d5 * b.d1 + a.d9 * b.d2;
+        float r2 = a.d2 * b.d0 + a.d6 * b.d1 + a.d10 * b.d2;
+        float r4 = a.d0 * b.d4 + a.d4 * b.d5 + a.d8 * b.d6;
+        float r5 = a.d1 * b.d4 + a.d5 * b.d5 + a.d9 * b.d6;
+        float r6 = a.d2 * b.d4 + a.d6 * b.d5 + a.d10 * b.d6;
+        float r8 = a.d0 * b.d8 + a.d4 * b.d9 + a.d8 * b.d10;
+        float r9 = a.d1 * b.d8 + a.d5 * b.d9 + a.d9 * b.d10;
+        float r10 = a.d2 * b.d8 + a.d6 * b.d9 + a.d10 * b.d10;
+        float r12 = a.d0 * b.d12 + a.d4 * b.d13 + a.d8 * b.d14 + a.d12;
+        float r13 = a.d1 * b.d12 + a.d5 * b.d13 + a.d9 * b.d14 + a.d13;
+        float r14 = a.d2 * b.d12 + a.d6 * b.d13 + a.d10 * b.d14 + a.d14;
+
+        d0 = r0;
+        d1 = r1;
+        d2 = r2;
+        d3 = 0.0f;
+        d4 = r4;
+        d5 = r5;
+        d6 = r6;
+        d7 = 0.0f;
+        d8 = r8;
+        d9 = r9;
+        d10 = r10;
+        d11 = 0.0f;
+        d12 = r12;
+        d13 = r13;
+        d14 = r14;
+        d15 = 1.0f;
+        version++;
+        return this;
+    }
+
+    public Matrix4f set(Matrix4f m) {
+        d0 = m.d0;
+        d1 = m.d1;
+        d2 = m.d2;
+        d3 = m.d3;
+        d4 = m.d4;
+        d5 = m.d5;
+        d6 = m.d6;
+        d7 = m.d7;
+        d8 = m.d8;
+        d9 = m.d9;
+        d10 = m.d10;
+        d11 = m.d11;
+        d12 = m.d12;
+        d13 = m.d13;
+        d14 = m.d14;
+        d15 = m.d15;
+        version++;
+        return this;
+    }
+
     public Matrix4f set(Matrix3f r, Vector3f p) {
         d0 = r.xAxis.x;
         d1 = r.yAxis.x;
@@ -61,6 +305,72 @@ public class Matrix4f {
         d13 = -r.yAxis.dot(p);
         d14 = -r.zAxis.dot(p);
         d15 = 1.0f;
+        version++;
+        return this;
+    }
+
+    public Matrix4f set(Transform4f t) {
+        d0 = t.rotation.xAxis.x;
+        d1 = t.rotation.xAxis.y;
+        d2 = t.rotation.xAxis.z;
+        d3 = 0.0f;
+        d4 = t.rotation.yAxis.x;
+        d5 = t.rotation.yAxis.y;
+        d6 = t.rotation.yAxis.z;
+        d7 = 0.0f;
+        d8 = t.rotation.zAxis.x;
+        d9 = t.rotation.zAxis.y;
+        d10 = t.rotation.zAxis.z;
+        d11 = 0.0f;
+        d12 = t.position.x;
+        d13 = t.position.y;
+        d14 = t.position.z;
+        d15 = 1.0f;
+        version++;
+        return this;
+    }
+
+    /**
+     * Sets the view matrix of a first person camera at x, y, z. Heading turns around the Y axis and pitch looks up and
+     * down, both in degrees. The same as glRotatef(pitch, 1, 0, 0), glRotatef(360 - heading, 0, 1, 0) and
+     * glTranslatef(-x, -y, -z) on an identity matrix, which is how the NeHe lessons move the camera.
+     */
+    public Matrix4f setFpsView(float x, float y, float z, float heading, float pitch) {
+        float yaw = (360.0f - heading) * MathHelper.DEG_TO_RAD;
+        float cy = MathHelper.Cos(yaw), sy = MathHelper.Sin(yaw);
+        float cp = MathHelper.Cos(pitch * MathHelper.DEG_TO_RAD), sp = MathHelper.Sin(pitch * MathHelper.DEG_TO_RAD);
+
+        setRow(0, cy, 0.0f, sy, -(cy * x + sy * z));
+        setRow(1, sp * sy, cp, -sp * cy, -(sp * sy * x + cp * y - sp * cy * z));
+        setRow(2, -cp * sy, sp, cp * cy, -(-cp * sy * x + sp * y + cp * cy * z));
+        setRow(3, 0.0f, 0.0f, 0.0f, 1.0f);
+
+        return this;
+    }
+
+    public Matrix4f setFrustum(float left, float right, float bottom, float top, float znear, float zfar) {
+        float invdeltax = 1.0f / (right - left);
+        float invdeltay = 1.0f / (top - bottom);
+        float invdeltaz = 1.0f / (zfar - znear);
+
+        setRow(0, 2.0f * znear * invdeltax, 0.0f, (right + left) * invdeltax, 0.0f);
+        setRow(1, 0.0f, 2.0f * znear * invdeltay, (top + bottom) * invdeltay, 0.0f);
+        setRow(2, 0.0f, 0.0f, -(zfar + znear) * invdeltaz, -2.0f * znear * zfar * invdeltaz);
+        setRow(3, 0.0f, 0.0f, -1.0f, 0.0f);
+
+        return this;
+    }
+
+    public Matrix4f setOrthographic(float left, float right, float bottom, float top, float znear, float zfar) {
+        float invdeltax = 1.0f / (right - left);
+        float invdeltay = 1.0f / (top - bottom);
+        float invdeltaz = 1.0f / (zfar - znear);
+
+        setRow(0, 2.0f * invdeltax, 0.0f, 0.0f, -(right + left) * invdeltax);
+        setRow(1, 0.0f, 2.0f * invdeltay, 0.0f, -(top + bottom) * invdeltay);
+        setRow(2, 0.0f, 0.0f, -2.0f * invdeltaz, -(zfar + znear) * invdeltaz);
+        setRow(3, 0.0f, 0.0f, 0.0f, 1.0f);
+
         return this;
     }
 
@@ -110,9 +420,87 @@ public class Matrix4f {
                 throw new IllegalArgumentException("Invalid Row!");
         }
 
+        version++;
+
+        return this;
+    }
+
+    public Vector3f transform(Vector3f v, Vector3f out) {
+        out.set(
+                d0 * v.x + d4 * v.y + d8 * v.z + d12,
+                d1 * v.x + d5 * v.y + d9 * v.z + d13,
+                d2 * v.x + d6 * v.y + d10 * v.z + d14);
+        return out;
+    }
+
+    public Vector4f transform(Vector4f v, Vector4f out) {
+        out.set(
+                d0 * v.x + d4 * v.y + d8 * v.z + d12 * v.w,
+                d1 * v.x + d5 * v.y + d9 * v.z + d13 * v.w,
+                d2 * v.x + d6 * v.y + d10 * v.z + d14 * v.w,
+                d3 * v.x + d7 * v.y + d11 * v.z + d15 * v.w);
+        return out;
+    }
+
+    public Vector3f transformDirection(Vector3f v, Vector3f out) {
+        out.set(
+                d0 * v.x + d4 * v.y + d8 * v.z,
+                d1 * v.x + d5 * v.y + d9 * v.z,
+                d2 * v.x + d6 * v.y + d10 * v.z);
+        return out;
+    }
+
+    public Matrix4f transpose() {
+        return transpose(this);
+    }
+
+    /**
+     * Sets this matrix to the transpose of m. m may be this matrix.
+     */
+    public Matrix4f transpose(Matrix4f m) {
+        float t1 = m.d1, t2 = m.d2, t3 = m.d3, t6 = m.d6, t7 = m.d7, t11 = m.d11;
+        d0 = m.d0;
+        d1 = m.d4;
+        d2 = m.d8;
+        d3 = m.d12;
+        d4 = t1;
+        d5 = m.d5;
+        d6 = m.d9;
+        d7 = m.d13;
+        d8 = t2;
+        d9 = t6;
+        d10 = m.d10;
+        d11 = m.d14;
+        d12 = t3;
+        d13 = t7;
+        d14 = t11;
+        d15 = m.d15;
+        version++;
         return this;
     }
 
+    /**
+     * Writes the matrix at an absolute index without changing the position of the buffer.
+     */
+    public void put(FloatBuffer fbout, int offset) {
+        fbout.put(offset, d0);
+        fbout.put(offset + 1, d1);
+        fbout.put(offset + 2, d2);
+        fbout.put(offset + 3, d3);
+        fbout.put(offset + 4, d4);
+        fbout.put(offset + 5, d5);
+        fbout.put(offset + 6, d6);
+        fbout.put(offset + 7, d7);
+        fbout.put(offset + 8, d8);
+        fbout.put(offset + 9, d9);
+        fbout.put(offset + 10, d10);
+        fbout.put(offset + 11, d11);
+        fbout.put(offset + 12, d12);
+        fbout.put(offset + 13, d13);
+        fbout.put(offset + 14, d14);
+        fbout.put(offset + 15, d15);
+    }
+
     public void toFloatBuffer(FloatBuffer fbout) {
         fbout.put(d0);
         fbout.put(d1);
@@ -132,6 +520,29 @@ public class Matrix4f {
         fbout.put(d15);
     }
 
+    /**
+     * Writes every matrix starting at the current position and advances the position past them. Direct buffers in
+     * native byte order are written straight to memory when DirectFloatBufferWriter is available.
+     */
+    public static void writeAll(Matrix4f[] matrices, FloatBuffer fbout) {
+        int position = fbout.position();
+        int length = matrices.length * 16;
+
+        if (fbout.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+
+        if (DirectFloatBufferWriter.canWrite(fbout)) {
+            DirectFloatBufferWriter.writeAll(matrices, fbout);
+        } else {
+            for (int i = 0, offset = position; i < matrices.length; i++, offset += 16) {
+                matrices[i].put(fbout, offset);
+            }
+        }
+
+        fbout.position(position + length);
+    }
+
     @Override
     public String toString() {
         return "Matrix4f:\n"
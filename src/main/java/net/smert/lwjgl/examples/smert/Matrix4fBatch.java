@@ -0,0 +1,259 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Structure of arrays version of Matrix4f. Element dN of every matrix is stored in lane dN, using the same column
+ * major order as Matrix4f.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class Matrix4fBatch {
+
+    final int size;
+    final float[] d0;
+    final float[] d1;
+    final float[] d2;
+    final float[] d3;
+    final float[] d4;
+    final float[] d5;
+    final float[] d6;
+    final float[] d7;
+    final float[] d8;
+    final float[] d9;
+    final float[] d10;
+    final float[] d11;
+    final float[] d12;
+    final float[] d13;
+    final float[] d14;
+    final float[] d15;
+
+    public Matrix4fBatch(int size) {
+        this.size = size;
+        d0 = new float[size];
+        d1 = new float[size];
+        d2 = new float[size];
+        d3 = new float[size];
+        d4 = new float[size];
+        d5 = new float[size];
+        d6 = new float[size];
+        d7 = new float[size];
+        d8 = new float[size];
+        d9 = new float[size];
+        d10 = new float[size];
+        d11 = new float[size];
+        d12 = new float[size];
+        d13 = new float[size];
+        d14 = new float[size];
+        d15 = new float[size];
+        identity();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Matrix4f get(int index, Matrix4f out) {
+        out.d0 = d0[index];
+        out.d1 = d1[index];
+        out.d2 = d2[index];
+        out.d3 = d3[index];
+        out.d4 = d4[index];
+        out.d5 = d5[index];
+        out.d6 = d6[index];
+        out.d7 = d7[index];
+        out.d8 = d8[index];
+        out.d9 = d9[index];
+        out.d10 = d10[index];
+        out.d11 = d11[index];
+        out.d12 = d12[index];
+        out.d13 = d13[index];
+        out.d14 = d14[index];
+        out.d15 = d15[index];
+        out.version++;
+        return out;
+    }
+
+    public final Matrix4fBatch identity() {
+        for (int i = 0; i < size; i++) {
+            d0[i] = 1.0f;
+            d1[i] = 0.0f;
+            d2[i] = 0.0f;
+            d3[i] = 0.0f;
+            d4[i] = 0.0f;
+            d5[i] = 1.0f;
+            d6[i] = 0.0f;
+            d7[i] = 0.0f;
+            d8[i] = 0.0f;
+            d9[i] = 0.0f;
+            d10[i] = 1.0f;
+            d11[i] = 0.0f;
+            d12[i] = 0.0f;
+            d13[i] = 0.0f;
+            d14[i] = 0.0f;
+            d15[i] = 1.0f;
+        }
+        return this;
+    }
+
+    public Matrix4fBatch set(int index, Matrix4f m) {
+        d0[index] = m.d0;
+        d1[index] = m.d1;
+        d2[index] = m.d2;
+        d3[index] = m.d3;
+        d4[index] = m.d4;
+        d5[index] = m.d5;
+        d6[index] = m.d6;
+        d7[index] = m.d7;
+        d8[index] = m.d8;
+        d9[index] = m.d9;
+        d10[index] = m.d10;
+        d11[index] = m.d11;
+        d12[index] = m.d12;
+        d13[index] = m.d13;
+        d14[index] = m.d14;
+        d15[index] = m.d15;
+        return this;
+    }
+
+    public Matrix4fBatch set(int index, Transform4f t) {
+        Matrix3f r = t.rotation;
+        Vector3f p = t.position;
+        d0[index] = r.xAxis.x;
+        d1[index] = r.xAxis.y;
+        d2[index] = r.xAxis.z;
+        d3[index] = 0.0f;
+        d4[index] = r.yAxis.x;
+        d5[index] = r.yAxis.y;
+        d6[index] = r.yAxis.z;
+        d7[index] = 0.0f;
+        d8[index] = r.zAxis.x;
+        d9[index] = r.zAxis.y;
+        d10[index] = r.zAxis.z;
+        d11[index] = 0.0f;
+        d12[index] = p.x;
+        d13[index] = p.y;
+        d14[index] = p.z;
+        d15[index] = 1.0f;
+        return this;
+    }
+
+    /**
+     * Multiplies a single matrix by every matrix in b (out[i] = a * b[i]). This is the common case of applying a
+     * shared view or view projection matrix to a batch of model matrices. out may be b.
+     */
+    public static Matrix4fBatch multiply(Matrix4f a, Matrix4fBatch b, Matrix4fBatch out) {
+        checkSize(b, out);
+        final float a0 = a.d0, a1 = a.d1, a2 = a.d2, a3 = a.d3;
+        final float a4 = a.d4, a5 = a.d5, a6 = a.d6, a7 = a.d7;
+        final float a8 = a.d8, a9 = a.d9, a10 = a.d10, a11 = a.d11;
+        final float a12 = a.d12, a13 = a.d13, a14 = a.d14, a15 = a.d15;
+        for (int i = 0; i < b.size; i++) {
+            float b0 = b.d0[i], b1 = b.d1[i], b2 = b.d2[i], b3 = b.d3[i];
+            out.d0[i] = a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+            out.d1[i] = a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+            out.d2[i] = a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+            out.d3[i] = a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+        }
+        for (int i = 0; i < b.size; i++) {
+            float b4 = b.d4[i], b5 = b.d5[i], b6 = b.d6[i], b7 = b.d7[i];
+            out.d4[i] = a0 * b4 + a4 * b5 + a8 * b6 + a12 * b7;
+            out.d5[i] = a1 * b4 + a5 * b5 + a9 * b6 + a13 * b7;
+            out.d6[i] = a2 * b4 + a6 * b5 + a10 * b6 + a14 * b7;
+            out.d7[i] = a3 * b4 + a7 * b5 + a11 * b6 + a15 * b7;
+        }
+        for (int i = 0; i < b.size; i++) {
+            float b8 = b.d8[i], b9 = b.d9[i], b10 = b.d10[i], b11 = b.d11[i];
+            out.d8[i] = a0 * b8 + a4 * b9 + a8 * b10 + a12 * b11;
+            out.d9[i] = a1 * b8 + a5 * b9 + a9 * b10 + a13 * b11;
+            out.d10[i] = a2 * b8 + a6 * b9 + a10 * b10 + a14 * b11;
+            out.d11[i] = a3 * b8 + a7 * b9 + a11 * b10 + a15 * b11;
+        }
+        for (int i = 0; i < b.size; i++) {
+            float b12 = b.d12[i], b13 = b.d13[i], b14 = b.d14[i], b15 = b.d15[i];
+            out.d12[i] = a0 * b12 + a4 * b13 + a8 * b14 + a12 * b15;
+            out.d13[i] = a1 * b12 + a5 * b13 + a9 * b14 + a13 * b15;
+            out.d14[i] = a2 * b12 + a6 * b13 + a10 * b14 + a14 * b15;
+            out.d15[i] = a3 * b12 + a7 * b13 + a11 * b14 + a15 * b15;
+        }
+        return out;
+    }
+
+    /**
+     * Transforms every point in v by the matching matrix (w is assumed to be 1). out may be v.
+     */
+    public Vector3fBatch transform(Vector3fBatch v, Vector3fBatch out) {
+        checkSize(v, out);
+        final float[] vx = v.x, vy = v.y, vz = v.z;
+        final float[] ox = out.x, oy = out.y, oz = out.z;
+        for (int i = 0; i < size; i++) {
+            float x = vx[i], y = vy[i], z = vz[i];
+            ox[i] = d0[i] * x + d4[i] * y + d8[i] * z + d12[i];
+            oy[i] = d1[i] * x + d5[i] * y + d9[i] * z + d13[i];
+            oz[i] = d2[i] * x + d6[i] * y + d10[i] * z + d14[i];
+        }
+        return out;
+    }
+
+    /**
+     * Transforms every point in v by a single matrix (w is assumed to be 1). out may be v.
+     */
+    public static Vector3fBatch transform(Matrix4f m, Vector3fBatch v, Vector3fBatch out) {
+        if (out.size < v.size) {
+            throw new IllegalArgumentException("Batch sizes do not match!");
+        }
+        final float m0 = m.d0, m1 = m.d1, m2 = m.d2;
+        final float m4 = m.d4, m5 = m.d5, m6 = m.d6;
+        final float m8 = m.d8, m9 = m.d9, m10 = m.d10;
+        final float m12 = m.d12, m13 = m.d13, m14 = m.d14;
+        final float[] vx = v.x, vy = v.y, vz = v.z;
+        final float[] ox = out.x, oy = out.y, oz = out.z;
+        for (int i = 0; i < v.size; i++) {
+            float x = vx[i], y = vy[i], z = vz[i];
+            ox[i] = m0 * x + m4 * y + m8 * z + m12;
+            oy[i] = m1 * x + m5 * y + m9 * z + m13;
+            oz[i] = m2 * x + m6 * y + m10 * z + m14;
+        }
+        return out;
+    }
+
+    public Matrix4fBatch toFloatBuffer(FloatBuffer fbout) {
+        for (int i = 0; i < size; i++) {
+            fbout.put(d0[i]);
+            fbout.put(d1[i]);
+            fbout.put(d2[i]);
+            fbout.put(d3[i]);
+            fbout.put(d4[i]);
+            fbout.put(d5[i]);
+            fbout.put(d6[i]);
+            fbout.put(d7[i]);
+            fbout.put(d8[i]);
+            fbout.put(d9[i]);
+            fbout.put(d10[i]);
+            fbout.put(d11[i]);
+            fbout.put(d12[i]);
+            fbout.put(d13[i]);
+            fbout.put(d14[i]);
+            fbout.put(d15[i]);
+        }
+        return this;
+    }
+
+    private void checkSize(Vector3fBatch v, Vector3fBatch out) {
+        if ((v.size < size) || (out.size < size)) {
+            throw new IllegalArgumentException("Batch sizes do not match!");
+        }
+    }
+
+    private static void checkSize(Matrix4fBatch b, Matrix4fBatch out) {
+        if (out.size < b.size) {
+            throw new IllegalArgumentException("Batch sizes do not match!");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Matrix4fBatch: {size: " + size + "}";
+    }
+
+}
@@ -1,15 +1,21 @@
 package net.smert.lwjgl.examples.smert;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.buffer.IndexedMesh;
+import net.smert.lwjgl.examples.buffer.VertexFormat;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
 import org.lwjgl.input.Mouse;
 import org.lwjgl.opengl.ContextAttribs;
+import org.lwjgl.opengl.ContextCapabilities;
 import org.lwjgl.opengl.Display;
 import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
+import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GLContext;
 import org.lwjgl.opengl.PixelFormat;
 import org.lwjgl.util.glu.GLU;
 
@@ -23,26 +29,39 @@ public class OpenGL_1_5_Vertex_Buffer_Objects_Interleaved {
     private final static float PI_OVER_180 = (float) Math.PI / 180.0f;
     private final static String WINDOW_TITLE = "OpenGL 1.5 Vertex Buffer Objects Interleaved";
 
+    private boolean configDebugMode = false;
     private boolean exampleRunning;
     private int fps;
+    private int indexTypeCubeWithQuadsAndDifferentColorsPerVertex;
+    private int indexTypeCubeWithQuads;
+    private int indexTypeCubeWithTriangles;
     private int vboCubeWithQuadsAndDifferentColorsPerVertexColorsAndVertices;
     private int vboCubeWithQuadsColorsAndVertices;
     private int vboCubeWithTrianglesColorsAndVertices;
+    private int vboiCubeWithQuadsAndDifferentColorsPerVertex;
+    private int vboiCubeWithQuads;
+    private int vboiCubeWithTriangles;
     private long lastSecond;
     private long lastTime;
 
     private Vector3f camPostion;
     private Vector3f camRotation;
+    private VertexFormat vertexFormat;
 
     /**
      * @param args the command line arguments
      */
     public static void main(String[] args) {
         OpenGL_1_5_Vertex_Buffer_Objects_Interleaved example = new OpenGL_1_5_Vertex_Buffer_Objects_Interleaved();
-        example.start();
+        example.start(args);
     }
 
-    public void start() {
+    public void start(String[] args) {
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("debug") == true) {
+                configDebugMode = true;
+            }
+        }
         createWindow();
         initCamera();
         initGL();
@@ -128,6 +147,17 @@ public class OpenGL_1_5_Vertex_Buffer_Objects_Interleaved {
     }
 
     private void mainLoop() {
+        // Colors as normalized bytes and positions as half floats make a 12 byte vertex instead of 28 bytes of floats.
+        // glVertexPointer only takes half floats with OpenGL 3.0 or ARB_half_float_vertex, otherwise use floats.
+        ContextCapabilities capabilities = GLContext.getCapabilities();
+        int positionType = GL11.GL_FLOAT;
+        if ((capabilities.OpenGL30 == true) || (capabilities.GL_ARB_half_float_vertex == true)) {
+            positionType = GL30.GL_HALF_FLOAT;
+        }
+        vertexFormat = new VertexFormat()
+                .addColor(4, GL11.GL_UNSIGNED_BYTE, true)
+                .addPosition(3, positionType);
+
         createVBOCubeWithQuads();
         createVBOCubeWithQuadsAndDifferentColorsPerVertex();
         createVBOCubeWithTriangles();
@@ -142,9 +172,13 @@ public class OpenGL_1_5_Vertex_Buffer_Objects_Interleaved {
 
             input(delta);
             updateCamera();
-            renderVBOOfTrianglesWithDrawArrays(vboCubeWithTrianglesColorsAndVertices, -2.0f, 0.0f, 0.0f);
-            renderVBOOfQuadsWithDrawArrays(vboCubeWithQuadsColorsAndVertices, 2.0f, 0.0f, 0.0f);
-            renderVBOOfQuadsWithDrawArrays(vboCubeWithQuadsAndDifferentColorsPerVertexColorsAndVertices, 0.0f, 2.0f, 0.0f);
+            renderVBOWithDrawElements(vboCubeWithTrianglesColorsAndVertices, vboiCubeWithTriangles,
+                    indexTypeCubeWithTriangles, -2.0f, 0.0f, 0.0f);
+            renderVBOWithDrawElements(vboCubeWithQuadsColorsAndVertices, vboiCubeWithQuads, indexTypeCubeWithQuads,
+                    2.0f, 0.0f, 0.0f);
+            renderVBOWithDrawElements(vboCubeWithQuadsAndDifferentColorsPerVertexColorsAndVertices,
+                    vboiCubeWithQuadsAndDifferentColorsPerVertex, indexTypeCubeWithQuadsAndDifferentColorsPerVertex,
+                    0.0f, 2.0f, 0.0f);
             updateFPS();
 
             Display.update();
@@ -156,285 +190,315 @@ public class OpenGL_1_5_Vertex_Buffer_Objects_Interleaved {
     }
 
     private void createVBOCubeWithTriangles() {
-        FloatBuffer floatBuffer = BufferUtils.createFloatBuffer(384);
+        FloatBuffer colorFloatBuffer = BufferUtils.createFloatBuffer(192);
+        FloatBuffer vertexFloatBuffer = BufferUtils.createFloatBuffer(192);
 
         // Front
         Vector4f frontColor1 = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f);
 
-        frontColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        frontColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        frontColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        frontColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        frontColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        frontColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         Vector4f frontColor2 = new Vector4f(0.5f, 0.0f, 0.0f, 1.0f);
 
-        frontColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        frontColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        frontColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        frontColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        frontColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        frontColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Back
         Vector4f backColor1 = new Vector4f(0.0f, 1.0f, 1.0f, 1.0f);
 
-        backColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        backColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        backColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        backColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        backColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        backColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         Vector4f backColor2 = new Vector4f(0.0f, 0.5f, 0.5f, 1.0f);
 
-        backColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        backColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        backColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        backColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        backColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        backColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Left
         Vector4f leftColor1 = new Vector4f(0.0f, 1.0f, 0.0f, 1.0f);
 
-        leftColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        leftColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        leftColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        leftColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        leftColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        leftColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         Vector4f leftColor2 = new Vector4f(0.0f, 0.5f, 0.0f, 1.0f);
 
-        leftColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        leftColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        leftColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        leftColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        leftColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        leftColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Right
         Vector4f rightColor1 = new Vector4f(1.0f, 0.0f, 1.0f, 1.0f);
 
-        rightColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        rightColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        rightColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        rightColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        rightColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        rightColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         Vector4f rightColor2 = new Vector4f(0.5f, 0.0f, 0.5f, 1.0f);
 
-        rightColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        rightColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        rightColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        rightColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        rightColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        rightColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Top
         Vector4f topColor1 = new Vector4f(0.0f, 0.0f, 1.0f, 1.0f);
 
-        topColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        topColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        topColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        topColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        topColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        topColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         Vector4f topColor2 = new Vector4f(0.0f, 0.0f, 0.5f, 1.0f);
 
-        topColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        topColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        topColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        topColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        topColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        topColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Bottom
         Vector4f bottomColor1 = new Vector4f(1.0f, 1.0f, 0.0f, 1.0f);
 
-        bottomColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        bottomColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        bottomColor1.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        bottomColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        bottomColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        bottomColor1.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         Vector4f bottomColor2 = new Vector4f(0.5f, 0.5f, 0.0f, 1.0f);
 
-        bottomColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        bottomColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        bottomColor2.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        bottomColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        bottomColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        bottomColor2.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
-        floatBuffer.flip();
+        colorFloatBuffer.flip();
+        vertexFloatBuffer.flip();
 
         vboCubeWithTrianglesColorsAndVertices = GL15.glGenBuffers();
+        vboiCubeWithTriangles = GL15.glGenBuffers();
 
-        setBufferData(vboCubeWithTrianglesColorsAndVertices, floatBuffer);
+        indexTypeCubeWithTriangles = setBufferData(vboCubeWithTrianglesColorsAndVertices, vboiCubeWithTriangles,
+                vertexFormat.pack(36, colorFloatBuffer, vertexFloatBuffer), 36, GL11.GL_TRIANGLES);
     }
 
     private void createVBOCubeWithQuads() {
-        FloatBuffer floatBuffer = BufferUtils.createFloatBuffer(384);
+        FloatBuffer colorFloatBuffer = BufferUtils.createFloatBuffer(192);
+        FloatBuffer vertexFloatBuffer = BufferUtils.createFloatBuffer(192);
 
         // Front
         Vector4f frontColor = new Vector4f(1.0f, 0.0f, 0.0f, 1.0f);
 
-        frontColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        frontColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        frontColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        frontColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        frontColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        frontColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        frontColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        frontColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Back
         Vector4f backColor = new Vector4f(0.0f, 1.0f, 1.0f, 1.0f);
 
-        backColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        backColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        backColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        backColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        backColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        backColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        backColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        backColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Left
         Vector4f leftColor = new Vector4f(0.0f, 1.0f, 0.0f, 1.0f);
 
-        leftColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        leftColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        leftColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        leftColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        leftColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        leftColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        leftColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        leftColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Right
         Vector4f rightColor = new Vector4f(1.0f, 0.0f, 1.0f, 1.0f);
 
-        rightColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        rightColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        rightColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        rightColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        rightColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        rightColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        rightColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        rightColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Top
         Vector4f topColor = new Vector4f(0.0f, 0.0f, 1.0f, 1.0f);
 
-        topColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        topColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        topColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        topColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        topColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        topColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        topColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        topColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Bottom
         Vector4f bottomColor = new Vector4f(1.0f, 1.0f, 0.0f, 1.0f);
 
-        bottomColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        bottomColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        bottomColor.toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        bottomColor.toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        bottomColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        bottomColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        bottomColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        bottomColor.toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
-        floatBuffer.flip();
+        colorFloatBuffer.flip();
+        vertexFloatBuffer.flip();
 
         vboCubeWithQuadsColorsAndVertices = GL15.glGenBuffers();
+        vboiCubeWithQuads = GL15.glGenBuffers();
 
-        setBufferData(vboCubeWithQuadsColorsAndVertices, floatBuffer);
+        indexTypeCubeWithQuads = setBufferData(vboCubeWithQuadsColorsAndVertices, vboiCubeWithQuads,
+                vertexFormat.pack(24, colorFloatBuffer, vertexFloatBuffer), 24, GL11.GL_QUADS);
     }
 
     private void createVBOCubeWithQuadsAndDifferentColorsPerVertex() {
-        FloatBuffer floatBuffer = BufferUtils.createFloatBuffer(384);
+        FloatBuffer colorFloatBuffer = BufferUtils.createFloatBuffer(192);
+        FloatBuffer vertexFloatBuffer = BufferUtils.createFloatBuffer(192);
 
         // Front
-        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Back
-        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Left
-        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Right
-        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
+        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Top
-        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(floatBuffer);
+        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 0.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, 0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
 
         // Bottom
-        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(floatBuffer);
-        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(floatBuffer);
-
-        floatBuffer.flip();
+        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, -0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(1.0f, 0.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+        new Vector4f(0.0f, 1.0f, 1.0f, 1.0f).toFloatBuffer(colorFloatBuffer);
+        new Vector3f(-0.5f, -0.5f, 0.5f).toFloatBuffer(vertexFloatBuffer);
+
+        colorFloatBuffer.flip();
+        vertexFloatBuffer.flip();
 
         vboCubeWithQuadsAndDifferentColorsPerVertexColorsAndVertices = GL15.glGenBuffers();
+        vboiCubeWithQuadsAndDifferentColorsPerVertex = GL15.glGenBuffers();
 
-        setBufferData(vboCubeWithQuadsAndDifferentColorsPerVertexColorsAndVertices, floatBuffer);
+        indexTypeCubeWithQuadsAndDifferentColorsPerVertex = setBufferData(
+                vboCubeWithQuadsAndDifferentColorsPerVertexColorsAndVertices,
+                vboiCubeWithQuadsAndDifferentColorsPerVertex,
+                vertexFormat.pack(24, colorFloatBuffer, vertexFloatBuffer), 24, GL11.GL_QUADS);
     }
 
-    public void setBufferData(int vboid, FloatBuffer floatBuffer) {
+    /**
+     * Returns the index type of the mesh, which depends on how many vertices were left after sharing.
+     */
+    public int setBufferData(int vboid, int vboiid, ByteBuffer byteBuffer, int vertexCount, int mode) {
+        // Share the vertices that are exactly the same and order the triangles for the vertex cache. Quads become two
+        // triangles each.
+        IndexedMesh mesh = IndexedMesh.build(byteBuffer, vertexCount, vertexFormat.getStride(), mode, true);
+        if (configDebugMode == true) {
+            System.out.println("Cube: " + mesh.getStatistics());
+        }
+
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboid);
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, floatBuffer, GL15.GL_STATIC_DRAW);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, mesh.getVertices(), GL15.GL_STATIC_DRAW);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, vboiid);
+        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, mesh.getIndices(), GL15.GL_STATIC_DRAW);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
+
+        return mesh.getIndexType();
     }
 
     private float getDelta() {
@@ -534,48 +598,26 @@ public class OpenGL_1_5_Vertex_Buffer_Objects_Interleaved {
         GL11.glTranslatef(-camPostion.getX(), camPostion.getY(), -camPostion.getZ());
     }
 
-    private void renderVBOOfQuadsWithDrawArrays(int vboColorAndVertex, float x, float y, float z) {
-        GL11.glPushMatrix();
-
-        GL11.glTranslatef(x, y, z);
-
-        GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
-        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
-
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboColorAndVertex);
-
-        GL11.glColorPointer(4, GL11.GL_FLOAT, 28, 0);
-        GL11.glVertexPointer(3, GL11.GL_FLOAT, 28, 16);
-
-        GL11.glDrawArrays(GL11.GL_QUADS, 0, 24);
-
-        GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
-
-        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
-        GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
-
-        GL11.glPopMatrix();
-    }
-
-    private void renderVBOOfTrianglesWithDrawArrays(int vboColorAndVertex, float x, float y, float z) {
+    private void renderVBOWithDrawElements(int vboColorAndVertex, int vboIndices, int indexType, float x, float y,
+            float z) {
         GL11.glPushMatrix();
 
         GL11.glTranslatef(x, y, z);
 
-        GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
-        GL11.glEnableClientState(GL11.GL_VERTEX_ARRAY);
+        vertexFormat.enableClientStates();
 
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboColorAndVertex);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, vboIndices);
 
-        GL11.glColorPointer(4, GL11.GL_FLOAT, 28, 0);
-        GL11.glVertexPointer(3, GL11.GL_FLOAT, 28, 16);
+        vertexFormat.setClientStatePointers(0);
 
-        GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, 36);
+        // Every cube is 12 triangles after the quads were split
+        GL11.glDrawElements(GL11.GL_TRIANGLES, 36, indexType, 0);
 
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
 
-        GL11.glDisableClientState(GL11.GL_VERTEX_ARRAY);
-        GL11.glDisableClientState(GL11.GL_COLOR_ARRAY);
+        vertexFormat.disableClientStates();
 
         GL11.glPopMatrix();
     }
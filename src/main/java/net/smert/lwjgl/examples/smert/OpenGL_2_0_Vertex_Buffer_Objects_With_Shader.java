@@ -1,10 +1,7 @@
 package net.smert.lwjgl.examples.smert;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.shader.ShaderCache;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
@@ -30,7 +27,6 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader {
 
     private boolean exampleRunning;
     private int fps;
-    private int fsId = 0;
     private int pId = 0;
     private int vboCubeWithQuadsAndDifferentColorsPerVertexColors;
     private int vboCubeWithQuadsAndDifferentColorsPerVertexVertices;
@@ -38,10 +34,10 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader {
     private int vboCubeWithQuadsVertices;
     private int vboCubeWithTrianglesColors;
     private int vboCubeWithTrianglesVertices;
-    private int vsId = 0;
     private long lastSecond;
     private long lastTime;
 
+    private ShaderCache shaderCache;
     private Vector3f camPostion;
     private Vector3f camRotation;
 
@@ -122,19 +118,8 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader {
     }
 
     private void initShader() {
-        vsId = this.loadShader("opengl_2_0.vsh", GL20.GL_VERTEX_SHADER);
-        fsId = this.loadShader("opengl_2_0.fsh", GL20.GL_FRAGMENT_SHADER);
-
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        GL20.glLinkProgram(pId);
-
-        if (GL20.glGetProgrami(pId, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(pId, 8192));
-            throw new RuntimeException("Shader had linking errors!");
-        }
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "opengl_2_0.vsh", "opengl_2_0.fsh");
 
         GL20.glValidateProgram(pId);
 
@@ -144,36 +129,6 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader {
         }
     }
 
-    public int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
-
-        try {
-            InputStream is = this.getClass().getResourceAsStream(filename);
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-            String line;
-            while ((line = br.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            br.close();
-        } catch (IOException | NullPointerException e) {
-            System.err.println("Could not read file: " + filename);
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        int shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
-
-        if (GL20.glGetShaderi(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(shaderID, 8192));
-            throw new RuntimeException("Shader \"" + filename + "\" had compile errors!");
-        }
-
-        return shaderID;
-    }
-
     private void initModelViewMatrix() {
         GL11.glMatrixMode(GL11.GL_MODELVIEW);
         GL11.glLoadIdentity();
@@ -222,6 +177,7 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader {
         }
 
         Mouse.setGrabbed(false);
+        shaderCache.destroy();
         Display.destroy();
     }
 
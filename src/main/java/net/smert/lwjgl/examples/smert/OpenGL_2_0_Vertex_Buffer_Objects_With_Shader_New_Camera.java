@@ -1,10 +1,9 @@
 package net.smert.lwjgl.examples.smert;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.buffer.StreamingBuffer;
+import net.smert.lwjgl.examples.shader.ShaderCache;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
@@ -15,6 +14,8 @@ import org.lwjgl.opengl.DisplayMode;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
+import org.lwjgl.opengl.GL33;
+import org.lwjgl.opengl.GLContext;
 import org.lwjgl.opengl.PixelFormat;
 
 /**
@@ -23,14 +24,23 @@ import org.lwjgl.opengl.PixelFormat;
  */
 public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
 
+    private final static int CUBE_FIELD_SIDE = 100;                             // 10000 cubes
     private final static float MOUSE_POLL = 1.0f / 125.0f;
     private final static String WINDOW_TITLE = "OpenGL 2.0 Vertex Buffer Objects With Shader New Camera";
 
+    private boolean cubeFieldInstanced = false;
     private boolean exampleRunning;
     private boolean fixRoll = false;
+    private boolean instancedKeyDown = false;
+    private boolean instancingSupported = false;
+    private int cubeFieldDrawCalls;
+    private int cubeFieldDrawn;
+    private int cubeFieldGLCalls;
     private int fps;
-    private int fsId = 0;
     private int pId = 0;
+    private int pInstancedId = 0;
+    private int uniformInstancedProjection;
+    private int uniformInstancedView;
     private int uniformModel;
     private int uniformProjecton;
     private int uniformView;
@@ -40,15 +50,19 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
     private int vboCubeWithQuadsVertices;
     private int vboCubeWithTrianglesColors;
     private int vboCubeWithTrianglesVertices;
-    private int vsId = 0;
     private long lastSecond;
     private long lastTime;
 
     private Camera camera;
-    private FloatBuffer matrix4FloatBuffer;
+    private CountingDrawBackend drawBackend;
+    private CubeField cubeField;
+    private Frustum frustum;
+    private ShaderCache shaderCache;
+    private StreamingBuffer instanceBuffer;
     private Transform4f cubeWithQuadsAndDifferentColorsPerVertexVerticesTransform;
     private Transform4f cubeWithQuadsVerticesTransform;
     private Transform4f cubeWithTrianglesVerticesTransform;
+    private UniformMatrix4Cache uniformMatrix4Cache;
 
     /**
      * @param args the command line arguments
@@ -119,19 +133,8 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
     }
 
     private void initShader() {
-        vsId = this.loadShader("opengl_2_0_cam.vsh", GL20.GL_VERTEX_SHADER);
-        fsId = this.loadShader("opengl_2_0_cam.fsh", GL20.GL_FRAGMENT_SHADER);
-
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        GL20.glLinkProgram(pId);
-
-        if (GL20.glGetProgrami(pId, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(pId, 8192));
-            throw new RuntimeException("Shader had linking errors!");
-        }
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "opengl_2_0_cam.vsh", "opengl_2_0_cam.fsh");
 
         GL20.glValidateProgram(pId);
 
@@ -143,36 +146,24 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
         uniformModel = GL20.glGetUniformLocation(pId, "uModel");
         uniformProjecton = GL20.glGetUniformLocation(pId, "uProjection");
         uniformView = GL20.glGetUniformLocation(pId, "uView");
-    }
-
-    public int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
 
-        try {
-            InputStream is = this.getClass().getResourceAsStream(filename);
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-            String line;
-            while ((line = br.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            br.close();
-        } catch (IOException | NullPointerException e) {
-            System.err.println("Could not read file: " + filename);
-            e.printStackTrace();
-            System.exit(-1);
+        // Instancing needs per instance attributes which came with OpenGL 3.3 (glDrawArraysInstanced is 3.1)
+        instancingSupported = GLContext.getCapabilities().OpenGL33;
+        if (instancingSupported == false) {
+            System.out.println("Instancing is not supported. The cube field is not drawn.");
+            return;
         }
 
-        int shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
+        pInstancedId = shaderCache.getProgram(this.getClass(), "opengl_2_0_cam_instanced.vsh", "opengl_2_0_cam.fsh",
+                "aPosition", "aColor", "aModel");
+        uniformInstancedProjection = GL20.glGetUniformLocation(pInstancedId, "uProjection");
+        uniformInstancedView = GL20.glGetUniformLocation(pInstancedId, "uView");
+        cubeFieldInstanced = true;
 
-        if (GL20.glGetShaderi(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(shaderID, 8192));
-            throw new RuntimeException("Shader \"" + filename + "\" had compile errors!");
+        // The divisor is attribute state, only the instanced program uses these locations
+        for (int i = 0; i < 4; i++) {
+            GL33.glVertexAttribDivisor(CubeField.ATTRIBUTE_MODEL + i, 1);
         }
-
-        return shaderID;
     }
 
     private void initTimer() {
@@ -189,10 +180,13 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
     }
 
     private void mainLoop() {
-        matrix4FloatBuffer = BufferUtils.createFloatBuffer(16);
+        drawBackend = new CountingDrawBackend(new LWJGLDrawBackend());
+        frustum = new Frustum();
+        uniformMatrix4Cache = new UniformMatrix4Cache(drawBackend);
         createVBOCubeWithQuads();
         createVBOCubeWithQuadsAndDifferentColorsPerVertex();
         createVBOCubeWithTriangles();
+        createCubeField();
         Mouse.setGrabbed(true);
         exampleRunning = true;
 
@@ -209,9 +203,29 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
         }
 
         Mouse.setGrabbed(false);
+        if (instanceBuffer != null) {
+            instanceBuffer.destroy();
+        }
+        shaderCache.destroy();
         Display.destroy();
     }
 
+    private void createCubeField() {
+        // Drawing 10000 cubes one at a time is only worth it to compare against instancing
+        if (instancingSupported == false) {
+            return;
+        }
+
+        cubeField = new CubeField(CUBE_FIELD_SIDE, drawBackend, uniformMatrix4Cache);
+        cubeField.setMesh(vboCubeWithTrianglesColors, vboCubeWithTrianglesVertices);
+        cubeField.setProgram(pId, uniformModel);
+        cubeField.setInstancedProgram(pInstancedId, uniformInstancedProjection, uniformInstancedView);
+
+        // Room for every cube in each frame of the ring
+        instanceBuffer = new StreamingBuffer(GL15.GL_ARRAY_BUFFER, cubeField.getCubes().getMaxSize());
+        System.out.println("Instance Buffer Mode: " + StreamingBuffer.getModeName(instanceBuffer.getMode()));
+    }
+
     private void createVBOCubeWithTriangles() {
         FloatBuffer colorFloatBuffer = BufferUtils.createFloatBuffer(192);
         FloatBuffer vertexFloatBuffer = BufferUtils.createFloatBuffer(192);
@@ -584,6 +598,14 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
         if (Keyboard.isKeyDown(Keyboard.KEY_C) == true) {
             fixRoll = true;
         }
+        if (Keyboard.isKeyDown(Keyboard.KEY_I) == true) {
+            if ((instancedKeyDown == false) && (instancingSupported == true)) {
+                cubeFieldInstanced = !cubeFieldInstanced;
+            }
+            instancedKeyDown = true;
+        } else {
+            instancedKeyDown = false;
+        }
 
         if (fixRoll) {
             float roll = camera.getRoll();
@@ -609,19 +631,22 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
         }
     }
 
+    private boolean isCubeVisible(Transform4f transform) {
+        return frustum.isSphereVisible(
+                transform.position.x, transform.position.y, transform.position.z, CubeField.BOUNDING_RADIUS);
+    }
+
     private void render() {
         GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
         GL11.glLoadIdentity();
 
         GL20.glUseProgram(pId);
 
-        camera.getProjectionMatrix().toFloatBuffer(matrix4FloatBuffer);
-        matrix4FloatBuffer.flip();
-        GL20.glUniformMatrix4(uniformProjecton, false, matrix4FloatBuffer);
+        // Only uploaded when the camera has changed since the last frame
+        uniformMatrix4Cache.upload(pId, uniformProjecton, camera.getProjectionMatrix());
+        uniformMatrix4Cache.upload(pId, uniformView, camera.getViewMatrix());
 
-        camera.getViewMatrix().toFloatBuffer(matrix4FloatBuffer);
-        matrix4FloatBuffer.flip();
-        GL20.glUniformMatrix4(uniformView, false, matrix4FloatBuffer);
+        frustum.set(camera);
 
         renderVBOOfTrianglesWithDrawArrays(
                 vboCubeWithTrianglesColors, vboCubeWithTrianglesVertices, cubeWithTrianglesVerticesTransform);
@@ -630,13 +655,46 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
                 vboCubeWithQuadsAndDifferentColorsPerVertexColors, vboCubeWithQuadsAndDifferentColorsPerVertexVertices,
                 cubeWithQuadsAndDifferentColorsPerVertexVerticesTransform);
 
+        if (cubeField != null) {
+            if (cubeFieldInstanced == true) {
+                renderCubeFieldInstanced();
+            } else {
+                renderCubeFieldPerCube();
+            }
+        }
+
         GL20.glUseProgram(0);
     }
 
+    private void renderCubeFieldInstanced() {
+        // Only the visible cubes are written so the instance count is also the number drawn
+        ByteBuffer instanceData = instanceBuffer.map();
+        int instances = cubeField.getCubes().pack(frustum, instanceData);
+        int offset = instanceBuffer.unmap();
+
+        drawBackend.reset();
+        cubeField.drawInstanced(camera.getProjectionMatrix(), camera.getViewMatrix(), instanceBuffer.getId(), offset,
+                instances);
+        instanceBuffer.fence();
+
+        cubeFieldDrawCalls = drawBackend.getDrawCallCount();
+        cubeFieldDrawn = instances;
+        cubeFieldGLCalls = drawBackend.getCallCount() + instanceBuffer.getCallCount();
+    }
+
+    private void renderCubeFieldPerCube() {
+        drawBackend.reset();
+        cubeFieldDrawn = cubeField.drawPerCube(frustum);
+        cubeFieldDrawCalls = drawBackend.getDrawCallCount();
+        cubeFieldGLCalls = drawBackend.getCallCount();
+    }
+
     private void renderVBOOfQuadsWithDrawArrays(int vboColor, int vboVertex, Transform4f transform) {
-        transform.toFloatBuffer(matrix4FloatBuffer);
-        matrix4FloatBuffer.flip();
-        GL20.glUniformMatrix4(uniformModel, false, matrix4FloatBuffer);
+        if (isCubeVisible(transform) == false) {
+            return;
+        }
+
+        uniformMatrix4Cache.upload(pId, uniformModel, transform);
 
         GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboColor);
@@ -655,9 +713,11 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
     }
 
     private void renderVBOOfTrianglesWithDrawArrays(int vboColor, int vboVertex, Transform4f transform) {
-        transform.toFloatBuffer(matrix4FloatBuffer);
-        matrix4FloatBuffer.flip();
-        GL20.glUniformMatrix4(uniformModel, false, matrix4FloatBuffer);
+        if (isCubeVisible(transform) == false) {
+            return;
+        }
+
+        uniformMatrix4Cache.upload(pId, uniformModel, transform);
 
         GL11.glEnableClientState(GL11.GL_COLOR_ARRAY);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboColor);
@@ -677,7 +737,11 @@ public class OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera {
 
     private void updateFPS() {
         if (getTime() - lastSecond > getTimerResolution()) {
-            Display.setTitle(WINDOW_TITLE + " FPS: " + fps);
+            Display.setTitle(WINDOW_TITLE + " FPS: " + fps + " Uniform Cache Hits: " + uniformMatrix4Cache.getHits()
+                    + " Misses: " + uniformMatrix4Cache.getMisses() + " Cubes: " + cubeFieldDrawn + " Draw Calls: "
+                    + cubeFieldDrawCalls + " GL Calls: " + cubeFieldGLCalls
+                    + ((cubeFieldInstanced == true) ? " (Instanced)" : " (Per Cube)"));
+            uniformMatrix4Cache.resetStatistics();
             fps = 0;
             lastSecond += getTimerResolution();
         }
@@ -1,10 +1,10 @@
 package net.smert.lwjgl.examples.smert;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.buffer.IndexedMesh;
+import net.smert.lwjgl.examples.buffer.VertexFormat;
+import net.smert.lwjgl.examples.shader.ShaderCache;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
@@ -28,42 +28,52 @@ public class OpenGL_3_0_Vertex_Array_Objects {
     private final static float MOUSE_POLL = 1.0f / 125.0f;
     private final static String WINDOW_TITLE = "OpenGL 3.0 Vertex Array Objects";
 
+    private boolean configDebugMode = false;
     private boolean exampleRunning;
     private boolean fixRoll = false;
     private int fps;
-    private int fsId = 0;
+    private int indexTypeCubeWithTriangles;
+    private int indexTypeCubeWithTriangles2;
+    private int indexTypeCubeWithQuadsAndDifferentColorsPerVertex;
     private int pId = 0;
-    private int uniformModel;
-    private int uniformProjecton;
-    private int uniformView;
+    private int uniformModelViewProjection;
     private int vaoCubeWithTriangles;
     private int vaoCubeWithTriangles2;
     private int vaoCubeWithQuadsAndDifferentColorsPerVertex;
-    private int vboCubeWithTrianglesColors;
-    private int vboCubeWithTrianglesVertices;
-    private int vboCubeWithTriangles2Colors;
-    private int vboCubeWithTriangles2Vertices;
-    private int vboCubeWithQuadsAndDifferentColorsPerVertexColors;
-    private int vboCubeWithQuadsAndDifferentColorsPerVertexVertices;
-    private int vsId = 0;
+    private int vboiCubeWithTriangles;
+    private int vboiCubeWithTriangles2;
+    private int vboiCubeWithQuadsAndDifferentColorsPerVertex;
+    private int vboCubeWithTriangles;
+    private int vboCubeWithTriangles2;
+    private int vboCubeWithQuadsAndDifferentColorsPerVertex;
     private long lastSecond;
     private long lastTime;
 
     private Camera camera;
     private FloatBuffer matrix4FloatBuffer;
+    private Matrix4f modelMatrix;
+    private Matrix4f modelViewProjectionMatrix;
+    private Matrix4f viewProjectionMatrix;
+    private ShaderCache shaderCache;
     private Transform4f cubeWithTrianglesAndDifferentColorsPerVertexVerticesTransform;
     private Transform4f cubeWithTriangles2VerticesTransform;
     private Transform4f cubeWithTrianglesVerticesTransform;
+    private VertexFormat vertexFormat;
 
     /**
      * @param args the command line arguments
      */
     public static void main(String[] args) {
         OpenGL_3_0_Vertex_Array_Objects example = new OpenGL_3_0_Vertex_Array_Objects();
-        example.start();
+        example.start(args);
     }
 
-    public void start() {
+    public void start(String[] args) {
+        for (String arg : args) {
+            if (arg.equalsIgnoreCase("debug") == true) {
+                configDebugMode = true;
+            }
+        }
         createWindow();
         initCamera();
         initGL();
@@ -120,22 +130,9 @@ public class OpenGL_3_0_Vertex_Array_Objects {
     }
 
     private void initShader() {
-        vsId = this.loadShader("opengl_3_3.vsh", GL20.GL_VERTEX_SHADER);
-        fsId = this.loadShader("opengl_3_3.fsh", GL20.GL_FRAGMENT_SHADER);
-
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        GL20.glBindAttribLocation(pId, 0, "in_Color");
-        GL20.glBindAttribLocation(pId, 1, "in_Position");
-
-        GL20.glLinkProgram(pId);
-
-        if (GL20.glGetProgrami(pId, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(pId, 8192));
-            throw new RuntimeException("Shader had linking errors!");
-        }
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "opengl_3_3_mvp.vsh", "opengl_3_3.fsh",
+                "in_Color", "in_Position");
 
         GL20.glValidateProgram(pId);
 
@@ -144,39 +141,7 @@ public class OpenGL_3_0_Vertex_Array_Objects {
             throw new RuntimeException("Shader had validate errors!");
         }
 
-        uniformModel = GL20.glGetUniformLocation(pId, "uModel");
-        uniformProjecton = GL20.glGetUniformLocation(pId, "uProjection");
-        uniformView = GL20.glGetUniformLocation(pId, "uView");
-    }
-
-    public int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
-
-        try {
-            InputStream is = this.getClass().getResourceAsStream(filename);
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-            String line;
-            while ((line = br.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            br.close();
-        } catch (IOException | NullPointerException e) {
-            System.err.println("Could not read file: " + filename);
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        int shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
-
-        if (GL20.glGetShaderi(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(shaderID, 8192));
-            throw new RuntimeException("Shader \"" + filename + "\" had compile errors!");
-        }
-
-        return shaderID;
+        uniformModelViewProjection = GL20.glGetUniformLocation(pId, "uModelViewProjection");
     }
 
     private void initTimer() {
@@ -200,23 +165,35 @@ public class OpenGL_3_0_Vertex_Array_Objects {
         cubeWithTrianglesAndDifferentColorsPerVertexVerticesTransform = new Transform4f();
         cubeWithTrianglesAndDifferentColorsPerVertexVerticesTransform.setPosition(0.0f, 2.0f, 0.0f);
 
-        int[] vaoResult = new int[3];
+        // Attribute 0 is in_Color and attribute 1 is in_Position, the same order the shader was linked with. Normalized
+        // bytes and half floats make a 12 byte vertex instead of 28 bytes of floats.
+        vertexFormat = new VertexFormat()
+                .addColor(4, GL11.GL_UNSIGNED_BYTE, true)
+                .addPosition(3, GL30.GL_HALF_FLOAT);
+
+        int[] vaoResult = new int[4];
         createVAOCubeWithTriangles(vaoResult);
         vaoCubeWithTriangles = vaoResult[0];
-        vboCubeWithTrianglesColors = vaoResult[1];
-        vboCubeWithTrianglesVertices = vaoResult[2];
+        vboCubeWithTriangles = vaoResult[1];
+        vboiCubeWithTriangles = vaoResult[2];
+        indexTypeCubeWithTriangles = vaoResult[3];
         createVAOCubeWithTriangles(vaoResult);
         vaoCubeWithTriangles2 = vaoResult[0];
-        vboCubeWithTriangles2Colors = vaoResult[1];
-        vboCubeWithTriangles2Vertices = vaoResult[2];
+        vboCubeWithTriangles2 = vaoResult[1];
+        vboiCubeWithTriangles2 = vaoResult[2];
+        indexTypeCubeWithTriangles2 = vaoResult[3];
         createVAOCubeWithTrianglesAndDifferentColorsPerVertex(vaoResult);
         vaoCubeWithQuadsAndDifferentColorsPerVertex = vaoResult[0];
-        vboCubeWithQuadsAndDifferentColorsPerVertexColors = vaoResult[1];
-        vboCubeWithQuadsAndDifferentColorsPerVertexVertices = vaoResult[2];
+        vboCubeWithQuadsAndDifferentColorsPerVertex = vaoResult[1];
+        vboiCubeWithQuadsAndDifferentColorsPerVertex = vaoResult[2];
+        indexTypeCubeWithQuadsAndDifferentColorsPerVertex = vaoResult[3];
 
         Mouse.setGrabbed(true);
         exampleRunning = true;
         matrix4FloatBuffer = BufferUtils.createFloatBuffer(16);
+        modelMatrix = new Matrix4f();
+        modelViewProjectionMatrix = new Matrix4f();
+        viewProjectionMatrix = new Matrix4f();
 
         while (exampleRunning) {
             float delta = getDelta();
@@ -233,6 +210,7 @@ public class OpenGL_3_0_Vertex_Array_Objects {
         }
 
         Mouse.setGrabbed(false);
+        shaderCache.destroy();
         Display.destroy();
     }
 
@@ -460,6 +438,9 @@ public class OpenGL_3_0_Vertex_Array_Objects {
         createVAO(result, colorFloatBuffer, vertexFloatBuffer);
     }
 
+    /**
+     * Fills result with the vertex array object, the vertex buffer, the index buffer and the index type of the mesh.
+     */
     public void createVAO(int[] result, FloatBuffer colorFloatBuffer, FloatBuffer vertexFloatBuffer) {
         result[0] = GL30.glGenVertexArrays();
         GL30.glBindVertexArray(result[0]);
@@ -467,16 +448,28 @@ public class OpenGL_3_0_Vertex_Array_Objects {
         result[1] = GL15.glGenBuffers();
         result[2] = GL15.glGenBuffers();
 
-        setBufferData(result[1], colorFloatBuffer, 0, 4);
-        setBufferData(result[2], vertexFloatBuffer, 1, 3);
+        // Interleave the colors and vertices into one buffer, then share the vertices that are exactly the same
+        IndexedMesh mesh = IndexedMesh.build(vertexFormat.pack(36, colorFloatBuffer, vertexFloatBuffer), 36,
+                vertexFormat.getStride(), GL11.GL_TRIANGLES, true);
+        if (configDebugMode == true) {
+            System.out.println("Cube: " + mesh.getStatistics());
+        }
+        result[3] = mesh.getIndexType();
+
+        setBufferData(result[1], mesh.getVertices());
+
+        // The element array binding is part of the vertex array object
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, result[2]);
+        GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, mesh.getIndices(), GL15.GL_STATIC_DRAW);
 
         GL30.glBindVertexArray(0);
+        GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, 0);
     }
 
-    public void setBufferData(int vboid, FloatBuffer floatBuffer, int index, int size) {
+    public void setBufferData(int vboid, ByteBuffer byteBuffer) {
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vboid);
-        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, floatBuffer, GL15.GL_STATIC_DRAW);
-        GL20.glVertexAttribPointer(index, size, GL11.GL_FLOAT, false, 0, 0);
+        GL15.glBufferData(GL15.GL_ARRAY_BUFFER, byteBuffer, GL15.GL_STATIC_DRAW);
+        vertexFormat.setAttributePointers(0);
         GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
     }
 
@@ -579,36 +572,34 @@ public class OpenGL_3_0_Vertex_Array_Objects {
 
         GL20.glUseProgram(pId);
 
-        camera.getProjectionMatrix().toFloatBuffer(matrix4FloatBuffer);
-        matrix4FloatBuffer.flip();
-        GL20.glUniformMatrix4(uniformProjecton, false, matrix4FloatBuffer);
-
-        camera.getViewMatrix().toFloatBuffer(matrix4FloatBuffer);
-        matrix4FloatBuffer.flip();
-        GL20.glUniformMatrix4(uniformView, false, matrix4FloatBuffer);
+        // Combine projection and view once per frame instead of once per vertex in the shader
+        viewProjectionMatrix.multiply(camera.getProjectionMatrix(), camera.getViewMatrix());
 
-        renderVBOOfTrianglesWithDrawArrays(vaoCubeWithTriangles, cubeWithTrianglesVerticesTransform);
-        renderVBOOfTrianglesWithDrawArrays(vaoCubeWithTriangles2, cubeWithTriangles2VerticesTransform);
-        renderVBOOfTrianglesWithDrawArrays(
-                vaoCubeWithQuadsAndDifferentColorsPerVertex, cubeWithTrianglesAndDifferentColorsPerVertexVerticesTransform);
+        renderVBOOfTrianglesWithDrawElements(vaoCubeWithTriangles, indexTypeCubeWithTriangles,
+                cubeWithTrianglesVerticesTransform);
+        renderVBOOfTrianglesWithDrawElements(vaoCubeWithTriangles2, indexTypeCubeWithTriangles2,
+                cubeWithTriangles2VerticesTransform);
+        renderVBOOfTrianglesWithDrawElements(vaoCubeWithQuadsAndDifferentColorsPerVertex,
+                indexTypeCubeWithQuadsAndDifferentColorsPerVertex,
+                cubeWithTrianglesAndDifferentColorsPerVertexVerticesTransform);
 
         GL20.glUseProgram(0);
     }
 
-    private void renderVBOOfTrianglesWithDrawArrays(int vaoID, Transform4f transform) {
-        transform.toFloatBuffer(matrix4FloatBuffer);
+    private void renderVBOOfTrianglesWithDrawElements(int vaoID, int indexType, Transform4f transform) {
+        modelMatrix.set(transform);
+        modelViewProjectionMatrix.multiply(viewProjectionMatrix, modelMatrix);
+        modelViewProjectionMatrix.toFloatBuffer(matrix4FloatBuffer);
         matrix4FloatBuffer.flip();
-        GL20.glUniformMatrix4(uniformModel, false, matrix4FloatBuffer);
+        GL20.glUniformMatrix4(uniformModelViewProjection, false, matrix4FloatBuffer);
 
         GL30.glBindVertexArray(vaoID);
 
-        GL20.glEnableVertexAttribArray(0);
-        GL20.glEnableVertexAttribArray(1);
+        vertexFormat.enableAttributes();
 
-        GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, 36);
+        GL11.glDrawElements(GL11.GL_TRIANGLES, 36, indexType, 0);
 
-        GL20.glDisableVertexAttribArray(1);
-        GL20.glDisableVertexAttribArray(0);
+        vertexFormat.disableAttributes();
 
         GL30.glBindVertexArray(0);
     }
@@ -1,10 +1,7 @@
 package net.smert.lwjgl.examples.smert;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.FloatBuffer;
+import net.smert.lwjgl.examples.shader.ShaderCache;
 import org.lwjgl.BufferUtils;
 import org.lwjgl.LWJGLException;
 import org.lwjgl.input.Keyboard;
@@ -30,7 +27,6 @@ public class OpenGL_3_0_Vertex_Buffer_Objects_Compatibility_Mode {
     private boolean exampleRunning;
     private boolean fixRoll = false;
     private int fps;
-    private int fsId = 0;
     private int pId = 0;
     private int uniformModel;
     private int uniformProjecton;
@@ -41,12 +37,12 @@ public class OpenGL_3_0_Vertex_Buffer_Objects_Compatibility_Mode {
     private int vboCubeWithQuadsVertices;
     private int vboCubeWithTrianglesColors;
     private int vboCubeWithTrianglesVertices;
-    private int vsId = 0;
     private long lastSecond;
     private long lastTime;
 
     private Camera camera;
     private FloatBuffer matrix4FloatBuffer;
+    private ShaderCache shaderCache;
     private Transform4f cubeWithQuadsAndDifferentColorsPerVertexVerticesTransform;
     private Transform4f cubeWithQuadsVerticesTransform;
     private Transform4f cubeWithTrianglesVerticesTransform;
@@ -116,22 +112,8 @@ public class OpenGL_3_0_Vertex_Buffer_Objects_Compatibility_Mode {
     }
 
     private void initShader() {
-        vsId = this.loadShader("opengl_3_3.vsh", GL20.GL_VERTEX_SHADER);
-        fsId = this.loadShader("opengl_3_3.fsh", GL20.GL_FRAGMENT_SHADER);
-
-        pId = GL20.glCreateProgram();
-        GL20.glAttachShader(pId, vsId);
-        GL20.glAttachShader(pId, fsId);
-
-        GL20.glBindAttribLocation(pId, 0, "in_Color");
-        GL20.glBindAttribLocation(pId, 1, "in_Position");
-
-        GL20.glLinkProgram(pId);
-
-        if (GL20.glGetProgrami(pId, GL20.GL_LINK_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(pId, 8192));
-            throw new RuntimeException("Shader had linking errors!");
-        }
+        shaderCache = new ShaderCache(ShaderCache.getDefaultDirectory());
+        pId = shaderCache.getProgram(this.getClass(), "opengl_3_3.vsh", "opengl_3_3.fsh", "in_Color", "in_Position");
 
         GL20.glValidateProgram(pId);
 
@@ -145,36 +127,6 @@ public class OpenGL_3_0_Vertex_Buffer_Objects_Compatibility_Mode {
         uniformView = GL20.glGetUniformLocation(pId, "uView");
     }
 
-    public int loadShader(String filename, int type) {
-        StringBuilder shaderSource = new StringBuilder();
-
-        try {
-            InputStream is = this.getClass().getResourceAsStream(filename);
-            InputStreamReader isr = new InputStreamReader(is);
-            BufferedReader br = new BufferedReader(isr);
-            String line;
-            while ((line = br.readLine()) != null) {
-                shaderSource.append(line).append("\n");
-            }
-            br.close();
-        } catch (IOException | NullPointerException e) {
-            System.err.println("Could not read file: " + filename);
-            e.printStackTrace();
-            System.exit(-1);
-        }
-
-        int shaderID = GL20.glCreateShader(type);
-        GL20.glShaderSource(shaderID, shaderSource);
-        GL20.glCompileShader(shaderID);
-
-        if (GL20.glGetShaderi(shaderID, GL20.GL_COMPILE_STATUS) == GL11.GL_FALSE) {
-            System.err.println(GL20.glGetShaderInfoLog(shaderID, 8192));
-            throw new RuntimeException("Shader \"" + filename + "\" had compile errors!");
-        }
-
-        return shaderID;
-    }
-
     private void initTimer() {
         lastSecond = getTime();
         lastTime = getTime();
@@ -211,6 +163,7 @@ public class OpenGL_3_0_Vertex_Buffer_Objects_Compatibility_Mode {
         }
 
         Mouse.setGrabbed(false);
+        shaderCache.destroy();
         Display.destroy();
     }
 
@@ -0,0 +1,247 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+
+/**
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class Quaternion4f {
+
+    float w;
+    float x;
+    float y;
+    float z;
+
+    // Constructors
+    public Quaternion4f() {
+        w = 1.0f;
+        x = 0.0f;
+        y = 0.0f;
+        z = 0.0f;
+    }
+
+    public Quaternion4f(float w, float x, float y, float z) {
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public Quaternion4f(Quaternion4f q) {
+        w = q.w;
+        x = q.x;
+        y = q.y;
+        z = q.z;
+    }
+
+    // Scalar results
+    public float dot(Quaternion4f q) {
+        return w * q.w + x * q.x + y * q.y + z * q.z;
+    }
+
+    public float getW() {
+        return w;
+    }
+
+    public float getX() {
+        return x;
+    }
+
+    public float getY() {
+        return y;
+    }
+
+    public float getZ() {
+        return z;
+    }
+
+    public float magnitude() {
+        return MathHelper.Sqrt(w * w + x * x + y * y + z * z);
+    }
+
+    public float magnitudeSquared() {
+        return w * w + x * x + y * y + z * z;
+    }
+
+    // Quaternion results
+    public Quaternion4f conjugate() {
+        x = -x;
+        y = -y;
+        z = -z;
+        return this;
+    }
+
+    public Quaternion4f fromAxisAngle(Vector3f v, float degrees) {
+        float halfradians = MathHelper.ToRadians(degrees) * 0.5f;
+        float s = MathHelper.Sin(halfradians);
+
+        w = MathHelper.Cos(halfradians);
+        x = v.x * s;
+        y = v.y * s;
+        z = v.z * s;
+
+        return this;
+    }
+
+    /**
+     * Converts an orthonormal rotation matrix into a quaternion.
+     */
+    public Quaternion4f fromMatrix3f(Matrix3f m) {
+        float m00 = m.xAxis.x, m01 = m.yAxis.x, m02 = m.zAxis.x;
+        float m10 = m.xAxis.y, m11 = m.yAxis.y, m12 = m.zAxis.y;
+        float m20 = m.xAxis.z, m21 = m.yAxis.z, m22 = m.zAxis.z;
+        float trace = m00 + m11 + m22;
+
+        if (trace > 0.0f) {
+            float s = 0.5f / MathHelper.Sqrt(trace + 1.0f);
+            w = 0.25f / s;
+            x = (m21 - m12) * s;
+            y = (m02 - m20) * s;
+            z = (m10 - m01) * s;
+        } else if ((m00 > m11) && (m00 > m22)) {
+            float s = 2.0f * MathHelper.Sqrt(1.0f + m00 - m11 - m22);
+            w = (m21 - m12) / s;
+            x = 0.25f * s;
+            y = (m01 + m10) / s;
+            z = (m02 + m20) / s;
+        } else if (m11 > m22) {
+            float s = 2.0f * MathHelper.Sqrt(1.0f + m11 - m00 - m22);
+            w = (m02 - m20) / s;
+            x = (m01 + m10) / s;
+            y = 0.25f * s;
+            z = (m12 + m21) / s;
+        } else {
+            float s = 2.0f * MathHelper.Sqrt(1.0f + m22 - m00 - m11);
+            w = (m10 - m01) / s;
+            x = (m02 + m20) / s;
+            y = (m12 + m21) / s;
+            z = 0.25f * s;
+        }
+
+        return this;
+    }
+
+    public Quaternion4f identity() {
+        w = 1.0f;
+        x = 0.0f;
+        y = 0.0f;
+        z = 0.0f;
+        return this;
+    }
+
+    public Quaternion4f multiply(Quaternion4f q) {
+        return multiply(this, q);
+    }
+
+    /**
+     * Sets this quaternion to a * b. Applying the result rotates by b first and then by a. Either a or b may be this
+     * quaternion.
+     */
+    public Quaternion4f multiply(Quaternion4f a, Quaternion4f b) {
+        float rw = a.w * b.w - a.x * b.x - a.y * b.y - a.z * b.z;
+        float rx = a.w * b.x + a.x * b.w + a.y * b.z - a.z * b.y;
+        float ry = a.w * b.y - a.x * b.z + a.y * b.w + a.z * b.x;
+        float rz = a.w * b.z + a.x * b.y - a.y * b.x + a.z * b.w;
+        w = rw;
+        x = rx;
+        y = ry;
+        z = rz;
+        return this;
+    }
+
+    public Quaternion4f normalize() {
+        float mag = magnitude();
+
+        if (mag < MathHelper.ZERO_EPSILON) {
+            System.err.println("Quaternion4f Normalize - Divide By Zero!");
+            return identity();
+        }
+
+        float invmag = 1.0f / mag;
+        w *= invmag;
+        x *= invmag;
+        y *= invmag;
+        z *= invmag;
+        return this;
+    }
+
+    /**
+     * Pulls a quaternion that has drifted slightly from unit length back towards it using a single Newton-Raphson
+     * step for 1 / sqrt(n). There is no square root or divide so it is cheap enough to call after every multiply.
+     * Only use this when the quaternion is already close to unit length.
+     */
+    public Quaternion4f renormalize() {
+        float scale = 1.5f - 0.5f * magnitudeSquared();
+        w *= scale;
+        x *= scale;
+        y *= scale;
+        z *= scale;
+        return this;
+    }
+
+    public Quaternion4f set(float w, float x, float y, float z) {
+        this.w = w;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        return this;
+    }
+
+    public Quaternion4f set(Quaternion4f q) {
+        w = q.w;
+        x = q.x;
+        y = q.y;
+        z = q.z;
+        return this;
+    }
+
+    // Matrix results
+    public Matrix3f toMatrix3f(Matrix3f out) {
+        float xx = x * x, yy = y * y, zz = z * z;
+        float xy = x * y, xz = x * z, yz = y * z;
+        float wx = w * x, wy = w * y, wz = w * z;
+
+        out.xAxis.set(
+                1.0f - 2.0f * (yy + zz),
+                2.0f * (xy + wz),
+                2.0f * (xz - wy));
+        out.yAxis.set(
+                2.0f * (xy - wz),
+                1.0f - 2.0f * (xx + zz),
+                2.0f * (yz + wx));
+        out.zAxis.set(
+                2.0f * (xz + wy),
+                2.0f * (yz - wx),
+                1.0f - 2.0f * (xx + yy));
+
+        return out;
+    }
+
+    // Vector results
+    public Vector3f multiplyOut(Vector3f v, Vector3f out) {
+        // v' = v + 2w(q x v) + 2q x (q x v)
+        float tx = 2.0f * (y * v.z - z * v.y);
+        float ty = 2.0f * (z * v.x - x * v.z);
+        float tz = 2.0f * (x * v.y - y * v.x);
+        out.set(
+                v.x + w * tx + (y * tz - z * ty),
+                v.y + w * ty + (z * tx - x * tz),
+                v.z + w * tz + (x * ty - y * tx));
+        return out;
+    }
+
+    public Quaternion4f toFloatBuffer(FloatBuffer fb) {
+        fb.put(x);
+        fb.put(y);
+        fb.put(z);
+        fb.put(w);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "Quaternion4f: {w: " + w + " x: " + x + " y: " + y + " z: " + z + "}";
+    }
+
+}
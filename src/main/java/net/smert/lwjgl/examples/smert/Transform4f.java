@@ -1,5 +1,6 @@
 package net.smert.lwjgl.examples.smert;
 
+import java.nio.BufferOverflowException;
 import java.nio.FloatBuffer;
 
 /**
@@ -8,15 +9,49 @@ import java.nio.FloatBuffer;
  */
 public class Transform4f {
 
-    Matrix3f rotation = new Matrix3f();
-    Vector3f position = new Vector3f();
+    // Classes in this package read these directly. They must only be changed through the methods of this class, which
+    // increment version, otherwise UniformMatrix4Cache keeps uploading the old transform.
+    int version;
+    final Matrix3f rotation = new Matrix3f();
+    final Vector3f position = new Vector3f();
 
     public Transform4f() {
         rotation.identity();
     }
 
+    /**
+     * Returns a counter that changes every time this transform is modified through one of its methods.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Writes the transform as a column major 4x4 matrix at an absolute index without changing the position of the
+     * buffer.
+     */
+    public void put(FloatBuffer fbout, int offset) {
+        fbout.put(offset, rotation.xAxis.x);
+        fbout.put(offset + 1, rotation.xAxis.y);
+        fbout.put(offset + 2, rotation.xAxis.z);
+        fbout.put(offset + 3, 0.0f);
+        fbout.put(offset + 4, rotation.yAxis.x);
+        fbout.put(offset + 5, rotation.yAxis.y);
+        fbout.put(offset + 6, rotation.yAxis.z);
+        fbout.put(offset + 7, 0.0f);
+        fbout.put(offset + 8, rotation.zAxis.x);
+        fbout.put(offset + 9, rotation.zAxis.y);
+        fbout.put(offset + 10, rotation.zAxis.z);
+        fbout.put(offset + 11, 0.0f);
+        fbout.put(offset + 12, position.x);
+        fbout.put(offset + 13, position.y);
+        fbout.put(offset + 14, position.z);
+        fbout.put(offset + 15, 1.0f);
+    }
+
     public Transform4f setPosition(float x, float y, float z) {
         this.position.set(x, y, z);
+        version++;
         return this;
     }
 
@@ -39,6 +74,29 @@ public class Transform4f {
         fbout.put(1.0f);
     }
 
+    /**
+     * Writes every transform starting at the current position and advances the position past them. Direct buffers
+     * in native byte order are written straight to memory when DirectFloatBufferWriter is available.
+     */
+    public static void writeAll(Transform4f[] transforms, FloatBuffer fbout) {
+        int position = fbout.position();
+        int length = transforms.length * 16;
+
+        if (fbout.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+
+        if (DirectFloatBufferWriter.canWrite(fbout)) {
+            DirectFloatBufferWriter.writeAll(transforms, fbout);
+        } else {
+            for (int i = 0, offset = position; i < transforms.length; i++, offset += 16) {
+                transforms[i].put(fbout, offset);
+            }
+        }
+
+        fbout.position(position + length);
+    }
+
     @Override
     public String toString() {
         return "Transform4f:\n" + rotation.toString() + "\n" + position.toString();
@@ -0,0 +1,153 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.lwjgl.MemoryUtil;
+
+/**
+ * A list of transforms that are drawn as instances of the same mesh. Every frame pack() culls them against a frustum
+ * with a bounding sphere each and writes the visible ones into a ByteBuffer as column major 4x4 float matrices, the
+ * layout of a mat4 instance attribute with a stride of BYTES_PER_INSTANCE. Nothing is allocated after construction so
+ * the buffer from StreamingBuffer.map() can be written directly every frame.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class TransformInstances {
+
+    public final static int BYTES_PER_INSTANCE = 64;
+    public final static int FLOATS_PER_INSTANCE = 16;
+
+    private int count;
+    private final float[] radii;
+    private final float[] spheres;
+    private final long[] visible;
+    private final Transform4f[] transforms;
+
+    public TransformInstances(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("The capacity can't be negative!");
+        }
+        radii = new float[capacity];
+        spheres = new float[capacity * Frustum.SPHERE_STRIDE];
+        visible = new long[Frustum.wordsForCount(capacity)];
+        transforms = new Transform4f[capacity];
+    }
+
+    private static void putTransform(ByteBuffer out, int offset, Transform4f t) {
+        out.putFloat(offset, t.rotation.xAxis.x);
+        out.putFloat(offset + 4, t.rotation.xAxis.y);
+        out.putFloat(offset + 8, t.rotation.xAxis.z);
+        out.putFloat(offset + 12, 0.0f);
+        out.putFloat(offset + 16, t.rotation.yAxis.x);
+        out.putFloat(offset + 20, t.rotation.yAxis.y);
+        out.putFloat(offset + 24, t.rotation.yAxis.z);
+        out.putFloat(offset + 28, 0.0f);
+        out.putFloat(offset + 32, t.rotation.zAxis.x);
+        out.putFloat(offset + 36, t.rotation.zAxis.y);
+        out.putFloat(offset + 40, t.rotation.zAxis.z);
+        out.putFloat(offset + 44, 0.0f);
+        out.putFloat(offset + 48, t.position.x);
+        out.putFloat(offset + 52, t.position.y);
+        out.putFloat(offset + 56, t.position.z);
+        out.putFloat(offset + 60, 1.0f);
+    }
+
+    private int write(ByteBuffer out, boolean culled) {
+        int position = out.position();
+        int written = 0;
+
+        // Worst case is checked up front so the loop needs no checks
+        if (out.remaining() < count * BYTES_PER_INSTANCE) {
+            throw new BufferOverflowException();
+        }
+
+        if ((DirectFloatBufferWriter.isAvailable() == true) && (out.isDirect() == true)
+                && (out.order() == ByteOrder.nativeOrder())) {
+            long address = MemoryUtil.getAddress(out);
+            for (int i = 0; i < count; i++) {
+                if ((culled == false) || (Frustum.isVisible(visible, i) == true)) {
+                    address = DirectFloatBufferWriter.put(transforms[i], address);
+                    written++;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                if ((culled == false) || (Frustum.isVisible(visible, i) == true)) {
+                    putTransform(out, position + written * BYTES_PER_INSTANCE, transforms[i]);
+                    written++;
+                }
+            }
+        }
+
+        out.position(position + written * BYTES_PER_INSTANCE);
+        return written;
+    }
+
+    /**
+     * Adds a transform with the radius of a sphere around its position that contains the whole mesh. The transform is
+     * kept, not copied, so changes to it show up in the next pack(). Returns the index of the instance.
+     */
+    public int add(Transform4f transform, float radius) {
+        if (count == transforms.length) {
+            throw new IllegalArgumentException("No room for more than " + transforms.length + " instances!");
+        }
+        radii[count] = radius;
+        transforms[count] = transform;
+        return count++;
+    }
+
+    public void clear() {
+        for (int i = 0; i < count; i++) {
+            transforms[i] = null;
+        }
+        count = 0;
+    }
+
+    public int getCapacity() {
+        return transforms.length;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The largest number of bytes pack() can write.
+     */
+    public int getMaxSize() {
+        return transforms.length * BYTES_PER_INSTANCE;
+    }
+
+    public Transform4f getTransform(int index) {
+        if ((index < 0) || (index >= count)) {
+            throw new IndexOutOfBoundsException("Instance " + index + " is out of range: " + count);
+        }
+        return transforms[index];
+    }
+
+    /**
+     * Writes every instance inside the frustum starting at the position of out, in the order they were added, and
+     * advances the position past them. Returns the number of instances written. Out needs room for every instance.
+     */
+    public int pack(Frustum frustum, ByteBuffer out) {
+        // Positions are read every time since the transforms may have moved
+        for (int i = 0, offset = 0; i < count; i++, offset += Frustum.SPHERE_STRIDE) {
+            Vector3f position = transforms[i].position;
+            spheres[offset] = position.x;
+            spheres[offset + 1] = position.y;
+            spheres[offset + 2] = position.z;
+            spheres[offset + 3] = radii[i];
+        }
+        frustum.cullSpheres(spheres, count, visible);
+        return write(out, true);
+    }
+
+    /**
+     * Same as pack() without culling.
+     */
+    public int packAll(ByteBuffer out) {
+        return write(out, false);
+    }
+
+}
@@ -0,0 +1,181 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL20;
+
+/**
+ * Remembers which matrix, and which version of it, was last uploaded to each program and uniform location. Uploading
+ * the same unchanged matrix again costs no serialization and no GL call.
+ *
+ * Entries are stored in an open addressing table keyed on program and location so lookups do not allocate.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class UniformMatrix4Cache {
+
+    public final static Uploader GL20_UPLOADER = new Uploader() {
+
+        @Override
+        public void uniformMatrix4(int location, FloatBuffer matrix) {
+            GL20.glUniformMatrix4(location, false, matrix);
+        }
+
+    };
+
+    private int count;
+    private int hits;
+    private int misses;
+    private int[] versions;
+    private long[] keys;
+    private Object[] sources;
+    private final FloatBuffer matrix4FloatBuffer;
+    private final Uploader uploader;
+
+    public UniformMatrix4Cache() {
+        this(GL20_UPLOADER);
+    }
+
+    public UniformMatrix4Cache(Uploader uploader) {
+        this.uploader = uploader;
+        matrix4FloatBuffer = BufferUtils.createFloatBuffer(16);
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        count = 0;
+        versions = new int[capacity];
+        keys = new long[capacity];
+        sources = new Object[capacity];
+    }
+
+    private int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key ^ (key >>> 32)) * 0x9E3779B9 & mask;
+        while ((sources[slot] != null) && (keys[slot] != key)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] oldVersions = versions;
+        long[] oldKeys = keys;
+        Object[] oldSources = sources;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSources[i] != null) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sources[slot] = oldSources[i];
+                versions[slot] = oldVersions[i];
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Returns true if the source and version are already uploaded to the program and location. Otherwise they are
+     * recorded as uploaded and false is returned.
+     */
+    private boolean isCurrent(int program, int location, Object source, int version) {
+        long key = ((long) program << 32) | (location & 0xffffffffL);
+        int slot = findSlot(key);
+
+        if ((sources[slot] == source) && (versions[slot] == version)) {
+            hits++;
+            return true;
+        }
+
+        if (sources[slot] == null) {
+            if ((count + 1) * 2 > keys.length) {
+                grow();
+                slot = findSlot(key);
+            }
+            count++;
+        }
+
+        keys[slot] = key;
+        sources[slot] = source;
+        versions[slot] = version;
+        misses++;
+        return false;
+    }
+
+    public void clear() {
+        count = 0;
+        Arrays.fill(sources, null);
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Forgets everything uploaded to a program. Must be called after the program is relinked or deleted.
+     */
+    public void invalidate(int program) {
+        int[] oldVersions = versions;
+        long[] oldKeys = keys;
+        Object[] oldSources = sources;
+        allocate(oldKeys.length);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if ((oldSources[i] != null) && ((int) (oldKeys[i] >>> 32) != program)) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                sources[slot] = oldSources[i];
+                versions[slot] = oldVersions[i];
+                count++;
+            }
+        }
+    }
+
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Uploads the matrix to the location of the currently bound program unless it is already there.
+     *
+     * @return true if a GL call was made
+     */
+    public boolean upload(int program, int location, Matrix4f matrix) {
+        if (isCurrent(program, location, matrix, matrix.getVersion())) {
+            return false;
+        }
+        matrix.put(matrix4FloatBuffer, 0);
+        uploader.uniformMatrix4(location, matrix4FloatBuffer);
+        return true;
+    }
+
+    /**
+     * Uploads the transform to the location of the currently bound program unless it is already there.
+     *
+     * @return true if a GL call was made
+     */
+    public boolean upload(int program, int location, Transform4f transform) {
+        if (isCurrent(program, location, transform, transform.getVersion())) {
+            return false;
+        }
+        transform.put(matrix4FloatBuffer, 0);
+        uploader.uniformMatrix4(location, matrix4FloatBuffer);
+        return true;
+    }
+
+    /**
+     * Performs the actual upload. The default calls GL20.glUniformMatrix4 but a recording implementation can be
+     * used to count calls without a GL context.
+     */
+    public static interface Uploader {
+
+        public void uniformMatrix4(int location, FloatBuffer matrix);
+
+    }
+
+}
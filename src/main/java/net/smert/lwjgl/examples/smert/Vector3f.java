@@ -179,6 +179,16 @@ public class Vector3f {
         return this;
     }
 
+    /**
+     * Writes x, y and z at an absolute index without changing the position of the buffer.
+     */
+    public Vector3f put(FloatBuffer fb, int offset) {
+        fb.put(offset, x);
+        fb.put(offset + 1, y);
+        fb.put(offset + 2, z);
+        return this;
+    }
+
     public Vector3f toFloatBuffer(FloatBuffer fb) {
         fb.put(x);
         fb.put(y);
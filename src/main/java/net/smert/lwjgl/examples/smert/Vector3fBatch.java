@@ -0,0 +1,196 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Structure of arrays version of Vector3f. Each component lives in its own float[] lane so the bulk loops below are
+ * simple counted loops over primitive arrays which HotSpot can unroll and auto-vectorize.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class Vector3fBatch {
+
+    final int size;
+    final float[] x;
+    final float[] y;
+    final float[] z;
+
+    public Vector3fBatch(int size) {
+        this.size = size;
+        x = new float[size];
+        y = new float[size];
+        z = new float[size];
+    }
+
+    // Scalar results
+    public float getX(int index) {
+        return x[index];
+    }
+
+    public float getY(int index) {
+        return y[index];
+    }
+
+    public float getZ(int index) {
+        return z[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Vector results
+    public Vector3f get(int index, Vector3f out) {
+        out.set(x[index], y[index], z[index]);
+        return out;
+    }
+
+    public Vector3fBatch set(int index, float x, float y, float z) {
+        this.x[index] = x;
+        this.y[index] = y;
+        this.z[index] = z;
+        return this;
+    }
+
+    public Vector3fBatch set(int index, Vector3f v) {
+        x[index] = v.x;
+        y[index] = v.y;
+        z[index] = v.z;
+        return this;
+    }
+
+    // Bulk results
+    public Vector3fBatch add(Vector3fBatch v) {
+        checkSize(v);
+        final float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = 0; i < size; i++) {
+            x[i] += vx[i];
+            y[i] += vy[i];
+            z[i] += vz[i];
+        }
+        return this;
+    }
+
+    public Vector3fBatch addScaledVector(Vector3fBatch v, float scale) {
+        checkSize(v);
+        final float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = 0; i < size; i++) {
+            x[i] += vx[i] * scale;
+            y[i] += vy[i] * scale;
+            z[i] += vz[i] * scale;
+        }
+        return this;
+    }
+
+    public Vector3fBatch cross(Vector3fBatch v) {
+        checkSize(v);
+        final float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = 0; i < size; i++) {
+            float cx = y[i] * vz[i] - z[i] * vy[i];
+            float cy = z[i] * vx[i] - x[i] * vz[i];
+            float cz = x[i] * vy[i] - y[i] * vx[i];
+            x[i] = cx;
+            y[i] = cy;
+            z[i] = cz;
+        }
+        return this;
+    }
+
+    public float[] dot(Vector3fBatch v, float[] out) {
+        checkSize(v);
+        if (out.length < size) {
+            throw new IllegalArgumentException("Output array is too small!");
+        }
+        final float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = 0; i < size; i++) {
+            out[i] = x[i] * vx[i] + y[i] * vy[i] + z[i] * vz[i];
+        }
+        return out;
+    }
+
+    public float[] magnitudeSquared(float[] out) {
+        if (out.length < size) {
+            throw new IllegalArgumentException("Output array is too small!");
+        }
+        for (int i = 0; i < size; i++) {
+            out[i] = x[i] * x[i] + y[i] * y[i] + z[i] * z[i];
+        }
+        return out;
+    }
+
+    public Vector3fBatch multiply(float value) {
+        for (int i = 0; i < size; i++) {
+            x[i] *= value;
+            y[i] *= value;
+            z[i] *= value;
+        }
+        return this;
+    }
+
+    public Vector3fBatch multiply(float[] values) {
+        if (values.length < size) {
+            throw new IllegalArgumentException("Input array is too small!");
+        }
+        for (int i = 0; i < size; i++) {
+            x[i] *= values[i];
+            y[i] *= values[i];
+            z[i] *= values[i];
+        }
+        return this;
+    }
+
+    /**
+     * Normalizes every vector. Unlike Vector3f.normalize() there is no branch and no error message for zero length
+     * vectors, they are set to zero instead so the loop stays branch free.
+     */
+    public Vector3fBatch normalize() {
+        for (int i = 0; i < size; i++) {
+            float mag = (float) Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+            float invmag = 1.0f / Math.max(mag, MathHelper.ZERO_EPSILON);
+            x[i] *= invmag;
+            y[i] *= invmag;
+            z[i] *= invmag;
+        }
+        return this;
+    }
+
+    public Vector3fBatch set(Vector3fBatch v) {
+        checkSize(v);
+        System.arraycopy(v.x, 0, x, 0, size);
+        System.arraycopy(v.y, 0, y, 0, size);
+        System.arraycopy(v.z, 0, z, 0, size);
+        return this;
+    }
+
+    public Vector3fBatch subtract(Vector3fBatch v) {
+        checkSize(v);
+        final float[] vx = v.x, vy = v.y, vz = v.z;
+        for (int i = 0; i < size; i++) {
+            x[i] -= vx[i];
+            y[i] -= vy[i];
+            z[i] -= vz[i];
+        }
+        return this;
+    }
+
+    public Vector3fBatch toFloatBuffer(FloatBuffer fb) {
+        for (int i = 0; i < size; i++) {
+            fb.put(x[i]);
+            fb.put(y[i]);
+            fb.put(z[i]);
+        }
+        return this;
+    }
+
+    private void checkSize(Vector3fBatch v) {
+        if (v.size < size) {
+            throw new IllegalArgumentException("Batch sizes do not match!");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Vector3fBatch: {size: " + size + "}";
+    }
+
+}
@@ -66,6 +66,16 @@ public class Vector4f {
         this.z = z;
     }
 
+    /**
+     * Writes x, y, z and w at an absolute index without changing the position of the buffer.
+     */
+    public void put(FloatBuffer fb, int offset) {
+        fb.put(offset, x);
+        fb.put(offset + 1, y);
+        fb.put(offset + 2, z);
+        fb.put(offset + 3, w);
+    }
+
     public void toFloatBuffer(FloatBuffer fb) {
         fb.put(x);
         fb.put(y);
@@ -0,0 +1,61 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.lwjgl.BufferUtils;
+
+/**
+ * A thread safe pool of direct byte buffers. Buffers are kept in buckets of power of two capacities so a buffer for a
+ * 256x256 image can be reused for any other image up to the same size.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ByteBufferPool {
+
+    private final ConcurrentHashMap<Integer, Queue<ByteBuffer>> buckets;
+
+    public ByteBufferPool() {
+        buckets = new ConcurrentHashMap<>();
+    }
+
+    private Queue<ByteBuffer> getBucket(int capacity) {
+        Queue<ByteBuffer> bucket = buckets.get(capacity);
+        if (bucket == null) {
+            Queue<ByteBuffer> newBucket = new ConcurrentLinkedQueue<>();
+            bucket = buckets.putIfAbsent(capacity, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        return bucket;
+    }
+
+    private static int roundUpToPowerOfTwo(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size, 1));
+        return (capacity < size) ? capacity << 1 : capacity;
+    }
+
+    /**
+     * Returns a cleared direct buffer in native byte order with its limit set to size.
+     */
+    public ByteBuffer acquire(int size) {
+        int capacity = roundUpToPowerOfTwo(size);
+        ByteBuffer buffer = getBucket(capacity).poll();
+        if (buffer == null) {
+            buffer = BufferUtils.createByteBuffer(capacity);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer from acquire() to the pool. It must not be used afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        getBucket(buffer.capacity()).offer(buffer);
+    }
+
+}
@@ -0,0 +1,78 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A decoded image with tightly packed RGBA pixels, one byte per component, ready for glTexImage2D. When the image has
+ * more than one level the pixels hold the whole mipmap chain laid out by MipmapGenerator.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class Image {
+
+    private final int height;
+    private final int levels;
+    private final int width;
+    private final ByteBuffer pixels;
+    private final String path;
+
+    public Image(String path, int width, int height, ByteBuffer pixels) {
+        this(path, width, height, pixels, 1);
+    }
+
+    public Image(String path, int width, int height, ByteBuffer pixels, int levels) {
+        this.path = path;
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+        this.levels = levels;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns a slice of the pixels holding just one mipmap level.
+     */
+    public ByteBuffer getLevel(int level) {
+        if ((level < 0) || (level >= levels)) {
+            throw new IllegalArgumentException("Invalid mipmap level: " + level);
+        }
+        ByteBuffer levelPixels = pixels.duplicate();
+        int offset = MipmapGenerator.getLevelOffset(width, height, level);
+        levelPixels.limit(offset + getLevelWidth(level) * getLevelHeight(level) * 4);
+        levelPixels.position(offset);
+        return levelPixels.slice().order(pixels.order());
+    }
+
+    public int getLevelHeight(int level) {
+        return MipmapGenerator.getLevelHeight(height, level);
+    }
+
+    public int getLevelWidth(int level) {
+        return MipmapGenerator.getLevelWidth(width, level);
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public ByteBuffer getPixels() {
+        return pixels;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Override
+    public String toString() {
+        return "Image: {path: " + path + " width: " + width + " height: " + height + " levels: " + levels + "}";
+    }
+
+}
@@ -0,0 +1,142 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Converts a BufferedImage into tightly packed RGBA bytes for glTexImage2D.
+ *
+ * The common image types are read straight from the raster's backing array instead of going through getRGB() which
+ * allocates an int per pixel and converts each pixel through the color model. Every pixel is written as a single int
+ * and 4 byte ABGR images need no per pixel work at all since reading the source big endian and writing the destination
+ * little endian reverses the bytes of each pixel in a bulk copy. Other image types fall back to getRGB() one row at a
+ * time.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ImageConverter {
+
+    private static boolean isPacked(BufferedImage image, int elementsPerPixel) {
+        WritableRaster raster = image.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+
+        // Sub images and rasters with padding between rows can't be copied as one block
+        return (raster.getSampleModelTranslateX() == 0) && (raster.getSampleModelTranslateY() == 0)
+                && (dataBuffer.getNumBanks() == 1) && (dataBuffer.getOffset() == 0)
+                && (dataBuffer.getSize() == image.getWidth() * image.getHeight() * elementsPerPixel);
+    }
+
+    private static void convert3ByteBGR(byte[] bgr, IntBuffer rgba) {
+        for (int i = 0, j = 0, n = rgba.remaining(); i < n; i++, j += 3) {
+            int blue = bgr[j] & 0xff;
+            int green = bgr[j + 1] & 0xff;
+            int red = bgr[j + 2] & 0xff;
+            rgba.put(i, (red << 24) | (green << 16) | (blue << 8) | 0xff);
+        }
+    }
+
+    private static void convert4ByteABGR(byte[] abgr, IntBuffer rgba) {
+        // ABGR read big endian and written little endian is RGBA
+        rgba.put(ByteBuffer.wrap(abgr).order(ByteOrder.BIG_ENDIAN).asIntBuffer());
+    }
+
+    private static void convertIntARGB(int[] argb, int offset, int length, IntBuffer rgba, int alpha) {
+        for (int i = 0; i < length; i++) {
+            rgba.put(offset + i, Integer.rotateLeft(argb[i], 8) | alpha);
+        }
+    }
+
+    private static void convertIntBGR(int[] bgr, IntBuffer rgba) {
+        for (int i = 0, n = rgba.remaining(); i < n; i++) {
+            rgba.put(i, bgr[i] | 0xff000000);
+        }
+    }
+
+    private static void convertUsingGetRGB(BufferedImage image, IntBuffer rgba) {
+        int height = image.getHeight();
+        int width = image.getWidth();
+        int[] row = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            convertIntARGB(row, y * width, width, rgba, 0);
+        }
+    }
+
+    private static byte[] getBytes(BufferedImage image) {
+        return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+    }
+
+    private static int[] getInts(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Writes the image as width * height * 4 bytes of RGBA starting at the position of the buffer and advances the
+     * position past them. The byte order of the buffer does not matter and is not changed.
+     *
+     * @throws BufferOverflowException if the buffer does not have enough space remaining
+     */
+    public static void toRGBA(BufferedImage image, ByteBuffer pixels) {
+        int size = image.getWidth() * image.getHeight();
+
+        if (pixels.remaining() < size * 4) {
+            throw new BufferOverflowException();
+        }
+
+        ByteBuffer view = pixels.slice();
+        view.limit(size * 4);
+        boolean converted = false;
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR:
+                if (isPacked(image, 3) == true) {
+                    convert3ByteBGR(getBytes(image), view.order(ByteOrder.BIG_ENDIAN).asIntBuffer());
+                    converted = true;
+                }
+                break;
+
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                if (isPacked(image, 4) == true) {
+                    convert4ByteABGR(getBytes(image), view.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+                    converted = true;
+                }
+                break;
+
+            case BufferedImage.TYPE_INT_ARGB:
+                if (isPacked(image, 1) == true) {
+                    convertIntARGB(getInts(image), 0, size, view.order(ByteOrder.BIG_ENDIAN).asIntBuffer(), 0);
+                    converted = true;
+                }
+                break;
+
+            case BufferedImage.TYPE_INT_BGR:
+                if (isPacked(image, 1) == true) {
+                    convertIntBGR(getInts(image), view.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+                    converted = true;
+                }
+                break;
+
+            case BufferedImage.TYPE_INT_RGB:
+                if (isPacked(image, 1) == true) {
+                    convertIntARGB(getInts(image), 0, size, view.order(ByteOrder.BIG_ENDIAN).asIntBuffer(), 0xff);
+                    converted = true;
+                }
+                break;
+        }
+
+        if (converted == false) {
+            convertUsingGetRGB(image, view.order(ByteOrder.BIG_ENDIAN).asIntBuffer());
+        }
+
+        pixels.position(pixels.position() + size * 4);
+    }
+
+}
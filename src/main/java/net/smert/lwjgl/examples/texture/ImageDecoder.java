@@ -0,0 +1,18 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes an image file into RGBA pixels. Implementations are called from worker threads and must be thread safe.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public interface ImageDecoder {
+
+    /**
+     * The pixel buffer must come from pool.acquire() and be flipped (position zero, limit at the end of the pixels).
+     */
+    public Image decode(String path, InputStream is, ByteBufferPool pool) throws IOException;
+
+}
@@ -0,0 +1,39 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import javax.imageio.ImageIO;
+
+/**
+ * Decodes any format ImageIO understands (BMP, GIF, JPEG, PNG).
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ImageIOImageDecoder implements ImageDecoder {
+
+    @Override
+    public Image decode(String path, InputStream is, ByteBufferPool pool) throws IOException {
+        BufferedImage image = ImageIO.read(is);
+
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + path);
+        }
+
+        int imageheight = image.getHeight();
+        int imagewidth = image.getWidth();
+        ByteBuffer pixels = pool.acquire(imageheight * imagewidth * 4);
+
+        try {
+            ImageConverter.toRGBA(image, pixels);
+        } catch (RuntimeException e) {
+            pool.release(pixels);
+            throw e;
+        }
+        pixels.flip();
+
+        return new Image(path, imagewidth, imageheight, pixels);
+    }
+
+}
@@ -0,0 +1,129 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import net.smert.lwjgl.examples.UserCacheDirectory;
+
+/**
+ * Keeps finished mipmap chains on disk so they don't have to be generated again on the next run. Only the levels after
+ * level 0 are stored since level 0 comes from the image itself.
+ *
+ * The file name contains a hash of the image path and of the level 0 pixels so an edited image never uses a stale
+ * chain, and the version of the MipmapGenerator filter so a changed filter doesn't either. Textures are usually
+ * resources inside a JAR so the files go in a directory of their own rather than next to the image.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class MipmapCache {
+
+    private final static int FILTER_VERSION = 2; // 3 tap edges for odd sizes
+    private final static String DEFAULT_DIRECTORY = "mipmaps";
+
+    private final File directory;
+
+    public MipmapCache(File directory) {
+        this.directory = directory;
+    }
+
+    private File getFile(String path, ByteBuffer chain, int width, int height) {
+        CRC32 pathCrc = new CRC32();
+        pathCrc.update(path.getBytes(StandardCharsets.UTF_8));
+
+        ByteBuffer level0 = chain.duplicate();
+        level0.limit(width * height * 4);
+        level0.position(0);
+        CRC32 pixelCrc = new CRC32();
+        pixelCrc.update(level0);
+
+        return new File(directory, String.format("%08x-%08x-%dx%d-v%d.mip", pathCrc.getValue(), pixelCrc.getValue(),
+                width, height, FILTER_VERSION));
+    }
+
+    /**
+     * Returns the mipmap directory of the current user (see UserCacheDirectory), or null if it can't be used in which
+     * case chains are generated every time.
+     */
+    public static File getDefaultDirectory() {
+        try {
+            return UserCacheDirectory.get(DEFAULT_DIRECTORY);
+        } catch (IOException e) {
+            System.err.println("Unable to use the mipmap cache directory: " + e.getMessage());
+            return null;
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Reads the levels after level 0 into the chain. Returns false if there is no cached chain for these pixels.
+     */
+    public boolean read(String path, ByteBuffer chain, int width, int height) {
+        File file = getFile(path, chain, width, height);
+        int start = MipmapGenerator.getLevelOffset(width, height, 1);
+        int end = MipmapGenerator.getChainSize(width, height);
+
+        if (!file.isFile() || (file.length() != end - start)) {
+            return false;
+        }
+
+        ByteBuffer levels = chain.duplicate();
+        levels.limit(end);
+        levels.position(start);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (levels.hasRemaining()) {
+                if (channel.read(levels) == -1) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the levels after level 0 to the cache. Errors are printed and otherwise ignored.
+     */
+    public void write(String path, ByteBuffer chain, int width, int height) {
+        File file = getFile(path, chain, width, height);
+        ByteBuffer levels = chain.duplicate();
+        levels.limit(MipmapGenerator.getChainSize(width, height));
+        levels.position(MipmapGenerator.getLevelOffset(width, height, 1));
+
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        try {
+            // Write to a temporary file first so a reader never sees a partial chain
+            File tmpFile = File.createTempFile(file.getName(), ".part", directory);
+
+            try {
+                try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE)) {
+                    while (levels.hasRemaining()) {
+                        channel.write(levels);
+                    }
+                }
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                tmpFile.delete();
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to write the mipmap cache: " + file.getAbsolutePath());
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds a full mipmap chain for an RGBA8 image on the CPU. All levels live one after the other in a single buffer,
+ * level 0 first, so the chain can be generated in place and uploaded level by level with glTexImage2D.
+ *
+ * Each level is a 2x2 box filter of the level before it, rounded to nearest. This is the same filter
+ * gluBuild2DMipmaps uses for power of two images (which truncates instead of rounding). Level sizes are halved and
+ * rounded down until 1x1. For odd sizes the last row or column of the new level averages the last three rows or
+ * columns of the old one (a 3 tap box filter), so every pixel still counts, instead of rescaling to a power of two
+ * first like GLU does.
+ *
+ * Two channels are averaged at a time in one int so a pixel costs four loads and a store. Only the 3 tap edge pixels
+ * take the slower path. Levels that are large enough are split by rows across a ForkJoinPool.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class MipmapGenerator {
+
+    public final static int PARALLEL_THRESHOLD = 64 * 1024;
+
+    private static int average(ByteBuffer chain, int src, int srcStride, int columns, int rows) {
+        int even = 0;
+        int odd = 0;
+        for (int j = 0; j < rows; j++, src += srcStride) {
+            for (int i = 0; i < columns; i++) {
+                int p = chain.getInt(src + i * 4);
+                even += p & 0x00ff00ff;
+                odd += (p >>> 8) & 0x00ff00ff;
+            }
+        }
+
+        // At most 9 * 255 per 16 bit lane
+        int taps = columns * rows;
+        int half = taps >> 1;
+        int c0 = ((even & 0xffff) + half) / taps;
+        int c1 = ((odd & 0xffff) + half) / taps;
+        int c2 = ((even >>> 16) + half) / taps;
+        int c3 = ((odd >>> 16) + half) / taps;
+        return c0 | (c1 << 8) | (c2 << 16) | (c3 << 24);
+    }
+
+    private static void downsample(ByteBuffer chain, int srcOffset, int srcWidth, int srcHeight, int dstOffset,
+            int dstWidth, int startRow, int endRow) {
+        int srcStride = srcWidth * 4;
+        // With an odd width the last pixel takes three columns. A width of one only has the one column.
+        int fastColumns = ((srcWidth & 1) == 1) ? dstWidth - 1 : dstWidth;
+
+        for (int y = startRow; y < endRow; y++) {
+            int rows = getTaps(srcHeight, y);
+            int row0 = srcOffset + y * 2 * srcStride;
+            int row1 = row0 + srcStride;
+            int dst = dstOffset + y * dstWidth * 4;
+            int x = 0;
+
+            if (rows != 2) {
+                for (; x < dstWidth; x++, dst += 4) {
+                    chain.putInt(dst, average(chain, row0 + x * 8, srcStride, getTaps(srcWidth, x), rows));
+                }
+                continue;
+            }
+
+            for (; x < fastColumns; x++, dst += 4) {
+                int x0 = x * 8;
+                int a = chain.getInt(row0 + x0);
+                int b = chain.getInt(row0 + x0 + 4);
+                int c = chain.getInt(row1 + x0);
+                int d = chain.getInt(row1 + x0 + 4);
+
+                // Bytes 0 and 2 then bytes 1 and 3. Each 16 bit lane holds a sum of at most 4 * 255 + 2.
+                int even = (a & 0x00ff00ff) + (b & 0x00ff00ff) + (c & 0x00ff00ff) + (d & 0x00ff00ff) + 0x00020002;
+                int odd = ((a >>> 8) & 0x00ff00ff) + ((b >>> 8) & 0x00ff00ff) + ((c >>> 8) & 0x00ff00ff)
+                        + ((d >>> 8) & 0x00ff00ff) + 0x00020002;
+                chain.putInt(dst, ((even >>> 2) & 0x00ff00ff) | (((odd >>> 2) & 0x00ff00ff) << 8));
+            }
+            for (; x < dstWidth; x++, dst += 4) {
+                chain.putInt(dst, average(chain, row0 + x * 8, srcStride, getTaps(srcWidth, x), 2));
+            }
+        }
+    }
+
+    /**
+     * Returns how many source rows or columns go into row or column i of the next level.
+     */
+    private static int getTaps(int srcSize, int i) {
+        if (srcSize == 1) {
+            return 1;
+        }
+        if (((srcSize & 1) == 1) && (i == (srcSize >> 1) - 1)) {
+            return 3;
+        }
+        return 2;
+    }
+
+    /**
+     * Fills in every level after level 0 using the common ForkJoinPool.
+     */
+    public static void generate(ByteBuffer chain, int width, int height) {
+        generate(ForkJoinPool.commonPool(), chain, width, height);
+    }
+
+    /**
+     * Fills in every level after level 0. Level 0 must already be at index 0 of the buffer and the buffer must have a
+     * capacity of at least getChainSize(). The position and limit are not used or changed.
+     */
+    public static void generate(ForkJoinPool pool, ByteBuffer chain, int width, int height) {
+        if (chain.capacity() < getChainSize(width, height)) {
+            throw new IllegalArgumentException("Buffer is too small for the mipmap chain!");
+        }
+
+        int levels = getLevelCount(width, height);
+        for (int level = 1; level < levels; level++) {
+            int srcWidth = getLevelWidth(width, level - 1);
+            int srcHeight = getLevelHeight(height, level - 1);
+            int srcOffset = getLevelOffset(width, height, level - 1);
+            int dstWidth = getLevelWidth(width, level);
+            int dstHeight = getLevelHeight(height, level);
+            int dstOffset = getLevelOffset(width, height, level);
+
+            if (dstWidth * dstHeight < PARALLEL_THRESHOLD) {
+                downsample(chain, srcOffset, srcWidth, srcHeight, dstOffset, dstWidth, 0, dstHeight);
+            } else {
+                pool.invoke(new DownsampleTask(chain, srcOffset, srcWidth, srcHeight, dstOffset, dstWidth, 0,
+                        dstHeight));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes needed for every level of the chain.
+     */
+    public static int getChainSize(int width, int height) {
+        return getLevelOffset(width, height, getLevelCount(width, height));
+    }
+
+    public static int getLevelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    public static int getLevelHeight(int height, int level) {
+        return Math.max(1, height >> level);
+    }
+
+    /**
+     * Returns the byte offset of a level from the start of the chain.
+     */
+    public static int getLevelOffset(int width, int height, int level) {
+        int offset = 0;
+        for (int i = 0; i < level; i++) {
+            offset += getLevelWidth(width, i) * getLevelHeight(height, i) * 4;
+        }
+        return offset;
+    }
+
+    public static int getLevelWidth(int width, int level) {
+        return Math.max(1, width >> level);
+    }
+
+    private static class DownsampleTask extends RecursiveAction {
+
+        private final int dstOffset;
+        private final int dstWidth;
+        private final int endRow;
+        private final int srcHeight;
+        private final int srcOffset;
+        private final int srcWidth;
+        private final int startRow;
+        private final ByteBuffer chain;
+
+        public DownsampleTask(ByteBuffer chain, int srcOffset, int srcWidth, int srcHeight, int dstOffset,
+                int dstWidth, int startRow, int endRow) {
+            this.chain = chain;
+            this.srcOffset = srcOffset;
+            this.srcWidth = srcWidth;
+            this.srcHeight = srcHeight;
+            this.dstOffset = dstOffset;
+            this.dstWidth = dstWidth;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = endRow - startRow;
+            if ((rows < 2) || (rows * dstWidth <= PARALLEL_THRESHOLD)) {
+                downsample(chain, srcOffset, srcWidth, srcHeight, dstOffset, dstWidth, startRow, endRow);
+                return;
+            }
+            // Tasks only write their own rows of the destination level so they never overlap
+            int middle = startRow + (rows >> 1);
+            invokeAll(
+                    new DownsampleTask(chain, srcOffset, srcWidth, srcHeight, dstOffset, dstWidth, startRow, middle),
+                    new DownsampleTask(chain, srcOffset, srcWidth, srcHeight, dstOffset, dstWidth, middle, endRow));
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package net.smert.lwjgl.examples.texture;
+
+import de.matthiasmann.twl.utils.PNGDecoder;
+import de.matthiasmann.twl.utils.PNGDecoder.Format;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class PNGImageDecoder implements ImageDecoder {
+
+    @Override
+    public Image decode(String path, InputStream is, ByteBufferPool pool) throws IOException {
+        PNGDecoder decoder = new PNGDecoder(is);
+        int width = decoder.getWidth();
+        int height = decoder.getHeight();
+
+        ByteBuffer pixels = pool.acquire(width * height * 4);
+        try {
+            decoder.decode(pixels, width * 4, Format.RGBA);
+        } catch (IOException | RuntimeException e) {
+            pool.release(pixels);
+            throw e;
+        }
+        pixels.flip();
+
+        return new Image(path, width, height, pixels);
+    }
+
+}
@@ -0,0 +1,300 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads textures in the background. Images are decoded on a pool of worker threads into pooled direct buffers and
+ * handed back to the GL thread through a bounded queue. The GL thread calls processUploads() once per frame which runs
+ * the callback for each decoded image (this is where glTexImage2D goes) and returns the buffer to the pool.
+ *
+ * Decoders are chosen by file extension. PNG files use PNGDecoder and everything else uses ImageIO unless another
+ * decoder is registered.
+ *
+ * The queue is bounded so workers stop decoding when the GL thread falls behind instead of filling memory with pixels.
+ *
+ * Mipmap chains can be built on the workers as well (see MipmapGenerator) and optionally kept in a MipmapCache.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class TextureLoader {
+
+    public final static int DEFAULT_QUEUE_CAPACITY = 4;
+    private final static long WAIT_POLL_MILLIS = 10;
+
+    private final AtomicInteger pending;
+    private final BlockingQueue<DecodedImage> decodedImages;
+    private final ByteBufferPool bufferPool;
+    private final ExecutorService workers;
+    private final ImageDecoder defaultDecoder;
+    private final Map<String, ImageDecoder> decoders;
+    private volatile boolean shutdown;
+    private volatile MipmapCache mipmapCache;
+
+    public TextureLoader() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() - 1), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public TextureLoader(int threads, int queueCapacity) {
+        pending = new AtomicInteger();
+        decodedImages = new ArrayBlockingQueue<>(queueCapacity);
+        bufferPool = new ByteBufferPool();
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TextureLoader-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+
+        });
+        defaultDecoder = new ImageIOImageDecoder();
+        decoders = new ConcurrentHashMap<>();
+        decoders.put("png", new PNGImageDecoder());
+    }
+
+    /**
+     * Takes the pixels of image, which are returned to the pool even when building the chain fails.
+     */
+    private Image buildMipmaps(Image image) {
+        int height = image.getHeight();
+        int width = image.getWidth();
+        ByteBuffer chain;
+
+        try {
+            chain = bufferPool.acquire(MipmapGenerator.getChainSize(width, height));
+            chain.put(image.getPixels());
+            chain.position(0);
+        } finally {
+            bufferPool.release(image.getPixels());
+        }
+
+        try {
+            MipmapCache cache = mipmapCache;
+            if ((cache == null) || (cache.read(image.getPath(), chain, width, height) == false)) {
+                MipmapGenerator.generate(chain, width, height);
+                if (cache != null) {
+                    cache.write(image.getPath(), chain, width, height);
+                }
+            }
+        } catch (RuntimeException e) {
+            bufferPool.release(chain);
+            throw e;
+        }
+
+        return new Image(image.getPath(), width, height, chain, MipmapGenerator.getLevelCount(width, height));
+    }
+
+    /**
+     * Drops an image that will never be uploaded.
+     */
+    private void discard(DecodedImage decodedImage) {
+        if (decodedImage.image != null) {
+            bufferPool.release(decodedImage.image.getPixels());
+        }
+        pending.decrementAndGet();
+    }
+
+    private void discardQueued() {
+        DecodedImage decodedImage;
+        while ((decodedImage = decodedImages.poll()) != null) {
+            discard(decodedImage);
+        }
+    }
+
+    private ImageDecoder getDecoder(String path) {
+        int lastPeriod = path.lastIndexOf('.');
+        if (lastPeriod != -1) {
+            ImageDecoder decoder = decoders.get(path.substring(lastPeriod + 1).toLowerCase());
+            if (decoder != null) {
+                return decoder;
+            }
+        }
+        return defaultDecoder;
+    }
+
+    private void upload(DecodedImage decodedImage) {
+        try {
+            if (decodedImage.image != null) {
+                decodedImage.callback.upload(decodedImage.image);
+            }
+        } finally {
+            if (decodedImage.image != null) {
+                bufferPool.release(decodedImage.image.getPixels());
+            }
+            pending.decrementAndGet();
+        }
+    }
+
+    public ByteBufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public MipmapCache getMipmapCache() {
+        return mipmapCache;
+    }
+
+    /**
+     * Returns the number of textures that have been requested but not uploaded yet.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    public boolean isDone() {
+        return pending.get() == 0;
+    }
+
+    /**
+     * Starts decoding a resource relative to resourceClass. The callback is run on the GL thread by processUploads()
+     * once the image is ready. If decoding fails the error is printed and the callback is never run.
+     */
+    public void load(Class<?> resourceClass, String path, Callback callback) {
+        load(resourceClass, path, false, callback);
+    }
+
+    /**
+     * Same as load() but when mipmaps is true the image passed to the callback also holds every mipmap level.
+     */
+    public void load(final Class<?> resourceClass, final String path, final boolean mipmaps,
+            final Callback callback) {
+        pending.incrementAndGet();
+
+        workers.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                Image image = null;
+
+                try (InputStream is = resourceClass.getResourceAsStream(path)) {
+                    if (is == null) {
+                        throw new IOException("Unable to find texture: " + path);
+                    }
+                    Image decoded = getDecoder(path).decode(path, is, bufferPool);
+                    image = (mipmaps == true) ? buildMipmaps(decoded) : decoded;
+                } catch (IOException | RuntimeException e) {
+                    e.printStackTrace();
+                }
+
+                // Blocks when the GL thread is behind
+                DecodedImage decodedImage = new DecodedImage(image, callback);
+                try {
+                    if (shutdown == true) {
+                        discard(decodedImage);
+                        return;
+                    }
+                    decodedImages.put(decodedImage);
+                } catch (InterruptedException e) {
+                    discard(decodedImage);
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                // The queue may have been drained by shutdown() before the put
+                if (shutdown == true) {
+                    discardQueued();
+                }
+            }
+
+        });
+    }
+
+    /**
+     * Uploads every image that has finished decoding. Must be called from the GL thread.
+     *
+     * @return the number of images processed
+     */
+    public int processUploads() {
+        return processUploads(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Uploads up to maxUploads images that have finished decoding. Must be called from the GL thread.
+     *
+     * @return the number of images processed
+     */
+    public int processUploads(int maxUploads) {
+        int uploads = 0;
+        DecodedImage decodedImage;
+
+        while ((uploads < maxUploads) && ((decodedImage = decodedImages.poll()) != null)) {
+            upload(decodedImage);
+            uploads++;
+        }
+
+        return uploads;
+    }
+
+    public void registerDecoder(String extension, ImageDecoder decoder) {
+        decoders.put(extension.toLowerCase(), decoder);
+    }
+
+    /**
+     * Sets where finished mipmap chains are kept between runs. Null (the default) disables the cache.
+     */
+    public void setMipmapCache(MipmapCache mipmapCache) {
+        this.mipmapCache = mipmapCache;
+    }
+
+    /**
+     * Stops the workers and drops every image that was not uploaded yet, returning its buffer to the pool. Textures
+     * that were never decoded are no longer pending.
+     */
+    public void shutdown() {
+        shutdown = true;
+        pending.addAndGet(-workers.shutdownNow().size());
+        discardQueued();
+    }
+
+    /**
+     * Blocks the GL thread until every requested texture has been uploaded.
+     */
+    public void waitForAll() {
+        try {
+            // Polls since a worker that is interrupted drops its image without queueing anything
+            while (pending.get() > 0) {
+                DecodedImage decodedImage = decodedImages.poll(WAIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (decodedImage != null) {
+                    upload(decodedImage);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called on the GL thread with the decoded image. The pixels are only valid until the callback returns.
+     */
+    public static interface Callback {
+
+        public void upload(Image image);
+
+    }
+
+    private static class DecodedImage {
+
+        private final Callback callback;
+        private final Image image;
+
+        public DecodedImage(Image image, Callback callback) {
+            this.image = image;
+            this.callback = callback;
+        }
+
+    }
+
+}
@@ -0,0 +1,525 @@
+package net.smert.lwjgl.examples.world;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.smert.lwjgl.examples.smert.Frustum;
+import org.lwjgl.BufferUtils;
+
+/**
+ * A bounding volume hierarchy over the triangles of a world, used for frustum culling and walk collision.
+ *
+ * The tree is built by splitting the triangles in half at the median centroid along the longest axis until at most
+ * LEAF_SIZE are left. The triangles are then copied in tree order, so every node covers one contiguous range of the
+ * reordered vertices. Frustum queries therefore produce a short list of first/count ranges that can be drawn straight
+ * out of a vertex buffer with glMultiDrawArrays.
+ *
+ * Nodes are stored in flat arrays: six floats of bounds (min x, y, z then max x, y, z), the first and last triangle and
+ * the index of the first child. The second child always follows the first and leaves have a child index of 0. Queries
+ * don't allocate and are not thread safe.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldBVH {
+
+    public final static int LEAF_SIZE = 8;
+    public final static int PARALLEL_THRESHOLD = 16 * 1024;
+
+    private final static float DETERMINANT_EPSILON = 1e-8f;
+    private final static int MAX_DEPTH = 64;
+
+    private int nodeCount;
+    private final float[] nodeBounds;
+    private final int[] nodeChild;
+    private final int[] nodeEnd;
+    private final int[] nodeStart;
+    private final int[] stack;
+    private final FloatBuffer vertices;
+
+    private WorldBVH(int numTriangles) {
+        // Every split leaves at least (LEAF_SIZE + 1) / 2 triangles on each side which bounds the number of leaves
+        int maxNodes = 2 * Math.max(1, numTriangles / ((LEAF_SIZE + 1) / 2));
+        nodeBounds = new float[maxNodes * 6];
+        nodeChild = new int[maxNodes];
+        nodeEnd = new int[maxNodes];
+        nodeStart = new int[maxNodes];
+        stack = new int[MAX_DEPTH];
+        vertices = BufferUtils.createFloatBuffer(numTriangles * WorldFile.FLOATS_PER_TRIANGLE);
+    }
+
+    private int addRange(IntBuffer first, IntBuffer count, int ranges, int start, int end) {
+        int firstVertex = start * 3;
+        int vertexCount = (end - start) * 3;
+
+        // Ranges come out in ascending order so neighbouring nodes can be merged into one draw
+        if ((ranges > 0) && (first.get(ranges - 1) + count.get(ranges - 1) == firstVertex)) {
+            count.put(ranges - 1, count.get(ranges - 1) + vertexCount);
+            return ranges;
+        }
+
+        first.put(ranges, firstVertex);
+        count.put(ranges, vertexCount);
+        return ranges + 1;
+    }
+
+    /**
+     * Returns -1 if the box is outside the frustum, 1 if it is completely inside and 0 if it crosses a plane.
+     */
+    private int classify(float[] planes, int node) {
+        int offset = node * 6;
+        float minx = nodeBounds[offset], miny = nodeBounds[offset + 1], minz = nodeBounds[offset + 2];
+        float maxx = nodeBounds[offset + 3], maxy = nodeBounds[offset + 4], maxz = nodeBounds[offset + 5];
+        int result = 1;
+
+        for (int j = 0; j < 24; j += 4) {
+            float a = planes[j], b = planes[j + 1], c = planes[j + 2], d = planes[j + 3];
+
+            // The corner furthest along the normal decides outside and the nearest corner decides inside
+            float far = a * ((a >= 0.0f) ? maxx : minx) + b * ((b >= 0.0f) ? maxy : miny)
+                    + c * ((c >= 0.0f) ? maxz : minz) + d;
+            if (far < 0.0f) {
+                return -1;
+            }
+            float near = a * ((a >= 0.0f) ? minx : maxx) + b * ((b >= 0.0f) ? miny : maxy)
+                    + c * ((c >= 0.0f) ? minz : maxz) + d;
+            if (near < 0.0f) {
+                result = 0;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the entry distance of the ray into the node bounds, or a negative number if it misses or enters after
+     * tmax.
+     */
+    private float intersectBounds(int node, float ox, float oy, float oz, float invdx, float invdy, float invdz,
+            float tmax) {
+        int offset = node * 6;
+        float tx0 = (nodeBounds[offset] - ox) * invdx;
+        float tx1 = (nodeBounds[offset + 3] - ox) * invdx;
+        float ty0 = (nodeBounds[offset + 1] - oy) * invdy;
+        float ty1 = (nodeBounds[offset + 4] - oy) * invdy;
+        float tz0 = (nodeBounds[offset + 2] - oz) * invdz;
+        float tz1 = (nodeBounds[offset + 5] - oz) * invdz;
+
+        float tnear = Math.max(Math.max(Math.min(tx0, tx1), Math.min(ty0, ty1)), Math.max(Math.min(tz0, tz1), 0.0f));
+        float tfar = Math.min(Math.min(Math.max(tx0, tx1), Math.max(ty0, ty1)), Math.min(Math.max(tz0, tz1), tmax));
+
+        // NaN from 0 * infinity (a flat box on the ray's plane) fails the compare and counts as a miss
+        return (tnear <= tfar) ? tnear : -1.0f;
+    }
+
+    /**
+     * Moller-Trumbore. Returns the distance along the ray or a negative number if the triangle is missed.
+     */
+    private float intersectTriangle(int triangle, float ox, float oy, float oz, float dx, float dy, float dz) {
+        int offset = triangle * WorldFile.FLOATS_PER_TRIANGLE;
+        float ax = vertices.get(offset), ay = vertices.get(offset + 1), az = vertices.get(offset + 2);
+        offset += WorldFile.FLOATS_PER_VERTEX;
+        float e1x = vertices.get(offset) - ax, e1y = vertices.get(offset + 1) - ay, e1z = vertices.get(offset + 2) - az;
+        offset += WorldFile.FLOATS_PER_VERTEX;
+        float e2x = vertices.get(offset) - ax, e2y = vertices.get(offset + 1) - ay, e2z = vertices.get(offset + 2) - az;
+
+        float px = dy * e2z - dz * e2y;
+        float py = dz * e2x - dx * e2z;
+        float pz = dx * e2y - dy * e2x;
+        float det = e1x * px + e1y * py + e1z * pz;
+        if ((det > -DETERMINANT_EPSILON) && (det < DETERMINANT_EPSILON)) {
+            return -1.0f;
+        }
+
+        float invdet = 1.0f / det;
+        float tx = ox - ax, ty = oy - ay, tz = oz - az;
+        float u = (tx * px + ty * py + tz * pz) * invdet;
+        if ((u < 0.0f) || (u > 1.0f)) {
+            return -1.0f;
+        }
+
+        float qx = ty * e1z - tz * e1y;
+        float qy = tz * e1x - tx * e1z;
+        float qz = tx * e1y - ty * e1x;
+        float v = (dx * qx + dy * qy + dz * qz) * invdet;
+        if ((v < 0.0f) || (u + v > 1.0f)) {
+            return -1.0f;
+        }
+
+        return (e2x * qx + e2y * qy + e2z * qz) * invdet;
+    }
+
+    /**
+     * Builds the hierarchy for a world laid out as in WorldFile using the common ForkJoinPool.
+     */
+    public static WorldBVH build(FloatBuffer worldVertices) {
+        return build(ForkJoinPool.commonPool(), worldVertices);
+    }
+
+    /**
+     * Builds the hierarchy for a world laid out as in WorldFile. Large subtrees are built in parallel on the pool. The
+     * world vertices are only read.
+     */
+    public static WorldBVH build(ForkJoinPool pool, FloatBuffer worldVertices) {
+        if (worldVertices.remaining() % WorldFile.FLOATS_PER_TRIANGLE != 0) {
+            throw new IllegalArgumentException("Vertices must be whole triangles!");
+        }
+
+        FloatBuffer source = worldVertices.slice();
+        int numTriangles = source.remaining() / WorldFile.FLOATS_PER_TRIANGLE;
+        WorldBVH bvh = new WorldBVH(numTriangles);
+
+        float[] centroids = new float[numTriangles * 3];
+        float[] bounds = new float[numTriangles * 6];
+        int[] order = new int[numTriangles];
+        AtomicInteger nodeAllocator = new AtomicInteger(1);
+
+        if (numTriangles > 0) {
+            pool.invoke(new TriangleBoundsTask(source, centroids, bounds, order, 0, numTriangles));
+            pool.invoke(new BuildTask(bvh, source, centroids, bounds, order, nodeAllocator, 0, 0, numTriangles));
+        }
+
+        bvh.nodeCount = (numTriangles > 0) ? nodeAllocator.get() : 0;
+        return bvh;
+    }
+
+    /**
+     * Writes a draw list of every triangle that may be inside the frustum. Entry i of first and count is the first
+     * vertex and the number of vertices of one range of getVertices(), ready for glMultiDrawArrays. The buffers need
+     * room for getMaxRanges() entries. Their limits are set to the number of ranges, which is also returned.
+     */
+    public int cull(Frustum frustum, IntBuffer first, IntBuffer count) {
+        first.clear();
+        count.clear();
+        if ((first.remaining() < getMaxRanges()) || (count.remaining() < getMaxRanges())) {
+            throw new IllegalArgumentException("The draw list needs room for " + getMaxRanges() + " ranges!");
+        }
+        if (nodeCount == 0) {
+            first.limit(0);
+            count.limit(0);
+            return 0;
+        }
+
+        float[] planes = frustum.getPlanes();
+        int ranges = 0;
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+            int inside = classify(planes, node);
+            if (inside < 0) {
+                continue;
+            }
+
+            // Completely inside nodes and leaves are drawn whole. Children are pushed second first to keep the order.
+            int child = nodeChild[node];
+            if ((inside > 0) || (child == 0)) {
+                ranges = addRange(first, count, ranges, nodeStart[node], nodeEnd[node]);
+            } else {
+                stack[top++] = child + 1;
+                stack[top++] = child;
+            }
+        }
+
+        first.limit(ranges);
+        count.limit(ranges);
+        return ranges;
+    }
+
+    /**
+     * The largest number of ranges cull() can produce.
+     */
+    public int getMaxRanges() {
+        return (nodeCount + 1) / 2;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getTriangleCount() {
+        return vertices.limit() / WorldFile.FLOATS_PER_TRIANGLE;
+    }
+
+    /**
+     * The world vertices reordered so that every node covers a contiguous range. Draw lists from cull() refer to these.
+     */
+    public FloatBuffer getVertices() {
+        return vertices;
+    }
+
+    /**
+     * Casts a ray and returns the distance to the nearest triangle along the direction (in units of its length), or a
+     * negative number if nothing is hit before tmax. Triangles are hit from either side.
+     */
+    public float intersectRay(float ox, float oy, float oz, float dx, float dy, float dz, float tmax) {
+        if (nodeCount == 0) {
+            return -1.0f;
+        }
+
+        float invdx = 1.0f / dx, invdy = 1.0f / dy, invdz = 1.0f / dz;
+        float nearest = tmax;
+        boolean hit = false;
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+            if (intersectBounds(node, ox, oy, oz, invdx, invdy, invdz, nearest) < 0.0f) {
+                continue;
+            }
+
+            int child = nodeChild[node];
+            if (child == 0) {
+                for (int triangle = nodeStart[node]; triangle < nodeEnd[node]; triangle++) {
+                    float t = intersectTriangle(triangle, ox, oy, oz, dx, dy, dz);
+                    if ((t >= 0.0f) && (t <= nearest)) {
+                        nearest = t;
+                        hit = true;
+                    }
+                }
+                continue;
+            }
+
+            // Visit the nearer child first so the far one is usually skipped once something is hit
+            float left = intersectBounds(child, ox, oy, oz, invdx, invdy, invdz, nearest);
+            float right = intersectBounds(child + 1, ox, oy, oz, invdx, invdy, invdz, nearest);
+            if ((left >= 0.0f) && (right >= 0.0f)) {
+                if (left <= right) {
+                    stack[top++] = child + 1;
+                    stack[top++] = child;
+                } else {
+                    stack[top++] = child;
+                    stack[top++] = child + 1;
+                }
+            } else if (left >= 0.0f) {
+                stack[top++] = child;
+            } else if (right >= 0.0f) {
+                stack[top++] = child + 1;
+            }
+        }
+
+        return hit ? nearest : -1.0f;
+    }
+
+    /**
+     * Returns the fraction (0 to 1) of the way from the start to the end of the segment where it first hits a triangle,
+     * or a negative number if it hits nothing.
+     */
+    public float intersectSegment(float x0, float y0, float z0, float x1, float y1, float z1) {
+        return intersectRay(x0, y0, z0, x1 - x0, y1 - y0, z1 - z0, 1.0f);
+    }
+
+    private static class BuildTask extends RecursiveAction {
+
+        private final int end;
+        private final int node;
+        private final int start;
+        private final float[] bounds;
+        private final float[] centroids;
+        private final int[] order;
+        private final AtomicInteger nodeAllocator;
+        private final FloatBuffer source;
+        private final WorldBVH bvh;
+
+        public BuildTask(WorldBVH bvh, FloatBuffer source, float[] centroids, float[] bounds, int[] order,
+                AtomicInteger nodeAllocator, int node, int start, int end) {
+            this.bvh = bvh;
+            this.source = source;
+            this.centroids = centroids;
+            this.bounds = bounds;
+            this.order = order;
+            this.nodeAllocator = nodeAllocator;
+            this.node = node;
+            this.start = start;
+            this.end = end;
+        }
+
+        private void buildLeaf() {
+            float[] nodeBounds = bvh.nodeBounds;
+            int offset = node * 6;
+            nodeBounds[offset] = nodeBounds[offset + 1] = nodeBounds[offset + 2] = Float.POSITIVE_INFINITY;
+            nodeBounds[offset + 3] = nodeBounds[offset + 4] = nodeBounds[offset + 5] = Float.NEGATIVE_INFINITY;
+
+            // Copy the triangles into place. Absolute puts to different indices are safe from several threads.
+            FloatBuffer vertices = bvh.vertices;
+            for (int i = start; i < end; i++) {
+                int triangle = order[i];
+                for (int axis = 0; axis < 3; axis++) {
+                    nodeBounds[offset + axis] = Math.min(nodeBounds[offset + axis], bounds[triangle * 6 + axis]);
+                    nodeBounds[offset + axis + 3] = Math.max(nodeBounds[offset + axis + 3],
+                            bounds[triangle * 6 + axis + 3]);
+                }
+
+                int from = triangle * WorldFile.FLOATS_PER_TRIANGLE;
+                int to = i * WorldFile.FLOATS_PER_TRIANGLE;
+                for (int j = 0; j < WorldFile.FLOATS_PER_TRIANGLE; j++) {
+                    vertices.put(to + j, source.get(from + j));
+                }
+            }
+
+            bvh.nodeStart[node] = start;
+            bvh.nodeEnd[node] = end;
+            bvh.nodeChild[node] = 0;
+        }
+
+        private int getSplitAxis() {
+            float minx = Float.POSITIVE_INFINITY, miny = Float.POSITIVE_INFINITY, minz = Float.POSITIVE_INFINITY;
+            float maxx = Float.NEGATIVE_INFINITY, maxy = Float.NEGATIVE_INFINITY, maxz = Float.NEGATIVE_INFINITY;
+
+            for (int i = start; i < end; i++) {
+                int offset = i * 3;
+                float x = centroids[offset], y = centroids[offset + 1], z = centroids[offset + 2];
+                minx = Math.min(minx, x);
+                miny = Math.min(miny, y);
+                minz = Math.min(minz, z);
+                maxx = Math.max(maxx, x);
+                maxy = Math.max(maxy, y);
+                maxz = Math.max(maxz, z);
+            }
+
+            float dx = maxx - minx, dy = maxy - miny, dz = maxz - minz;
+            if ((dx >= dy) && (dx >= dz)) {
+                return 0;
+            }
+            return (dy >= dz) ? 1 : 2;
+        }
+
+        /**
+         * Partially sorts [start, end) so entry nth has the nth smallest centroid on the axis with nothing larger before
+         * it and nothing smaller after it (quickselect). The centroids move along with the order so the scans stay
+         * sequential in memory.
+         */
+        private void select(int axis, int nth) {
+            int lo = start;
+            int hi = end - 1;
+
+            while (lo < hi) {
+                float pivot = centroids[((lo + hi) >>> 1) * 3 + axis];
+                int i = lo;
+                int j = hi;
+                while (i <= j) {
+                    while (centroids[i * 3 + axis] < pivot) {
+                        i++;
+                    }
+                    while (centroids[j * 3 + axis] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        swap(i, j);
+                        i++;
+                        j--;
+                    }
+                }
+                if (nth <= j) {
+                    hi = j;
+                } else if (nth >= i) {
+                    lo = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            int swapOrder = order[i];
+            order[i] = order[j];
+            order[j] = swapOrder;
+            for (int axis = 0; axis < 3; axis++) {
+                float swapCentroid = centroids[i * 3 + axis];
+                centroids[i * 3 + axis] = centroids[j * 3 + axis];
+                centroids[j * 3 + axis] = swapCentroid;
+            }
+        }
+
+        @Override
+        protected void compute() {
+            int length = end - start;
+            if (length <= LEAF_SIZE) {
+                buildLeaf();
+                return;
+            }
+
+            int middle = start + (length >> 1);
+            select(getSplitAxis(), middle);
+
+            // Siblings are allocated together so the second child is always the first plus one
+            int child = nodeAllocator.getAndAdd(2);
+            BuildTask left = new BuildTask(bvh, source, centroids, bounds, order, nodeAllocator, child, start, middle);
+            BuildTask right = new BuildTask(bvh, source, centroids, bounds, order, nodeAllocator, child + 1, middle,
+                    end);
+            if (length > PARALLEL_THRESHOLD) {
+                invokeAll(left, right);
+            } else {
+                left.compute();
+                right.compute();
+            }
+
+            float[] nodeBounds = bvh.nodeBounds;
+            int offset = node * 6;
+            int leftOffset = child * 6;
+            int rightOffset = leftOffset + 6;
+            for (int axis = 0; axis < 3; axis++) {
+                nodeBounds[offset + axis] = Math.min(nodeBounds[leftOffset + axis], nodeBounds[rightOffset + axis]);
+                nodeBounds[offset + axis + 3] = Math.max(nodeBounds[leftOffset + axis + 3],
+                        nodeBounds[rightOffset + axis + 3]);
+            }
+
+            bvh.nodeStart[node] = start;
+            bvh.nodeEnd[node] = end;
+            bvh.nodeChild[node] = child;
+        }
+
+    }
+
+    private static class TriangleBoundsTask extends RecursiveAction {
+
+        private final int end;
+        private final int start;
+        private final float[] bounds;
+        private final float[] centroids;
+        private final int[] order;
+        private final FloatBuffer source;
+
+        public TriangleBoundsTask(FloatBuffer source, float[] centroids, float[] bounds, int[] order, int start,
+                int end) {
+            this.source = source;
+            this.centroids = centroids;
+            this.bounds = bounds;
+            this.order = order;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            int length = end - start;
+            if (length > PARALLEL_THRESHOLD) {
+                int middle = start + (length >> 1);
+                invokeAll(
+                        new TriangleBoundsTask(source, centroids, bounds, order, start, middle),
+                        new TriangleBoundsTask(source, centroids, bounds, order, middle, end));
+                return;
+            }
+
+            for (int triangle = start; triangle < end; triangle++) {
+                int offset = triangle * WorldFile.FLOATS_PER_TRIANGLE;
+                for (int axis = 0; axis < 3; axis++) {
+                    float a = source.get(offset + axis);
+                    float b = source.get(offset + WorldFile.FLOATS_PER_VERTEX + axis);
+                    float c = source.get(offset + WorldFile.FLOATS_PER_VERTEX * 2 + axis);
+                    float min = Math.min(a, Math.min(b, c));
+                    float max = Math.max(a, Math.max(b, c));
+                    bounds[triangle * 6 + axis] = min;
+                    bounds[triangle * 6 + axis + 3] = max;
+                    centroids[triangle * 3 + axis] = (min + max) * 0.5f;
+                }
+                order[triangle] = triangle;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,202 @@
+package net.smert.lwjgl.examples.world;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.lwjgl.BufferUtils;
+
+/**
+ * The compiled (binary) world format used by NeheLesson_10. A world is a list of triangles and every vertex is five
+ * floats: x, y, z, u, v. The vertices are stored exactly the way they go into a vertex buffer object so loading a world
+ * is a single memory mapping with no parsing and no objects per vertex.
+ *
+ * File format (little endian): magic, version, triangle count, floats per vertex, then the vertex data.
+ *
+ * Worlds are written by WorldCompiler, a tool in the test sources, from the text format read by WorldTextReader.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldFile {
+
+    public final static int FILE_MAGIC = 0x444C574E; // "NWLD"
+    public final static int FILE_VERSION = 1;
+    public final static int FLOATS_PER_TRIANGLE = 15;
+    public final static int FLOATS_PER_VERTEX = 5;
+    public final static int HEADER_SIZE = 16;
+
+    private static FloatBuffer getVertices(ByteBuffer buffer, String name) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if ((buffer.remaining() < HEADER_SIZE) || (buffer.getInt(0) != FILE_MAGIC)
+                || (buffer.getInt(4) != FILE_VERSION) || (buffer.getInt(12) != FLOATS_PER_VERTEX)) {
+            throw new IOException("Invalid world file: " + name);
+        }
+
+        int numTriangles = buffer.getInt(8);
+        if ((numTriangles < 0) || ((long) numTriangles * FLOATS_PER_TRIANGLE * 4 != buffer.limit() - HEADER_SIZE)) {
+            throw new IOException("Truncated world file: " + name);
+        }
+
+        buffer.position(HEADER_SIZE);
+        ByteBuffer vertexData = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+
+        // The file is little endian. Anywhere else the data must be swapped before OpenGL can use it.
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN) {
+            FloatBuffer vertices = BufferUtils.createFloatBuffer(numTriangles * FLOATS_PER_TRIANGLE);
+            vertices.put(vertexData.asFloatBuffer()).flip();
+            return vertices;
+        }
+
+        return vertexData.asFloatBuffer();
+    }
+
+    private static String getExtension(String name) {
+        int lastPeriod = name.lastIndexOf('.');
+        return (lastPeriod == -1) ? "" : name.substring(lastPeriod + 1).toLowerCase();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    /**
+     * Loads a world from a file on disk. Files ending in .txt are parsed as text and anything else is memory mapped as
+     * a compiled world.
+     */
+    public static FloatBuffer load(File file) throws IOException {
+        if (getExtension(file.getName()).equals("txt")) {
+            return WorldTextReader.read(file);
+        }
+        return map(file);
+    }
+
+    /**
+     * Loads a world resource relative to resourceClass. The compiled world (name + ".bin") is used when it exists,
+     * otherwise the text world (name + ".txt") is parsed. Compiled worlds are memory mapped unless they are inside a
+     * JAR.
+     */
+    public static FloatBuffer load(Class<?> resourceClass, String name) throws IOException {
+        URL binUrl = resourceClass.getResource(name + ".bin");
+
+        if (binUrl != null) {
+            if (binUrl.getProtocol().equals("file")) {
+                try {
+                    return map(new File(binUrl.toURI()));
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    // Fall through and read it as a stream
+                }
+            }
+            try (InputStream is = binUrl.openStream()) {
+                return read(is, binUrl.toString());
+            }
+        }
+
+        try (InputStream is = resourceClass.getResourceAsStream(name + ".txt")) {
+            if (is == null) {
+                throw new IOException("Unable to find world: " + name);
+            }
+            return WorldTextReader.read(is);
+        }
+    }
+
+    /**
+     * Memory maps a compiled world. The returned buffer is a read only view of the mapping and can be handed to
+     * glBufferData as is.
+     */
+    public static FloatBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            return getVertices(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file.getPath());
+        }
+    }
+
+    /**
+     * Reads a compiled world from a stream into a direct buffer. Used when the world can't be mapped.
+     */
+    public static FloatBuffer read(InputStream is, String name) throws IOException {
+        DataInputStream dis = new DataInputStream(is);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        dis.readFully(header.array());
+
+        int numTriangles = header.order(ByteOrder.LITTLE_ENDIAN).getInt(8);
+        if ((numTriangles < 0) || (numTriangles > (Integer.MAX_VALUE - HEADER_SIZE) / (FLOATS_PER_TRIANGLE * 4))) {
+            throw new IOException("Invalid world file: " + name);
+        }
+
+        ByteBuffer buffer = BufferUtils.createByteBuffer(HEADER_SIZE + numTriangles * FLOATS_PER_TRIANGLE * 4);
+        buffer.put(header);
+
+        ReadableByteChannel channel = Channels.newChannel(dis);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Truncated world file: " + name);
+            }
+        }
+
+        buffer.flip();
+        return getVertices(buffer, name);
+    }
+
+    /**
+     * Writes the vertices from the position of the buffer up to its limit as a compiled world. The position of the
+     * buffer is not changed.
+     */
+    public static void write(File file, FloatBuffer vertices) throws IOException {
+        if (vertices.remaining() % FLOATS_PER_TRIANGLE != 0) {
+            throw new IllegalArgumentException("Vertices must be whole triangles!");
+        }
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        // Write to a temporary file first so a reader never sees a partial world
+        File tmpFile = File.createTempFile(file.getName(), ".part", directory);
+
+        try {
+            try (FileChannel channel = FileChannel.open(tmpFile.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+                bytes.putInt(FILE_MAGIC);
+                bytes.putInt(FILE_VERSION);
+                bytes.putInt(vertices.remaining() / FLOATS_PER_TRIANGLE);
+                bytes.putInt(FLOATS_PER_VERTEX);
+                bytes.flip();
+                writeFully(channel, bytes);
+
+                FloatBuffer source = vertices.duplicate();
+                while (source.hasRemaining()) {
+                    bytes.clear();
+                    FloatBuffer floats = bytes.asFloatBuffer();
+                    int count = Math.min(floats.remaining(), source.remaining());
+                    FloatBuffer chunk = source.duplicate();
+                    chunk.limit(chunk.position() + count);
+                    floats.put(chunk);
+                    source.position(source.position() + count);
+                    bytes.limit(count * 4);
+                    writeFully(channel, bytes);
+                }
+            }
+            Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            tmpFile.delete();
+        }
+    }
+
+}
@@ -0,0 +1,301 @@
+package net.smert.lwjgl.examples.world;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Reads the text world format from NeHe lesson 10. Blank lines and comments starting with // are ignored. The world
+ * starts with "NUMPOLLIES n" followed by three lines per triangle of "x y z u v".
+ *
+ * The file is streamed through one reused byte buffer and numbers are parsed straight from the bytes. No String,
+ * tokenizer or boxed Float is created per line or per number. When the digits of a number without its decimal point
+ * are at most 2^24 and the power of ten is at most ten either way (everything world files normally contain), the
+ * number is converted with a single float multiply or divide of two exact floats, which rounds exactly like
+ * Float.parseFloat. Other numbers fall back to Float.parseFloat. Numbers have no length limit, the buffer grows when
+ * one doesn't fit.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldTextReader {
+
+    private final static int BUFFER_SIZE = 64 * 1024;
+    private final static int CHUNK_SIZE = 4 * 1024;
+    private final static int MAX_EXACT_MANTISSA = 1 << 24;
+    private final static int MAX_EXACT_POWER = 10;
+    private final static int NUMBER_LENGTH = 64; // Buffered before parsing, longer numbers go through ensureToken()
+    private final static byte[] NUMPOLLIES = {'N', 'U', 'M', 'P', 'O', 'L', 'L', 'I', 'E', 'S'};
+    private final static float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    private boolean endOfStream;
+    private int limit;
+    private int line;
+    private int position;
+    private byte[] bytes;
+    private final float[] chunk;
+    private ByteBuffer buffer;
+    private final ReadableByteChannel channel;
+
+    private WorldTextReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        bytes = new byte[BUFFER_SIZE];
+        buffer = ByteBuffer.wrap(bytes);
+        chunk = new float[CHUNK_SIZE];
+        line = 1;
+    }
+
+    /**
+     * Makes sure at least count bytes are buffered unless the stream ends first. Unread bytes are moved to the front of
+     * the buffer.
+     */
+    private void ensure(int count) throws IOException {
+        if ((limit - position >= count) || (endOfStream == true)) {
+            return;
+        }
+
+        System.arraycopy(bytes, position, bytes, 0, limit - position);
+        limit -= position;
+        position = 0;
+
+        buffer.limit(bytes.length);
+        buffer.position(limit);
+        while ((limit < count) && (endOfStream == false)) {
+            int read = channel.read(buffer);
+            if (read == -1) {
+                endOfStream = true;
+            } else {
+                limit += read;
+            }
+        }
+    }
+
+    /**
+     * Makes sure the whole token at the position is buffered along with the delimiter after it, unless the stream ends
+     * first. The buffer is doubled for a token that doesn't fit.
+     */
+    private void ensureToken() throws IOException {
+        int length = 0;
+        while (true) {
+            for (; position + length < limit; length++) {
+                if (isDelimiter(bytes[position + length]) == true) {
+                    return;
+                }
+            }
+            if (endOfStream == true) {
+                return;
+            }
+            if (length + 1 > bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+            ensure(length + 1);
+        }
+    }
+
+    private int next() throws IOException {
+        ensure(1);
+        return (position < limit) ? bytes[position++] : -1;
+    }
+
+    private int peek() throws IOException {
+        ensure(1);
+        return (position < limit) ? bytes[position] : -1;
+    }
+
+    private float parseFloat() throws IOException {
+        ensure(NUMBER_LENGTH);
+
+        final byte[] b = bytes;
+        final int end = limit;
+        int start = position;
+        int p = start;
+        int c = (p < end) ? b[p] : -1;
+
+        boolean negative = (c == '-');
+        if ((c == '-') || (c == '+')) {
+            c = (++p < end) ? b[p] : -1;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int numberDigits = 0;
+        int scale = 0;
+
+        while ((c >= '0') && (c <= '9')) {
+            if ((mantissa != 0) || (c != '0')) {
+                digits++;
+            }
+            mantissa = (digits <= 18) ? mantissa * 10 + (c - '0') : mantissa;
+            numberDigits++;
+            c = (++p < end) ? b[p] : -1;
+        }
+        if (c == '.') {
+            c = (++p < end) ? b[p] : -1;
+            while ((c >= '0') && (c <= '9')) {
+                if ((mantissa != 0) || (c != '0')) {
+                    digits++;
+                }
+                mantissa = (digits <= 18) ? mantissa * 10 + (c - '0') : mantissa;
+                numberDigits++;
+                scale--;
+                c = (++p < end) ? b[p] : -1;
+            }
+        }
+        if (numberDigits == 0) {
+            throw new IOException("Expected a number on line " + line);
+        }
+        if ((c == 'e') || (c == 'E')) {
+            c = (++p < end) ? b[p] : -1;
+            boolean negativeExponent = (c == '-');
+            if ((c == '-') || (c == '+')) {
+                c = (++p < end) ? b[p] : -1;
+            }
+            int exponentDigits = 0;
+            int exponent = 0;
+            while ((c >= '0') && (c <= '9')) {
+                exponent = Math.min(exponent * 10 + (c - '0'), 1000);
+                exponentDigits++;
+                c = (++p < end) ? b[p] : -1;
+            }
+            if (exponentDigits == 0) {
+                throw new IOException("Invalid exponent on line " + line);
+            }
+            scale += negativeExponent ? -exponent : exponent;
+        }
+        if ((p == end) && (endOfStream == false)) {
+            // The number goes on past what is buffered
+            ensureToken();
+            return parseFloat();
+        }
+        if (isDelimiter(c) == false) {
+            throw new IOException("Invalid number on line " + line);
+        }
+        position = p;
+
+        // Both the mantissa and the power of ten are exact floats so one operation gives the correctly rounded result
+        if ((digits <= 18) && (mantissa <= MAX_EXACT_MANTISSA) && (Math.abs(scale) <= MAX_EXACT_POWER)) {
+            float value = (scale < 0) ? mantissa / POWERS_OF_TEN[-scale] : mantissa * POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        return Float.parseFloat(new String(b, start, p - start, StandardCharsets.ISO_8859_1));
+    }
+
+    private int parseInt() throws IOException {
+        skipWhitespaceAndComments();
+
+        int c;
+        int digits = 0;
+        long value = 0;
+        while (((c = peek()) >= '0') && (c <= '9')) {
+            position++;
+            value = Math.min(value * 10 + (c - '0'), Integer.MAX_VALUE);
+            digits++;
+        }
+
+        if ((digits == 0) || (isDelimiter(c) == false)) {
+            throw new IOException("Expected a whole number on line " + line);
+        }
+
+        return (int) value;
+    }
+
+    private FloatBuffer readWorld() throws IOException {
+        skipWhitespaceAndComments();
+
+        for (int i = 0; i < NUMPOLLIES.length; i++) {
+            if (next() != NUMPOLLIES[i]) {
+                throw new IOException("The world must start with NUMPOLLIES");
+            }
+        }
+
+        int numTriangles = parseInt();
+        if (numTriangles > Integer.MAX_VALUE / (WorldFile.FLOATS_PER_TRIANGLE * 4)) {
+            throw new IOException("Too many triangles: " + numTriangles);
+        }
+
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(numTriangles * WorldFile.FLOATS_PER_TRIANGLE);
+
+        // Numbers are gathered in an array first since one bulk put is much cheaper than a put per float
+        while (vertices.hasRemaining()) {
+            int count = Math.min(chunk.length, vertices.remaining());
+            for (int i = 0; i < count; i++) {
+                skipWhitespaceAndComments();
+                if (peek() == -1) {
+                    throw new IOException("The world ended after " + (vertices.position() + i)
+                            / WorldFile.FLOATS_PER_VERTEX + " of " + numTriangles * 3 + " vertices");
+                }
+                chunk[i] = parseFloat();
+            }
+            vertices.put(chunk, 0, count);
+        }
+
+        vertices.flip();
+        return vertices;
+    }
+
+    private void skipWhitespaceAndComments() throws IOException {
+        while (true) {
+            if (position == limit) {
+                ensure(1);
+                if (position == limit) {
+                    return;
+                }
+            }
+
+            int c = bytes[position];
+            if (c == '\n') {
+                line++;
+                position++;
+            } else if ((c == ' ') || (c == '\t') || (c == '\r')) {
+                position++;
+            } else if (c == '/') {
+                position++;
+                if (next() != '/') {
+                    throw new IOException("Unexpected / on line " + line);
+                }
+                while (((c = peek()) != '\n') && (c != -1)) {
+                    position++;
+                }
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static boolean isDelimiter(int c) {
+        return (c == ' ') || (c == '\t') || (c == '\r') || (c == '\n') || (c == '/') || (c == -1);
+    }
+
+    /**
+     * Reads a whole world into a direct buffer laid out the same as WorldFile.
+     */
+    public static FloatBuffer read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    /**
+     * Reads a whole world into a direct buffer laid out the same as WorldFile. The stream is not closed.
+     */
+    public static FloatBuffer read(InputStream is) throws IOException {
+        return read(Channels.newChannel(is));
+    }
+
+    /**
+     * Reads a whole world into a direct buffer laid out the same as WorldFile. The channel is not closed.
+     */
+    public static FloatBuffer read(ReadableByteChannel channel) throws IOException {
+        return new WorldTextReader(channel).readWorld();
+    }
+
+}
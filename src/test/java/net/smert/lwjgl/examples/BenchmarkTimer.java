@@ -0,0 +1,58 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+/**
+ * Times small kernels for the benchmarks. Every result a kernel returns is added to a sink so the JIT can't remove the
+ * work, and printSink() prints it at the end of a run for the same reason.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class BenchmarkTimer {
+
+    private final static int PASSES = 3;
+
+    private static float sink;
+
+    private BenchmarkTimer() {
+    }
+
+    public static void printSink() {
+        System.out.println("(" + sink + ")");
+    }
+
+    /**
+     * Runs the kernel repeats times in a row and returns the nanoseconds taken, keeping the best of a few passes.
+     */
+    public static long time(Kernel kernel, int repeats) {
+        long best = Long.MAX_VALUE;
+        for (int pass = 0; pass < PASSES; pass++) {
+            long startTime = System.nanoTime();
+            for (int i = 0; i < repeats; i++) {
+                sink += kernel.run();
+            }
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        return best;
+    }
+
+    public static interface Kernel {
+
+        /**
+         * Does one repeat of the work and returns something that depends on it.
+         */
+        public float run();
+
+    }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures the start up cost of the class data cache with the JAR from CustomClassLoaderTest. For every round a new
+ * CustomClassLoader is made, the first class is loaded and then the rest of them. Each step is timed with the cache:
+ *
+ * - disabled: the class cache property is not set
+ * - cold: the property is set and the cache directory is empty
+ * - warm: the property is set and every class is in the cache, so each one has its CRC32 checked before it is defined
+ *
+ * The home directory is pointed at a temporary folder. Prints the best of the rounds for each step.
+ *
+ * Usage: ClassDataCacheBenchmark [rounds]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ClassDataCacheBenchmark {
+
+    private final static String CLASS_CACHE_PROPERTY = "net.smert.lwjgl.examples.classcache";
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void saveClassDataCache(ClassLoader loader) throws Exception {
+        Object cache = loader.getClass().getMethod("getClassDataCache").invoke(loader);
+        cache.getClass().getMethod("save").invoke(cache);
+    }
+
+    private static long[] time(File jar, File home, List<String> classNames, String mode, int rounds)
+            throws Exception {
+        File cacheDir = new File(home, ".lwjgl-examples");
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        delete(cacheDir);
+        if (mode.equals("disabled")) {
+            System.clearProperty(CLASS_CACHE_PROPERTY);
+        } else {
+            System.setProperty(CLASS_CACHE_PROPERTY, "true");
+        }
+        for (int round = 0; round < rounds; round++) {
+            if (mode.equals("cold")) {
+                delete(cacheDir);
+            }
+
+            long startTime = System.nanoTime();
+            ClassLoader loader = CustomClassLoaderTest.createCustomClassLoader(jar);
+            long constructedTime = System.nanoTime();
+            loader.loadClass(classNames.get(0));
+            long firstClassTime = System.nanoTime();
+            for (String className : classNames) {
+                loader.loadClass(className);
+            }
+            long allClassesTime = System.nanoTime();
+
+            best[0] = Math.min(best[0], constructedTime - startTime);
+            best[1] = Math.min(best[1], firstClassTime - constructedTime);
+            best[2] = Math.min(best[2], allClassesTime - constructedTime);
+
+            // Normally done by a shutdown hook, so it isn't timed
+            if (mode.equals("disabled") == false) {
+                saveClassDataCache(loader);
+            }
+        }
+        System.clearProperty(CLASS_CACHE_PROPERTY);
+        delete(cacheDir);
+        return best;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+
+        // The shutdown hooks of every loader save to a cache directory which is gone by then
+        Logger log = Logger.getLogger(CustomClassLoader.class.getName());
+        log.setLevel(Level.OFF);
+
+        File home = Files.createTempDirectory("ClassDataCacheBenchmark").toFile();
+        String oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.getAbsolutePath());
+        try {
+            File jar = new File(home, "classes.jar");
+            List<String> classNames = CustomClassLoaderTest.createJar(jar);
+            Collections.sort(classNames);
+            System.out.println("Classes: " + classNames.size() + ".");
+
+            String[] modes = {"disabled", "cold", "warm"};
+
+            // First pass warms up
+            for (String mode : modes) {
+                time(jar, home, classNames, mode, rounds);
+            }
+
+            for (String mode : modes) {
+                long[] nanos = time(jar, home, classNames, mode, rounds);
+                System.out.println(String.format("%-9s construct: %7.3f ms. First class: %7.3f ms. "
+                        + "All classes: %7.3f ms.", mode + ":", nanos[0] / 1000000.0, nanos[1] / 1000000.0,
+                        nanos[2] / 1000000.0));
+            }
+        } finally {
+            System.setProperty("user.home", oldHome);
+            delete(home);
+        }
+    }
+
+}
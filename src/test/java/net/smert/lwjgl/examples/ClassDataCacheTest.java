@@ -0,0 +1,134 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Saves and opens ClassDataCache files and checks that class bytes are only handed out when they match the CRC32 of
+ * the JAR entry.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ClassDataCacheTest {
+
+    private final static String FILENAME = "net/smert/Example.class";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] classBytes;
+    private File cacheDir;
+    private File jarFile;
+
+    private static long getCrc(byte[] bytes) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        return crc32.getValue();
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private ClassDataCache saveClass() throws IOException {
+        ClassDataCache cache = ClassDataCache.open(jarFile, cacheDir);
+        cache.record(FILENAME, ByteBuffer.wrap(classBytes));
+        cache.save();
+        return ClassDataCache.open(jarFile, cacheDir);
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        classBytes = "Not really a class but the cache doesn't care".getBytes(StandardCharsets.UTF_8);
+        cacheDir = folder.newFolder("classes");
+        jarFile = folder.newFile("examples.jar");
+    }
+
+    @Test
+    public void testSavedClassIsReturned() throws IOException {
+        ClassDataCache cache = saveClass();
+
+        assertEquals(1, cache.size());
+        assertFalse(cache.isDirty());
+        ByteBuffer classBuffer = cache.getClassBuffer(FILENAME, getCrc(classBytes));
+        assertNotNull(classBuffer);
+        assertArrayEquals(classBytes, toArray(classBuffer));
+        assertNull(cache.getClassBuffer("net/smert/Missing.class", getCrc(classBytes)));
+    }
+
+    @Test
+    public void testOtherJarEntryCrcIsRejected() throws IOException {
+        ClassDataCache cache = saveClass();
+
+        assertNull(cache.getClassBuffer(FILENAME, getCrc(classBytes) ^ 1));
+        assertNull(cache.getClassBuffer(FILENAME, -1));
+    }
+
+    @Test
+    public void testCorruptClassIsRejected() throws IOException {
+        ClassDataCache cache = saveClass();
+        File file = cache.getFile();
+
+        // Flip the last byte which belongs to the class bytes
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xff);
+        }
+
+        assertNull(ClassDataCache.open(jarFile, cacheDir).getClassBuffer(FILENAME, getCrc(classBytes)));
+    }
+
+    @Test
+    public void testRecordedClassReplacesRejectedOne() throws IOException {
+        ClassDataCache cache = saveClass();
+        byte[] newClassBytes = "A rebuilt class".getBytes(StandardCharsets.UTF_8);
+        assertNull(cache.getClassBuffer(FILENAME, getCrc(newClassBytes)));
+
+        // The open cache must not stop the file from being replaced
+        cache.record(FILENAME, ByteBuffer.wrap(newClassBytes));
+        assertTrue(cache.isDirty());
+        cache.save();
+
+        cache = ClassDataCache.open(jarFile, cacheDir);
+        assertEquals(1, cache.size());
+        assertArrayEquals(newClassBytes, toArray(cache.getClassBuffer(FILENAME, getCrc(newClassBytes))));
+    }
+
+    @Test
+    public void testInvalidFileGivesEmptyCache() throws IOException {
+        ClassDataCache cache = saveClass();
+        try (RandomAccessFile raf = new RandomAccessFile(cache.getFile(), "rw")) {
+            raf.setLength(6);
+        }
+
+        cache = ClassDataCache.open(jarFile, cacheDir);
+        assertEquals(0, cache.size());
+        assertNull(cache.getClassBuffer(FILENAME, getCrc(classBytes)));
+    }
+
+}
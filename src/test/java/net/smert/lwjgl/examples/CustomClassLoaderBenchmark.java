@@ -0,0 +1,126 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Measures how class loading through CustomClassLoader scales with threads. The classes of the JAR from
+ * CustomClassLoaderTest are shared out between 1 to N threads which load them at the same time from a new loader. This
+ * is done with the per class locking of the loader and again with every loadClass wrapped in a lock on the whole
+ * loader, the way a loader that is not parallel capable behaves. Prints the classes defined per millisecond and the
+ * speedup over one thread for both, keeping the best of the rounds.
+ *
+ * Usage: CustomClassLoaderBenchmark [maxThreads] [rounds]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class CustomClassLoaderBenchmark {
+
+    private static long loadInParallel(File jar, List<String> classNames, int threads, final boolean lockLoader,
+            long seed) throws Exception {
+        final ClassLoader loader = CustomClassLoaderTest.createCustomClassLoader(jar);
+        List<String> order = new ArrayList<>(classNames);
+        Collections.shuffle(order, new Random(seed));
+
+        final CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                final List<String> share = new ArrayList<>();
+                for (int j = i; j < order.size(); j += threads) {
+                    share.add(order.get(j));
+                }
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+                        barrier.await();
+                        for (String className : share) {
+                            if (lockLoader == true) {
+                                synchronized (loader) {
+                                    loader.loadClass(className);
+                                }
+                            } else {
+                                loader.loadClass(className);
+                            }
+                        }
+                        return null;
+                    }
+
+                }));
+            }
+
+            // Timed from before the release since the threads may finish before this one runs again
+            long startTime = System.nanoTime();
+            barrier.await();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - startTime;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long time(File jar, List<String> classNames, int threads, boolean lockLoader, int rounds)
+            throws Exception {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            best = Math.min(best, loadInParallel(jar, classNames, threads, lockLoader, round));
+        }
+        return best;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxThreads = (args.length > 0) ? Integer.parseInt(args[0])
+                : Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 50;
+
+        File jar = File.createTempFile("CustomClassLoaderBenchmark", ".jar");
+        jar.deleteOnExit();
+        List<String> classNames = CustomClassLoaderTest.createJar(jar);
+        System.out.println("Classes: " + classNames.size() + ". Processors: "
+                + Runtime.getRuntime().availableProcessors() + ".");
+
+        // First pass warms up
+        time(jar, classNames, maxThreads, false, rounds);
+        time(jar, classNames, maxThreads, true, rounds);
+
+        long perClassBase = 0;
+        long loaderBase = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            long perClass = time(jar, classNames, threads, false, rounds);
+            long loader = time(jar, classNames, threads, true, rounds);
+            if (threads == 1) {
+                perClassBase = perClass;
+                loaderBase = loader;
+            }
+            System.out.println(String.format("%2d threads. Per class lock: %7.1f classes/ms (%.2fx). "
+                    + "Loader lock: %7.1f classes/ms (%.2fx).", threads,
+                    classNames.size() * 1000000.0 / perClass, (double) perClassBase / perClass,
+                    classNames.size() * 1000000.0 / loader, (double) loaderBase / loader));
+        }
+    }
+
+}
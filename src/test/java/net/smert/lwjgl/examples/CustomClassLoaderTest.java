@@ -0,0 +1,263 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Loads the same classes from many threads at once through a CustomClassLoader that was itself loaded from a JAR, the
+ * only case where it defines classes. Every thread has to get the same Class for a name and every class has to be
+ * defined exactly once, with and without mapped JARs. Native libraries in the JAR are checked with the home directory
+ * pointed at a temporary folder.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class CustomClassLoaderTest {
+
+    private final static int ROUNDS = 5;
+    private final static int THREADS = 8;
+    private final static String MAPPED_JARS_PROPERTY = "net.smert.lwjgl.examples.mappedjars";
+    private final static String NATIVE_NAME = "cachetest";
+    private final static String PACKAGE = "net.smert.lwjgl.examples";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private byte[] nativeBytes;
+    private File home;
+    private File jar;
+    private List<String> classNames;
+    private String oldHome;
+
+    private static void addClasses(JarOutputStream jos, File directory, String packageName, List<String> classNames)
+            throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Unable to list: " + directory);
+        }
+        String path = packageName.replace('.', '/');
+        for (File file : files) {
+            String name = file.getName();
+            if ((file.isFile() == false) || (name.endsWith(".class") == false)) {
+                continue;
+            }
+            jos.putNextEntry(new JarEntry(path + "/" + name));
+            jos.write(Files.readAllBytes(file.toPath()));
+            jos.closeEntry();
+            classNames.add(packageName + "." + name.substring(0, name.length() - 6));
+        }
+    }
+
+    private ClassLoader createCustomClassLoader() throws Exception {
+        return createCustomClassLoader(jar);
+    }
+
+    /**
+     * Calls the protected findLibrary() of a CustomClassLoader from createCustomClassLoader().
+     */
+    static File findLibrary(ClassLoader loader, String libraryName) throws Exception {
+        Method findLibrary = loader.getClass().getDeclaredMethod("findLibrary", String.class);
+        findLibrary.setAccessible(true);
+        String path = (String) findLibrary.invoke(loader, libraryName);
+        return (path != null) ? new File(path) : null;
+    }
+
+    private int getClassesDefined(ClassLoader loader) throws Exception {
+        return (Integer) loader.getClass().getMethod("getClassesDefined").invoke(loader);
+    }
+
+    private void loadInParallel(final ClassLoader loader) throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<Class<?>>>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                final long seed = i;
+                futures.add(executor.submit(new Callable<List<Class<?>>>() {
+
+                    @Override
+                    public List<Class<?>> call() throws Exception {
+                        // Each thread asks for the classes in its own order
+                        List<String> order = new ArrayList<>(classNames);
+                        Collections.shuffle(order, new Random(seed));
+                        barrier.await(10, TimeUnit.SECONDS);
+                        for (String className : order) {
+                            loader.loadClass(className);
+                        }
+                        List<Class<?>> classes = new ArrayList<>();
+                        for (String className : classNames) {
+                            classes.add(loader.loadClass(className));
+                        }
+                        return classes;
+                    }
+
+                }));
+            }
+
+            List<Class<?>> first = futures.get(0).get(60, TimeUnit.SECONDS);
+            for (int i = 0; i < classNames.size(); i++) {
+                Class<?> clazz = first.get(i);
+                assertEquals(classNames.get(i), clazz.getName());
+                assertSame(loader, clazz.getClassLoader());
+                assertNotNull(clazz.getPackage());
+            }
+            for (int i = 1; i < THREADS; i++) {
+                List<Class<?>> classes = futures.get(i).get(60, TimeUnit.SECONDS);
+                for (int j = 0; j < classNames.size(); j++) {
+                    assertSame(classNames.get(j), first.get(j), classes.get(j));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(classNames.size(), getClassesDefined(loader));
+    }
+
+    /**
+     * Creates a CustomClassLoader which was itself loaded from the JAR, the only case where it defines classes.
+     */
+    static ClassLoader createCustomClassLoader(File jar) throws Exception {
+        // Neither loader can see the test class path so classes from the JAR are never found by a parent
+        ClassLoader parent = new URLClassLoader(new URL[0], null);
+        ClassLoader jarLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, parent);
+        Class<?> loaderClass = jarLoader.loadClass(PACKAGE + ".CustomClassLoader");
+        assertSame(jarLoader, loaderClass.getClassLoader());
+        return (ClassLoader) loaderClass.getConstructor(ClassLoader.class).newInstance(parent);
+    }
+
+    /**
+     * Writes a JAR of the class loader itself and the math classes, none of which need LWJGL to be defined. Returns
+     * the names of the math classes.
+     */
+    static List<String> createJar(File jar) throws IOException, URISyntaxException {
+        return createJar(jar, null, null);
+    }
+
+    /**
+     * Same as createJar(File) with a native library added to the root of the JAR when nativeName is not null.
+     */
+    static List<String> createJar(File jar, String nativeName, byte[] nativeBytes)
+            throws IOException, URISyntaxException {
+        URL location = CustomClassLoader.class.getResource("CustomClassLoader.class");
+        assertEquals("Tests must run from a class directory", "file", location.getProtocol());
+        File directory = new File(location.toURI()).getParentFile();
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+        List<String> classNames = new ArrayList<>();
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            addClasses(jos, directory, PACKAGE, new ArrayList<String>());
+            addClasses(jos, new File(directory, "smert"), PACKAGE + ".smert", classNames);
+            if (nativeName != null) {
+                jos.putNextEntry(new JarEntry(System.mapLibraryName(nativeName)));
+                jos.write(nativeBytes);
+                jos.closeEntry();
+            }
+        }
+        return classNames;
+    }
+
+    @Before
+    public void setUp() throws IOException, URISyntaxException {
+        nativeBytes = new byte[64 * 1024];
+        new Random(1).nextBytes(nativeBytes);
+        home = folder.newFolder("home");
+        oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.getAbsolutePath());
+        jar = folder.newFile("classes.jar");
+        classNames = createJar(jar, NATIVE_NAME, nativeBytes);
+        assertFalse(classNames.isEmpty());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(MAPPED_JARS_PROPERTY);
+        System.setProperty("user.home", oldHome);
+    }
+
+    @Test
+    public void testNativeCache() throws Exception {
+        File nativesDir = new File(new File(home, ".lwjgl-examples"), "natives");
+        File cachedFile = findLibrary(createCustomClassLoader(), NATIVE_NAME);
+        assertEquals(nativesDir, cachedFile.getParentFile().getParentFile());
+        assertArrayEquals(nativeBytes, Files.readAllBytes(cachedFile.toPath()));
+
+        // A warm start uses the same file
+        assertEquals(cachedFile, findLibrary(createCustomClassLoader(), NATIVE_NAME));
+
+        // A file that changed with the same size is checked again and replaced
+        byte[] corrupt = nativeBytes.clone();
+        corrupt[0]++;
+        Files.write(cachedFile.toPath(), corrupt);
+        assertTrue(cachedFile.setLastModified(cachedFile.lastModified() - 10000));
+        assertEquals(cachedFile, findLibrary(createCustomClassLoader(), NATIVE_NAME));
+        assertArrayEquals(nativeBytes, Files.readAllBytes(cachedFile.toPath()));
+    }
+
+    @Test
+    public void testNativeCacheFallsBackToTempFile() throws Exception {
+        // A file where the cache directory should be makes the cache unusable
+        assertTrue(new File(home, ".lwjgl-examples").createNewFile());
+
+        File tmpFile = findLibrary(createCustomClassLoader(), NATIVE_NAME);
+        assertFalse(tmpFile.getAbsolutePath().startsWith(home.getAbsolutePath()));
+        assertArrayEquals(nativeBytes, Files.readAllBytes(tmpFile.toPath()));
+    }
+
+    @Test
+    public void testParallelLoading() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            loadInParallel(createCustomClassLoader());
+        }
+    }
+
+    @Test
+    public void testParallelLoadingFromMappedJar() throws Exception {
+        System.setProperty(MAPPED_JARS_PROPERTY, "true");
+        for (int round = 0; round < ROUNDS; round++) {
+            ClassLoader loader = createCustomClassLoader();
+            assertEquals(Boolean.TRUE, loader.getClass().getMethod("isUseMappedJars").invoke(loader));
+            loadInParallel(loader);
+        }
+    }
+
+}
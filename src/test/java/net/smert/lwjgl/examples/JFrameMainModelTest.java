@@ -0,0 +1,172 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Scans a small jar of test classes for main methods with MainMethodScanner through JFrameMainModel, and checks the
+ * index written for the jar is only used while the jar keeps the same length and modification time.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class JFrameMainModelTest {
+
+    private final static String PACKAGE_PATH = "net/smert/lwjgl/examples/scan/";
+    private final static List<String> EXPECTED = Arrays.asList(
+            "net.smert.lwjgl.examples.scan.WithMain", "net.smert.lwjgl.examples.scan.WithMainToo");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File indexFile;
+    private File jar;
+    private JFrameMainModel model;
+
+    private static byte[] getClassBytes(Class<?> clazz) throws IOException, URISyntaxException {
+        String name = clazz.getName();
+        URL location = clazz.getResource(name.substring(name.lastIndexOf('.') + 1) + ".class");
+        return Files.readAllBytes(Paths.get(location.toURI()));
+    }
+
+    private static void putClass(JarOutputStream jos, String name, Class<?> clazz)
+            throws IOException, URISyntaxException {
+        jos.putNextEntry(new JarEntry(PACKAGE_PATH + name + ".class"));
+        jos.write(getClassBytes(clazz));
+        jos.closeEntry();
+    }
+
+    /**
+     * Replaces the classes in the index with a name that is not in the jar, keeping its key.
+     */
+    private void plantIndex() throws IOException {
+        List<String> lines = Files.readAllLines(indexFile.toPath(), StandardCharsets.UTF_8);
+        Files.write(indexFile.toPath(), Arrays.asList(lines.get(0), "net.smert.lwjgl.examples.scan.FromIndex"),
+                StandardCharsets.UTF_8);
+    }
+
+    @Before
+    public void setUp() throws IOException, URISyntaxException {
+        model = new JFrameMainModel();
+        indexFile = new File(folder.newFolder("launcher"), "MainClassIndex.txt");
+        jar = folder.newFile("examples.jar");
+        try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar))) {
+            putClass(jos, "WithMain", WithMain.class);
+            putClass(jos, "NoMain", NoMain.class);
+            putClass(jos, "InstanceMain", InstanceMain.class);
+            putClass(jos, "WrongArguments", WrongArguments.class);
+            putClass(jos, "WithMain$Inner", WithMain.class);
+            putClass(jos, "WithMainToo", WithMain.class);
+        }
+    }
+
+    @Test
+    public void testMainMethodScanner() throws IOException, URISyntaxException {
+        assertTrue(MainMethodScanner.hasMainMethod(getClassBytes(WithMain.class)));
+        assertFalse(MainMethodScanner.hasMainMethod(getClassBytes(NoMain.class)));
+        assertFalse(MainMethodScanner.hasMainMethod(getClassBytes(InstanceMain.class)));
+        assertFalse(MainMethodScanner.hasMainMethod(getClassBytes(WrongArguments.class)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMainMethodScannerRejectsOtherFiles() throws IOException {
+        MainMethodScanner.hasMainMethod("Not a class file".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testScanFindsMainClasses() {
+        assertEquals(EXPECTED, model.getMainClassesFromJar(jar, null));
+        assertFalse(indexFile.exists());
+    }
+
+    @Test
+    public void testIndexIsUsedForTheSameJar() throws IOException {
+        assertEquals(EXPECTED, model.getMainClassesFromJar(jar, indexFile));
+        assertTrue(indexFile.isFile());
+
+        plantIndex();
+
+        assertEquals(Arrays.asList("net.smert.lwjgl.examples.scan.FromIndex"),
+                model.getMainClassesFromJar(jar, indexFile));
+    }
+
+    @Test
+    public void testChangedModificationTimeInvalidatesIndex() throws IOException {
+        model.getMainClassesFromJar(jar, indexFile);
+        plantIndex();
+
+        assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+
+        assertEquals(EXPECTED, model.getMainClassesFromJar(jar, indexFile));
+        assertEquals(EXPECTED, model.getMainClassesFromJar(jar, indexFile));
+    }
+
+    @Test
+    public void testChangedLengthInvalidatesIndex() throws IOException {
+        model.getMainClassesFromJar(jar, indexFile);
+        plantIndex();
+
+        // Bytes after the end of the zip are ignored when it is read, only the length changes
+        long lastModified = jar.lastModified();
+        Files.write(jar.toPath(), new byte[16], StandardOpenOption.APPEND);
+        assertTrue(jar.setLastModified(lastModified));
+
+        assertEquals(EXPECTED, model.getMainClassesFromJar(jar, indexFile));
+    }
+
+    public static class WithMain {
+
+        public static void main(String[] args) {
+        }
+
+    }
+
+    public static class NoMain {
+
+        public void run() {
+        }
+
+    }
+
+    public static class InstanceMain {
+
+        public void main(String[] args) {
+        }
+
+    }
+
+    public static class WrongArguments {
+
+        public static void main(String arg) {
+        }
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Measures how long CustomClassLoader takes to hand out a native library from the JAR of CustomClassLoaderTest with a
+ * random library added to it. A new loader is made for every round and only findLibrary() is timed:
+ *
+ * - cold: the native cache is empty so the library is extracted into it
+ * - warm: the library and its size and modified time are in the cache
+ * - warm, CRC32: the library is in the cache without its size and modified time, so its CRC32 is checked
+ * - temp file: the cache directory can't be used so the library is extracted to a new temporary file
+ *
+ * The home directory is pointed at a temporary folder. Prints the best of the rounds for each.
+ *
+ * Usage: NativeCacheBenchmark [librarySizeKB] [rounds]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class NativeCacheBenchmark {
+
+    private final static String NATIVE_NAME = "benchmark";
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File getVerifiedFile(File cachedFile) {
+        return new File(cachedFile.getParentFile(), cachedFile.getName() + ".verified");
+    }
+
+    private static long time(File jar, File home, String mode, int rounds) throws Exception {
+        File cacheDir = new File(home, ".lwjgl-examples");
+        File cachedFile = null;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            switch (mode) {
+                case "cold":
+                    delete(cacheDir);
+                    break;
+                case "warm, CRC32":
+                    if (cachedFile != null) {
+                        getVerifiedFile(cachedFile).delete();
+                    }
+                    break;
+                case "temp file":
+                    if (cacheDir.isFile() == false) {
+                        delete(cacheDir);
+                        Files.write(cacheDir.toPath(), new byte[0]);
+                    }
+                    break;
+            }
+            ClassLoader loader = CustomClassLoaderTest.createCustomClassLoader(jar);
+
+            long startTime = System.nanoTime();
+            cachedFile = CustomClassLoaderTest.findLibrary(loader, NATIVE_NAME);
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        delete(cacheDir);
+        return best;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int librarySizeKB = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+        // The temp file mode logs a warning with a stack trace every round
+        Logger log = Logger.getLogger(CustomClassLoader.class.getName());
+        log.setLevel(Level.OFF);
+
+        File home = Files.createTempDirectory("NativeCacheBenchmark").toFile();
+        String oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.getAbsolutePath());
+        try {
+            byte[] nativeBytes = new byte[librarySizeKB * 1024];
+            new Random(1).nextBytes(nativeBytes);
+            File jar = new File(home, "natives.jar");
+            CustomClassLoaderTest.createJar(jar, NATIVE_NAME, nativeBytes);
+            System.out.println("Library size: " + librarySizeKB + " KB.");
+
+            String[] modes = {"cold", "warm", "warm, CRC32", "temp file"};
+
+            // First pass warms up
+            for (String mode : modes) {
+                time(jar, home, mode, rounds);
+            }
+
+            for (String mode : modes) {
+                long nanos = time(jar, home, mode, rounds);
+                System.out.println(String.format("%-12s %8.3f ms", mode + ":", nanos / 1000000.0));
+            }
+        } finally {
+            System.setProperty("user.home", oldHome);
+            delete(home);
+        }
+    }
+
+}
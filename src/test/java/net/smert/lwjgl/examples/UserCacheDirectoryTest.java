@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 Jason Sorensen (sorensenj@smert.net)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package net.smert.lwjgl.examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Checks UserCacheDirectory with the home directory pointed at a temporary folder.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class UserCacheDirectoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File home;
+    private String oldHome;
+
+    private boolean isPosix(File file) {
+        return Files.getFileAttributeView(file.toPath(), PosixFileAttributeView.class) != null;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        home = folder.newFolder("home");
+        oldHome = System.getProperty("user.home");
+        System.setProperty("user.home", home.getAbsolutePath());
+    }
+
+    @After
+    public void tearDown() {
+        System.setProperty("user.home", oldHome);
+    }
+
+    @Test
+    public void testCreatesPrivateDirectory() throws IOException {
+        File directory = UserCacheDirectory.get("natives");
+
+        assertTrue(directory.isDirectory());
+        assertEquals(new File(new File(home, ".lwjgl-examples"), "natives"), directory);
+        assertEquals(directory, UserCacheDirectory.get("natives"));
+        if (isPosix(directory)) {
+            assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.toPath())));
+            assertEquals("rwx------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(directory.getParentFile().toPath())));
+        }
+    }
+
+    @Test
+    public void testTightensExistingDirectory() throws IOException {
+        assumeTrue(isPosix(home));
+        File directory = new File(new File(home, ".lwjgl-examples"), "shaders");
+        assertTrue(directory.mkdirs());
+        Files.setPosixFilePermissions(directory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+
+        UserCacheDirectory.get("shaders");
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(directory.toPath())));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsSymbolicLink() throws IOException {
+        File target = folder.newFolder("elsewhere");
+        File root = new File(home, ".lwjgl-examples");
+        assertTrue(root.mkdir());
+        try {
+            Files.createSymbolicLink(new File(root, "classes").toPath(), target.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            assumeTrue(false);
+        }
+
+        UserCacheDirectory.get("classes");
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsFile() throws IOException {
+        File root = new File(home, ".lwjgl-examples");
+        assertTrue(root.mkdir());
+        assertTrue(new File(root, "classes").createNewFile());
+
+        UserCacheDirectory.get("classes");
+    }
+
+}
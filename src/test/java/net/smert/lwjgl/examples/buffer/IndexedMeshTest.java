@@ -0,0 +1,192 @@
+package net.smert.lwjgl.examples.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+import static org.junit.Assert.*;
+
+/**
+ * Checks IndexedMesh on a grid of quads whose triangles are shuffled, which is about as bad for the vertex cache as a
+ * mesh gets. Welding has to find every shared corner without losing a triangle and Tipsify has to bring the ACMR well
+ * down while keeping the same triangles with the same winding.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class IndexedMeshTest {
+
+    private final static int GRID_SIZE = 32;
+    private final static int STRIDE = 12;
+    private final static int TRIANGLE_COUNT = GRID_SIZE * GRID_SIZE * 2;
+
+    /**
+     * The triangles of the grid as corner numbers, two per quad with the winding of a quad, in a random order.
+     */
+    private static int[] createShuffledGrid(long seed) {
+        List<int[]> triangles = new ArrayList<>();
+        for (int y = 0; y < GRID_SIZE; y++) {
+            for (int x = 0; x < GRID_SIZE; x++) {
+                int corner = y * (GRID_SIZE + 1) + x;
+                int right = corner + 1;
+                int up = corner + GRID_SIZE + 1;
+                triangles.add(new int[]{corner, right, up + 1});
+                triangles.add(new int[]{corner, up + 1, up});
+            }
+        }
+        Collections.shuffle(triangles, new Random(seed));
+
+        int[] indices = new int[triangles.size() * 3];
+        for (int i = 0; i < triangles.size(); i++) {
+            System.arraycopy(triangles.get(i), 0, indices, i * 3, 3);
+        }
+        return indices;
+    }
+
+    /**
+     * One packed vertex (x, y, 0) per index so shared corners show up as duplicate vertices.
+     */
+    private static ByteBuffer createVertices(int[] corners) {
+        ByteBuffer vertices = ByteBuffer.allocate(corners.length * STRIDE).order(ByteOrder.nativeOrder());
+        for (int corner : corners) {
+            vertices.putFloat(corner % (GRID_SIZE + 1)).putFloat(corner / (GRID_SIZE + 1)).putFloat(0.0f);
+        }
+        vertices.flip();
+        return vertices;
+    }
+
+    /**
+     * Turns each triangle into a string starting at its smallest corner, so the same triangle with the same winding
+     * always gives the same string, and sorts them.
+     */
+    private static List<String> getTriangles(int[] corners) {
+        List<String> triangles = new ArrayList<>();
+        for (int i = 0; i < corners.length; i += 3) {
+            int first = i;
+            for (int j = i + 1; j < i + 3; j++) {
+                if (corners[j] < corners[first]) {
+                    first = j;
+                }
+            }
+            int offset = first - i;
+            triangles.add(corners[i + offset] + " " + corners[i + (offset + 1) % 3] + " "
+                    + corners[i + (offset + 2) % 3]);
+        }
+        Collections.sort(triangles);
+        return triangles;
+    }
+
+    /**
+     * Reads the corners of every index of a mesh back out of its vertices.
+     */
+    private static int[] readCorners(IndexedMesh mesh) {
+        ByteBuffer vertices = mesh.getVertices();
+        ByteBuffer indices = mesh.getIndices();
+        int[] corners = new int[mesh.getIndexCount()];
+        for (int i = 0; i < corners.length; i++) {
+            int index = (mesh.getIndexType() == GL11.GL_UNSIGNED_SHORT) ? indices.getShort(i * 2) & 0xffff
+                    : indices.getInt(i * 4);
+            int x = (int) vertices.getFloat(index * STRIDE);
+            int y = (int) vertices.getFloat(index * STRIDE + 4);
+            corners[i] = y * (GRID_SIZE + 1) + x;
+        }
+        return corners;
+    }
+
+    @Test
+    public void testBuild() {
+        int[] corners = createShuffledGrid(1);
+        IndexedMesh mesh = IndexedMesh.build(createVertices(corners), corners.length, STRIDE, GL11.GL_TRIANGLES,
+                true);
+
+        assertEquals(corners.length, mesh.getSourceVertexCount());
+        assertEquals((GRID_SIZE + 1) * (GRID_SIZE + 1), mesh.getVertexCount());
+        assertEquals(TRIANGLE_COUNT * 3, mesh.getIndexCount());
+        assertEquals(GL11.GL_UNSIGNED_SHORT, mesh.getIndexType());
+        assertEquals(2, mesh.getIndexSize());
+        assertEquals(getTriangles(corners), getTriangles(readCorners(mesh)));
+        assertTrue(mesh.getACMRBefore() + " -> " + mesh.getACMRAfter(),
+                mesh.getACMRAfter() < mesh.getACMRBefore() * 0.5f);
+    }
+
+    @Test
+    public void testBuildKeepsOrderWithoutOptimizing() {
+        int[] corners = createShuffledGrid(2);
+        IndexedMesh mesh = IndexedMesh.build(createVertices(corners), corners.length, STRIDE, GL11.GL_TRIANGLES,
+                false);
+
+        assertArrayEquals(corners, readCorners(mesh));
+        assertEquals(mesh.getACMRBefore(), mesh.getACMRAfter(), 0.0f);
+    }
+
+    @Test
+    public void testBuildQuads() {
+        // Two quads sharing an edge
+        int[] corners = {0, 1, GRID_SIZE + 2, GRID_SIZE + 1, 1, 2, GRID_SIZE + 3, GRID_SIZE + 2};
+        IndexedMesh mesh = IndexedMesh.build(createVertices(corners), corners.length, STRIDE, GL11.GL_QUADS, false);
+
+        assertEquals(6, mesh.getVertexCount());
+        assertArrayEquals(new int[]{0, 1, GRID_SIZE + 2, 0, GRID_SIZE + 2, GRID_SIZE + 1, 1, 2, GRID_SIZE + 3, 1,
+            GRID_SIZE + 3, GRID_SIZE + 2}, readCorners(mesh));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildRejectsPartialTriangles() {
+        IndexedMesh.build(createVertices(new int[4]), 4, STRIDE, GL11.GL_TRIANGLES, false);
+    }
+
+    @Test
+    public void testGetACMR() {
+        assertEquals(0.0f, IndexedMesh.getACMR(new int[0], 0, IndexedMesh.CACHE_SIZE), 0.0f);
+        assertEquals(2.0f, IndexedMesh.getACMR(new int[]{0, 1, 2, 0, 2, 3}, 4, IndexedMesh.CACHE_SIZE), 0.0f);
+
+        // With room for 3 vertices the 4th pushes out vertex 0, which the second triangle needs again
+        assertEquals(3.0f, IndexedMesh.getACMR(new int[]{0, 1, 2, 3, 0, 4}, 5, 3), 0.0f);
+        assertEquals(2.5f, IndexedMesh.getACMR(new int[]{0, 1, 2, 3, 0, 4}, 5, 4), 0.0f);
+    }
+
+    @Test
+    public void testTipsify() {
+        int[] corners = createShuffledGrid(3);
+        int vertexCount = (GRID_SIZE + 1) * (GRID_SIZE + 1);
+        float before = IndexedMesh.getACMR(corners, vertexCount, IndexedMesh.CACHE_SIZE);
+        int[] reordered = IndexedMesh.tipsify(corners, vertexCount, IndexedMesh.CACHE_SIZE);
+        float after = IndexedMesh.getACMR(reordered, vertexCount, IndexedMesh.CACHE_SIZE);
+
+        assertEquals(getTriangles(corners), getTriangles(reordered));
+        assertTrue(before > 2.0f);
+        assertTrue(before + " -> " + after, after < 1.0f);
+    }
+
+    @Test
+    public void testWeld() {
+        int[] corners = createShuffledGrid(4);
+        ByteBuffer vertices = createVertices(corners);
+        int[] remap = new int[corners.length];
+        int[] unique = new int[corners.length];
+        int uniqueCount = IndexedMesh.weld(vertices, corners.length, STRIDE, remap, unique);
+
+        assertEquals((GRID_SIZE + 1) * (GRID_SIZE + 1), uniqueCount);
+        assertEquals(0, vertices.position());
+
+        // Every vertex maps to the first one with the same corner and no two unique vertices share a corner
+        int[] cornerOfUnique = new int[uniqueCount];
+        Arrays.fill(cornerOfUnique, -1);
+        for (int i = 0; i < corners.length; i++) {
+            int n = remap[i];
+            assertEquals(corners[i], corners[unique[n]]);
+            assertTrue(unique[n] <= i);
+            cornerOfUnique[n] = corners[i];
+        }
+        int[] sorted = cornerOfUnique.clone();
+        Arrays.sort(sorted);
+        for (int n = 0; n < uniqueCount; n++) {
+            assertEquals(n, sorted[n]);
+        }
+    }
+
+}
@@ -0,0 +1,186 @@
+package net.smert.lwjgl.examples.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import org.junit.Test;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+import static org.junit.Assert.*;
+
+/**
+ * Checks VertexFormat.toHalfFloat against the exact value of every finite half and the midpoints between them, and
+ * that pack() interleaves and converts attributes and zeroes everything it doesn't write.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class VertexFormatTest {
+
+    private static void assertHalf(int expected, float value) {
+        assertEquals(Float.toString(value), expected, VertexFormat.toHalfFloat(value) & 0xffff);
+    }
+
+    private static FloatBuffer floats(float... values) {
+        return FloatBuffer.wrap(values);
+    }
+
+    /**
+     * The exact value of a finite half.
+     */
+    private static float toFloat(int half) {
+        int exponent = (half >>> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        float value = (exponent == 0) ? Math.scalb((float) mantissa, -24)
+                : Math.scalb((float) (mantissa | 0x400), exponent - 25);
+        return ((half & 0x8000) != 0) ? -value : value;
+    }
+
+    @Test
+    public void testHalfFloatExact() {
+        assertHalf(0x0000, 0.0f);
+        assertHalf(0x8000, -0.0f);
+        assertHalf(0x3c00, 1.0f);
+        assertHalf(0xc000, -2.0f);
+        assertHalf(0x3800, 0.5f);
+        assertHalf(0x7bff, 65504.0f);
+
+        // Every finite half, both signs, comes back unchanged
+        for (int half = 0; half < 0x7c00; half++) {
+            assertHalf(half, toFloat(half));
+            assertHalf(half | 0x8000, toFloat(half | 0x8000));
+        }
+    }
+
+    @Test
+    public void testHalfFloatInfinityAndNaN() {
+        assertHalf(0x7c00, Float.POSITIVE_INFINITY);
+        assertHalf(0xfc00, Float.NEGATIVE_INFINITY);
+        int nan = VertexFormat.toHalfFloat(Float.NaN) & 0xffff;
+        assertEquals(0x7c00, nan & 0x7c00);
+        assertNotEquals(0, nan & 0x3ff);
+        int negativeNaN = VertexFormat.toHalfFloat(Float.intBitsToFloat(0xffc00001)) & 0xffff;
+        assertEquals(0xfc00, negativeNaN & 0xfc00);
+        assertNotEquals(0, negativeNaN & 0x3ff);
+    }
+
+    @Test
+    public void testHalfFloatOverflow() {
+        assertHalf(0x7bff, 65519.0f);
+        assertHalf(0x7c00, 65520.0f);                                           // Halfway rounds to even, infinity
+        assertHalf(0x7c00, 1e6f);
+        assertHalf(0xfc00, -1e6f);
+        assertHalf(0x7c00, Float.MAX_VALUE);
+    }
+
+    @Test
+    public void testHalfFloatRounding() {
+        // Halfway between two halves goes to the even one, anything else to the nearest
+        for (int half = 0; half < 0x7bff; half++) {
+            float low = toFloat(half);
+            float high = toFloat(half + 1);
+            float middle = (low + high) * 0.5f;
+            int even = ((half & 1) == 0) ? half : half + 1;
+            assertHalf(even, middle);
+            assertHalf(half, Math.nextDown(middle));
+            assertHalf(half + 1, Math.nextUp(middle));
+            assertHalf(even | 0x8000, -middle);
+        }
+    }
+
+    @Test
+    public void testHalfFloatSubnormals() {
+        assertHalf(0x0001, 0x1p-24f);                                           // Smallest subnormal
+        assertHalf(0x03ff, 1023 * 0x1p-24f);                                    // Largest subnormal
+        assertHalf(0x0400, 0x1p-14f);                                           // Smallest normal
+        assertHalf(0x0400, 0x1p-14f - 0x1p-25f);                                // Rounds up into the normals
+        assertHalf(0x0000, 0x1p-25f);                                           // Halfway to zero, even
+        assertHalf(0x0001, Math.nextUp(0x1p-25f));
+        assertHalf(0x0002, 3 * 0x1p-25f);
+        assertHalf(0x0000, 0x1p-30f);
+        assertHalf(0x8000, -0x1p-30f);
+        assertHalf(0x0000, Float.MIN_VALUE);
+    }
+
+    @Test
+    public void testPack() {
+        VertexFormat format = new VertexFormat()
+                .addPosition(3, GL11.GL_FLOAT)
+                .addColor(4, GL11.GL_UNSIGNED_BYTE, true)
+                .addTextureCoordinate(2, GL30.GL_HALF_FLOAT, false)
+                .addNormal(GL11.GL_BYTE, true);
+        assertEquals(24, format.getStride());
+        assertEquals(12, format.getAttribute(1).getOffset());
+        assertEquals(16, format.getAttribute(2).getOffset());
+        assertEquals(20, format.getAttribute(3).getOffset());
+
+        FloatBuffer positions = floats(1.0f, 2.0f, 3.0f, -4.0f, 5.5f, 6.0f);
+        FloatBuffer colors = floats(0.0f, 0.5f, 1.0f, 2.0f, 1.0f, 1.0f, 1.0f, -1.0f);
+        FloatBuffer texCoords = floats(0.5f, 0.25f, 1.0f, 0.0f);
+        FloatBuffer normals = floats(0.0f, 1.0f, -1.0f, 0.5f, -0.5f, 0.0f);
+        ByteBuffer out = ByteBuffer.allocate(4 + 2 * format.getStride()).order(ByteOrder.BIG_ENDIAN);
+        out.position(4);
+        format.pack(out, 2, positions, colors, texCoords, normals);
+
+        assertEquals(4 + 2 * format.getStride(), out.position());
+        assertEquals(ByteOrder.BIG_ENDIAN, out.order());
+        assertEquals(0, positions.position());
+        out.order(ByteOrder.nativeOrder());
+        int second = 4 + format.getStride();
+        assertEquals(1.0f, out.getFloat(4), 0.0f);
+        assertEquals(6.0f, out.getFloat(second + 8), 0.0f);
+        assertEquals(0, out.get(4 + 12));
+        assertEquals((byte) 128, out.get(4 + 13));                             // 0.5 * 255 rounds up
+        assertEquals((byte) 255, out.get(4 + 14));
+        assertEquals((byte) 255, out.get(4 + 15));                             // Clamped
+        assertEquals(0, out.get(second + 15));
+        assertEquals(0x3800, out.getShort(4 + 16) & 0xffff);
+        assertEquals(0x3400, out.getShort(4 + 18) & 0xffff);
+        assertEquals(0x3c00, out.getShort(second + 16) & 0xffff);
+        assertEquals(0, out.get(4 + 20));
+        assertEquals(127, out.get(4 + 21));
+        assertEquals(-127, out.get(4 + 22));
+        assertEquals(64, out.get(second + 20));
+        assertEquals(-63, out.get(second + 21));                               // Math.round goes up at halfway
+    }
+
+    @Test
+    public void testPackZeroesPaddingAndNullSources() {
+        // A 3 byte color is followed by a byte of padding
+        VertexFormat format = new VertexFormat()
+                .addPosition(2, GL11.GL_FLOAT)
+                .addColor(3, GL11.GL_UNSIGNED_BYTE, true)
+                .addGeneric(1, GL11.GL_FLOAT, false);
+        assertEquals(16, format.getStride());
+
+        ByteBuffer out = ByteBuffer.allocate(3 * format.getStride());
+        for (int i = 0; i < out.capacity(); i++) {
+            out.put(i, (byte) 0xff);
+        }
+        format.pack(out, 3, floats(1.0f, 2.0f, 1.0f, 2.0f, 7.0f, 8.0f), floats(1.0f, 0.0f, 1.0f, 1.0f, 0.0f,
+                1.0f, 0.0f, 0.0f, 0.0f), null);
+
+        for (int vertex = 0; vertex < 3; vertex++) {
+            int start = vertex * format.getStride();
+            assertEquals(0, out.get(start + 11));
+            assertEquals(0, out.getInt(start + 12));
+        }
+
+        // Equal vertices are equal bytes, which is what IndexedMesh welds on
+        for (int i = 0; i < format.getStride(); i++) {
+            assertEquals(out.get(i), out.get(format.getStride() + i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPackNotEnoughRoom() {
+        VertexFormat format = new VertexFormat().addPosition(3, GL11.GL_FLOAT);
+        format.pack(ByteBuffer.allocate(format.getStride()), 2, floats(new float[6]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPackWrongSourceCount() {
+        VertexFormat format = new VertexFormat().addPosition(3, GL11.GL_FLOAT).addColor(4, GL11.GL_FLOAT, false);
+        format.pack(1, floats(new float[3]));
+    }
+
+}
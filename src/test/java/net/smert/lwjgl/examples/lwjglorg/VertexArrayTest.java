@@ -0,0 +1,96 @@
+package net.smert.lwjgl.examples.lwjglorg;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import net.smert.lwjgl.examples.AllocationCounter;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+/**
+ * Checks that VertexArray writes the same data as TexturedVertex and that the per frame update of
+ * TheQuadExampleUpdateVBO allocates nothing, using the bytes allocated by the thread as counted by the JVM.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class VertexArrayTest {
+
+    private final static int FRAMES = 1000;
+    private final static int VERTICES = 1000;
+
+    private ByteBuffer frame;
+    private Random random;
+    private TexturedVertex[] texturedVertices;
+    private VertexArray vertexArray;
+
+    private void updateFrame() {
+        frame.clear();
+        for (int i = 0; i < vertexArray.getCount(); i++) {
+            float offsetX = random.nextFloat() * 0.1f;
+            float offsetY = random.nextFloat() * 0.1f;
+            vertexArray.putOffset(i, offsetX, offsetY, frame);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        random = new Random(1);
+        texturedVertices = new TexturedVertex[VERTICES];
+        vertexArray = new VertexArray(VERTICES);
+        for (int i = 0; i < VERTICES; i++) {
+            float x = random.nextFloat(), y = random.nextFloat(), s = random.nextFloat(), t = random.nextFloat();
+            texturedVertices[i] = new TexturedVertex();
+            texturedVertices[i].setXYZ(x, y, 0);
+            texturedVertices[i].setRGB(1, 0, 0);
+            texturedVertices[i].setST(s, t);
+            vertexArray.setXYZ(i, x, y, 0);
+            vertexArray.setRGB(i, 1, 0, 0);
+            vertexArray.setST(i, s, t);
+        }
+        frame = ByteBuffer.allocateDirect(vertexArray.getSize()).order(ByteOrder.nativeOrder());
+    }
+
+    @Test
+    public void testPutOffsetMatchesTexturedVertex() {
+        for (int i = 0; i < VERTICES; i++) {
+            vertexArray.putOffset(i, 0.25f, -0.5f, frame);
+        }
+        frame.flip();
+
+        for (int i = 0; i < VERTICES; i++) {
+            float[] xyz = texturedVertices[i].getXYZ();
+            texturedVertices[i].setXYZ(xyz[0] + 0.25f, xyz[1] - 0.5f, xyz[2]);
+            float[] expected = texturedVertices[i].getElements();
+            for (int j = 0; j < TexturedVertex.elementCount; j++) {
+                assertEquals("Vertex " + i + " element " + j, expected[j], frame.getFloat(), 0f);
+            }
+        }
+        assertFalse(frame.hasRemaining());
+    }
+
+    @Test
+    public void testUpdateFrameDoesNotAllocate() {
+        assumeTrue(AllocationCounter.getAllocatedBytes() >= 0);
+
+        // Make sure the counter itself can see an allocation
+        long startBytes = AllocationCounter.getAllocatedBytes();
+        byte[] garbage = new byte[65536];
+        assertTrue(AllocationCounter.getAllocatedBytes() - startBytes >= garbage.length);
+
+        // First pass warms up
+        for (int pass = 0; pass < 2; pass++) {
+            startBytes = AllocationCounter.getAllocatedBytes();
+            for (int i = 0; i < FRAMES; i++) {
+                this.updateFrame();
+            }
+            long allocated = AllocationCounter.getAllocatedBytes() - startBytes;
+            if (pass == 1) {
+                // Reading the counter can allocate a few bytes of its own, far less than one per frame
+                assertEquals("Bytes allocated per frame", 0, allocated / FRAMES);
+            }
+        }
+    }
+
+}
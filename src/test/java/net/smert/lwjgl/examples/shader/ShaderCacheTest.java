@@ -0,0 +1,271 @@
+package net.smert.lwjgl.examples.shader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.smert.lwjgl.examples.smert.Vector3f;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Runs ShaderCache on a stub backend with the shaders of the smert examples. The stub "links" a program into a binary
+ * that is just its sources and attribute bindings as text.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ShaderCacheTest {
+
+    private final static int BINARY_FORMAT = 42;
+    private final static String FRAGMENT = "opengl_2_0.fsh";
+    private final static String VERTEX = "opengl_2_0.vsh";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    private ShaderCache buildOnce(StubShaderBackend backend, String... attributes) {
+        ShaderCache cache = new ShaderCache(backend, directory);
+        cache.getProgram(Vector3f.class, VERTEX, FRAGMENT, attributes);
+        return cache;
+    }
+
+    private File getOnlyBinary() {
+        File[] files = directory.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("shaders");
+    }
+
+    @Test
+    public void testSameProgramIsShared() {
+        StubShaderBackend backend = new StubShaderBackend();
+        ShaderCache cache = new ShaderCache(backend, null);
+
+        int program = cache.getProgram(Vector3f.class, VERTEX, FRAGMENT, "in_Position");
+        assertEquals(program, cache.getProgram(Vector3f.class, VERTEX, FRAGMENT, "in_Position"));
+        assertEquals(2, cache.getCompileCount());
+        assertEquals(1, cache.getLinkCount());
+        assertEquals(0, backend.binariesRequested);
+    }
+
+    @Test
+    public void testBinaryHitSkipsCompileAndLink() {
+        StubShaderBackend first = new StubShaderBackend();
+        ShaderCache cache = buildOnce(first, "in_Position", "in_Color");
+        assertEquals(2, cache.getCompileCount());
+        assertEquals(1, cache.getLinkCount());
+        assertEquals(1, first.binariesRequested);
+        File binaryFile = getOnlyBinary();
+
+        StubShaderBackend second = new StubShaderBackend();
+        cache = buildOnce(second, "in_Position", "in_Color");
+        assertEquals(1, cache.getBinaryLoadCount());
+        assertEquals(0, cache.getCompileCount());
+        assertEquals(0, cache.getLinkCount());
+        assertEquals(first.lastBinary, second.lastLoadedBinary);
+        assertTrue(second.boundAttributes.isEmpty());
+        assertEquals(binaryFile, getOnlyBinary());
+    }
+
+    @Test
+    public void testRejectedBinaryFallsBackToCompile() {
+        buildOnce(new StubShaderBackend());
+
+        StubShaderBackend second = new StubShaderBackend();
+        second.acceptBinaries = false;
+        ShaderCache cache = buildOnce(second);
+        assertEquals(1, second.binariesLoaded);
+        assertEquals(0, cache.getBinaryLoadCount());
+        assertEquals(2, cache.getCompileCount());
+        assertEquals(1, cache.getLinkCount());
+        // The new binary replaces the rejected one
+        assertEquals(1, second.binariesRequested);
+        getOnlyBinary();
+    }
+
+    @Test
+    public void testStaleBinaryFileFallsBackToCompile() throws IOException {
+        buildOnce(new StubShaderBackend());
+        try (RandomAccessFile raf = new RandomAccessFile(getOnlyBinary(), "rw")) {
+            raf.seek(4);
+            raf.write(99); // Another file version
+        }
+
+        StubShaderBackend second = new StubShaderBackend();
+        ShaderCache cache = buildOnce(second);
+        assertEquals(0, second.binariesLoaded);
+        assertEquals(0, cache.getBinaryLoadCount());
+        assertEquals(1, cache.getLinkCount());
+    }
+
+    @Test
+    public void testDriverChangeInvalidatesKey() {
+        buildOnce(new StubShaderBackend());
+
+        StubShaderBackend second = new StubShaderBackend();
+        second.driverVersion = "Stub 2.0";
+        ShaderCache cache = buildOnce(second);
+        assertEquals(0, second.binariesLoaded);
+        assertEquals(1, cache.getLinkCount());
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void testAttributeBindingsInvalidateKey() {
+        buildOnce(new StubShaderBackend(), "in_Position", "in_Color");
+
+        // Same sources with the attributes swapped must not load the old binary
+        StubShaderBackend second = new StubShaderBackend();
+        ShaderCache cache = buildOnce(second, "in_Color", "in_Position");
+        assertEquals(0, second.binariesLoaded);
+        assertEquals(0, cache.getBinaryLoadCount());
+        assertEquals(1, cache.getLinkCount());
+        assertEquals("in_Color", second.boundAttributes.get(0));
+        assertEquals("in_Position", second.boundAttributes.get(1));
+        assertEquals(2, directory.listFiles().length);
+
+        // And in the same cache they are two programs
+        int program = cache.getProgram(Vector3f.class, VERTEX, FRAGMENT, "in_Position", "in_Color");
+        assertNotEquals(program, cache.getProgram(Vector3f.class, VERTEX, FRAGMENT, "in_Color", "in_Position"));
+    }
+
+    @Test
+    public void testDefaultDirectoryIsPerUser() throws IOException {
+        String oldHome = System.getProperty("user.home");
+        File home = folder.newFolder("home");
+        System.setProperty("user.home", home.getAbsolutePath());
+        try {
+            File defaultDirectory = ShaderCache.getDefaultDirectory();
+            assertEquals(new File(new File(home, ".lwjgl-examples"), ShaderCache.DEFAULT_DIRECTORY), defaultDirectory);
+            assertTrue(defaultDirectory.isDirectory());
+        } finally {
+            System.setProperty("user.home", oldHome);
+        }
+    }
+
+    private static class StubShaderBackend implements ShaderBackend {
+
+        private boolean acceptBinaries = true;
+        private int binariesLoaded;
+        private int binariesRequested;
+        private int nextName = 1;
+        private String driverVersion = "Stub 1.0";
+        private String lastBinary;
+        private String lastLoadedBinary;
+        private final List<String> boundAttributes = new ArrayList<>();
+        private final Map<Integer, List<Integer>> attached = new HashMap<>();
+        private final Map<Integer, String> sources = new HashMap<>();
+
+        @Override
+        public void attachShader(int program, int shader) {
+            attached.get(program).add(shader);
+        }
+
+        @Override
+        public void bindAttribLocation(int program, int index, String name) {
+            assertEquals(boundAttributes.size(), index);
+            boundAttributes.add(name);
+        }
+
+        @Override
+        public boolean compileShader(int shader) {
+            return true;
+        }
+
+        @Override
+        public int createProgram() {
+            int program = nextName++;
+            attached.put(program, new ArrayList<Integer>());
+            return program;
+        }
+
+        @Override
+        public int createShader(int type) {
+            return nextName++;
+        }
+
+        @Override
+        public void deleteProgram(int program) {
+        }
+
+        @Override
+        public void deleteShader(int shader) {
+        }
+
+        @Override
+        public void detachShader(int program, int shader) {
+        }
+
+        @Override
+        public String getDriverVersion() {
+            return driverVersion;
+        }
+
+        @Override
+        public ByteBuffer getProgramBinary(int program, int[] format) {
+            StringBuilder binary = new StringBuilder();
+            for (int shader : attached.get(program)) {
+                binary.append(sources.get(shader)).append('\0');
+            }
+            binary.append(boundAttributes);
+            binariesRequested++;
+            lastBinary = binary.toString();
+            format[0] = BINARY_FORMAT;
+            return ByteBuffer.wrap(lastBinary.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public String getProgramInfoLog(int program) {
+            return "";
+        }
+
+        @Override
+        public String getShaderInfoLog(int shader) {
+            return "";
+        }
+
+        @Override
+        public boolean isProgramBinarySupported() {
+            return true;
+        }
+
+        @Override
+        public boolean linkProgram(int program) {
+            return true;
+        }
+
+        @Override
+        public boolean programBinary(int program, int format, ByteBuffer binary) {
+            binariesLoaded++;
+            assertEquals(BINARY_FORMAT, format);
+            lastLoadedBinary = StandardCharsets.UTF_8.decode(binary).toString();
+            return acceptBinaries;
+        }
+
+        @Override
+        public void setProgramBinaryRetrievable(int program) {
+        }
+
+        @Override
+        public void shaderSource(int shader, CharSequence source) {
+            sources.put(shader, source.toString());
+        }
+
+    }
+
+}
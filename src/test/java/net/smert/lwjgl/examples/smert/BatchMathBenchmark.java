@@ -0,0 +1,167 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.util.Random;
+import net.smert.lwjgl.examples.BenchmarkTimer;
+import net.smert.lwjgl.examples.BenchmarkTimer.Kernel;
+
+/**
+ * Compares the structure of arrays Vector3fBatch and Matrix4fBatch loops with the same work done one Vector3f and
+ * Matrix4f at a time. Every kernel runs over the same random data and the time per element is printed for both.
+ *
+ * Usage: BatchMathBenchmark [elements] [repeats]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class BatchMathBenchmark {
+
+    private static void report(String name, long objectTime, long batchTime, long elements) {
+        System.out.println(String.format("%-10s Per object: %6.2f ns. Batch: %6.2f ns. Speedup: %.1fx", name,
+                (double) objectTime / elements, (double) batchTime / elements, (double) objectTime / batchTime));
+    }
+
+    public static void main(String[] args) {
+        final int count = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+        int repeats = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+        Random random = new Random(1);
+
+        final Vector3f[] a = new Vector3f[count];
+        final Vector3f[] b = new Vector3f[count];
+        final Vector3f[] out = new Vector3f[count];
+        final Matrix4f[] matrices = new Matrix4f[count];
+        final Matrix4f[] matricesOut = new Matrix4f[count];
+        final Vector3fBatch batchA = new Vector3fBatch(count);
+        final Vector3fBatch batchB = new Vector3fBatch(count);
+        final Vector3fBatch batchOut = new Vector3fBatch(count);
+        final Matrix4fBatch batchMatrices = new Matrix4fBatch(count);
+        final Matrix4fBatch batchMatricesOut = new Matrix4fBatch(count);
+        final float[] dots = new float[count];
+        final Matrix4f view = new Matrix4f().setPerspective(70.0f, 4.0f / 3.0f, 0.1f, 256.0f);
+
+        for (int i = 0; i < count; i++) {
+            a[i] = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            b[i] = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            out[i] = new Vector3f();
+            Transform4f transform = new Transform4f().setPosition(random.nextFloat(), random.nextFloat(),
+                    random.nextFloat());
+            matrices[i] = new Matrix4f().set(transform);
+            matricesOut[i] = new Matrix4f();
+            batchA.set(i, a[i]);
+            batchB.set(i, b[i]);
+            batchMatrices.set(i, matrices[i]);
+        }
+
+        long elements = (long) count * repeats;
+
+        long objectTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                for (int i = 0; i < count; i++) {
+                    out[i].set(a[i]).cross(b[i]);
+                }
+                return out[count - 1].x;
+            }
+
+        }, repeats);
+        long batchTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                batchOut.set(batchA).cross(batchB);
+                return batchOut.getX(count - 1);
+            }
+
+        }, repeats);
+        report("cross", objectTime, batchTime, elements);
+
+        objectTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                for (int i = 0; i < count; i++) {
+                    dots[i] = a[i].dot(b[i]);
+                }
+                return dots[count - 1];
+            }
+
+        }, repeats);
+        batchTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                return batchA.dot(batchB, dots)[count - 1];
+            }
+
+        }, repeats);
+        report("dot", objectTime, batchTime, elements);
+
+        objectTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                for (int i = 0; i < count; i++) {
+                    out[i].set(a[i]).normalize();
+                }
+                return out[count - 1].x;
+            }
+
+        }, repeats);
+        batchTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                batchOut.set(batchA).normalize();
+                return batchOut.getX(count - 1);
+            }
+
+        }, repeats);
+        report("normalize", objectTime, batchTime, elements);
+
+        objectTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                for (int i = 0; i < count; i++) {
+                    matrices[i].transform(a[i], out[i]);
+                }
+                return out[count - 1].x;
+            }
+
+        }, repeats);
+        batchTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                batchMatrices.transform(batchA, batchOut);
+                return batchOut.getX(count - 1);
+            }
+
+        }, repeats);
+        report("transform", objectTime, batchTime, elements);
+
+        objectTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                for (int i = 0; i < count; i++) {
+                    matricesOut[i].multiply(view, matrices[i]);
+                }
+                return matricesOut[count - 1].d0;
+            }
+
+        }, repeats);
+        batchTime = BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                Matrix4fBatch.multiply(view, batchMatrices, batchMatricesOut);
+                return batchMatricesOut.d0[count - 1];
+            }
+
+        }, repeats);
+        report("multiply", objectTime, batchTime, elements);
+
+        BenchmarkTimer.printSink();
+    }
+
+}
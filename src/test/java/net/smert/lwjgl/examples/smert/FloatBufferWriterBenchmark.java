@@ -0,0 +1,189 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+import java.util.Random;
+import net.smert.lwjgl.examples.BenchmarkTimer;
+import net.smert.lwjgl.examples.BenchmarkTimer.Kernel;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Compares the ways of serializing matrices and vectors into a direct FloatBuffer: the relative toFloatBuffer puts,
+ * the absolute put(FloatBuffer, int offset), and for matrices and transforms the writeAll batch which uses
+ * DirectFloatBufferWriter when it is available. Every way is checked to write the same floats before it is timed.
+ *
+ * Usage: FloatBufferWriterBenchmark [objects] [repeats]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class FloatBufferWriterBenchmark {
+
+    private static void check(String name, FloatBuffer expected, FloatBuffer actual) {
+        for (int i = 0; i < expected.capacity(); i++) {
+            if (Float.floatToIntBits(expected.get(i)) != Float.floatToIntBits(actual.get(i))) {
+                throw new IllegalStateException(name + " wrote a different float at index " + i + "!");
+            }
+        }
+    }
+
+    private static void report(String name, long elapsed, long objects) {
+        System.out.println(String.format("  %-16s %6.2f ns per object", name, (double) elapsed / objects));
+    }
+
+    private static long time(final FloatBuffer fb, final Writer writer, int repeats) {
+        return BenchmarkTimer.time(new Kernel() {
+
+            @Override
+            public float run() {
+                fb.clear();
+                writer.write(fb);
+                return fb.get(fb.capacity() - 1);
+            }
+
+        }, repeats);
+    }
+
+    private static void compare(String name, Writer relative, Writer absolute, Writer batch, int floats, int count,
+            int repeats) {
+        FloatBuffer expected = BufferUtils.createFloatBuffer(floats * count);
+        FloatBuffer actual = BufferUtils.createFloatBuffer(floats * count);
+        relative.write(expected);
+        absolute.write(actual);
+        check(name + " put(offset)", expected, actual);
+        if (batch != null) {
+            actual.clear();
+            batch.write(actual);
+            check(name + " writeAll", expected, actual);
+        }
+
+        long objects = (long) count * repeats;
+        System.out.println(name + ":");
+        report("toFloatBuffer", time(actual, relative, repeats), objects);
+        report("put(offset)", time(actual, absolute, repeats), objects);
+        if (batch != null) {
+            report("writeAll", time(actual, batch, repeats), objects);
+        }
+    }
+
+    public static void main(String[] args) {
+        final int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+        int repeats = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+        Random random = new Random(1);
+
+        final Matrix4f[] matrices = new Matrix4f[count];
+        final Transform4f[] transforms = new Transform4f[count];
+        final Vector3f[] vector3s = new Vector3f[count];
+        final Vector4f[] vector4s = new Vector4f[count];
+        for (int i = 0; i < count; i++) {
+            transforms[i] = new Transform4f().setPosition(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            matrices[i] = new Matrix4f().setPerspective(30.0f + random.nextFloat() * 40.0f, 4.0f / 3.0f, 0.1f,
+                    256.0f);
+            vector3s[i] = new Vector3f(random.nextFloat(), random.nextFloat(), random.nextFloat());
+            vector4s[i] = new Vector4f(random.nextFloat(), random.nextFloat(), random.nextFloat(), 1.0f);
+        }
+
+        System.out.println("Unsafe: " + ((DirectFloatBufferWriter.isAvailable() == true) ? "Available" : "Missing"));
+
+        compare("Matrix4f", new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    matrices[i].toFloatBuffer(fb);
+                }
+            }
+
+        }, new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    matrices[i].put(fb, i * 16);
+                }
+            }
+
+        }, new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                Matrix4f.writeAll(matrices, fb);
+            }
+
+        }, 16, count, repeats);
+
+        compare("Transform4f", new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    transforms[i].toFloatBuffer(fb);
+                }
+            }
+
+        }, new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    transforms[i].put(fb, i * 16);
+                }
+            }
+
+        }, new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                Transform4f.writeAll(transforms, fb);
+            }
+
+        }, 16, count, repeats);
+
+        compare("Vector3f", new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    vector3s[i].toFloatBuffer(fb);
+                }
+            }
+
+        }, new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    vector3s[i].put(fb, i * 3);
+                }
+            }
+
+        }, null, 3, count, repeats);
+
+        compare("Vector4f", new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    vector4s[i].toFloatBuffer(fb);
+                }
+            }
+
+        }, new Writer() {
+
+            @Override
+            public void write(FloatBuffer fb) {
+                for (int i = 0; i < count; i++) {
+                    vector4s[i].put(fb, i * 4);
+                }
+            }
+
+        }, null, 4, count, repeats);
+
+        BenchmarkTimer.printSink();
+    }
+
+    private static interface Writer {
+
+        public void write(FloatBuffer fb);
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import net.smert.lwjgl.examples.AllocationCounter;
+
+/**
+ * Measures Frustum culling of random spheres and boxes. Each kind is tested one object at a time with
+ * isSphereVisible/isAABBVisible, with the batch cull into a bitset on one thread, and with the batch cull split over
+ * the common ForkJoinPool. Prints objects per second and the bytes allocated by the batch culls.
+ *
+ * Usage: FrustumCullingBenchmark [objects] [repeats]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class FrustumCullingBenchmark {
+
+    private static void report(String name, long objects, long elapsed, int visible, long allocated) {
+        System.out.println(String.format("%-26s %8.1f M objects/s. %d visible.%s", name,
+                objects * 1000.0 / Math.max(elapsed, 1), visible,
+                (allocated < 0) ? "" : " " + allocated + " bytes allocated."));
+    }
+
+    private static int countBits(long[] visible) {
+        int count = 0;
+        for (long word : visible) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int repeats = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+        Random random = new Random(1);
+
+        float[] spheres = new float[count * Frustum.SPHERE_STRIDE];
+        float[] aabbs = new float[count * Frustum.AABB_STRIDE];
+        for (int i = 0; i < count; i++) {
+            float x = (random.nextFloat() * 2.0f - 1.0f) * 200.0f;
+            float y = (random.nextFloat() * 2.0f - 1.0f) * 20.0f;
+            float z = (random.nextFloat() * 2.0f - 1.0f) * 200.0f;
+            float r = random.nextFloat() * 2.0f;
+            spheres[i * Frustum.SPHERE_STRIDE] = x;
+            spheres[i * Frustum.SPHERE_STRIDE + 1] = y;
+            spheres[i * Frustum.SPHERE_STRIDE + 2] = z;
+            spheres[i * Frustum.SPHERE_STRIDE + 3] = r;
+            aabbs[i * Frustum.AABB_STRIDE] = x - r;
+            aabbs[i * Frustum.AABB_STRIDE + 1] = y - r;
+            aabbs[i * Frustum.AABB_STRIDE + 2] = z - r;
+            aabbs[i * Frustum.AABB_STRIDE + 3] = x + r;
+            aabbs[i * Frustum.AABB_STRIDE + 4] = y + r;
+            aabbs[i * Frustum.AABB_STRIDE + 5] = z + r;
+        }
+
+        Camera camera = new Camera();
+        camera.setPerspectiveProjection(70.0f, 4.0f / 3.0f, 0.1f, 256.0f);
+        camera.lookAt(new Vector3f(0.0f, 5.0f, 0.0f), new Vector3f(50.0f, 0.0f, 50.0f), Vector3f.WORLD_Y_AXIS);
+        camera.updateViewMatrix();
+        Frustum frustum = new Frustum().set(camera);
+
+        long[] visible = new long[Frustum.wordsForCount(count)];
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long objects = (long) count * repeats;
+
+        for (int pass = 0; pass < 2; pass++) {                                  // First pass warms up
+            boolean print = (pass == 1);
+
+            int found = 0;
+            long startTime = System.nanoTime();
+            for (int repeat = 0; repeat < repeats; repeat++) {
+                found = 0;
+                for (int i = 0, offset = 0; i < count; i++, offset += Frustum.SPHERE_STRIDE) {
+                    if (frustum.isSphereVisible(spheres[offset], spheres[offset + 1], spheres[offset + 2],
+                            spheres[offset + 3]) == true) {
+                        found++;
+                    }
+                }
+            }
+            if (print) {
+                report("Spheres one at a time:", objects, System.nanoTime() - startTime, found, -1);
+            }
+
+            long startBytes = AllocationCounter.getAllocatedBytes();
+            startTime = System.nanoTime();
+            for (int repeat = 0; repeat < repeats; repeat++) {
+                frustum.cullSpheres(spheres, count, visible);
+            }
+            long elapsed = System.nanoTime() - startTime;
+            if (print) {
+                report("Spheres batch:", objects, elapsed, countBits(visible),
+                        (startBytes < 0) ? -1 : AllocationCounter.getAllocatedBytes() - startBytes);
+            }
+
+            startTime = System.nanoTime();
+            for (int repeat = 0; repeat < repeats; repeat++) {
+                frustum.cullSpheres(pool, spheres, count, visible);
+            }
+            if (print) {
+                report("Spheres batch " + pool.getParallelism() + " threads:", objects, System.nanoTime() - startTime,
+                        countBits(visible), -1);
+            }
+
+            startTime = System.nanoTime();
+            for (int repeat = 0; repeat < repeats; repeat++) {
+                found = 0;
+                for (int i = 0, offset = 0; i < count; i++, offset += Frustum.AABB_STRIDE) {
+                    if (frustum.isAABBVisible(aabbs[offset], aabbs[offset + 1], aabbs[offset + 2], aabbs[offset + 3],
+                            aabbs[offset + 4], aabbs[offset + 5]) == true) {
+                        found++;
+                    }
+                }
+            }
+            if (print) {
+                report("Boxes one at a time:", objects, System.nanoTime() - startTime, found, -1);
+            }
+
+            startBytes = AllocationCounter.getAllocatedBytes();
+            startTime = System.nanoTime();
+            for (int repeat = 0; repeat < repeats; repeat++) {
+                frustum.cullAABBs(aabbs, count, visible);
+            }
+            elapsed = System.nanoTime() - startTime;
+            if (print) {
+                report("Boxes batch:", objects, elapsed, countBits(visible),
+                        (startBytes < 0) ? -1 : AllocationCounter.getAllocatedBytes() - startBytes);
+            }
+
+            startTime = System.nanoTime();
+            for (int repeat = 0; repeat < repeats; repeat++) {
+                frustum.cullAABBs(pool, aabbs, count, visible);
+            }
+            if (print) {
+                report("Boxes batch " + pool.getParallelism() + " threads:", objects, System.nanoTime() - startTime,
+                        countBits(visible), -1);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Measures the cube field of OpenGL_2_0_Vertex_Buffer_Objects_With_Shader_New_Camera without an OpenGL context. The
+ * time to cull and pack a frame of instances is printed, then the draw calls and GL calls per frame of drawing one
+ * cube at a time and of drawing instanced. The calls are counted with a CountingDrawBackend over a backend that does
+ * nothing, running the same CubeField code as the example. The StreamingBuffer calls of the instanced frame depend on
+ * the mode of the context and are not included.
+ *
+ * Usage: InstancedCubesBenchmark [cubesPerSide] [frames]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class InstancedCubesBenchmark {
+
+    private static Camera[] createCameras(int count, float half, Random random) {
+        Camera[] cameras = new Camera[count];
+        for (int i = 0; i < count; i++) {
+            Vector3f position = new Vector3f((random.nextFloat() * 2.0f - 1.0f) * half, random.nextFloat() * 20.0f,
+                    (random.nextFloat() * 2.0f - 1.0f) * half);
+            Vector3f target = new Vector3f((random.nextFloat() * 2.0f - 1.0f) * half, CubeField.Y,
+                    (random.nextFloat() * 2.0f - 1.0f) * half);
+            cameras[i] = new Camera();
+            cameras[i].setPerspectiveProjection(70.0f, 852.0f / 480.0f, 0.05f, 256.0f);
+            cameras[i].lookAt(position, target, Vector3f.WORLD_Y_AXIS);
+            cameras[i].updateViewMatrix();
+        }
+        return cameras;
+    }
+
+    public static void main(String[] args) {
+        int cubesPerSide = (args.length > 0) ? Integer.parseInt(args[0]) : 100;
+        int frames = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        Random random = new Random(1);
+
+        CountingDrawBackend backend = new CountingDrawBackend(new NullDrawBackend());
+        CubeField cubeField = new CubeField(cubesPerSide, backend, new UniformMatrix4Cache(backend));
+        TransformInstances cubes = cubeField.getCubes();
+        System.out.println("Cubes: " + cubes.getCount() + ". Instance data: " + cubes.getMaxSize()
+                + " bytes per frame at most.");
+
+        Camera[] cameras = createCameras(frames, cubeField.getHalfSize(), random);
+        Frustum[] frustums = new Frustum[frames];
+        for (int i = 0; i < frames; i++) {
+            frustums[i] = new Frustum().set(cameras[i]);
+        }
+
+        ByteBuffer instanceData = BufferUtils.createByteBuffer(cubes.getMaxSize());
+        long visible = 0;
+        for (int pass = 0; pass < 2; pass++) {                                  // First pass warms up
+            visible = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                instanceData.clear();
+                visible += cubes.pack(frustums[i], instanceData);
+            }
+            long elapsed = System.nanoTime() - startTime;
+            if (pass == 1) {
+                System.out.println("Cull and pack: " + elapsed / 1000 / frames + " us per frame. Average "
+                        + visible / frames + " cubes visible."
+                        + ((DirectFloatBufferWriter.isAvailable() == true) ? "" : " (No Unsafe)"));
+            }
+        }
+
+        long perCubeCalls = 0;
+        long perCubeDrawCalls = 0;
+        long instancedCalls = 0;
+        long instancedDrawCalls = 0;
+        for (int i = 0; i < frames; i++) {
+            backend.reset();
+            cubeField.drawPerCube(frustums[i]);
+            perCubeCalls += backend.getCallCount();
+            perCubeDrawCalls += backend.getDrawCallCount();
+
+            instanceData.clear();
+            int instances = cubes.pack(frustums[i], instanceData);
+            backend.reset();
+            cubeField.drawInstanced(cameras[i].getProjectionMatrix(), cameras[i].getViewMatrix(), 1, 0, instances);
+            instancedCalls += backend.getCallCount();
+            instancedDrawCalls += backend.getDrawCallCount();
+        }
+        System.out.println("Per cube: " + perCubeDrawCalls / frames + " draw calls, " + perCubeCalls / frames
+                + " GL calls per frame.");
+        System.out.println("Instanced: " + (float) instancedDrawCalls / frames + " draw calls, "
+                + (float) instancedCalls / frames + " GL calls per frame.");
+    }
+
+    private static class NullDrawBackend implements DrawBackend {
+
+        @Override
+        public void bindBuffer(int target, int buffer) {
+        }
+
+        @Override
+        public void colorPointer(int size, int type, int stride, long offset) {
+        }
+
+        @Override
+        public void disableClientState(int array) {
+        }
+
+        @Override
+        public void disableVertexAttribArray(int index) {
+        }
+
+        @Override
+        public void drawArrays(int mode, int first, int count) {
+        }
+
+        @Override
+        public void drawArraysInstanced(int mode, int first, int count, int instances) {
+        }
+
+        @Override
+        public void enableClientState(int array) {
+        }
+
+        @Override
+        public void enableVertexAttribArray(int index) {
+        }
+
+        @Override
+        public void uniformMatrix4(int location, FloatBuffer matrix) {
+        }
+
+        @Override
+        public void useProgram(int program) {
+        }
+
+        @Override
+        public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, long offset) {
+        }
+
+        @Override
+        public void vertexPointer(int size, int type, int stride, long offset) {
+        }
+
+    }
+
+}
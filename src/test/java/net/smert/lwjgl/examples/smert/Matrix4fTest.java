@@ -0,0 +1,68 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the Matrix4f camera helpers against the same matrices built from rotations and a translation.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class Matrix4fTest {
+
+    private static void assertMatrixEquals(Matrix4f expected, Matrix4f actual, float delta) {
+        FloatBuffer e = FloatBuffer.allocate(16);
+        FloatBuffer a = FloatBuffer.allocate(16);
+        expected.toFloatBuffer(e);
+        actual.toFloatBuffer(a);
+        assertArrayEquals(e.array(), a.array(), delta);
+    }
+
+    /**
+     * The matrix glRotatef builds for the X or Y axis.
+     */
+    private static Matrix4f rotation(boolean xAxis, float degrees) {
+        float c = (float) Math.cos(Math.toRadians(degrees));
+        float s = (float) Math.sin(Math.toRadians(degrees));
+        Matrix4f m = new Matrix4f().identity();
+        if (xAxis) {
+            m.setRow(1, 0.0f, c, -s, 0.0f);
+            m.setRow(2, 0.0f, s, c, 0.0f);
+        } else {
+            m.setRow(0, c, 0.0f, s, 0.0f);
+            m.setRow(2, -s, 0.0f, c, 0.0f);
+        }
+        return m;
+    }
+
+    private static Matrix4f translation(float x, float y, float z) {
+        return new Matrix4f().identity().setRow(0, 1.0f, 0.0f, 0.0f, x).setRow(1, 0.0f, 1.0f, 0.0f, y)
+                .setRow(2, 0.0f, 0.0f, 1.0f, z);
+    }
+
+    @Test
+    public void testFpsViewMatchesGlCalls() {
+        float[][] cameras = {{0, 0, 0, 0, 0}, {1, 0.5f, -2, 90, 0}, {-3, 0.25f, 7, 37, -15}, {10, 2, 4, 300, 20}};
+        for (float[] c : cameras) {
+            // glRotatef(pitch, 1, 0, 0), glRotatef(360 - heading, 0, 1, 0), glTranslatef(-x, -y, -z)
+            Matrix4f expected = new Matrix4f().multiply(rotation(true, c[4]),
+                    new Matrix4f().multiply(rotation(false, 360.0f - c[3]), translation(-c[0], -c[1], -c[2])));
+
+            assertMatrixEquals(expected, new Matrix4f().setFpsView(c[0], c[1], c[2], c[3], c[4]), 1e-5f);
+        }
+    }
+
+    @Test
+    public void testFpsViewLooksDownNegativeZ() {
+        Matrix4f view = new Matrix4f().setFpsView(1.0f, 2.0f, 3.0f, 0.0f, 0.0f);
+
+        Vector3f eye = view.transform(new Vector3f(1.0f, 2.0f, 3.0f), new Vector3f());
+        Vector3f ahead = view.transform(new Vector3f(1.0f, 2.0f, -7.0f), new Vector3f());
+        assertEquals(0.0f, eye.x, 0.0f);
+        assertEquals(0.0f, eye.y, 0.0f);
+        assertEquals(0.0f, eye.z, 0.0f);
+        assertEquals(-10.0f, ahead.z, 1e-5f);
+    }
+
+}
@@ -0,0 +1,116 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import org.lwjgl.BufferUtils;
+import static org.junit.Assert.*;
+
+/**
+ * Checks the instances TransformInstances packs against Transform4f.toFloatBuffer for the transforms
+ * Frustum.isSphereVisible accepts. Direct buffers in native order take the Unsafe path when it is available and heap
+ * buffers in big endian order never do, so both are checked.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class TransformInstancesTest {
+
+    private final static float RADIUS = 0.8660254f;
+    private final static int CUBES_PER_SIDE = 40;
+    private final static int FRAMES = 50;
+
+    private float half;
+    private Camera camera;
+    private FloatBuffer expected;
+    private Random random;
+    private TransformInstances instances;
+
+    private Frustum createFrustum() {
+        Vector3f position = new Vector3f((random.nextFloat() * 2.0f - 1.0f) * half, random.nextFloat() * 20.0f,
+                (random.nextFloat() * 2.0f - 1.0f) * half);
+        Vector3f target = new Vector3f((random.nextFloat() * 2.0f - 1.0f) * half, 0.0f,
+                (random.nextFloat() * 2.0f - 1.0f) * half);
+        camera.lookAt(position, target, Vector3f.WORLD_Y_AXIS);
+        camera.updateViewMatrix();
+        return new Frustum().set(camera);
+    }
+
+    private void verify(Frustum frustum, ByteBuffer packed) {
+        expected.clear();
+        for (int i = 0; i < instances.getCount(); i++) {
+            Transform4f transform = instances.getTransform(i);
+            if (frustum.isSphereVisible(transform.position.x, transform.position.y, transform.position.z,
+                    RADIUS) == true) {
+                transform.toFloatBuffer(expected);
+            }
+        }
+        expected.flip();
+
+        packed.clear();
+        int written = instances.pack(frustum, packed);
+
+        assertEquals("Instances packed", expected.remaining() / TransformInstances.FLOATS_PER_INSTANCE, written);
+        assertEquals(written * TransformInstances.BYTES_PER_INSTANCE, packed.position());
+        for (int i = 0; i < expected.remaining(); i++) {
+            assertEquals("Instance " + i / TransformInstances.FLOATS_PER_INSTANCE + " element "
+                    + i % TransformInstances.FLOATS_PER_INSTANCE, expected.get(i), packed.getFloat(i * 4), 0.0f);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        random = new Random(1);
+        half = (CUBES_PER_SIDE - 1) * 0.5f * 2.0f;
+        camera = new Camera();
+        camera.setPerspectiveProjection(70.0f, 852.0f / 480.0f, 0.05f, 256.0f);
+
+        instances = new TransformInstances(CUBES_PER_SIDE * CUBES_PER_SIDE);
+        for (int z = 0; z < CUBES_PER_SIDE; z++) {
+            for (int x = 0; x < CUBES_PER_SIDE; x++) {
+                Transform4f transform = new Transform4f();
+                transform.setPosition(-half + x * 2.0f, 0.0f, -half + z * 2.0f);
+                transform.rotation.fromAxisAngle(Vector3f.WORLD_Y_AXIS, random.nextFloat() * 360.0f);
+                instances.add(transform, RADIUS);
+            }
+        }
+        expected = BufferUtils.createFloatBuffer(instances.getCount() * TransformInstances.FLOATS_PER_INSTANCE);
+    }
+
+    @Test
+    public void testPackDirectBuffer() {
+        ByteBuffer direct = BufferUtils.createByteBuffer(instances.getMaxSize());
+        for (int i = 0; i < FRAMES; i++) {
+            verify(createFrustum(), direct);
+        }
+    }
+
+    @Test
+    public void testPackHeapBuffer() {
+        ByteBuffer heap = ByteBuffer.allocate(instances.getMaxSize()).order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < FRAMES; i++) {
+            verify(createFrustum(), heap);
+        }
+    }
+
+    @Test
+    public void testPackStartsAtPosition() {
+        ByteBuffer direct = BufferUtils.createByteBuffer(instances.getMaxSize() + 8);
+        direct.position(8);
+
+        int written = instances.packAll(direct);
+
+        assertEquals(instances.getCount(), written);
+        assertEquals(8 + instances.getMaxSize(), direct.position());
+        assertEquals(instances.getTransform(0).position.x, direct.getFloat(8 + 48), 0.0f);
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testPackNeedsRoomForEveryInstance() {
+        instances.packAll(BufferUtils.createByteBuffer(instances.getMaxSize() - 1));
+    }
+
+}
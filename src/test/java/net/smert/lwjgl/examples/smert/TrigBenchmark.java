@@ -0,0 +1,171 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.util.Random;
+import net.smert.lwjgl.examples.BenchmarkTimer;
+import net.smert.lwjgl.examples.BenchmarkTimer.Kernel;
+
+/**
+ * Compares the MathHelper trig modes. For every mode the raw Sin, Cos, Tan, ArcSin and ArcTan2 calls are timed over
+ * random inputs, then the call sites Camera uses every frame: Matrix3f.fromAxisAngle, Matrix3f.getHeading, getPitch
+ * and getRoll, and Matrix4f.setPerspective. The largest error of each function against java.lang.Math is printed too.
+ *
+ * Usage: TrigBenchmark [inputs] [repeats]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class TrigBenchmark {
+
+    private final static String[] MODE_NAMES = {"Strict", "Math", "Fast"};
+
+    private static void printErrors(float[] angles, float[] ratios, float[] xs, float[] ys) {
+        double sin = 0.0, cos = 0.0, tan = 0.0, asin = 0.0, atan2 = 0.0;
+        for (int i = 0; i < angles.length; i++) {
+            sin = Math.max(sin, Math.abs(MathHelper.Sin(angles[i]) - Math.sin(angles[i])));
+            cos = Math.max(cos, Math.abs(MathHelper.Cos(angles[i]) - Math.cos(angles[i])));
+            // Relative, up to the 80 degrees a field of view needs
+            float fov = ratios[i] * 80.0f * MathHelper.DEG_TO_RAD;
+            tan = Math.max(tan,
+                    Math.abs(MathHelper.Tan(fov) - Math.tan(fov)) / Math.max(Math.abs(Math.tan(fov)), 1e-6));
+            asin = Math.max(asin, Math.abs(MathHelper.ArcSin(ratios[i]) - Math.asin(ratios[i])));
+            atan2 = Math.max(atan2, Math.abs(MathHelper.ArcTan2(ys[i], xs[i]) - Math.atan2(ys[i], xs[i])));
+        }
+        System.out.println(String.format("  Max error: Sin %.1e, Cos %.1e, Tan %.1e (relative), ArcSin %.1e, "
+                + "ArcTan2 %.1e", sin, cos, tan, asin, atan2));
+    }
+
+    private static void report(String name, long elapsed, long calls) {
+        System.out.println(String.format("  %-22s %7.2f ns per call", name, (double) elapsed / calls));
+    }
+
+    public static void main(String[] args) {
+        final int count = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+        int repeats = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+        Random random = new Random(1);
+
+        final float[] angles = new float[count];
+        final float[] ratios = new float[count];
+        final float[] xs = new float[count];
+        final float[] ys = new float[count];
+        final Matrix3f[] rotations = new Matrix3f[count];
+        final Vector3f[] axes = new Vector3f[count];
+        for (int i = 0; i < count; i++) {
+            angles[i] = (random.nextFloat() * 2.0f - 1.0f) * 2.0f * (float) Math.PI;
+            ratios[i] = random.nextFloat() * 2.0f - 1.0f;
+            xs[i] = random.nextFloat() * 2.0f - 1.0f;
+            ys[i] = random.nextFloat() * 2.0f - 1.0f;
+            axes[i] = new Vector3f(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f)
+                    .normalize();
+            rotations[i] = new Matrix3f().fromAxisAngle(axes[i], random.nextFloat() * 360.0f);
+        }
+        final Matrix3f rotation = new Matrix3f();
+        final Matrix4f projection = new Matrix4f();
+        long calls = (long) count * repeats;
+        int oldMode = MathHelper.GetTrigMode();
+
+        for (int mode = MathHelper.TRIG_MODE_STRICT; mode <= MathHelper.TRIG_MODE_FAST; mode++) {
+            MathHelper.SetTrigMode(mode);
+            System.out.println(MODE_NAMES[mode] + ":");
+
+            report("Sin", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    float sum = 0.0f;
+                    for (int i = 0; i < count; i++) {
+                        sum += MathHelper.Sin(angles[i]);
+                    }
+                    return sum;
+                }
+
+            }, repeats), calls);
+            report("Cos", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    float sum = 0.0f;
+                    for (int i = 0; i < count; i++) {
+                        sum += MathHelper.Cos(angles[i]);
+                    }
+                    return sum;
+                }
+
+            }, repeats), calls);
+            report("Tan", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    float sum = 0.0f;
+                    for (int i = 0; i < count; i++) {
+                        sum += MathHelper.Tan(ratios[i]);
+                    }
+                    return sum;
+                }
+
+            }, repeats), calls);
+            report("ArcSin", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    float sum = 0.0f;
+                    for (int i = 0; i < count; i++) {
+                        sum += MathHelper.ArcSin(ratios[i]);
+                    }
+                    return sum;
+                }
+
+            }, repeats), calls);
+            report("ArcTan2", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    float sum = 0.0f;
+                    for (int i = 0; i < count; i++) {
+                        sum += MathHelper.ArcTan2(ys[i], xs[i]);
+                    }
+                    return sum;
+                }
+
+            }, repeats), calls);
+            report("fromAxisAngle", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    for (int i = 0; i < count; i++) {
+                        rotation.fromAxisAngle(axes[i], angles[i]);
+                    }
+                    return rotation.getXAxis().x;
+                }
+
+            }, repeats), calls);
+            report("Heading, Pitch, Roll", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    float sum = 0.0f;
+                    for (int i = 0; i < count; i++) {
+                        sum += rotations[i].getHeading() + rotations[i].getPitch() + rotations[i].getRoll();
+                    }
+                    return sum;
+                }
+
+            }, repeats), calls);
+            report("setPerspective", BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    for (int i = 0; i < count; i++) {
+                        projection.setPerspective(30.0f + ratios[i] * 20.0f, 4.0f / 3.0f, 0.1f, 256.0f);
+                    }
+                    return projection.d0;
+                }
+
+            }, repeats), calls);
+
+            printErrors(angles, ratios, xs, ys);
+        }
+
+        MathHelper.SetTrigMode(oldMode);
+        BenchmarkTimer.printSink();
+    }
+
+}
@@ -0,0 +1,175 @@
+package net.smert.lwjgl.examples.smert;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks UniformMatrix4Cache against an uploader that records every call instead of talking to OpenGL.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class UniformMatrix4CacheTest {
+
+    private UniformMatrix4Cache cache;
+    private RecordingUploader uploader;
+
+    @Before
+    public void setUp() {
+        uploader = new RecordingUploader();
+        cache = new UniformMatrix4Cache(uploader);
+    }
+
+    @Test
+    public void testUnchangedMatrixIsUploadedOnce() {
+        Matrix4f matrix = new Matrix4f().setPerspective(70.0f, 4.0f / 3.0f, 0.1f, 256.0f);
+
+        assertTrue(cache.upload(1, 5, matrix));
+        assertFalse(cache.upload(1, 5, matrix));
+        assertFalse(cache.upload(1, 5, matrix));
+
+        assertEquals(1, uploader.locations.size());
+        assertEquals(5, (int) uploader.locations.get(0));
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+
+        FloatBuffer expected = FloatBuffer.allocate(16);
+        matrix.toFloatBuffer(expected);
+        assertArrayEquals(expected.array(), uploader.matrices.get(0), 0.0f);
+    }
+
+    @Test
+    public void testChangedMatrixIsUploadedAgain() {
+        Matrix4f matrix = new Matrix4f();
+
+        cache.upload(1, 5, matrix);
+        matrix.setRow(0, 2.0f, 0.0f, 0.0f, 3.0f);
+        assertTrue(cache.upload(1, 5, matrix));
+        assertFalse(cache.upload(1, 5, matrix));
+
+        assertEquals(2, uploader.locations.size());
+        assertEquals(2.0f, uploader.matrices.get(1)[0], 0.0f);
+        assertEquals(3.0f, uploader.matrices.get(1)[12], 0.0f);
+    }
+
+    @Test
+    public void testDifferentMatrixAtSameLocationIsUploaded() {
+        Matrix4f a = new Matrix4f();
+        Matrix4f b = new Matrix4f();
+
+        cache.upload(1, 5, a);
+        assertTrue(cache.upload(1, 5, b));
+        assertTrue(cache.upload(1, 5, a));
+
+        assertEquals(3, uploader.locations.size());
+    }
+
+    @Test
+    public void testProgramsAndLocationsAreSeparate() {
+        Matrix4f matrix = new Matrix4f();
+
+        assertTrue(cache.upload(1, 5, matrix));
+        assertTrue(cache.upload(2, 5, matrix));
+        assertTrue(cache.upload(1, 6, matrix));
+        assertFalse(cache.upload(2, 5, matrix));
+
+        assertEquals(3, uploader.locations.size());
+    }
+
+    @Test
+    public void testTransformVersion() {
+        Transform4f transform = new Transform4f();
+
+        assertTrue(cache.upload(1, 5, transform));
+        assertFalse(cache.upload(1, 5, transform));
+        transform.setPosition(1.0f, 2.0f, 3.0f);
+        assertTrue(cache.upload(1, 5, transform));
+
+        float[] uploaded = uploader.matrices.get(1);
+        assertEquals(1.0f, uploaded[12], 0.0f);
+        assertEquals(2.0f, uploaded[13], 0.0f);
+        assertEquals(3.0f, uploaded[14], 0.0f);
+        assertEquals(1.0f, uploaded[15], 0.0f);
+    }
+
+    @Test
+    public void testInvalidateOnlyForgetsOneProgram() {
+        Matrix4f matrix = new Matrix4f();
+
+        cache.upload(1, 5, matrix);
+        cache.upload(2, 5, matrix);
+        cache.invalidate(1);
+
+        assertTrue(cache.upload(1, 5, matrix));
+        assertFalse(cache.upload(2, 5, matrix));
+    }
+
+    @Test
+    public void testClearForgetsEverything() {
+        Matrix4f matrix = new Matrix4f();
+
+        cache.upload(1, 5, matrix);
+        cache.upload(2, 5, matrix);
+        cache.clear();
+
+        assertTrue(cache.upload(1, 5, matrix));
+        assertTrue(cache.upload(2, 5, matrix));
+    }
+
+    @Test
+    public void testManyLocationsSurviveGrowing() {
+        Matrix4f[] matrices = new Matrix4f[200];
+        for (int i = 0; i < matrices.length; i++) {
+            matrices[i] = new Matrix4f();
+            assertTrue(cache.upload(i % 7, i, matrices[i]));
+        }
+        for (int i = 0; i < matrices.length; i++) {
+            assertFalse(cache.upload(i % 7, i, matrices[i]));
+        }
+
+        assertEquals(matrices.length, uploader.locations.size());
+        assertEquals(matrices.length, cache.getHits());
+    }
+
+    @Test
+    public void testStillCameraCostsNoUploads() {
+        Camera camera = new Camera();
+        camera.setPerspectiveProjection(70.0f, 4.0f / 3.0f, 0.1f, 256.0f);
+        camera.lookAt(new Vector3f(0.0f, 0.0f, 5.0f), new Vector3f(), Vector3f.WORLD_Y_AXIS);
+
+        for (int frame = 0; frame < 10; frame++) {
+            camera.updateViewMatrix();
+            cache.upload(1, 0, camera.getProjectionMatrix());
+            cache.upload(1, 1, camera.getViewMatrix());
+        }
+        assertEquals(2, uploader.locations.size());
+
+        camera.move(1.0f, 0.0f, 0.0f);
+        camera.updateViewMatrix();
+        cache.upload(1, 0, camera.getProjectionMatrix());
+        cache.upload(1, 1, camera.getViewMatrix());
+        assertEquals(3, uploader.locations.size());
+        assertEquals(1, (int) uploader.locations.get(2));
+    }
+
+    private static class RecordingUploader implements UniformMatrix4Cache.Uploader {
+
+        private final List<Integer> locations = new ArrayList<>();
+        private final List<float[]> matrices = new ArrayList<>();
+
+        @Override
+        public void uniformMatrix4(int location, FloatBuffer matrix) {
+            float[] copy = new float[16];
+            for (int i = 0; i < 16; i++) {
+                copy[i] = matrix.get(matrix.position() + i);
+            }
+            locations.add(location);
+            matrices.add(copy);
+        }
+
+    }
+
+}
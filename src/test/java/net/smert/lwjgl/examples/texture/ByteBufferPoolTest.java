@@ -0,0 +1,59 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks that ByteBufferPool hands released buffers out again for any size that rounds up to the same capacity.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ByteBufferPoolTest {
+
+    private ByteBufferPool pool;
+
+    @Before
+    public void setUp() {
+        pool = new ByteBufferPool();
+    }
+
+    @Test
+    public void testAcquire() {
+        ByteBuffer buffer = pool.acquire(1000);
+
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.nativeOrder(), buffer.order());
+        assertEquals(1024, buffer.capacity());
+        assertEquals(0, buffer.position());
+        assertEquals(1000, buffer.limit());
+    }
+
+    @Test
+    public void testReuseByCapacity() {
+        ByteBuffer buffer = pool.acquire(1000);
+        buffer.position(10);
+        pool.release(buffer);
+
+        // Any size from 513 to 1024 uses the same bucket and gets a cleared buffer
+        ByteBuffer reused = pool.acquire(600);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(600, reused.limit());
+
+        // The bucket is empty until the buffer is released again
+        assertNotSame(buffer, pool.acquire(1024));
+        pool.release(reused);
+
+        ByteBuffer smaller = pool.acquire(512);
+        ByteBuffer larger = pool.acquire(1025);
+        assertNotSame(buffer, smaller);
+        assertNotSame(buffer, larger);
+        assertEquals(512, smaller.capacity());
+        assertEquals(2048, larger.capacity());
+        assertSame(buffer, pool.acquire(1024));
+    }
+
+}
@@ -0,0 +1,72 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import net.smert.lwjgl.examples.BenchmarkTimer;
+import net.smert.lwjgl.examples.BenchmarkTimer.Kernel;
+
+/**
+ * Compares ImageConverter.toRGBA() with the getRGB() loop it replaced (see ImageConverterTest) for square images of
+ * each type ImageConverter reads from the raster, doubling the size from 256 up to maxSize. Both write into the same
+ * direct buffer and the old loop includes its int array, as it did in ImageIOImageDecoder.
+ *
+ * Usage: ImageConverterBenchmark [maxSize]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ImageConverterBenchmark {
+
+    private final static int MIN_SIZE = 256;
+    private final static int[] TYPES = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+        BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_INT_RGB};
+    private final static String[] TYPE_NAMES = {"3BYTE_BGR", "4BYTE_ABGR", "INT_ARGB", "INT_BGR", "INT_RGB"};
+
+    private static void run(int maxSize, boolean print) {
+        for (int size = MIN_SIZE; size <= maxSize; size *= 2) {
+            // Roughly the same number of pixels for each size
+            int repeats = Math.max(1, (maxSize / size) * (maxSize / size) / 16);
+            final ByteBuffer pixels = ByteBuffer.allocateDirect(size * size * 4);
+
+            for (int i = 0; i < TYPES.length; i++) {
+                final BufferedImage image = ImageConverterTest.createImage(TYPES[i], size, size, i);
+
+                long getRGB = BenchmarkTimer.time(new Kernel() {
+
+                    @Override
+                    public float run() {
+                        pixels.clear();
+                        ImageConverterTest.toRGBAUsingGetRGB(image, pixels);
+                        return pixels.get(0);
+                    }
+
+                }, repeats);
+                long toRGBA = BenchmarkTimer.time(new Kernel() {
+
+                    @Override
+                    public float run() {
+                        pixels.clear();
+                        ImageConverter.toRGBA(image, pixels);
+                        return pixels.get(0);
+                    }
+
+                }, repeats);
+
+                if (print == true) {
+                    System.out.println(String.format("%4d^2 %-10s getRGB: %8.3f ms  toRGBA: %8.3f ms  (%.1fx)",
+                            size, TYPE_NAMES[i], getRGB / 1000000.0 / repeats, toRGBA / 1000000.0 / repeats,
+                            (double) getRGB / toRGBA));
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int maxSize = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+
+        // First pass warms up
+        run(Math.min(maxSize, 1024), false);
+        run(maxSize, true);
+        BenchmarkTimer.printSink();
+    }
+
+}
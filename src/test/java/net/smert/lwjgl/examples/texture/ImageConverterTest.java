@@ -0,0 +1,153 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks ImageConverter byte for byte against the getRGB() loop it replaced. Images are filled with random values in
+ * their data buffers so unused bits, such as the top byte of TYPE_INT_RGB, are not zero either.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class ImageConverterTest {
+
+    private final static int HEIGHT = 37;
+    private final static int WIDTH = 53;
+
+    private static void fill(BufferedImage image, long seed) {
+        DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+        Random random = new Random(seed);
+        for (int bank = 0; bank < dataBuffer.getNumBanks(); bank++) {
+            for (int i = 0; i < dataBuffer.getSize(); i++) {
+                dataBuffer.setElem(bank, i, random.nextInt());
+            }
+        }
+    }
+
+    private static void assertConverts(BufferedImage image) {
+        int size = image.getWidth() * image.getHeight() * 4;
+        ByteBuffer expected = ByteBuffer.allocate(size);
+        toRGBAUsingGetRGB(image, expected);
+        expected.flip();
+
+        // Starts past the beginning of a direct buffer to check the position is honored
+        ByteBuffer pixels = ByteBuffer.allocateDirect(size + 8);
+        pixels.position(4);
+        ImageConverter.toRGBA(image, pixels);
+        assertEquals(size + 4, pixels.position());
+
+        pixels.position(4);
+        pixels.limit(size + 4);
+        assertEquals("Image type " + image.getType(), expected, pixels);
+    }
+
+    /**
+     * Creates an image of the given type filled with random values.
+     */
+    static BufferedImage createImage(int type, int width, int height, long seed) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        fill(image, seed);
+        return image;
+    }
+
+    /**
+     * The conversion ImageIOImageDecoder did before ImageConverter, one getRGB() for the whole image and one byte at a
+     * time into the buffer.
+     */
+    static void toRGBAUsingGetRGB(BufferedImage image, ByteBuffer pixels) {
+        int imageheight = image.getHeight();
+        int imagewidth = image.getWidth();
+        int ARGB[] = new int[imageheight * imagewidth];
+
+        image.getRGB(0, 0, imagewidth, imageheight, ARGB, 0, imagewidth);
+
+        for (int i = 0; i < ARGB.length; i++) {
+            int alpha = ARGB[i] >> 24 & 0xff;
+            int red = ARGB[i] >> 16 & 0xff;
+            int green = ARGB[i] >> 8 & 0xff;
+            int blue = ARGB[i] & 0xff;
+
+            pixels.put((byte) red);
+            pixels.put((byte) green);
+            pixels.put((byte) blue);
+            pixels.put((byte) alpha);
+        }
+    }
+
+    @Test
+    public void test3ByteBGR() {
+        assertConverts(createImage(BufferedImage.TYPE_3BYTE_BGR, WIDTH, HEIGHT, 1));
+    }
+
+    @Test
+    public void test4ByteABGR() {
+        assertConverts(createImage(BufferedImage.TYPE_4BYTE_ABGR, WIDTH, HEIGHT, 2));
+    }
+
+    @Test
+    public void testGetRGBFallback() {
+        int[] types = {BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_BYTE_INDEXED, BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_4BYTE_ABGR_PRE, BufferedImage.TYPE_USHORT_565_RGB};
+        for (int type : types) {
+            assertConverts(createImage(type, WIDTH, HEIGHT, type));
+        }
+    }
+
+    @Test
+    public void testIntARGB() {
+        assertConverts(createImage(BufferedImage.TYPE_INT_ARGB, WIDTH, HEIGHT, 3));
+    }
+
+    @Test
+    public void testIntBGR() {
+        assertConverts(createImage(BufferedImage.TYPE_INT_BGR, WIDTH, HEIGHT, 4));
+    }
+
+    @Test
+    public void testIntRGB() {
+        assertConverts(createImage(BufferedImage.TYPE_INT_RGB, WIDTH, HEIGHT, 5));
+    }
+
+    @Test
+    public void testPaddedRaster() {
+        // A 3 byte BGR raster that starts 7 bytes into its array and has 5 unused bytes at the end of each row
+        int scanlineStride = WIDTH * 3 + 5;
+        int offset = 7;
+        byte[] data = new byte[offset + scanlineStride * HEIGHT];
+        new Random(6).nextBytes(data);
+        PixelInterleavedSampleModel sampleModel = new PixelInterleavedSampleModel(DataBuffer.TYPE_BYTE, WIDTH,
+                HEIGHT, 3, scanlineStride, new int[]{2, 1, 0});
+        WritableRaster raster = Raster.createWritableRaster(sampleModel,
+                new DataBufferByte(data, data.length - offset, offset), null);
+        ComponentColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                new int[]{8, 8, 8}, false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        BufferedImage image = new BufferedImage(colorModel, raster, false, null);
+
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, image.getType());
+        assertConverts(image);
+    }
+
+    @Test
+    public void testSubimage() {
+        int[] types = {BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_INT_ARGB,
+            BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_INT_RGB};
+        for (int type : types) {
+            BufferedImage image = createImage(type, WIDTH, HEIGHT, type);
+            BufferedImage subimage = image.getSubimage(3, 5, WIDTH - 10, HEIGHT - 8);
+            assertEquals(type, subimage.getType());
+            assertConverts(subimage);
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import net.smert.lwjgl.examples.BenchmarkTimer;
+import net.smert.lwjgl.examples.BenchmarkTimer.Kernel;
+
+/**
+ * Compares building a mipmap chain with MipmapGenerator on a pool of one thread and on the common pool against reading
+ * it back from a MipmapCache, for square images doubling in size from 256 up to maxSize. A cache read includes the
+ * CRC32 of level 0 used to find the file. Writing to the cache, which only happens the first time, is timed as well.
+ * The cache lives in a temporary directory and is read from the file system cache after the first pass.
+ *
+ * Usage: MipmapBenchmark [maxSize]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class MipmapBenchmark {
+
+    private final static int MIN_SIZE = 256;
+    private final static String PATH = "benchmark.png";
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static void run(final MipmapCache cache, final ForkJoinPool singleThread, int maxSize, boolean print) {
+        for (int size = MIN_SIZE; size <= maxSize; size *= 2) {
+            final int width = size;
+            final int height = size;
+            int repeats = Math.max(1, (maxSize / size) * (maxSize / size) / 4);
+            final ByteBuffer chain = ByteBuffer.allocateDirect(MipmapGenerator.getChainSize(width, height));
+            Random random = new Random(size);
+            for (int i = 0; i < width * height * 4; i++) {
+                chain.put(i, (byte) random.nextInt(256));
+            }
+
+            long serial = BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    MipmapGenerator.generate(singleThread, chain, width, height);
+                    return chain.get(chain.capacity() - 1);
+                }
+
+            }, repeats);
+            long parallel = BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    MipmapGenerator.generate(ForkJoinPool.commonPool(), chain, width, height);
+                    return chain.get(chain.capacity() - 1);
+                }
+
+            }, repeats);
+            long write = BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    cache.write(PATH, chain, width, height);
+                    return chain.get(0);
+                }
+
+            }, repeats);
+            long read = BenchmarkTimer.time(new Kernel() {
+
+                @Override
+                public float run() {
+                    if (cache.read(PATH, chain, width, height) == false) {
+                        throw new IllegalStateException("The chain was not cached!");
+                    }
+                    return chain.get(chain.capacity() - 1);
+                }
+
+            }, repeats);
+
+            if (print == true) {
+                System.out.println(String.format("%4d^2 generate: %8.3f ms  parallel: %8.3f ms  "
+                        + "cache read: %8.3f ms  cache write: %8.3f ms", size, serial / 1000000.0 / repeats,
+                        parallel / 1000000.0 / repeats, read / 1000000.0 / repeats, write / 1000000.0 / repeats));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxSize = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+        File directory = Files.createTempDirectory("MipmapBenchmark").toFile();
+        MipmapCache cache = new MipmapCache(directory);
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        System.out.println("Processors: " + Runtime.getRuntime().availableProcessors() + ".");
+
+        try {
+            // First pass warms up
+            run(cache, singleThread, Math.min(maxSize, 1024), false);
+            run(cache, singleThread, maxSize, true);
+        } finally {
+            singleThread.shutdown();
+            delete(directory);
+        }
+        BenchmarkTimer.printSink();
+    }
+
+}
@@ -0,0 +1,114 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Writes mipmap chains to a MipmapCache in a temporary folder and reads them back into a chain that only has level 0.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class MipmapCacheTest {
+
+    private final static int HEIGHT = 32;
+    private final static int WIDTH = 64;
+    private final static String PATH = "test.png";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ByteBuffer chain;
+    private MipmapCache cache;
+
+    private static ByteBuffer copyLevel0(ByteBuffer chain) {
+        ByteBuffer copy = ByteBuffer.allocate(chain.capacity());
+        for (int i = 0; i < WIDTH * HEIGHT * 4; i++) {
+            copy.put(i, chain.get(i));
+        }
+        return copy;
+    }
+
+    private File getCachedFile() {
+        File[] files = cache.getDirectory().listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        chain = ByteBuffer.allocate(MipmapGenerator.getChainSize(WIDTH, HEIGHT));
+        Random random = new Random(1);
+        for (int i = 0; i < WIDTH * HEIGHT * 4; i++) {
+            chain.put(i, (byte) random.nextInt(256));
+        }
+        MipmapGenerator.generate(chain, WIDTH, HEIGHT);
+        cache = new MipmapCache(folder.newFolder("mipmaps"));
+    }
+
+    @Test
+    public void testMissingChain() {
+        assertFalse(cache.read(PATH, copyLevel0(chain), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void testOtherPathOrPixels() {
+        cache.write(PATH, chain, WIDTH, HEIGHT);
+
+        assertFalse(cache.read("other.png", copyLevel0(chain), WIDTH, HEIGHT));
+        ByteBuffer edited = copyLevel0(chain);
+        edited.put(0, (byte) (edited.get(0) + 1));
+        assertFalse(cache.read(PATH, edited, WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        cache.write(PATH, chain, WIDTH, HEIGHT);
+        File file = getCachedFile();
+        assertEquals(MipmapGenerator.getChainSize(WIDTH, HEIGHT) - WIDTH * HEIGHT * 4, file.length());
+
+        ByteBuffer read = copyLevel0(chain);
+        assertTrue(cache.read(PATH, read, WIDTH, HEIGHT));
+        assertEquals(chain, read);
+        assertEquals(0, read.position());
+    }
+
+    @Test
+    public void testStaleVersion() {
+        cache.write(PATH, chain, WIDTH, HEIGHT);
+        File file = getCachedFile();
+
+        // The same chain written by an older filter
+        String name = file.getName();
+        int version = Integer.parseInt(name.substring(name.lastIndexOf("-v") + 2, name.lastIndexOf('.')));
+        File staleFile = new File(file.getParentFile(), name.replace("-v" + version + ".", "-v" + (version - 1) + "."));
+        assertTrue(file.renameTo(staleFile));
+
+        assertFalse(cache.read(PATH, copyLevel0(chain), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void testWrongSize() throws IOException {
+        cache.write(PATH, chain, WIDTH, HEIGHT);
+        File file = getCachedFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 1);
+        }
+
+        assertFalse(cache.read(PATH, copyLevel0(chain), WIDTH, HEIGHT));
+
+        // Writing again replaces the short file
+        cache.write(PATH, chain, WIDTH, HEIGHT);
+        ByteBuffer read = copyLevel0(chain);
+        assertTrue(cache.read(PATH, read, WIDTH, HEIGHT));
+        assertEquals(chain, read);
+    }
+
+}
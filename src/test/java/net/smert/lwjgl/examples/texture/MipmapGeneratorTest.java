@@ -0,0 +1,161 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks MipmapGenerator against a model of the gluScaleImage halving that gluBuild2DMipmaps uses for power of two
+ * images, and against a plain per channel box filter for odd sizes.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class MipmapGeneratorTest {
+
+    private static ByteBuffer createChain(int width, int height, long seed) {
+        ByteBuffer chain = ByteBuffer.allocate(MipmapGenerator.getChainSize(width, height));
+        Random random = new Random(seed);
+        for (int i = 0; i < width * height * 4; i++) {
+            chain.put(i, (byte) random.nextInt(256));
+        }
+        return chain;
+    }
+
+    /**
+     * A float area average of each 2x2 block cast back to a byte, which truncates.
+     */
+    private static int[] gluHalve(ByteBuffer chain, int offset, int width, int height) {
+        int newWidth = Math.max(1, width >> 1);
+        int newHeight = Math.max(1, height >> 1);
+        float sx = (float) width / newWidth;
+        float sy = (float) height / newHeight;
+        int[] out = new int[newWidth * newHeight * 4];
+        for (int y = 0; y < newHeight; y++) {
+            for (int x = 0; x < newWidth; x++) {
+                for (int c = 0; c < 4; c++) {
+                    float sum = 0.0f;
+                    for (int j = (int) (y * sy); j < (int) ((y + 1) * sy); j++) {
+                        for (int i = (int) (x * sx); i < (int) ((x + 1) * sx); i++) {
+                            sum += chain.get(offset + (j * width + i) * 4 + c) & 0xff;
+                        }
+                    }
+                    out[(y * newWidth + x) * 4 + c] = (int) (sum / (sx * sy));
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Rows and columns 2i and 2i + 1, plus 2i + 2 for the last one of an odd size, rounded to nearest.
+     */
+    private static int[] boxHalve(ByteBuffer chain, int offset, int width, int height) {
+        int newWidth = Math.max(1, width >> 1);
+        int newHeight = Math.max(1, height >> 1);
+        int[] out = new int[newWidth * newHeight * 4];
+        for (int y = 0; y < newHeight; y++) {
+            int y1 = (y == newHeight - 1) ? height : y * 2 + 2;
+            for (int x = 0; x < newWidth; x++) {
+                int x1 = (x == newWidth - 1) ? width : x * 2 + 2;
+                for (int c = 0; c < 4; c++) {
+                    int sum = 0;
+                    int taps = 0;
+                    for (int j = y * 2; j < y1; j++) {
+                        for (int i = x * 2; i < x1; i++) {
+                            sum += chain.get(offset + (j * width + i) * 4 + c) & 0xff;
+                            taps++;
+                        }
+                    }
+                    out[(y * newWidth + x) * 4 + c] = (sum + taps / 2) / taps;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static int compareLevels(ByteBuffer chain, int width, int height, boolean glu) {
+        int maxDifference = 0;
+        for (int level = 1; level < MipmapGenerator.getLevelCount(width, height); level++) {
+            int srcWidth = MipmapGenerator.getLevelWidth(width, level - 1);
+            int srcHeight = MipmapGenerator.getLevelHeight(height, level - 1);
+            int srcOffset = MipmapGenerator.getLevelOffset(width, height, level - 1);
+            int dstOffset = MipmapGenerator.getLevelOffset(width, height, level);
+
+            // Each level is compared against the reference made from our own level before it
+            int[] expected = glu ? gluHalve(chain, srcOffset, srcWidth, srcHeight)
+                    : boxHalve(chain, srcOffset, srcWidth, srcHeight);
+            for (int i = 0; i < expected.length; i++) {
+                int difference = Math.abs((chain.get(dstOffset + i) & 0xff) - expected[i]);
+                maxDifference = Math.max(maxDifference, difference);
+            }
+        }
+        return maxDifference;
+    }
+
+    @Test
+    public void testLevelLayout() {
+        assertEquals(9, MipmapGenerator.getLevelCount(256, 128));
+        assertEquals(1, MipmapGenerator.getLevelCount(1, 1));
+        assertEquals(1, MipmapGenerator.getLevelHeight(128, 8));
+        assertEquals(256 * 128 * 4, MipmapGenerator.getLevelOffset(256, 128, 1));
+        assertEquals(4 * (3 * 4 + 1 * 2 + 1 * 1), MipmapGenerator.getChainSize(3, 4));
+    }
+
+    @Test
+    public void testPowerOfTwoMatchesGlu() {
+        int[][] sizes = {{256, 256}, {128, 32}, {16, 64}, {1, 8}, {8, 1}};
+        for (int[] size : sizes) {
+            ByteBuffer chain = createChain(size[0], size[1], size[0] * 31 + size[1]);
+            MipmapGenerator.generate(chain, size[0], size[1]);
+            // GLU truncates where the generator rounds
+            assertTrue(size[0] + "x" + size[1], compareLevels(chain, size[0], size[1], true) <= 1);
+            assertEquals(size[0] + "x" + size[1], 0, compareLevels(chain, size[0], size[1], false));
+        }
+    }
+
+    @Test
+    public void testOddSizesUseEveryPixel() {
+        int[][] sizes = {{3, 3}, {5, 7}, {1, 9}, {13, 1}, {255, 3}, {6, 5}, {7, 2}};
+        for (int[] size : sizes) {
+            ByteBuffer chain = createChain(size[0], size[1], size[0] * 31 + size[1]);
+            MipmapGenerator.generate(chain, size[0], size[1]);
+            assertEquals(size[0] + "x" + size[1], 0, compareLevels(chain, size[0], size[1], false));
+        }
+    }
+
+    @Test
+    public void testLastOddColumnAndRowAreNotDropped() {
+        // Only the bottom right pixel of a 3x3 image is white so the 1x1 level is 255 / 9 rounded
+        ByteBuffer chain = ByteBuffer.allocate(MipmapGenerator.getChainSize(3, 3));
+        chain.putInt(8 * 4, 0xffffffff);
+        MipmapGenerator.generate(chain, 3, 3);
+
+        int last = MipmapGenerator.getLevelOffset(3, 3, 1);
+        for (int c = 0; c < 4; c++) {
+            assertEquals(28, chain.get(last + c) & 0xff);
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        int width = 1023;
+        int height = 513;
+        ByteBuffer chain = createChain(width, height, 1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MipmapGenerator.generate(pool, chain, width, height);
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(511 * 256 > MipmapGenerator.PARALLEL_THRESHOLD);
+        assertEquals(0, compareLevels(chain, width, height, false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBufferTooSmall() {
+        MipmapGenerator.generate(ByteBuffer.allocate(64 * 64 * 4), 64, 64);
+    }
+
+}
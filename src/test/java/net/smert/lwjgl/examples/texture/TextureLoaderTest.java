@@ -0,0 +1,197 @@
+package net.smert.lwjgl.examples.texture;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Runs TextureLoader with a decoder that makes blank images so nothing needs GL or real image files. The images are
+ * "decoded" from the class file of this test since the loader has to find a resource first.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class TextureLoaderTest {
+
+    private final static int SIZE = 16;
+    private final static long TIMEOUT_MILLIS = 10000;
+    private final static String EXTENSION = "class";
+    private final static String PATH = "TextureLoaderTest.class";
+
+    private TextureLoader loader;
+
+    private static void waitFor(AtomicInteger count, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((count.get() < expected) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, count.get());
+    }
+
+    private static void waitForDone(TextureLoader loader) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while ((loader.isDone() == false) && (System.currentTimeMillis() < deadline)) {
+            Thread.sleep(1);
+        }
+        assertTrue(loader.isDone());
+    }
+
+    private TextureLoader createLoader(int queueCapacity, ImageDecoder decoder) {
+        loader = new TextureLoader(1, queueCapacity);
+        loader.registerDecoder(EXTENSION, decoder);
+        return loader;
+    }
+
+    @After
+    public void tearDown() {
+        if (loader != null) {
+            loader.shutdown();
+        }
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testDecodeFailureIsNotPending() {
+        CountingCallback callback = new CountingCallback();
+        TextureLoader loader = createLoader(2, new BlankDecoder(true));
+        loader.load(getClass(), PATH, callback);
+        loader.load(getClass(), PATH, callback);
+
+        loader.waitForAll();
+        assertTrue(loader.isDone());
+        assertEquals(0, callback.uploads.get());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testMipmapFailureReleasesBuffers() {
+        BlankDecoder decoder = new BlankDecoder(false);
+        CountingCallback callback = new CountingCallback();
+        TextureLoader loader = createLoader(2, decoder);
+        loader.setMipmapCache(new MipmapCache(new File("unused")) {
+
+            @Override
+            public boolean read(String path, ByteBuffer chain, int width, int height) {
+                throw new IllegalStateException("Cache failure");
+            }
+
+        });
+
+        // The only buffer in the chain's bucket is the one buildMipmaps() gets
+        ByteBufferPool pool = loader.getBufferPool();
+        ByteBuffer chain = pool.acquire(MipmapGenerator.getChainSize(SIZE, SIZE));
+        pool.release(chain);
+
+        loader.load(getClass(), PATH, true, callback);
+        loader.waitForAll();
+
+        assertTrue(loader.isDone());
+        assertEquals(0, callback.uploads.get());
+        assertSame(chain, pool.acquire(MipmapGenerator.getChainSize(SIZE, SIZE)));
+        assertSame(decoder.buffers.get(0), pool.acquire(SIZE * SIZE * 4));
+    }
+
+    @Test
+    public void testQueueBackpressure() throws InterruptedException {
+        BlankDecoder decoder = new BlankDecoder(false);
+        CountingCallback callback = new CountingCallback();
+        TextureLoader loader = createLoader(2, decoder);
+        for (int i = 0; i < 5; i++) {
+            loader.load(getClass(), PATH, callback);
+        }
+
+        // Two images fill the queue and the worker blocks with the third
+        waitFor(decoder.decodes, 3);
+        Thread.sleep(100);
+        assertEquals(3, decoder.decodes.get());
+        assertEquals(5, loader.getPending());
+
+        assertEquals(1, loader.processUploads(1));
+        assertEquals(1, callback.uploads.get());
+        waitFor(decoder.decodes, 4);
+
+        loader.waitForAll();
+        assertEquals(5, decoder.decodes.get());
+        assertEquals(5, callback.uploads.get());
+        assertTrue(loader.isDone());
+    }
+
+    @Test
+    public void testShutdownReleasesBuffers() throws InterruptedException {
+        BlankDecoder decoder = new BlankDecoder(false);
+        CountingCallback callback = new CountingCallback();
+        TextureLoader loader = createLoader(1, decoder);
+        for (int i = 0; i < 3; i++) {
+            loader.load(getClass(), PATH, callback);
+        }
+
+        // One image is queued, the worker blocks with the next and the last is never started
+        waitFor(decoder.decodes, 2);
+        loader.shutdown();
+        waitForDone(loader);
+
+        assertEquals(0, loader.getPending());
+        assertEquals(2, decoder.decodes.get());
+        assertEquals(0, callback.uploads.get());
+        ByteBufferPool pool = loader.getBufferPool();
+        ByteBuffer first = pool.acquire(SIZE * SIZE * 4);
+        ByteBuffer second = pool.acquire(SIZE * SIZE * 4);
+        assertNotSame(first, second);
+        assertTrue(decoder.buffers.contains(first));
+        assertTrue(decoder.buffers.contains(second));
+    }
+
+    @Test
+    public void testUploadReleasesBuffer() {
+        BlankDecoder decoder = new BlankDecoder(false);
+        CountingCallback callback = new CountingCallback();
+        TextureLoader loader = createLoader(2, decoder);
+        loader.load(getClass(), PATH, callback);
+
+        loader.waitForAll();
+        assertEquals(1, callback.uploads.get());
+        assertSame(decoder.buffers.get(0), loader.getBufferPool().acquire(SIZE * SIZE * 4));
+    }
+
+    private static class BlankDecoder implements ImageDecoder {
+
+        private final AtomicInteger decodes = new AtomicInteger();
+        private final boolean fail;
+        private final List<ByteBuffer> buffers = Collections.synchronizedList(new ArrayList<ByteBuffer>());
+
+        public BlankDecoder(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public Image decode(String path, InputStream is, ByteBufferPool pool) throws IOException {
+            if (fail == true) {
+                throw new IOException("Decode failure: " + path);
+            }
+            ByteBuffer pixels = pool.acquire(SIZE * SIZE * 4);
+            buffers.add(pixels);
+            pixels.position(pixels.limit());
+            pixels.flip();
+            decodes.incrementAndGet();
+            return new Image(path, SIZE, SIZE, pixels);
+        }
+
+    }
+
+    private static class CountingCallback implements TextureLoader.Callback {
+
+        private final AtomicInteger uploads = new AtomicInteger();
+
+        @Override
+        public void upload(Image image) {
+            uploads.incrementAndGet();
+        }
+
+    }
+
+}
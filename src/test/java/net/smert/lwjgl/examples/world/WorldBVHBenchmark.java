@@ -0,0 +1,151 @@
+package net.smert.lwjgl.examples.world;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import net.smert.lwjgl.examples.smert.Frustum;
+import net.smert.lwjgl.examples.smert.Matrix4f;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Measures WorldBVH on a world made by WorldGenerator. Reports the build time on one thread and on the common pool, the
+ * frustum query rate compared to testing every triangle with Frustum.cullAABBs, and the walk collision query rate.
+ * Cameras are placed at random inside the world at the same eye height as NeheLesson_10.
+ *
+ * Usage: WorldBVHBenchmark [roomsPerSide] [queries]
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldBVHBenchmark {
+
+    private final static float EYE_HEIGHT = 0.5f;
+    private final static float STEP_LENGTH = 0.25f;
+
+    private static long timeBuild(ForkJoinPool pool, FloatBuffer vertices) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long startTime = System.nanoTime();
+            WorldBVH.build(pool, vertices);
+            best = Math.min(best, System.nanoTime() - startTime);
+        }
+        return best;
+    }
+
+    public static void main(String[] args) {
+        int roomsPerSide = (args.length > 0) ? Integer.parseInt(args[0]) : 300;
+        int queries = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+        float half = roomsPerSide * WorldGenerator.ROOM_SPACING * 0.5f;
+        Random random = new Random(1);
+
+        FloatBuffer world = WorldGenerator.generate(roomsPerSide);
+        int numTriangles = world.remaining() / WorldFile.FLOATS_PER_TRIANGLE;
+        System.out.println("World: " + numTriangles + " triangles");
+
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        long sequentialTime = timeBuild(singleThread, world);
+        long parallelTime = timeBuild(ForkJoinPool.commonPool(), world);
+        singleThread.shutdown();
+        System.out.println("Build: 1 thread: " + sequentialTime / 1000000.0 + " ms. "
+                + ForkJoinPool.commonPool().getParallelism() + " threads: " + parallelTime / 1000000.0 + " ms.");
+
+        WorldBVH bvh = WorldBVH.build(world);
+        FloatBuffer vertices = bvh.getVertices();
+        System.out.println("Nodes: " + bvh.getNodeCount());
+
+        // Per triangle boxes for the brute force comparison
+        float[] aabbs = new float[numTriangles * Frustum.AABB_STRIDE];
+        for (int triangle = 0; triangle < numTriangles; triangle++) {
+            for (int axis = 0; axis < 3; axis++) {
+                float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+                for (int vert = 0; vert < 3; vert++) {
+                    float value = vertices.get((triangle * 3 + vert) * WorldFile.FLOATS_PER_VERTEX + axis);
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                aabbs[triangle * Frustum.AABB_STRIDE + axis] = min;
+                aabbs[triangle * Frustum.AABB_STRIDE + axis + 3] = max;
+            }
+        }
+        long[] visible = new long[Frustum.wordsForCount(numTriangles)];
+
+        Matrix4f projection = new Matrix4f().setPerspective(70.0f, 4.0f / 3.0f, 0.1f, 256.0f);
+        Matrix4f view = new Matrix4f();
+        Matrix4f viewProjection = new Matrix4f();
+        Frustum[] frustums = new Frustum[queries];
+        for (int i = 0; i < queries; i++) {
+            view.setFpsView((random.nextFloat() * 2.0f - 1.0f) * half, EYE_HEIGHT,
+                    (random.nextFloat() * 2.0f - 1.0f) * half, random.nextFloat() * 360.0f,
+                    random.nextFloat() * 40.0f - 20.0f);
+            frustums[i] = new Frustum().set(viewProjection.multiply(projection, view));
+        }
+
+        // Brute force is slow so it only runs on the first few cameras
+        int bruteQueries = Math.max(1, queries / 20);
+        IntBuffer first = BufferUtils.createIntBuffer(bvh.getMaxRanges());
+        IntBuffer count = BufferUtils.createIntBuffer(bvh.getMaxRanges());
+        for (int pass = 0; pass < 2; pass++) {                                  // First pass warms up
+            long drawnRanges = 0;
+            long drawnTriangles = 0;
+            long sameCamerasTriangles = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                int ranges = bvh.cull(frustums[i], first, count);
+                drawnRanges += ranges;
+                for (int j = 0; j < ranges; j++) {
+                    drawnTriangles += count.get(j) / 3;
+                    sameCamerasTriangles += (i < bruteQueries) ? count.get(j) / 3 : 0;
+                }
+            }
+            long elapsed = System.nanoTime() - startTime;
+            if (pass == 1) {
+                System.out.println("BVH frustum: " + queries * 1000000000L / elapsed + " queries/s. Average "
+                        + drawnTriangles / queries + " triangles in " + drawnRanges / queries + " draws ("
+                        + sameCamerasTriangles / bruteQueries + " triangles on the brute force cameras).");
+            }
+        }
+
+        long bruteVisible = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            bruteVisible = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < bruteQueries; i++) {
+                frustums[i].cullAABBs(aabbs, numTriangles, visible);
+                for (long word : visible) {
+                    bruteVisible += Long.bitCount(word);
+                }
+            }
+            long elapsed = System.nanoTime() - startTime;
+            if (pass == 1) {
+                System.out.println("Brute force frustum: " + bruteQueries * 1000000000L / elapsed
+                        + " queries/s. Average " + bruteVisible / bruteQueries + " triangles.");
+            }
+        }
+
+        float[] segments = new float[queries * 4];
+        for (int i = 0; i < queries; i++) {
+            float heading = (float) Math.toRadians(random.nextFloat() * 360.0f);
+            segments[i * 4] = (random.nextFloat() * 2.0f - 1.0f) * half;
+            segments[i * 4 + 1] = (random.nextFloat() * 2.0f - 1.0f) * half;
+            segments[i * 4 + 2] = segments[i * 4] - (float) Math.sin(heading) * STEP_LENGTH;
+            segments[i * 4 + 3] = segments[i * 4 + 1] - (float) Math.cos(heading) * STEP_LENGTH;
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            int hits = 0;
+            long startTime = System.nanoTime();
+            for (int repeat = 0; repeat < 10; repeat++) {
+                for (int i = 0; i < queries; i++) {
+                    float t = bvh.intersectSegment(segments[i * 4], EYE_HEIGHT, segments[i * 4 + 1],
+                            segments[i * 4 + 2], EYE_HEIGHT, segments[i * 4 + 3]);
+                    hits += (t >= 0.0f) ? 1 : 0;
+                }
+            }
+            long elapsed = System.nanoTime() - startTime;
+            if (pass == 1) {
+                System.out.println("BVH walk collision: " + queries * 10 * 1000000000L / elapsed + " queries/s. "
+                        + hits / 10 + " of " + queries + " steps blocked.");
+            }
+        }
+    }
+
+}
@@ -0,0 +1,316 @@
+package net.smert.lwjgl.examples.world;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import net.smert.lwjgl.examples.smert.Frustum;
+import net.smert.lwjgl.examples.smert.Matrix4f;
+import org.junit.Test;
+import org.lwjgl.BufferUtils;
+import static org.junit.Assert.*;
+
+/**
+ * Cross checks WorldBVH against testing every triangle. Frustum queries must draw every triangle whose own box is
+ * visible, and ray and segment queries must return the same nearest hit as running the same ray triangle test on every
+ * triangle. Worlds are random triangles, a generated world of rooms and worlds where most or all triangles share one
+ * centroid, which leaves the median split nothing to separate them by.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldBVHTest {
+
+    private final static float DETERMINANT_EPSILON = 1e-8f;
+    private final static float EXTENT = 50.0f;
+    private final static int QUERIES = 300;
+
+    private static void addTriangle(FloatBuffer vertices, float[] positions) {
+        for (int vertex = 0; vertex < 3; vertex++) {
+            vertices.put(positions, vertex * 3, 3);
+            vertices.put(0.0f).put(0.0f);
+        }
+    }
+
+    /**
+     * Triangles spun around one point so their bounding boxes, and so their centroids, are all the same, plus a few
+     * random triangles when others is not zero.
+     */
+    private static FloatBuffer createCoincidentWorld(int coincident, int others, long seed) {
+        Random random = new Random(seed);
+        FloatBuffer vertices = BufferUtils.createFloatBuffer((coincident + others) * WorldFile.FLOATS_PER_TRIANGLE);
+        for (int i = 0; i < coincident; i++) {
+            // Each triangle spans the box from (-1, -1, -1) to (1, 1, 1) using a different set of corners
+            float sx = ((i & 1) == 0) ? 1.0f : -1.0f;
+            float sy = ((i & 2) == 0) ? 1.0f : -1.0f;
+            float sz = ((i & 4) == 0) ? 1.0f : -1.0f;
+            addTriangle(vertices, new float[]{sx, sy, sz, -sx, -sy, sz, sx, -sy, -sz});
+        }
+        for (int i = 0; i < others; i++) {
+            addTriangle(vertices, createRandomTriangle(random));
+        }
+        vertices.flip();
+        return vertices;
+    }
+
+    private static float[] createRandomTriangle(Random random) {
+        float[] positions = new float[9];
+        float cx = (random.nextFloat() * 2.0f - 1.0f) * EXTENT;
+        float cy = (random.nextFloat() * 2.0f - 1.0f) * EXTENT;
+        float cz = (random.nextFloat() * 2.0f - 1.0f) * EXTENT;
+        for (int vertex = 0; vertex < 3; vertex++) {
+            positions[vertex * 3] = cx + random.nextFloat() * 4.0f - 2.0f;
+            positions[vertex * 3 + 1] = cy + random.nextFloat() * 4.0f - 2.0f;
+            positions[vertex * 3 + 2] = cz + random.nextFloat() * 4.0f - 2.0f;
+        }
+        return positions;
+    }
+
+    private static FloatBuffer createRandomWorld(int numTriangles, long seed) {
+        Random random = new Random(seed);
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(numTriangles * WorldFile.FLOATS_PER_TRIANGLE);
+        for (int i = 0; i < numTriangles; i++) {
+            addTriangle(vertices, createRandomTriangle(random));
+        }
+        vertices.flip();
+        return vertices;
+    }
+
+    private static List<String> getSortedTriangles(FloatBuffer vertices) {
+        List<String> triangles = new ArrayList<>();
+        float[] triangle = new float[WorldFile.FLOATS_PER_TRIANGLE];
+        for (int i = 0; i < vertices.remaining(); i += WorldFile.FLOATS_PER_TRIANGLE) {
+            for (int j = 0; j < triangle.length; j++) {
+                triangle[j] = vertices.get(vertices.position() + i + j);
+            }
+            triangles.add(Arrays.toString(triangle));
+        }
+        Collections.sort(triangles);
+        return triangles;
+    }
+
+    /**
+     * The same Moller-Trumbore test WorldBVH uses, run on every triangle.
+     */
+    private static float intersectAll(FloatBuffer vertices, float ox, float oy, float oz, float dx, float dy, float dz,
+            float tmax) {
+        float nearest = tmax;
+        boolean hit = false;
+        for (int offset = 0; offset < vertices.limit(); offset += WorldFile.FLOATS_PER_TRIANGLE) {
+            float ax = vertices.get(offset), ay = vertices.get(offset + 1), az = vertices.get(offset + 2);
+            int b = offset + WorldFile.FLOATS_PER_VERTEX;
+            int c = b + WorldFile.FLOATS_PER_VERTEX;
+            float e1x = vertices.get(b) - ax, e1y = vertices.get(b + 1) - ay, e1z = vertices.get(b + 2) - az;
+            float e2x = vertices.get(c) - ax, e2y = vertices.get(c + 1) - ay, e2z = vertices.get(c + 2) - az;
+
+            float px = dy * e2z - dz * e2y;
+            float py = dz * e2x - dx * e2z;
+            float pz = dx * e2y - dy * e2x;
+            float det = e1x * px + e1y * py + e1z * pz;
+            if ((det > -DETERMINANT_EPSILON) && (det < DETERMINANT_EPSILON)) {
+                continue;
+            }
+            float invdet = 1.0f / det;
+            float tx = ox - ax, ty = oy - ay, tz = oz - az;
+            float u = (tx * px + ty * py + tz * pz) * invdet;
+            if ((u < 0.0f) || (u > 1.0f)) {
+                continue;
+            }
+            float qx = ty * e1z - tz * e1y;
+            float qy = tz * e1x - tx * e1z;
+            float qz = tx * e1y - ty * e1x;
+            float v = (dx * qx + dy * qy + dz * qz) * invdet;
+            if ((v < 0.0f) || (u + v > 1.0f)) {
+                continue;
+            }
+            float t = (e2x * qx + e2y * qy + e2z * qz) * invdet;
+            if ((t >= 0.0f) && (t <= nearest)) {
+                nearest = t;
+                hit = true;
+            }
+        }
+        return hit ? nearest : -1.0f;
+    }
+
+    private static void assertBuilt(FloatBuffer world, WorldBVH bvh) {
+        int numTriangles = world.remaining() / WorldFile.FLOATS_PER_TRIANGLE;
+        assertEquals(numTriangles, bvh.getTriangleCount());
+        assertTrue(bvh.getNodeCount() >= 1);
+        assertTrue(bvh.getMaxRanges() <= numTriangles);
+        assertEquals(getSortedTriangles(world), getSortedTriangles(bvh.getVertices()));
+    }
+
+    private static void assertCullMatchesBruteForce(WorldBVH bvh, float eyeHeight, long seed) {
+        FloatBuffer vertices = bvh.getVertices();
+        int numTriangles = bvh.getTriangleCount();
+        Random random = new Random(seed);
+        Matrix4f projection = new Matrix4f().setPerspective(70.0f, 4.0f / 3.0f, 0.1f, 256.0f);
+        Matrix4f view = new Matrix4f();
+        Frustum frustum = new Frustum();
+        IntBuffer first = BufferUtils.createIntBuffer(bvh.getMaxRanges());
+        IntBuffer count = BufferUtils.createIntBuffer(bvh.getMaxRanges());
+        boolean[] drawn = new boolean[numTriangles];
+        int visibleTotal = 0;
+
+        for (int query = 0; query < QUERIES; query++) {
+            view.setFpsView((random.nextFloat() * 2.0f - 1.0f) * EXTENT, eyeHeight,
+                    (random.nextFloat() * 2.0f - 1.0f) * EXTENT, random.nextFloat() * 360.0f,
+                    random.nextFloat() * 180.0f - 90.0f);
+            frustum.set(new Matrix4f().multiply(projection, view));
+
+            int ranges = bvh.cull(frustum, first, count);
+            assertEquals(ranges, first.limit());
+            assertEquals(ranges, count.limit());
+            Arrays.fill(drawn, false);
+            int previousEnd = -1;
+            for (int i = 0; i < ranges; i++) {
+                // Whole triangles in ascending order, merged when they touch
+                assertEquals(0, first.get(i) % 3);
+                assertEquals(0, count.get(i) % 3);
+                assertTrue(count.get(i) > 0);
+                assertTrue(first.get(i) > previousEnd);
+                previousEnd = first.get(i) + count.get(i);
+                assertTrue(previousEnd <= numTriangles * 3);
+                for (int vertex = first.get(i); vertex < previousEnd; vertex += 3) {
+                    drawn[vertex / 3] = true;
+                }
+            }
+
+            for (int triangle = 0; triangle < numTriangles; triangle++) {
+                float[] box = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                    Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+                for (int vertex = 0; vertex < 3; vertex++) {
+                    int offset = triangle * WorldFile.FLOATS_PER_TRIANGLE + vertex * WorldFile.FLOATS_PER_VERTEX;
+                    for (int axis = 0; axis < 3; axis++) {
+                        box[axis] = Math.min(box[axis], vertices.get(offset + axis));
+                        box[axis + 3] = Math.max(box[axis + 3], vertices.get(offset + axis));
+                    }
+                }
+                if (frustum.isAABBVisible(box[0], box[1], box[2], box[3], box[4], box[5]) == true) {
+                    assertTrue("Query " + query + " missed triangle " + triangle, drawn[triangle]);
+                    visibleTotal++;
+                }
+            }
+        }
+
+        // Make sure the cameras actually saw something
+        assertTrue(visibleTotal > 0);
+    }
+
+    /**
+     * Casts rays and segments along the floor at the eye height, or when it is NaN from anywhere towards a random
+     * point of a random triangle so most of them hit something.
+     */
+    private static void assertRaysMatchBruteForce(WorldBVH bvh, float eyeHeight, long seed) {
+        FloatBuffer vertices = bvh.getVertices();
+        Random random = new Random(seed);
+        int hits = 0;
+
+        for (int query = 0; query < QUERIES; query++) {
+            float ox = (random.nextFloat() * 2.0f - 1.0f) * EXTENT;
+            float oy = eyeHeight;
+            float oz = (random.nextFloat() * 2.0f - 1.0f) * EXTENT;
+            float dx = random.nextFloat() * 2.0f - 1.0f;
+            float dy = 0.0f;
+            float dz = random.nextFloat() * 2.0f - 1.0f;
+            if (Float.isNaN(eyeHeight) == true) {
+                oy = (random.nextFloat() * 2.0f - 1.0f) * EXTENT;
+                int offset = random.nextInt(bvh.getTriangleCount()) * WorldFile.FLOATS_PER_TRIANGLE;
+                float u = random.nextFloat(), v = random.nextFloat() * (1.0f - u);
+                for (int axis = 0; axis < 3; axis++) {
+                    float a = vertices.get(offset + axis);
+                    float b = vertices.get(offset + WorldFile.FLOATS_PER_VERTEX + axis);
+                    float c = vertices.get(offset + WorldFile.FLOATS_PER_VERTEX * 2 + axis);
+                    float target = a + (b - a) * u + (c - a) * v;
+                    if (axis == 0) {
+                        dx = target - ox;
+                    } else if (axis == 1) {
+                        dy = target - oy;
+                    } else {
+                        dz = target - oz;
+                    }
+                }
+            }
+
+            float expected = intersectAll(vertices, ox, oy, oz, dx, dy, dz, 2.0f * EXTENT);
+            float actual = bvh.intersectRay(ox, oy, oz, dx, dy, dz, 2.0f * EXTENT);
+            assertEquals("Ray " + query, expected, actual, 0.0f);
+            hits += (expected >= 0.0f) ? 1 : 0;
+
+            // A segment is a ray with a length of one
+            float length = random.nextFloat() * 10.0f;
+            float x1 = ox + dx * length, y1 = oy + dy * length, z1 = oz + dz * length;
+            expected = intersectAll(vertices, ox, oy, oz, x1 - ox, y1 - oy, z1 - oz, 1.0f);
+            actual = bvh.intersectSegment(ox, oy, oz, x1, y1, z1);
+            assertEquals("Segment " + query, expected, actual, 0.0f);
+        }
+
+        assertTrue(hits > 0);
+    }
+
+    private static void assertMatchesBruteForce(FloatBuffer world, float eyeHeight, long seed) {
+        WorldBVH bvh = WorldBVH.build(world);
+        assertBuilt(world, bvh);
+        assertCullMatchesBruteForce(bvh, eyeHeight, seed);
+        assertRaysMatchBruteForce(bvh, eyeHeight, seed);
+    }
+
+    @Test
+    public void testAllCentroidsCoincident() {
+        FloatBuffer world = createCoincidentWorld(2000, 0, 1);
+        WorldBVH bvh = WorldBVH.build(world);
+        assertBuilt(world, bvh);
+
+        // Every ray through the shared box hits, and misses beside it
+        float t = bvh.intersectRay(-10.0f, 0.1f, 0.2f, 1.0f, 0.0f, 0.0f, 100.0f);
+        assertEquals(intersectAll(bvh.getVertices(), -10.0f, 0.1f, 0.2f, 1.0f, 0.0f, 0.0f, 100.0f), t, 0.0f);
+        assertTrue(t > 0.0f);
+        assertEquals(-1.0f, bvh.intersectRay(-10.0f, 5.0f, 0.0f, 1.0f, 0.0f, 0.0f, 100.0f), 0.0f);
+        assertRaysMatchBruteForce(bvh, Float.NaN, 2);
+    }
+
+    @Test
+    public void testEmptyWorld() {
+        WorldBVH bvh = WorldBVH.build(BufferUtils.createFloatBuffer(0));
+        assertEquals(0, bvh.getNodeCount());
+        assertEquals(0, bvh.getTriangleCount());
+        assertEquals(0, bvh.cull(new Frustum(), BufferUtils.createIntBuffer(1), BufferUtils.createIntBuffer(1)));
+        assertEquals(-1.0f, bvh.intersectRay(0.0f, 0.0f, 0.0f, 1.0f, 0.0f, 0.0f, 10.0f), 0.0f);
+    }
+
+    @Test
+    public void testGeneratedWorld() {
+        assertMatchesBruteForce(WorldGenerator.generate(12), 0.5f, 3);
+    }
+
+    @Test
+    public void testMostCentroidsCoincident() {
+        assertMatchesBruteForce(createCoincidentWorld(1500, 500, 4), Float.NaN, 4);
+    }
+
+    @Test
+    public void testParallelBuildMatchesSequential() {
+        FloatBuffer world = createRandomWorld(3 * WorldBVH.PARALLEL_THRESHOLD, 5);
+        ForkJoinPool singleThread = new ForkJoinPool(1);
+        WorldBVH sequential;
+        try {
+            sequential = WorldBVH.build(singleThread, world);
+        } finally {
+            singleThread.shutdown();
+        }
+        WorldBVH parallel = WorldBVH.build(ForkJoinPool.commonPool(), world);
+
+        assertBuilt(world, parallel);
+        assertEquals(sequential.getNodeCount(), parallel.getNodeCount());
+        assertEquals(sequential.getVertices(), parallel.getVertices());
+    }
+
+    @Test
+    public void testRandomWorld() {
+        assertMatchesBruteForce(createRandomWorld(3000, 6), Float.NaN, 6);
+    }
+
+}
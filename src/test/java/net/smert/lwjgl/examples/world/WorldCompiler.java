@@ -0,0 +1,50 @@
+package net.smert.lwjgl.examples.world;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+
+/**
+ * Compiles a text world into the binary WorldFile format. Also reports how long each format takes to load so the
+ * difference is easy to see on large worlds made by WorldGenerator.
+ *
+ * Usage: WorldCompiler world.txt world.bin
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldCompiler {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: WorldCompiler <world.txt> <world.bin>");
+            return;
+        }
+
+        try {
+            File input = new File(args[0]);
+            File output = new File(args[1]);
+
+            long startTime = System.nanoTime();
+            FloatBuffer vertices = WorldFile.load(input);
+            long parseTime = System.nanoTime() - startTime;
+
+            WorldFile.write(output, vertices);
+
+            startTime = System.nanoTime();
+            FloatBuffer mapped = WorldFile.map(output);
+            float checksum = 0.0f;
+            for (int i = 0, n = mapped.limit(); i < n; i += WorldFile.FLOATS_PER_VERTEX) {
+                checksum += mapped.get(i);                                      // Touch every vertex once
+            }
+            long mapTime = System.nanoTime() - startTime;
+
+            System.out.println("Compiled " + vertices.remaining() / WorldFile.FLOATS_PER_TRIANGLE + " triangles to: "
+                    + output.getPath());
+            System.out.println("Text load: " + parseTime / 1000000.0 + " ms. Binary load: " + mapTime / 1000000.0
+                    + " ms. (Checksum: " + checksum + ")");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
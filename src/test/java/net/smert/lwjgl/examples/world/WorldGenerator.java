@@ -0,0 +1,143 @@
+package net.smert.lwjgl.examples.world;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Generates large synthetic worlds for testing loaders and renderers. The world is a square grid of rooms in the style
+ * of the NeHe lesson 10 world, each with a floor, a ceiling and four walls, two triangles each. Every third room leaves
+ * out its +X wall so the rooms connect.
+ *
+ * Usage: WorldGenerator roomsPerSide output.txt|output.bin
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldGenerator {
+
+    public final static float ROOM_HEIGHT = 1.0f;
+    public final static float ROOM_SIZE = 3.0f;
+    public final static float ROOM_SPACING = 4.0f;
+
+    private static void addQuad(FloatBuffer vertices, float x0, float y0, float z0, float x1, float y1, float z1,
+            boolean horizontal) {
+        float u = horizontal ? 1.0f : Math.abs(x1 - x0) + Math.abs(z1 - z0);
+
+        // Two triangles sharing the diagonal from corner 0 to corner 1, the same layout as world.txt
+        if (horizontal) {
+            putVertex(vertices, x0, y0, z0, 0.0f, 0.0f);
+            putVertex(vertices, x0, y0, z1, 0.0f, 1.0f);
+            putVertex(vertices, x1, y1, z1, u, 1.0f);
+            putVertex(vertices, x0, y0, z0, 0.0f, 0.0f);
+            putVertex(vertices, x1, y1, z0, u, 0.0f);
+            putVertex(vertices, x1, y1, z1, u, 1.0f);
+        } else {
+            putVertex(vertices, x0, y1, z0, u, 0.0f);
+            putVertex(vertices, x0, y0, z0, u, 1.0f);
+            putVertex(vertices, x1, y0, z1, 0.0f, 1.0f);
+            putVertex(vertices, x0, y1, z0, u, 0.0f);
+            putVertex(vertices, x1, y1, z1, 0.0f, 0.0f);
+            putVertex(vertices, x1, y0, z1, 0.0f, 1.0f);
+        }
+    }
+
+    private static boolean isDoor(int row, int column) {
+        return ((row + column) % 3) == 0;
+    }
+
+    private static void putVertex(FloatBuffer vertices, float x, float y, float z, float u, float v) {
+        vertices.put(x).put(y).put(z).put(u).put(v);
+    }
+
+    private static void writeText(File file, FloatBuffer vertices) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("// X    Y    Z  U   V");
+            writer.newLine();
+            writer.newLine();
+            writer.write("NUMPOLLIES " + vertices.remaining() / WorldFile.FLOATS_PER_TRIANGLE);
+            writer.newLine();
+
+            for (int i = vertices.position(); i < vertices.limit(); i += WorldFile.FLOATS_PER_VERTEX) {
+                int triangle = (i - vertices.position()) / WorldFile.FLOATS_PER_TRIANGLE;
+                if ((triangle % 1000 == 0) && ((i - vertices.position()) % WorldFile.FLOATS_PER_TRIANGLE == 0)) {
+                    writer.newLine();
+                    writer.write("// Triangle " + triangle);
+                    writer.newLine();
+                }
+                writer.write(vertices.get(i) + " " + vertices.get(i + 1) + " " + vertices.get(i + 2) + " "
+                        + vertices.get(i + 3) + " " + vertices.get(i + 4));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Returns the vertices of a world with roomsPerSide * roomsPerSide rooms centered on the origin.
+     */
+    public static FloatBuffer generate(int roomsPerSide) {
+        int rooms = roomsPerSide * roomsPerSide;
+        int doors = 0;
+        for (int row = 0; row < roomsPerSide; row++) {
+            for (int column = 0; column < roomsPerSide; column++) {
+                doors += isDoor(row, column) ? 1 : 0;
+            }
+        }
+
+        int numTriangles = rooms * 12 - doors * 2;
+        FloatBuffer vertices = BufferUtils.createFloatBuffer(numTriangles * WorldFile.FLOATS_PER_TRIANGLE);
+        float half = roomsPerSide * ROOM_SPACING * 0.5f;
+
+        for (int row = 0; row < roomsPerSide; row++) {
+            for (int column = 0; column < roomsPerSide; column++) {
+                float x0 = column * ROOM_SPACING - half;
+                float z0 = row * ROOM_SPACING - half;
+                float x1 = x0 + ROOM_SIZE;
+                float z1 = z0 + ROOM_SIZE;
+
+                // Floor and ceiling
+                addQuad(vertices, x0, 0.0f, z0, x1, 0.0f, z1, true);
+                addQuad(vertices, x0, ROOM_HEIGHT, z0, x1, ROOM_HEIGHT, z1, true);
+
+                // Walls
+                addQuad(vertices, x0, 0.0f, z0, x1, ROOM_HEIGHT, z0, false);
+                addQuad(vertices, x0, 0.0f, z1, x1, ROOM_HEIGHT, z1, false);
+                addQuad(vertices, x0, 0.0f, z0, x0, ROOM_HEIGHT, z1, false);
+                if (isDoor(row, column) == false) {
+                    addQuad(vertices, x1, 0.0f, z0, x1, ROOM_HEIGHT, z1, false);
+                }
+            }
+        }
+
+        vertices.flip();
+        return vertices;
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: WorldGenerator <rooms per side> <output.txt|output.bin>");
+            return;
+        }
+
+        try {
+            int roomsPerSide = Integer.parseInt(args[0]);
+            File output = new File(args[1]);
+            FloatBuffer vertices = generate(roomsPerSide);
+
+            if (output.getName().toLowerCase().endsWith(".txt")) {
+                writeText(output, vertices);
+            } else {
+                WorldFile.write(output, vertices);
+            }
+
+            System.out.println("Generated " + vertices.remaining() / WorldFile.FLOATS_PER_TRIANGLE + " triangles to: "
+                    + output.getPath());
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
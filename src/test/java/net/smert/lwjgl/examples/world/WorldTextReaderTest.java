@@ -0,0 +1,160 @@
+package net.smert.lwjgl.examples.world;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.StringTokenizer;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Checks WorldTextReader against Float.parseFloat, including numbers longer than its buffer, and the world.txt of NeHe
+ * lesson 10 against the line based loader it replaced.
+ *
+ * @author Jason Sorensen <sorensenj@smert.net>
+ */
+public class WorldTextReaderTest {
+
+    private static String repeat(char c, int count) {
+        StringBuilder sb = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The loader WorldTextReader replaced. It reads lines, skips blank and comment lines, and parses every token with
+     * Float.parseFloat.
+     */
+    private static float[] readLines(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.ISO_8859_1));
+        List<Float> values = new ArrayList<>();
+        String line;
+        boolean header = true;
+
+        while ((line = reader.readLine()) != null) {
+            if ((line.trim().length() == 0) || line.trim().startsWith("//")) {
+                continue;
+            }
+            if (header == true) {
+                assertTrue(line, line.startsWith("NUMPOLLIES"));
+                header = false;
+                continue;
+            }
+            StringTokenizer st = new StringTokenizer(line, " ");
+            while (st.hasMoreTokens()) {
+                values.add(Float.parseFloat(st.nextToken()));
+            }
+        }
+
+        float[] result = new float[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static FloatBuffer read(String text) throws IOException {
+        return WorldTextReader.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.ISO_8859_1)));
+    }
+
+    /**
+     * Makes a one triangle world out of 15 numbers, wrapping them five to a line.
+     */
+    private static String world(String... numbers) {
+        StringBuilder sb = new StringBuilder("// Test\nNUMPOLLIES 1\n");
+        for (int i = 0; i < numbers.length; i++) {
+            sb.append(numbers[i]).append(((i % 5) == 4) ? "\n" : " ");
+        }
+        return sb.toString();
+    }
+
+    private static void assertParsed(String[] numbers, FloatBuffer vertices) {
+        assertEquals(numbers.length, vertices.remaining());
+        for (int i = 0; i < numbers.length; i++) {
+            assertEquals(numbers[i], Float.floatToIntBits(Float.parseFloat(numbers[i])),
+                    Float.floatToIntBits(vertices.get(i)));
+        }
+    }
+
+    @Test
+    public void testNumbersMatchParseFloat() throws IOException {
+        Random random = new Random(1);
+        String[] numbers = new String[15];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = Float.toString((random.nextFloat() - 0.5f) * 1000.0f);
+        }
+        numbers[0] = "-3.0";
+        numbers[1] = "1e-3";
+        numbers[2] = "+0.5";
+        assertParsed(numbers, read(world(numbers)));
+    }
+
+    @Test
+    public void testLessonWorldMatchesLineLoader() throws IOException {
+        String resource = "/net/smert/lwjgl/examples/nehe/world.txt";
+        float[] expected;
+        FloatBuffer vertices;
+        try (InputStream is = getClass().getResourceAsStream(resource)) {
+            assertNotNull(resource, is);
+            expected = readLines(is);
+        }
+        try (InputStream is = getClass().getResourceAsStream(resource)) {
+            vertices = WorldTextReader.read(is);
+        }
+
+        assertTrue(expected.length > 0);
+        assertEquals(0, expected.length % WorldFile.FLOATS_PER_TRIANGLE);
+        assertEquals(expected.length, vertices.remaining());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Float " + i, Float.floatToIntBits(expected[i]), Float.floatToIntBits(vertices.get(i)));
+        }
+    }
+
+    @Test
+    public void testLongNumbers() throws IOException {
+        String[] numbers = new String[15];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = "1.0";
+        }
+        numbers[0] = "0." + repeat('0', 80) + "1e80";
+        numbers[3] = "3.14159265358979323846264338327950288419716939937510582097494459230781640628620899";
+        numbers[7] = "-" + repeat('9', 30) + "." + repeat('1', 50);
+        numbers[14] = "2." + repeat('5', 70);
+        assertParsed(numbers, read(world(numbers)));
+    }
+
+    @Test
+    public void testNumberLongerThanBuffer() throws IOException {
+        String[] numbers = new String[15];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = Integer.toString(i);
+        }
+        numbers[5] = "0." + repeat('7', 200000);
+        assertParsed(numbers, read(world(numbers)));
+    }
+
+    @Test
+    public void testMissingVertices() throws IOException {
+        try {
+            read("NUMPOLLIES 2\n0 0 0 0 0\n");
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("1 of 6 vertices"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidNumber() throws IOException {
+        read(world("1", "2", "3", "4", "5", "6", "7x", "8", "9", "10", "11", "12", "13", "14", "15"));
+    }
+
+}